@@ -277,6 +277,16 @@ public class DirectoryManager {
 
     }
 
+    public static synchronized File getDatasetCacheDirectory() {
+
+        File cacheDir = new File(DirectoryManager.getIgvDirectory(), "data");
+        if (!cacheDir.exists()) {
+            cacheDir.mkdir();
+        }
+        return cacheDir;
+
+    }
+
     public static synchronized File getLogFile() throws IOException {
 
         File logFile = new File(getIgvDirectory(), "igv.log");
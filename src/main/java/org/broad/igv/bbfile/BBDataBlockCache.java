@@ -0,0 +1,91 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.bbfile;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.broad.igv.util.CompressionUtils;
+import org.broad.igv.util.collections.WeightedCache;
+
+import java.io.IOException;
+
+/**
+ * Cache of data blocks, decompressed if necessary,  shared by the bigwig, bigbed, and zoom level iterators.  Blocks
+ * are keyed by file and offset,  so panning and zooming over a previously viewed region does not re-read or re-inflate
+ * its blocks,  and readers of the same file share entries.
+ */
+public class BBDataBlockCache {
+
+    static final long CACHE_SIZE = 50000000;
+
+    private static final WeightedCache<String, byte[]> cache =
+            new WeightedCache<>("BB data blocks", CACHE_SIZE, bytes -> 32 + bytes.length);
+
+    /**
+     * Return the data block at the file offset,  decompressed if uncompressBufSize > 0.  The returned array is shared
+     * and must not be modified.
+     *
+     * @param fis               - file input stream handle
+     * @param fileOffset        - file offset of the data block
+     * @param dataSize          - byte size of the data block in the file
+     * @param uncompressBufSize - byte size for decompression buffer; else 0 for uncompressed
+     */
+    public static byte[] getDataBlock(SeekableStream fis, long fileOffset, int dataSize, int uncompressBufSize)
+            throws IOException {
+
+        String source = fis.getSource();
+        String key = source == null ? null : source + "_" + fileOffset;
+
+        byte[] data = key == null ? null : cache.get(key);
+        if (data == null) {
+
+            byte[] buffer = new byte[dataSize];
+            synchronized (fis) {
+                fis.seek(fileOffset);
+                fis.readFully(buffer);
+            }
+
+            // the buffer size is 0 for uncompressed data
+            if (uncompressBufSize > 0) {
+                data = CompressionUtils.getThreadInstance().decompress(buffer, uncompressBufSize);
+            } else {
+                data = buffer;
+            }
+
+            if (key != null) {
+                cache.put(key, data);
+            }
+        }
+        return data;
+    }
+
+    public static void clear() {
+        cache.clear();
+    }
+
+    static WeightedCache<String, byte[]> getCache() {
+        return cache;
+    }
+}
@@ -27,7 +27,6 @@ package org.broad.igv.bbfile;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
 import org.apache.log4j.Logger;
-import org.broad.igv.util.CompressionUtils;
 
 import java.util.ArrayList;
 import java.io.IOException;
@@ -85,19 +84,11 @@ public class BigWigDataBlock {
 
         fileOffset = this.leafHitItem.getDataOffset();
         leafDataSize = this.leafHitItem.geDataSize();
-        byte[] buffer = new byte[(int) leafDataSize];
 
-        // read Wig data block into a buffer
+        // read Wig data block,  decompressed if necessary, from the shared block cache
+        // Note:  BBFile Table C specifies a decompression buffer size
         try {
-            fis.seek(fileOffset);
-            fis.readFully(buffer);
-
-            // decompress if necessary - the buffer size is 0 for uncompressed data
-            // Note:  BBFile Table C specifies a decompression buffer size
-            if(uncompressBufSize > 0)
-                wigBuffer = (new CompressionUtils()).decompress(buffer, uncompressBufSize);
-            else
-                wigBuffer = buffer;    // use uncompressed read buffer directly
+            wigBuffer = BBDataBlockCache.getDataBlock(fis, fileOffset, (int) leafDataSize, uncompressBufSize);
         }catch(IOException ex) {
             log.error("Error reading Wig section for leaf item ", ex);
             String error = String.format("Error reading Wig section for leaf item %d\n");
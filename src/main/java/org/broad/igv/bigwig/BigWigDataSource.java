@@ -31,6 +31,7 @@ import org.broad.igv.bbfile.*;
 import org.broad.igv.data.AbstractDataSource;
 import org.broad.igv.data.BasicScore;
 import org.broad.igv.data.DataTile;
+import org.broad.igv.data.LocusScoreBatch;
 import org.broad.igv.feature.*;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.tribble.IGVBEDCodec;
@@ -242,14 +243,13 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
         String querySeq = tmp == null ? chr : tmp;
 
         if (reader.isBigBedFile() || bbLevel > 1 || (bbLevel == 1 && (reductionLevel / scale) < 2)) {
-            ArrayList<LocusScore> scores = new ArrayList(1000);
+            LocusScoreBatch scores = new LocusScoreBatch(1000);
             ZoomLevelIterator zlIter = reader.getZoomLevelIterator(bbLevel, querySeq, start, querySeq, end, false);
             while (zlIter.hasNext()) {
                 ZoomDataRecord rec = zlIter.next();
 
                 float v = getValue(rec);
-                BasicScore bs = new BasicScore(rec.getChromStart(), rec.getChromEnd(), v);
-                scores.add(bs);
+                scores.add(rec.getChromStart(), rec.getChromEnd(), v);
             }
             return scores;
 
@@ -328,7 +328,7 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
                 String lastChr = reader.getChromsomeFromId(maxChromId);
 
                 ArrayList<LocusScore> scores = new ArrayList<LocusScore>();
-                wholeGenomeScores.put(windowFunction, scores);
+                wholeGenomeScores.put(windowFunction, Collections.emptyList());
 
                 BBZoomLevelHeader lowestResHeader = this.getZoomLevelForScale(scale);
                 if (lowestResHeader == null) return null;
@@ -361,6 +361,7 @@ public class BigWigDataSource extends AbstractDataSource implements FeatureSourc
                 }
 
                 scores.sort((o1, o2) -> o1.getStart() - o2.getStart());
+                wholeGenomeScores.put(windowFunction, LocusScoreBatch.copyOf(scores));
 
             }
             return wholeGenomeScores.get(windowFunction);
@@ -35,7 +35,7 @@ import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.tdf.Accumulator;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.ui.panel.FrameManager;
-import org.broad.igv.util.collections.LRUCache;
+import org.broad.igv.util.collections.WeightedCache;
 
 import java.util.*;
 
@@ -60,7 +60,8 @@ public abstract class AbstractDataSource implements DataSource {
     // DataManager dataManager;
     boolean cacheSummaryTiles = true;
     protected WindowFunction windowFunction = WindowFunction.mean;
-    LRUCache<String, SummaryTile> summaryTileCache = new LRUCache(10);
+    WeightedCache<String, SummaryTile> summaryTileCache =
+            new WeightedCache<>("Summary tiles", 10000000, tile -> 64 + 64L * tile.getSize());
     protected Genome genome;
 
     public AbstractDataSource(Genome genome) {
@@ -148,11 +149,25 @@ public abstract class AbstractDataSource implements DataSource {
 
         List<SummaryTile> tiles = getSummaryTilesForRange(chr, startLocation, endLocation, zoom);
 
-        scores = new ArrayList(tiles.size() * 700);
-
+        boolean columnar = true;
         for (SummaryTile tile : tiles) {
-            scores.addAll(tile.getScores());
+            columnar &= tile.isEmpty() || tile.getScores() instanceof LocusScoreBatch;
+        }
 
+        if (columnar) {
+            LocusScoreBatch batch = new LocusScoreBatch(tiles.size() * 700);
+            for (SummaryTile tile : tiles) {
+                if (!tile.isEmpty()) {
+                    LocusScoreBatch tileScores = (LocusScoreBatch) tile.getScores();
+                    batch.addAll(tileScores, 0, tileScores.size());
+                }
+            }
+            scores = batch;
+        } else {
+            scores = new ArrayList<>(tiles.size() * 700);
+            for (SummaryTile tile : tiles) {
+                scores.addAll(tile.getScores());
+            }
         }
         //FeatureUtils.sortFeatureList(summaryScores);
         return scores;
@@ -197,9 +212,7 @@ public abstract class AbstractDataSource implements DataSource {
                     summaryTile = computeSummaryTile(chr, tileStart, tileEnd, 700);
 
                     if (cacheSummaryTiles && !FrameManager.isGeneListMode()) {
-                        synchronized (summaryTileCache) {
-                            summaryTileCache.put(key, summaryTile);
-                        }
+                        summaryTileCache.put(key, summaryTile);
                     }
                 }
 
@@ -239,7 +252,24 @@ public abstract class AbstractDataSource implements DataSource {
             float[] values = rawTile.getValues();
             String[] features = rawTile.getFeatureNames();
 
-            if (windowFunction == WindowFunction.none) {
+            if (windowFunction == WindowFunction.none && features == null) {
+
+                // Unnamed scores are kept in columnar form
+                LocusScoreBatch scores = new LocusScoreBatch(starts.length);
+                for (int i = 0; i < starts.length; i++) {
+                    int s = starts[i];
+                    int e = ends == null ? s + 1 : Math.max(s + 1, ends[i]);
+
+                    if (e < startLocation) {
+                        continue;
+                    } else if (s >= endLocation) {
+                        break;
+                    }
+                    scores.add(s, e, values[i]);
+                }
+                tile = new SummaryTile(scores);
+
+            } else if (windowFunction == WindowFunction.none) {
 
                 for (int i = 0; i < starts.length; i++) {
                     int s = starts[i];
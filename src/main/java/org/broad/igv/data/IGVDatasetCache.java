@@ -0,0 +1,488 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary columnar copy of a parsed .igv / .cn file.  The cache is written while the text file is scanned for the
+ * first time and holds, for each chromosome block, the start and end arrays, the probe names, and one float
+ * column per sample.  Subsequent loads read the columns back from a memory mapped file instead of re-parsing
+ * the text.
+ * <p/>
+ * The cache is keyed by the size and modification time of the source file, and the genome used to canonicalize
+ * chromosome names.  A stale or unreadable cache is ignored and rewritten on the next scan.  Least recently used
+ * caches are deleted when the cache directory exceeds its size limit.
+ * <p/>
+ * Layout (big-endian):  a fixed header with the key and the position of the index, followed by the chromosome
+ * blocks, followed by the index.  Each block is  starts[n], ends[n] (optional), data[nHeadings][n], probes.
+ */
+class IGVDatasetCache {
+
+    private static Logger log = Logger.getLogger(IGVDatasetCache.class);
+
+    static final String EXTENSION = ".igvcache";
+
+    private static final int MAGIC = 0x49475643;     // "IGVC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+
+    /**
+     * Minimum interval between updates of a cache's last use time,  to avoid touching the file on every load
+     */
+    static final long TOUCH_INTERVAL = 24 * 60 * 60 * 1000L;
+
+    private final File file;
+    private final String[] headings;
+    private final boolean hasEndLocations;
+    private final List<Block> blocks;
+    private final Map<Long, Block> blocksByPosition;
+    private final float dataMin;
+    private final float dataMax;
+    private final boolean logNormalized;
+
+    private IGVDatasetCache(File file, String[] headings, boolean hasEndLocations, List<Block> blocks,
+                            float dataMin, float dataMax, boolean logNormalized) {
+        this.file = file;
+        this.headings = headings;
+        this.hasEndLocations = hasEndLocations;
+        this.blocks = blocks;
+        this.dataMin = dataMin;
+        this.dataMax = dataMax;
+        this.logNormalized = logNormalized;
+        this.blocksByPosition = new HashMap<>(blocks.size());
+        for (Block b : blocks) {
+            blocksByPosition.put(b.textPosition, b);
+        }
+    }
+
+    /**
+     * Return true if the data file can be cached, i.e. it is a local file.
+     */
+    static boolean isCacheable(String path) {
+        return !FileUtils.isRemote(path) && new File(path).isFile();
+    }
+
+    /**
+     * Return the cache file for the given data file.  Caches are kept in the IGV directory rather than next to
+     * the data file, the parent path hash distinguishes like-named files in different directories.
+     */
+    static File getCacheFile(String path) {
+        File dataFile = new File(path).getAbsoluteFile();
+        File cacheDir = DirectoryManager.getDatasetCacheDirectory();
+        return new File(cacheDir, dataFile.getName() + "_" + dataFile.getParent().hashCode() + EXTENSION);
+    }
+
+    /**
+     * Open the cache for the given data file.
+     *
+     * @return the cache, or null if there is no cache or it does not match the current data file
+     */
+    static IGVDatasetCache open(String path, String genomeId, String[] headings, boolean hasEndLocations) {
+
+        File dataFile = new File(path);
+        File cacheFile = getCacheFile(path);
+        if (!cacheFile.exists()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION ||
+                    header.getLong() != dataFile.length() || header.getLong() != dataFile.lastModified()) {
+                return null;
+            }
+            long indexPosition = header.getLong();
+
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexPosition, channel.size() - indexPosition);
+            if (!genomeId.equals(getString(index)) || (index.get() != 0) != hasEndLocations) {
+                return null;
+            }
+            String[] cachedHeadings = new String[index.getInt()];
+            for (int i = 0; i < cachedHeadings.length; i++) {
+                cachedHeadings[i] = getString(index);
+            }
+            if (!Arrays.equals(headings, cachedHeadings)) {
+                return null;
+            }
+
+            float dataMin = index.getFloat();
+            float dataMax = index.getFloat();
+            boolean logNormalized = index.get() != 0;
+
+            int nBlocks = index.getInt();
+            List<Block> blocks = new ArrayList<>(nBlocks);
+            for (int i = 0; i < nBlocks; i++) {
+                String chr = getString(index);
+                long textPosition = index.getLong();
+                int nRows = index.getInt();
+                int longestFeature = index.getInt();
+                long position = index.getLong();
+                long size = index.getLong();
+                blocks.add(new Block(chr, textPosition, nRows, longestFeature, position, size));
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - cacheFile.lastModified() > TOUCH_INTERVAL) {
+                cacheFile.setLastModified(now);   // Least recently used order
+            }
+
+            return new IGVDatasetCache(cacheFile, headings, hasEndLocations, blocks, dataMin, dataMax, logNormalized);
+
+        } catch (Exception e) {
+            log.warn("Error reading dataset cache " + cacheFile.getAbsolutePath() + ", ignoring cache", e);
+            return null;
+        }
+    }
+
+    List<Block> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    float getDataMin() {
+        return dataMin;
+    }
+
+    float getDataMax() {
+        return dataMax;
+    }
+
+    boolean isLogNormalized() {
+        return logNormalized;
+    }
+
+    /**
+     * Return the cached block whose text starts at the given position (see ChromosomeSummary.getStartPosition()),
+     * or null if there is none.
+     */
+    Block getBlock(long textPosition) {
+        return blocksByPosition.get(textPosition);
+    }
+
+    /**
+     * Read the start locations and sample data for a block.  End locations and probes are skipped.
+     */
+    int[] readStartLocations(Block block, Map<String, float[]> data) throws IOException {
+        ChromosomeData cd = read(block, false);
+        for (String h : headings) {
+            data.put(h, cd.getData(h));
+        }
+        return cd.getStartLocations();
+    }
+
+    /**
+     * Read all data for a block.
+     */
+    ChromosomeData readChromosomeData(Block block) throws IOException {
+        return read(block, true);
+    }
+
+    private ChromosomeData read(Block block, boolean includeProbes) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, block.position, block.size);
+            int n = block.nRows;
+
+            ChromosomeData cd = new ChromosomeData(block.chr);
+
+            int[] starts = new int[n];
+            buffer.asIntBuffer().get(starts);
+            buffer.position(buffer.position() + 4 * n);
+            cd.setStartLocations(starts);
+
+            if (hasEndLocations) {
+                int[] ends = new int[n];
+                buffer.asIntBuffer().get(ends);
+                buffer.position(buffer.position() + 4 * n);
+                if (includeProbes) {
+                    cd.setEndLocations(ends);
+                }
+            }
+
+            for (String h : headings) {
+                float[] values = new float[n];
+                buffer.asFloatBuffer().get(values);
+                buffer.position(buffer.position() + 4 * n);
+                cd.setData(h, values);
+            }
+
+            if (includeProbes) {
+                String[] probes = new String[n];
+                for (int i = 0; i < n; i++) {
+                    probes[i] = getString(buffer);
+                }
+                cd.setProbes(probes);
+            }
+
+            return cd;
+        }
+    }
+
+    /**
+     * Delete least recently used caches until the cache directory is 90% of maxSize,  to avoid trimming on every
+     * write.  The cache just written is kept.  A cache deleted while in use is detected on the next read and the
+     * data file is parsed instead.
+     */
+    static synchronized void trim(File cacheDir, File keep, long maxSize) {
+
+        File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File f : files) {
+            size += f.length();
+        }
+        if (size <= maxSize) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        long target = (long) (0.9 * maxSize);
+        for (File f : files) {
+            if (size <= target) {
+                break;
+            }
+            if (f.equals(keep)) {
+                continue;
+            }
+            long length = f.length();
+            if (f.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    /**
+     * Location and summary of a single chromosome block.  Blocks correspond 1-1 with the ChromosomeSummary
+     * objects created when scanning the text file.
+     */
+    static class Block {
+
+        final String chr;
+        final long textPosition;
+        final int nRows;
+        final int longestFeature;
+        final long position;
+        final long size;
+
+        Block(String chr, long textPosition, int nRows, int longestFeature, long position, long size) {
+            this.chr = chr;
+            this.textPosition = textPosition;
+            this.nRows = nRows;
+            this.longestFeature = longestFeature;
+            this.position = position;
+            this.size = size;
+        }
+    }
+
+
+    /**
+     * Writes a cache while the text file is scanned.  Blocks are written to a temporary file as they are
+     * completed, the temporary file replaces the cache only after the index and header are written.
+     */
+    static class Writer {
+
+        private final File dataFile;
+        private final File cacheFile;
+        private final File tmpFile;
+        private final String genomeId;
+        private final String[] headings;
+        private final boolean hasEndLocations;
+        private final List<Block> blocks = new ArrayList<>();
+        private FileChannel channel;
+
+        Writer(String path, String genomeId, String[] headings, boolean hasEndLocations) throws IOException {
+            this.dataFile = new File(path);
+            this.cacheFile = getCacheFile(path);
+            this.tmpFile = new File(cacheFile.getPath() + ".tmp");
+            this.genomeId = genomeId;
+            this.headings = headings;
+            this.hasEndLocations = hasEndLocations;
+            this.channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            channel.position(HEADER_SIZE);
+        }
+
+        void addChromosome(ChromosomeSummary summary, int longestFeature, int[] starts, int[] ends,
+                           String[] probes, Map<String, float[]> data) throws IOException {
+
+            int n = starts.length;
+            byte[][] probeBytes = new byte[n][];
+            long size = 4L * n * (1 + (hasEndLocations ? 1 : 0) + headings.length);
+            for (int i = 0; i < n; i++) {
+                probeBytes[i] = probes[i].getBytes(StandardCharsets.UTF_8);
+                size += 4 + probeBytes[i].length;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Chromosome " + summary.getName() + " is too large to cache");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            buffer.asIntBuffer().put(starts);
+            buffer.position(buffer.position() + 4 * n);
+            if (hasEndLocations) {
+                buffer.asIntBuffer().put(ends);
+                buffer.position(buffer.position() + 4 * n);
+            }
+            for (String h : headings) {
+                buffer.asFloatBuffer().put(data.get(h));
+                buffer.position(buffer.position() + 4 * n);
+            }
+            for (byte[] bytes : probeBytes) {
+                buffer.putInt(bytes.length);
+                buffer.put(bytes);
+            }
+            buffer.flip();
+
+            long position = channel.position();
+            write(buffer);
+            blocks.add(new Block(summary.getName(), summary.getStartPosition(), n, longestFeature, position, size));
+        }
+
+        /**
+         * Write the index and header and move the completed cache into place.
+         */
+        void close(float dataMin, float dataMax, boolean logNormalized) throws IOException {
+
+            try {
+                List<byte[]> strings = new ArrayList<>();
+                int indexSize = 4 + 1 + 4 + 4 + 4 + 1 + 4;
+                byte[] genomeBytes = genomeId.getBytes(StandardCharsets.UTF_8);
+                indexSize += genomeBytes.length;
+                for (String h : headings) {
+                    byte[] bytes = h.getBytes(StandardCharsets.UTF_8);
+                    strings.add(bytes);
+                    indexSize += 4 + bytes.length;
+                }
+                for (Block b : blocks) {
+                    byte[] bytes = b.chr.getBytes(StandardCharsets.UTF_8);
+                    strings.add(bytes);
+                    indexSize += 4 + bytes.length + 8 + 4 + 4 + 8 + 8;
+                }
+
+                ByteBuffer index = ByteBuffer.allocate(indexSize);
+                index.putInt(genomeBytes.length).put(genomeBytes);
+                index.put((byte) (hasEndLocations ? 1 : 0));
+                index.putInt(headings.length);
+                for (int i = 0; i < headings.length; i++) {
+                    index.putInt(strings.get(i).length).put(strings.get(i));
+                }
+                index.putFloat(dataMin);
+                index.putFloat(dataMax);
+                index.put((byte) (logNormalized ? 1 : 0));
+                index.putInt(blocks.size());
+                for (int i = 0; i < blocks.size(); i++) {
+                    Block b = blocks.get(i);
+                    byte[] chrBytes = strings.get(headings.length + i);
+                    index.putInt(chrBytes.length).put(chrBytes);
+                    index.putLong(b.textPosition);
+                    index.putInt(b.nRows);
+                    index.putInt(b.longestFeature);
+                    index.putLong(b.position);
+                    index.putLong(b.size);
+                }
+                index.flip();
+
+                long indexPosition = channel.position();
+                write(index);
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC);
+                header.putInt(VERSION);
+                header.putLong(dataFile.length());
+                header.putLong(dataFile.lastModified());
+                header.putLong(indexPosition);
+                header.flip();
+                channel.position(0);
+                write(header);
+
+                channel.close();
+                channel = null;
+
+                Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+                trim(cacheFile.getParentFile(), cacheFile, PreferencesManager.getPreferences().getAsInt(Constants.DATA_CACHE_SIZE) * 1000000L);
+            } finally {
+                abort();
+            }
+        }
+
+        /**
+         * Discard a partially written cache.
+         */
+        void abort() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.error("Error closing dataset cache", e);
+                }
+                channel = null;
+            }
+            if (tmpFile.exists()) {
+                tmpFile.delete();
+            }
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -32,6 +32,8 @@ import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.exceptions.ParserException;
 import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.track.TrackType;
 import org.broad.igv.track.WindowFunction;
 import org.broad.igv.ui.IGV;
@@ -76,6 +78,9 @@ public class IGVDatasetParser {
 
     private int startBase = 0;
 
+    private IGVDatasetCache cache;
+    private IGVDatasetCache.Writer cacheWriter;
+
     public IGVDatasetParser(ResourceLocator copyNoFile, Genome genome) {
         this.dataResourceLocator = copyNoFile;
         this.genome = genome;
@@ -177,6 +182,7 @@ public class IGVDatasetParser {
         String[] headings = null;
         WholeGenomeData wgData = null;
         int nRows = 0;
+        int chrLongestFeature = 0;
 
         int headerRows = 0;
         int count = 0;
@@ -230,11 +236,25 @@ public class IGVDatasetParser {
 
             dataset.setDataHeadings(headings);
 
+            // Load from the binary cache written by a previous scan, if any.  Otherwise start a new cache.
+            if (isCacheable()) {
+                IGVDatasetCache cache = IGVDatasetCache.open(dataResourceLocator.getPath(), genome.getId(), headings, hasEndLocations);
+                if (cache != null && scanCache(cache, dataset, headings, chrSummaries)) {
+                    this.cache = cache;
+                    return chrSummaries;
+                }
+                try {
+                    cacheWriter = new IGVDatasetCache.Writer(dataResourceLocator.getPath(), genome.getId(), headings, hasEndLocations);
+                } catch (IOException e) {
+                    log.warn("Could not create dataset cache for " + dataResourceLocator.getPath(), e);
+                }
+            }
+
             // Infer if the data is logNormalized by looking for negative data values.
             // Assume it is not until proven otherwise
             logNormalized = false;
 
-            wgData = new WholeGenomeData(headings);
+            wgData = new WholeGenomeData(headings, cacheWriter != null);
 
             int chrRowCount = 0;
 
@@ -257,6 +277,7 @@ public class IGVDatasetParser {
                         // the first chromosome
                         if (chrSummary != null) {
                             updateWholeGenome(chrSummary.getName(), dataset, headings, wgData);
+                            updateCache(chrSummary, chrLongestFeature, wgData);
                             chrSummary.setNDataPoints(nRows);
                         }
 
@@ -264,8 +285,9 @@ public class IGVDatasetParser {
                         chrSummary = new ChromosomeSummary(thisChr, lastPosition);
                         chrSummaries.add(chrSummary);
                         nRows = 0;
-                        wgData = new WholeGenomeData(headings);
+                        wgData = new WholeGenomeData(headings, cacheWriter != null);
                         chrRowCount = 0;
+                        chrLongestFeature = 0;
 
                     }
                     lastPosition = reader.getPosition();
@@ -282,9 +304,11 @@ public class IGVDatasetParser {
                     }
 
                     int length = 1;
+                    int end = -1;
                     if (hasEndLocations) {
                         try {
-                            length = ParsingUtils.parseInt(tokens[endColumn].trim()) - location + 1;
+                            end = ParsingUtils.parseInt(tokens[endColumn].trim());
+                            length = end - location + 1;
 
                         } catch (NumberFormatException numberFormatException) {
                             log.error("Column " + tokens[endColumn] + " is not a number");
@@ -295,6 +319,7 @@ public class IGVDatasetParser {
                     }
 
                     updateLongestFeature(longestFeatureMap, thisChr, length);
+                    chrLongestFeature = Math.max(chrLongestFeature, length);
 
                     if (wgData.locations.size() > 0 && wgData.locations.get(wgData.locations.size() - 1) > location) {
                         throw new ParserException("File is not sorted, .igv and .cn files must be sorted by start position." +
@@ -302,6 +327,13 @@ public class IGVDatasetParser {
                     }
 
                     wgData.locations.add(location);
+                    if (wgData.probes != null) {
+                        // A new string is created to prevent holding on to the entire row through a substring reference
+                        wgData.probes.add(new String(tokens[probeColumn]));
+                        if (hasEndLocations) {
+                            wgData.endLocations.add(end);
+                        }
+                    }
 
                     for (int idx = 0; idx < headings.length; idx++) {
                         int i = firstDataColumn + idx * skipColumns;
@@ -328,12 +360,15 @@ public class IGVDatasetParser {
             dataset.setLongestFeatureMap(longestFeatureMap);
 
         } catch (ParserException pe) {
+            abortCache();
             throw pe;
         } catch (FileNotFoundException e) {
             // DialogUtils.showError("SNP file not found: " + dataSource.getCopyNoFile());
             log.error("File not found: " + dataResourceLocator);
+            abortCache();
             throw new RuntimeException(e);
         } catch (Exception e) {
+            abortCache();
             log.error("Exception when loading: " + dataResourceLocator.getPath(), e);
             if (nextLine != null && (count + headerRows != 0)) {
                 throw new ParserException(e.getMessage(), e, count + headerRows, nextLine);
@@ -353,6 +388,7 @@ public class IGVDatasetParser {
         // Update last chromosome
         if (chrSummary != null) {
             updateWholeGenome(chrSummary.getName(), dataset, headings, wgData);
+            updateCache(chrSummary, chrLongestFeature, wgData);
             chrSummary.setNDataPoints(nRows);
         }
 
@@ -360,9 +396,96 @@ public class IGVDatasetParser {
         dataset.setDataMin(dataMin);
         dataset.setDataMax(dataMax);
 
+        closeCache(headings, dataMin, dataMax, logNormalized);
+
         return chrSummaries;
     }
 
+    /**
+     * Only local files with a probe column are cached, the probe names are required for loadChromosomeData.
+     */
+    private boolean isCacheable() {
+        return probeColumn >= 0 && genome.getId() != null &&
+                PreferencesManager.getPreferences().getAsBoolean(Constants.DATA_CACHE_ENABLED) &&
+                IGVDatasetCache.isCacheable(dataResourceLocator.getPath());
+    }
+
+    /**
+     * Populate the chromosome summaries and dataset statistics from the binary cache.
+     *
+     * @return true if successful, false if the cache could not be read, in which case the text file is scanned
+     */
+    private boolean scanCache(IGVDatasetCache cache, IGVDataset dataset, String[] headings,
+                              List<ChromosomeSummary> chrSummaries) {
+
+        Map<String, Integer> longestFeatureMap = new HashMap<>();
+        boolean wholeGenome = genome.getHomeChromosome().equals(Globals.CHR_ALL);
+        try {
+            for (IGVDatasetCache.Block block : cache.getBlocks()) {
+                ChromosomeSummary chrSummary = new ChromosomeSummary(block.chr, block.textPosition);
+                chrSummary.setNDataPoints(block.nRows);
+                chrSummaries.add(chrSummary);
+                updateLongestFeature(longestFeatureMap, block.chr, block.longestFeature);
+
+                if (wholeGenome) {
+                    Map<String, float[]> data = new HashMap<>(headings.length);
+                    int[] locations = cache.readStartLocations(block, data);
+                    updateWholeGenome(block.chr, dataset, headings, locations, data);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Error reading dataset cache for " + dataResourceLocator.getPath(), e);
+            chrSummaries.clear();
+            dataset.setGenomeSummary(null);
+            return false;
+        }
+
+        dataset.setLongestFeatureMap(longestFeatureMap);
+        dataset.setLogNormalized(cache.isLogNormalized());
+        dataset.setDataMin(cache.getDataMin());
+        dataset.setDataMax(cache.getDataMax());
+        return true;
+    }
+
+    private void updateCache(ChromosomeSummary chrSummary, int longestFeature, WholeGenomeData wgData) {
+        if (cacheWriter == null) {
+            return;
+        }
+        try {
+            Map<String, float[]> data = new HashMap<>(wgData.data.size());
+            for (String s : wgData.headings) {
+                data.put(s, wgData.data.get(s).toArray());
+            }
+            cacheWriter.addChromosome(chrSummary, longestFeature, wgData.locations.toArray(),
+                    hasEndLocations ? wgData.endLocations.toArray() : null,
+                    wgData.probes.toArray(new String[wgData.probes.size()]), data);
+        } catch (IOException e) {
+            log.warn("Error writing dataset cache for " + dataResourceLocator.getPath(), e);
+            abortCache();
+        }
+    }
+
+    private void closeCache(String[] headings, float dataMin, float dataMax, boolean logNormalized) {
+        if (cacheWriter == null) {
+            return;
+        }
+        try {
+            cacheWriter.close(dataMin, dataMax, logNormalized);
+            cache = IGVDatasetCache.open(dataResourceLocator.getPath(), genome.getId(), headings, hasEndLocations);
+        } catch (IOException e) {
+            log.warn("Error writing dataset cache for " + dataResourceLocator.getPath(), e);
+        } finally {
+            cacheWriter = null;
+        }
+    }
+
+    private void abortCache() {
+        if (cacheWriter != null) {
+            cacheWriter.abort();
+            cacheWriter = null;
+        }
+    }
+
     private void updateLongestFeature(Map<String, Integer> longestFeatureMap, String thisChr, int length) {
         if (longestFeatureMap.containsKey(thisChr)) {
             longestFeatureMap.put(thisChr, Math.max(longestFeatureMap.get(thisChr), length));
@@ -394,6 +517,16 @@ public class IGVDatasetParser {
      */
     public ChromosomeData loadChromosomeData(ChromosomeSummary chrSummary, String[] dataHeaders) {
 
+        IGVDatasetCache.Block block = cache == null ? null : cache.getBlock(chrSummary.getStartPosition());
+        if (block != null) {
+            try {
+                return cache.readChromosomeData(block);
+            } catch (Exception e) {
+                log.warn("Error reading dataset cache for " + dataResourceLocator.getPath() + ", parsing file", e);
+                cache = null;
+            }
+        }
+
         // InputStream is = null;
         try {
             int skipColumns = hasCalls ? 2 : 1;
@@ -666,8 +799,14 @@ public class IGVDatasetParser {
             for (String s : wgData.headings) {
                 tmp.put(s, wgData.data.get(s).toArray());
             }
+            updateWholeGenome(currentChromosome, dataset, headings, locations, tmp);
+        }
+    }
 
+    private void updateWholeGenome(String currentChromosome, IGVDataset dataset, String[] headings,
+                                   int[] locations, Map<String, float[]> tmp) {
 
+        if (locations.length > 0) {
             GenomeSummaryData genomeSummary = dataset.getGenomeSummary();
             if (genomeSummary == null) {
                 genomeSummary = new GenomeSummaryData(genome, headings);
@@ -684,11 +823,19 @@ public class IGVDatasetParser {
         IntArrayList locations = new IntArrayList(50000);
         Map<String, FloatArrayList> data = new HashMap();
 
-        WholeGenomeData(String[] headings) {
+        // End locations and probes, only collected when writing the binary cache
+        IntArrayList endLocations;
+        List<String> probes;
+
+        WholeGenomeData(String[] headings, boolean collectProbes) {
             this.headings = headings;
             for (String h : headings) {
                 data.put(h, new FloatArrayList(50000));
             }
+            if (collectProbes) {
+                endLocations = new IntArrayList(50000);
+                probes = new ArrayList<>(50000);
+            }
         }
 
         int size() {
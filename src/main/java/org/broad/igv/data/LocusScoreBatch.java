@@ -0,0 +1,143 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.feature.LocusScore;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list of scores stored as parallel start, end, and value arrays rather than as LocusScore objects.  Renderers
+ * can read the arrays directly through {@link #getStart(int)}, {@link #getEnd(int)}, and {@link #getScore(int)}.
+ * {@link #get(int)} creates a {@link BasicScore} on each call,  for code which needs score objects.
+ * <p/>
+ * Scores are added with {@link #add(int, int, float)},  the list is otherwise unmodifiable.  Sub lists are views
+ * which share the arrays of this list,  and cannot be added to.
+ */
+public class LocusScoreBatch extends AbstractList<LocusScore> implements RandomAccess {
+
+    private int[] starts;
+    private int[] ends;
+    private float[] values;
+    private final int offset;
+    private int size;
+    private final boolean view;
+
+    public LocusScoreBatch() {
+        this(100);
+    }
+
+    public LocusScoreBatch(int capacity) {
+        this.starts = new int[Math.max(1, capacity)];
+        this.ends = new int[starts.length];
+        this.values = new float[starts.length];
+        this.offset = 0;
+        this.size = 0;
+        this.view = false;
+    }
+
+    private LocusScoreBatch(LocusScoreBatch batch, int fromIndex, int toIndex) {
+        this.starts = batch.starts;
+        this.ends = batch.ends;
+        this.values = batch.values;
+        this.offset = batch.offset + fromIndex;
+        this.size = toIndex - fromIndex;
+        this.view = true;
+    }
+
+    /**
+     * Return a batch with the start, end, and score of each of the given scores.  Other attributes,  such as names,
+     * are not copied.
+     */
+    public static LocusScoreBatch copyOf(List<? extends LocusScore> scores) {
+        LocusScoreBatch batch = new LocusScoreBatch(scores.size());
+        for (LocusScore score : scores) {
+            batch.add(score.getStart(), score.getEnd(), score.getScore());
+        }
+        return batch;
+    }
+
+    public void add(int start, int end, float value) {
+        if (view) {
+            throw new UnsupportedOperationException("Cannot add to a sub list");
+        }
+        if (size == starts.length) {
+            int capacity = 2 * size;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        values[size] = value;
+        size++;
+    }
+
+    /**
+     * Add scores fromIndex (inclusive) through toIndex (exclusive) of another batch
+     */
+    public void addAll(LocusScoreBatch batch, int fromIndex, int toIndex) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            add(batch.getStart(i), batch.getEnd(i), batch.getScore(i));
+        }
+    }
+
+    public int getStart(int index) {
+        return starts[offset + index];
+    }
+
+    public int getEnd(int index) {
+        return ends[offset + index];
+    }
+
+    public float getScore(int index) {
+        return values[offset + index];
+    }
+
+    @Override
+    public LocusScore get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new BasicScore(getStart(index), getEnd(index), getScore(index));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public LocusScoreBatch subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size);
+        }
+        return new LocusScoreBatch(this, fromIndex, toIndex);
+    }
+}
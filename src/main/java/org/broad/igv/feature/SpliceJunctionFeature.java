@@ -118,6 +118,66 @@ public class SpliceJunctionFeature extends BasicFeature {
             endFlankingRegionDepthArray[i] = endFlankingRegionDepthArray[i] + 1;
     }
 
+    /**
+     * Add the depth of coverage of another feature representing the same junction to this one,  extending the
+     * flanking regions as needed.  Used to combine junctions computed independently over adjacent regions.
+     *
+     * @param other
+     */
+    public void merge(SpliceJunctionFeature other) {
+
+        junctionDepth += other.junctionDepth;
+
+        int otherStartFlankingRegionSize = other.getStartFlankingRegionLength();
+        if (otherStartFlankingRegionSize > 0) {
+            if (other.start < start) {
+                int[] newStartFlankArray = new int[otherStartFlankingRegionSize];
+                if (startFlankingRegionDepthArray != null) {
+                    int offset = otherStartFlankingRegionSize - getStartFlankingRegionLength();
+                    System.arraycopy(startFlankingRegionDepthArray, 0, newStartFlankArray,
+                            offset, getStartFlankingRegionLength());
+                }
+                startFlankingRegionDepthArray = newStartFlankArray;
+                start = other.start;
+            }
+            int offset = getStartFlankingRegionLength() - otherStartFlankingRegionSize;
+            for (int i = 0; i < otherStartFlankingRegionSize; i++)
+                startFlankingRegionDepthArray[offset + i] += other.startFlankingRegionDepthArray[i];
+        }
+
+        int otherEndFlankingRegionSize = other.getEndFlankingRegionLength();
+        if (otherEndFlankingRegionSize > 0) {
+            if (other.end > end) {
+                int[] newEndFlankArray = new int[otherEndFlankingRegionSize];
+                if (endFlankingRegionDepthArray != null) {
+                    System.arraycopy(endFlankingRegionDepthArray, 0, newEndFlankArray,
+                            0, getEndFlankingRegionLength());
+                }
+                endFlankingRegionDepthArray = newEndFlankArray;
+                end = other.end;
+            }
+            for (int i = 0; i < otherEndFlankingRegionSize; i++)
+                endFlankingRegionDepthArray[i] += other.endFlankingRegionDepthArray[i];
+        }
+    }
+
+    /**
+     * Set the depth of coverage of the junction and its flanking regions directly, as computed elsewhere.  The
+     * feature start and end are moved to the ends of the flanking regions, as if each read had been added with
+     * {@link #addRead(int, int)}.
+     *
+     * @param junctionDepth
+     * @param startFlankingRegionDepthArray depths ending at the junction start,  or null if there is no start flank
+     * @param endFlankingRegionDepthArray   depths beginning at the junction end,  or null if there is no end flank
+     */
+    public void setDepth(int junctionDepth, int[] startFlankingRegionDepthArray, int[] endFlankingRegionDepthArray) {
+        this.junctionDepth = junctionDepth;
+        this.startFlankingRegionDepthArray = startFlankingRegionDepthArray;
+        this.endFlankingRegionDepthArray = endFlankingRegionDepthArray;
+        start = junctionStart - (startFlankingRegionDepthArray == null ? 0 : startFlankingRegionDepthArray.length);
+        end = junctionEnd + (endFlankingRegionDepthArray == null ? 0 : endFlankingRegionDepthArray.length);
+    }
+
     /**
      * The "score" for a SpliceJunctionFeature is the junction depth.  This maintains compatibility with Tophat's
      * use of the score field in junction bed files.
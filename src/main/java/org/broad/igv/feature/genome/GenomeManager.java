@@ -38,6 +38,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.log4j.Logger;
 import org.broad.igv.DirectoryManager;
 import org.broad.igv.Globals;
@@ -223,6 +224,9 @@ public class GenomeManager {
             } else if (genomePath.endsWith(".json")) {
                 altGenomePath = genomePath;
                 newGenome = loadJsonFile(genomePath);
+            } else if (genomePath.endsWith(".2bit")) {
+                altGenomePath = genomePath;
+                newGenome = loadTwoBitFile(genomePath);
             } else {
 
                 // Assume a fasta file
@@ -315,6 +319,26 @@ public class GenomeManager {
 
     }
 
+    /**
+     * Define a genome from a UCSC .2bit file.  As with chrom.sizes files the id is taken from the file name,
+     * =>  [id].2bit
+     *
+     * @param genomePath
+     * @return
+     * @throws IOException
+     */
+    private Genome loadTwoBitFile(String genomePath) throws IOException {
+
+        String fileName = FilenameUtils.getName(genomePath);
+        String genomeId = fileName.substring(0, fileName.length() - ".2bit".length());
+
+        Sequence sequence = new SequenceWrapper(new TwoBitSequence(genomePath));
+        Genome newGenome = new Genome(genomeId, genomeId, sequence, false);
+
+        setCurrentGenome(newGenome);
+        return newGenome;
+    }
+
     private Genome loadGenbankFile(String genomePath) throws IOException {
         Genome newGenome;
         GenbankParser genbankParser = new GenbankParser(genomePath);
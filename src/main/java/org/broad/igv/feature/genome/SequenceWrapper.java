@@ -31,7 +31,7 @@ package org.broad.igv.feature.genome;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.ui.panel.ReferenceFrame;
-import org.broad.igv.util.ObjectCache;
+import org.broad.igv.util.collections.WeightedCache;
 
 import java.util.Hashtable;
 import java.util.List;
@@ -48,7 +48,8 @@ public class SequenceWrapper implements Sequence  {
     private static int tileSize = 1000000;
 
     private Sequence sequence;
-    private ObjectCache<String, SequenceTile> sequenceCache = new ObjectCache<String, SequenceTile>(50);
+    private WeightedCache<String, SequenceTile> sequenceCache =
+            new WeightedCache<>("Sequence tiles", 50000000, tile -> 32 + tile.getSize());
 
     public SequenceWrapper(Sequence sequence) {
         this.sequence = sequence;
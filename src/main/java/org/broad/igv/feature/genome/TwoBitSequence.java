@@ -1,26 +1,73 @@
 package org.broad.igv.feature.genome;
 
 import htsjdk.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
 import org.broad.igv.util.FileUtils;
-import org.broad.igv.util.LittleEndianInputStream;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
+ * Implementation of Sequence backed by a UCSC .2bit file.  Bases are packed 4 per byte,  with runs of N and
+ * soft-masked (lower case) bases recorded as blocks in a per-sequence header.
+ * <p/>
+ * The sequence index and block headers are read on construction.  Packed bases are decoded on demand,  from a
+ * memory-mapped buffer for local files or a range request for remote files.  Both byte orders are supported, as
+ * are version 1 files with 64-bit sequence offsets.
+ * <p/>
+ * Format description:  http://genome.ucsc.edu/FAQ/FAQformat.html#format7
+ * <p/>
  * Created by jrobinso on 6/13/17.
  */
 public class TwoBitSequence implements Sequence {
 
+    private static Logger log = Logger.getLogger(TwoBitSequence.class);
+
     static int SIGNATURE_LE = 0x1a412743;
     static int SIGNATURE_BE = 0x4327411a;
     static int HEADER_BLOCK_SIZE = 12500;
 
+    /**
+     * Bases in the order of their 2 bit code
+     */
+    private static final byte[] BASES = {'T', 'C', 'A', 'G'};
+
+    /**
+     * Lookup table of packed byte -> the 4 bases it encodes
+     */
+    private static final byte[][] DECODE = new byte[256][4];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            for (int j = 0; j < 4; j++) {
+                DECODE[i][j] = BASES[(i >> (6 - 2 * j)) & 0x3];
+            }
+        }
+    }
+
     String path;
 
+    ByteOrder byteOrder;
+
+    private Map<String, SequenceRecord> sequenceRecords;
+
+    private List<String> chromosomeNames;
+
+    /**
+     * Stream for reading packed sequence data of remote files,  opened on first use.  Local files are memory mapped.
+     */
+    private SeekableStream remoteStream;
+
     public TwoBitSequence(String path) throws IOException {
         this.path = path;
         init();
@@ -31,92 +78,312 @@ public class TwoBitSequence implements Sequence {
     private void init() throws IOException {
 
         SeekableStream is = null;
+        try {
+            is = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
 
-        is = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
+            SeekableStream bis = IGVSeekableStreamFactory.getInstance().getBufferedStream(is, HEADER_BLOCK_SIZE);
 
-        SeekableStream bis = IGVSeekableStreamFactory.getInstance().getBufferedStream(is, 1000);
+            ByteBuffer header = readBuffer(bis, 16, ByteOrder.LITTLE_ENDIAN);
 
-        LittleEndianInputStream lis = new LittleEndianInputStream(bis);
+            int signature = header.getInt();
+            if (signature == SIGNATURE_LE) {
+                byteOrder = ByteOrder.LITTLE_ENDIAN;
+            } else if (signature == SIGNATURE_BE) {
+                byteOrder = ByteOrder.BIG_ENDIAN;
+            } else {
+                throw new IOException("Unrecognized 2bit file signature: " + Integer.toHexString(signature) + "  " + path);
+            }
+            header.order(byteOrder);
 
-        int signature = lis.readInt();
+            int version = header.getInt();   // 0, or 1 for files with 64-bit offsets
+            if (version != 0 && version != 1) {
+                throw new IOException("Unsupported 2bit file version: " + version + "  " + path);
+            }
 
-        boolean littleEndian = SIGNATURE_LE == signature;
-        // TODO -- handle big endian
+            int seqCount = header.getInt();
 
-        int version = lis.readInt();   // Should be zero
+            int reserved = header.getInt();    // Should be zero
 
-        int seqCount = lis.readInt();
+            Map<String, Long> offsets = new LinkedHashMap<>();
 
-        int reserved = lis.readInt();    // Should be zero
+            for (int i = 0; i < seqCount; i++) {
 
-        Map<String, Integer> offsets = new LinkedHashMap<>();
+                int nameSize = readBuffer(bis, 1, byteOrder).get() & 0xff;
 
-        for (int i = 0; i < seqCount; i++) {
+                byte[] seqNameBytes = new byte[nameSize];
+                bis.readFully(seqNameBytes);
+                String seqName = new String(seqNameBytes);
 
-            byte nameSize = lis.readByte();
+                long offset = version == 1 ?
+                        readBuffer(bis, 8, byteOrder).getLong() :
+                        readBuffer(bis, 4, byteOrder).getInt() & 0xffffffffL;
 
-            byte[] seqNameBytes = new byte[nameSize];
-            lis.readFully(seqNameBytes);
-            String seqName = new String(seqNameBytes);
+                offsets.put(seqName, offset);
 
-            int offset = lis.readInt();
+            }
 
-            offsets.put(seqName, offset);
+            sequenceRecords = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+                bis.seek(entry.getValue());
+                sequenceRecords.put(entry.getKey(), readSequenceRecord(bis, entry.getValue()));
+            }
+            chromosomeNames = new ArrayList<>(sequenceRecords.keySet());
 
+        } finally {
+            if (is != null) {
+                is.close();
+            }
         }
 
-        for (Integer offset : offsets.values()) {
+    }
 
-            bis.seek(offset);
-            int dnaSize = lis.readInt();
+    /**
+     * Read the header of a sequence record,  the stream is assumed to be positioned at the record start
+     */
+    private SequenceRecord readSequenceRecord(SeekableStream is, long offset) throws IOException {
 
-            int nBlockCount = lis.readInt();
-            int [] nBlockStarts = new int[nBlockCount];
-            for(int i=0; i<nBlockCount; i++) {
-                nBlockStarts[i] = lis.readInt();
-            }
-            int [] nBlockSizes = new int[nBlockCount];
-            for(int i=0; i<nBlockCount; i++) {
-                nBlockSizes[i] = lis.readInt();
-            }
+        ByteBuffer buffer = readBuffer(is, 8, byteOrder);
+        int dnaSize = buffer.getInt();
+        int nBlockCount = buffer.getInt();
 
-            int maskBlockCount = lis.readInt();
-            int [] maskBlockStarts = new int[maskBlockCount];
-            for(int i=0; i<maskBlockCount; i++) {
-                maskBlockStarts[i] = lis.readInt();
-            }
-            int [] maskBlockSizes = new int[maskBlockCount];
-            for(int i=0; i<maskBlockCount; i++) {
-                maskBlockSizes[i] = lis.readInt();
-            }
+        buffer = readBuffer(is, nBlockCount * 8 + 4, byteOrder);
+        int[] nBlockStarts = new int[nBlockCount];
+        for (int i = 0; i < nBlockCount; i++) {
+            nBlockStarts[i] = buffer.getInt();
+        }
+        int[] nBlockSizes = new int[nBlockCount];
+        for (int i = 0; i < nBlockCount; i++) {
+            nBlockSizes[i] = buffer.getInt();
+        }
 
+        int maskBlockCount = buffer.getInt();
+        buffer = readBuffer(is, maskBlockCount * 8 + 4, byteOrder);
+        int[] maskBlockStarts = new int[maskBlockCount];
+        for (int i = 0; i < maskBlockCount; i++) {
+            maskBlockStarts[i] = buffer.getInt();
         }
+        int[] maskBlockSizes = new int[maskBlockCount];
+        for (int i = 0; i < maskBlockCount; i++) {
+            maskBlockSizes[i] = buffer.getInt();
+        }
+
+        int reserved = buffer.getInt();
 
+        long packedPosition = offset + 16 + 8L * (nBlockCount + maskBlockCount);
+
+        return new SequenceRecord(dnaSize, packedPosition,
+                new Blocks(nBlockStarts, nBlockSizes),
+                new Blocks(maskBlockStarts, maskBlockSizes));
+    }
 
+    private static ByteBuffer readBuffer(SeekableStream is, int size, ByteOrder order) throws IOException {
+        byte[] bytes = new byte[size];
+        is.readFully(bytes);
+        return ByteBuffer.wrap(bytes).order(order);
     }
 
+
+    /**
+     * Return the sequence for the query interval as a byte array.  Coordinates are "ucsc" style (0 based, end
+     * exclusive).  Soft-masked bases are returned in lower case.
+     */
     @Override
-    public byte[] getSequence(String chr, int start, int end, boolean useCache) {
-        return new byte[0];
+    public byte[] getSequence(String chr, int qstart, int qend, boolean useCache) {
+
+        SequenceRecord record = sequenceRecords.get(chr);
+        if (record == null) {
+            log.info("No 2bit sequence entry for: " + chr);
+            return null;
+        }
+
+        final int start = Math.max(0, qstart);
+        final int end = Math.min(record.dnaSize, qend);
+        if (start >= end) {
+            return null;
+        }
+
+        try {
+            // Packed bytes spanning the interval
+            final int firstByte = start / 4;
+            final int lastByte = (end - 1) / 4;
+            byte[] packed = readPacked(record, firstByte, lastByte - firstByte + 1);
+
+            byte[] seq = new byte[end - start];
+            int pos = start;
+            for (int i = 0; i < packed.length; i++) {
+                byte[] bases = DECODE[packed[i] & 0xff];
+                int base0 = (firstByte + i) * 4;
+                int j0 = Math.max(0, pos - base0);
+                int j1 = Math.min(4, end - base0);
+                for (int j = j0; j < j1; j++) {
+                    seq[pos - start] = bases[j];
+                    pos++;
+                }
+            }
+
+            // N blocks,  then soft-masked blocks.  The order matches the UCSC tools,  masked N's are returned as 'n'
+            int idx = record.nBlocks.firstOverlapping(start);
+            while (idx < record.nBlocks.count() && record.nBlocks.starts[idx] < end) {
+                int bStart = Math.max(start, record.nBlocks.starts[idx]);
+                int bEnd = Math.min(end, record.nBlocks.getEnd(idx));
+                Arrays.fill(seq, bStart - start, bEnd - start, (byte) 'N');
+                idx++;
+            }
+
+            idx = record.maskBlocks.firstOverlapping(start);
+            while (idx < record.maskBlocks.count() && record.maskBlocks.starts[idx] < end) {
+                int bStart = Math.max(start, record.maskBlocks.starts[idx]);
+                int bEnd = Math.min(end, record.maskBlocks.getEnd(idx));
+                for (int i = bStart - start; i < bEnd - start; i++) {
+                    seq[i] = (byte) Character.toLowerCase(seq[i]);
+                }
+                idx++;
+            }
+
+            return seq;
+
+        } catch (IOException e) {
+            log.error("Error loading sequence " + chr + ":" + qstart + "-" + qend, e);
+            return null;
+        }
+    }
+
+    /**
+     * Read packed bytes for the sequence record,  starting at byte offset "offset" from the start of the packed data
+     */
+    private byte[] readPacked(SequenceRecord record, int offset, int nBytes) throws IOException {
+
+        byte[] bytes = new byte[nBytes];
+
+        if (!isRemote()) {
+            ByteBuffer buffer = record.getMappedBuffer(path).duplicate();
+            buffer.position(offset);
+            buffer.get(bytes);
+        } else {
+            synchronized (this) {
+                if (remoteStream == null) {
+                    remoteStream = IGVSeekableStreamFactory.getInstance().getStreamFor(path);
+                }
+                try {
+                    remoteStream.seek(record.packedPosition + offset);
+                    remoteStream.readFully(bytes);
+                } catch (IOException e) {
+                    // Reopen on the next read
+                    try {
+                        remoteStream.close();
+                    } catch (IOException e1) {
+                        log.error("Error closing stream for " + path, e1);
+                    }
+                    remoteStream = null;
+                    throw e;
+                }
+            }
+        }
+        return bytes;
     }
 
     @Override
     public byte getBase(String chr, int position) {
-        return 0;
+        byte[] bytes = getSequence(chr, position, position + 1, false);
+        return bytes == null ? 0 : bytes[0];
     }
 
     @Override
     public List<String> getChromosomeNames() {
-        return null;
+        return chromosomeNames;
     }
 
     @Override
     public int getChromosomeLength(String chrname) {
-        return 0;
+        SequenceRecord record = sequenceRecords.get(chrname);
+        return record == null ? -1 : record.dnaSize;
     }
 
     @Override
     public boolean isRemote() {
         return FileUtils.isRemote(path);
     }
+
+
+    /**
+     * Header information for a single sequence
+     */
+    static class SequenceRecord {
+
+        final int dnaSize;
+
+        /**
+         * File position of the packed bases
+         */
+        final long packedPosition;
+
+        final Blocks nBlocks;
+        final Blocks maskBlocks;
+
+        private ByteBuffer mappedBuffer;
+
+        SequenceRecord(int dnaSize, long packedPosition, Blocks nBlocks, Blocks maskBlocks) {
+            this.dnaSize = dnaSize;
+            this.packedPosition = packedPosition;
+            this.nBlocks = nBlocks;
+            this.maskBlocks = maskBlocks;
+        }
+
+        int getPackedSize() {
+            return (dnaSize + 3) / 4;
+        }
+
+        /**
+         * Return the packed bases of this sequence mapped into memory,  mapping on first use.  A sequence is
+         * mapped individually as a single mapping cannot exceed 2GB.  The mapping remains valid after the channel
+         * is closed,  so no file handle is held.
+         */
+        synchronized ByteBuffer getMappedBuffer(String path) throws IOException {
+            if (mappedBuffer == null) {
+                try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+                    mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, packedPosition, getPackedSize());
+                }
+            }
+            return mappedBuffer;
+        }
+    }
+
+    /**
+     * A sorted, non-overlapping list of blocks (N or mask)
+     */
+    static class Blocks {
+
+        final int[] starts;
+        final int[] sizes;
+
+        Blocks(int[] starts, int[] sizes) {
+            this.starts = starts;
+            this.sizes = sizes;
+        }
+
+        int count() {
+            return starts.length;
+        }
+
+        int getEnd(int idx) {
+            return starts[idx] + sizes[idx];
+        }
+
+        /**
+         * Return the index of the first block ending after position,  or count() if there is none.
+         */
+        int firstOverlapping(int position) {
+            int lo = 0;
+            int hi = starts.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (getEnd(mid) <= position) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
 }
@@ -34,6 +34,14 @@ public class FastaBlockCompressedSequence extends FastaIndexedSequence {
         readGziMappings(indexPath);
     }
 
+    /**
+     * Block compressed files are read through the gzi index,  they cannot be memory mapped
+     */
+    @Override
+    protected boolean isMappable() {
+        return false;
+    }
+
     @Override
     /**
      * Read the bytes between VIRTUAL file position posStart and posEnd
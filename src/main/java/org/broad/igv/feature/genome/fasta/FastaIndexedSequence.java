@@ -32,10 +32,14 @@ import org.broad.igv.util.FileUtils;
 import org.broad.igv.util.ParsingUtils;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of Sequence backed by an indexed fasta file
@@ -52,6 +56,11 @@ public class FastaIndexedSequence implements Sequence {
 
     private final ArrayList<String> chromoNamesList;
 
+    /**
+     * Memory mapped sequences, by name.  Only used for local files.
+     */
+    private final Map<String, ByteBuffer> mappedSequences = new ConcurrentHashMap<>();
+
     public FastaIndexedSequence(String path) throws IOException {
         this(path, null);
     }
@@ -99,60 +108,121 @@ public class FastaIndexedSequence implements Sequence {
             return null;
         }
 
-        try {
-
-            final int start = Math.max(0, qstart);    // qstart should never be < 0
-            final int end = Math.min((int) idxEntry.getSize(), qend);
-
-            final int bytesPerLine = idxEntry.getBytesPerLine();
-            final int basesPerLine = idxEntry.getBasesPerLine();
-            int nEndBytes = bytesPerLine - basesPerLine;
-
-            int startLine = start / basesPerLine;
-            int endLine = end / basesPerLine;
+        final int start = Math.max(0, qstart);    // qstart should never be < 0
+        final int end = Math.min((int) idxEntry.getSize(), qend);
 
-            int base0 = startLine * basesPerLine;   // Base at beginning of start line
+        if (start >= end) {
+            return null;
+        }
 
-            int offset = start - base0;
-            final long position = idxEntry.getPosition();
-            long startByte = position + startLine * bytesPerLine + offset;
+        byte[] seq = new byte[end - start];
+        return getSequence(chr, start, end, seq, 0) < 0 ? null : seq;
+    }
 
-            int base1 = endLine * basesPerLine;
-            int offset1 = end - base1;
-            long endByte = position + endLine * bytesPerLine + offset1;
+    /**
+     * Copy the sequence for the query interval into a caller supplied array,  avoiding allocation of intermediate
+     * buffers.  Coordinates are "ucsc" style (0 based),  the interval is truncated to the sequence bounds.
+     *
+     * @param chr
+     * @param qstart
+     * @param qend
+     * @param target       destination array,  must have room for (qend - qstart) bases from targetOffset
+     * @param targetOffset
+     * @return the number of bases copied,  or -1 if the sequence could not be read
+     */
+    public int getSequence(String chr, int qstart, int qend, byte[] target, int targetOffset) {
 
-            if (startByte >= endByte) {
-                return null;
-            }
+        FastaIndex.FastaSequenceIndexEntry idxEntry = index.getIndexEntry(chr);
 
-            // Read all the bytes in the range.  This will include endline characters
-            byte[] allBytes = readBytes(startByte, endByte);
+        if (idxEntry == null) {
+            log.info("No fasta sequence entry for: " + chr);
+            return -1;
+        }
 
-            // Create the array for the sequence -- this will be "allBytes" without the endline characters.
-            ByteArrayOutputStream bos = new ByteArrayOutputStream(end - start);
+        final int start = Math.max(0, qstart);    // qstart should never be < 0
+        final int end = Math.min((int) idxEntry.getSize(), qend);
 
-            int srcPos = 0;
+        if (start >= end) {
+            return 0;
+        }
 
-            // Copy first line
-            final int allBytesLength = allBytes.length;
-            if (offset > 0) {
-                int nBases = Math.min(end - start, basesPerLine - offset);
-                bos.write(allBytes, srcPos, nBases);
-                srcPos += (nBases + nEndBytes);
+        try {
+            final long startByte = getFilePosition(idxEntry, start);
+            final long endByte = getFilePosition(idxEntry, end - 1) + 1;
+
+            // Source of the bytes in the range,  this will include endline characters.  Either a memory mapping
+            // of the whole sequence or the bytes read for this query.
+            ByteBuffer source;
+            long sourcePosition;
+            ByteBuffer mapped = getMappedBuffer(idxEntry);
+            if (mapped != null) {
+                source = mapped.duplicate();
+                sourcePosition = idxEntry.getPosition();
+            } else {
+                source = ByteBuffer.wrap(readBytes(startByte, endByte));
+                sourcePosition = startByte;
             }
 
-            while (srcPos < allBytesLength) {
-                int nBases = Math.min(basesPerLine, allBytesLength - srcPos);
-                bos.write(allBytes, srcPos, nBases);
-                srcPos += (nBases + nEndBytes);
+            // Copy line by line,  skipping endline characters
+            final int basesPerLine = idxEntry.getBasesPerLine();
+            int pos = start;
+            int dest = targetOffset;
+            while (pos < end) {
+                int col = pos % basesPerLine;
+                int nBases = Math.min(basesPerLine - col, end - pos);
+                source.position((int) (getFilePosition(idxEntry, pos) - sourcePosition));
+                source.get(target, dest, nBases);
+                pos += nBases;
+                dest += nBases;
             }
 
-            return bos.toByteArray();
+            return end - start;
 
         } catch (IOException e) {
             log.error("Error loading sequence " + chr + ":" + qstart + "-" + qend, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Return the file position of the base at "position" in the sequence,  using the line geometry of the index
+     */
+    private static long getFilePosition(FastaIndex.FastaSequenceIndexEntry idxEntry, int position) {
+        final int basesPerLine = idxEntry.getBasesPerLine();
+        final int line = position / basesPerLine;
+        return idxEntry.getPosition() + (long) line * idxEntry.getBytesPerLine() + (position - line * basesPerLine);
+    }
+
+    /**
+     * Return a read-only memory mapping of the sequence,  mapping on first use,  or null if the file cannot be
+     * mapped.  Each sequence is mapped individually as a single mapping cannot exceed 2GB.
+     */
+    private ByteBuffer getMappedBuffer(FastaIndex.FastaSequenceIndexEntry idxEntry) throws IOException {
+
+        if (!isMappable() || idxEntry.getSize() == 0) {
             return null;
         }
+
+        ByteBuffer buffer = mappedSequences.get(idxEntry.getContig());
+        if (buffer == null) {
+            long size = getFilePosition(idxEntry, (int) idxEntry.getSize() - 1) + 1 - idxEntry.getPosition();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            try (FileChannel channel = new RandomAccessFile(path, "r").getChannel()) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, idxEntry.getPosition(), size);
+            }
+            mappedSequences.put(idxEntry.getContig(), buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Return true if sequences can be read from a memory mapping of the file.  Only true for local, uncompressed
+     * files.
+     */
+    protected boolean isMappable() {
+        return !isRemote();
     }
 
 
@@ -55,6 +55,15 @@ final public class Constants {
     public static final String CRAM_CACHE_DIRECTORY = "CRAM.CACHE_DIRECTORY";
     public static final String CRAM_CACHE_SIZE = "CRAM.CACHE_SIZE";
 
+    public static final String REMOTE_CACHE_ENABLED = "REMOTE_CACHE.ENABLED";
+    public static final String REMOTE_CACHE_DIRECTORY = "REMOTE_CACHE.DIRECTORY";
+    public static final String REMOTE_CACHE_SIZE = "REMOTE_CACHE.SIZE";
+
+    public static final String PREFETCH_ENABLED = "PREFETCH.ENABLED";
+    public static final String TRACK_TILE_CACHE_ENABLED = "TRACK_TILE_CACHE.ENABLED";
+    public static final String DATA_CACHE_ENABLED = "DATA_CACHE.ENABLED";
+    public static final String DATA_CACHE_SIZE = "DATA_CACHE.SIZE";
+
     // Search ("go to") options
     public static final String SEARCH_ZOOM = "SEARCH_ZOOM";
     public static final String FLANKING_REGION = "FLANKING_REGION";
@@ -144,6 +153,11 @@ final public class Constants {
     public static final String SAM_CLIPPING_THRESHOLD = "SAM.CLIPPING_THRESHOLD";
     public static final String SAM_SHOW_GROUP_SEPARATOR = "SAM.SHOW_GROUP_SEPARATOR";
     public static final String SAM_REDUCED_MEMORY_MODE = "SAM.REDUCED_MEMORY_MODE";
+    public static final String SAM_LOAD_THREADS = "SAM.LOAD_THREADS";
+    public static final String SAM_COLUMNAR_STORE = "SAM.COLUMNAR_STORE";
+    public static final String SAM_INCREMENTAL_LOAD = "SAM.INCREMENTAL_LOAD";
+    public static final String SAM_SPILL_ON_LOW_MEMORY = "SAM.SPILL_ON_LOW_MEMORY";
+    public static final String SAM_LOD_THRESHOLD = "SAM.LOD_THRESHOLD";
     public static final String SAM_HIDE_SMALL_INDEL = "SAM.HIDE_SMALL_INDEL";
     public static final String SAM_SMALL_INDEL_BP_THRESHOLD = "SAM.SMALL_INDEL_BP_THRESHOLD";
     public static final String SAM_LINK_READS = "SAM.LINK_READS";
@@ -25,6 +25,7 @@
 
 package org.broad.igv.renderer;
 
+import org.broad.igv.data.LocusScoreBatch;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.track.RenderContext;
@@ -33,6 +34,7 @@ import org.broad.igv.track.TrackType;
 
 import java.awt.*;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -78,15 +80,33 @@ public class HeatmapRenderer extends DataRenderer {
         int lastPStart = 0;
         int lastW = 0;
 
-        for (LocusScore score : scores) {
+        // Columnar scores are read directly from their arrays
+        LocusScoreBatch batch = scores instanceof LocusScoreBatch ? (LocusScoreBatch) scores : null;
+        Iterator<LocusScore> iter = batch == null ? scores.iterator() : null;
+        int nScores = scores.size();
+
+        for (int i = 0; i < nScores; i++) {
             if (lastPStart > maxX) {
                 break;
             }
 
+            int start, end;
+            float score;
+            if (batch != null) {
+                start = batch.getStart(i);
+                end = batch.getEnd(i);
+                score = batch.getScore(i);
+            } else {
+                LocusScore locusScore = iter.next();
+                start = locusScore.getStart();
+                end = locusScore.getEnd();
+                score = locusScore.getScore();
+            }
+
             // Note -- don't cast these to an int until the range is checked,
             // otherwise could get an overflow.
-            float fStart = (float) ((score.getStart() - origin) / locScale);
-            float fEnd = (float) ((score.getEnd() - origin) / locScale);
+            float fStart = (float) ((start - origin) / locScale);
+            float fEnd = (float) ((end - origin) / locScale);
             // float fw = fEnd - fStart;
             int pStart = (int) fStart;
             int pEnd = (int) fEnd;
@@ -100,7 +120,7 @@ public class HeatmapRenderer extends DataRenderer {
 
             int w = Math.max(min, pEnd - pStart);
 
-            float dataY = track.logScaleData(score.getScore());
+            float dataY = track.logScaleData(score);
             Color graphColor = colorScale.getColor(dataY);
 
             if ((pStart + w) >= 0 && (lastPStart <= maxX)) {
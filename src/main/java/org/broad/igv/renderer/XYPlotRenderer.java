@@ -33,6 +33,7 @@ package org.broad.igv.renderer;
 //~--- non-JDK imports --------------------------------------------------------
 
 import org.broad.igv.Globals;
+import org.broad.igv.data.LocusScoreBatch;
 import org.broad.igv.feature.LocusScore;
 import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
@@ -43,6 +44,7 @@ import org.broad.igv.ui.UIConstants;
 
 import java.awt.*;
 import java.text.DecimalFormat;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.broad.igv.prefs.Constants.*;
@@ -108,19 +110,36 @@ public abstract class XYPlotRenderer extends DataRenderer {
             baseY = adjustedRect.y + adjustedRect.height;
         }
 
-        for (LocusScore score : locusScores) {
+        // Columnar scores are read directly from their arrays
+        LocusScoreBatch batch = locusScores instanceof LocusScoreBatch ? (LocusScoreBatch) locusScores : null;
+        Iterator<LocusScore> iter = batch == null ? locusScores.iterator() : null;
+        int nScores = locusScores.size();
+
+        for (int i = 0; i < nScores; i++) {
+
+            int start, end;
+            float dataY;
+            if (batch != null) {
+                start = batch.getStart(i);
+                end = batch.getEnd(i);
+                dataY = batch.getScore(i);
+            } else {
+                LocusScore score = iter.next();
+                start = score.getStart();
+                end = score.getEnd();
+                dataY = score.getScore();
+            }
 
             // Note -- don't cast these to an int until the range is checked.
             // could get an overflow.
-            double pX = ((score.getStart() - origin) / locScale);
-            double dx = Math.ceil((Math.max(1, score.getEnd() - score.getStart())) / locScale) + 1;
+            double pX = ((start - origin) / locScale);
+            double dx = Math.ceil((Math.max(1, end - start)) / locScale) + 1;
             if ((pX + dx < 0)) {
                 continue;
             } else if (pX > adjustedRect.getMaxX()) {
                 break;
             }
 
-            float dataY = score.getScore();
             if (isLog && dataY <= 0) {
                 continue;
             }
@@ -41,11 +41,15 @@ import org.broad.igv.event.IGVEventObserver;
 import org.broad.igv.track.Track;
 import org.broad.igv.ui.panel.FrameManager;
 import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.ui.util.UIUtilities;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.collections.IntArrayList;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.broad.igv.prefs.Constants.*;
 
@@ -68,12 +72,16 @@ public class AlignmentDataManager implements IGVEventObserver {
     private Map<String, PEStats> peStats;
     private SpliceJunctionHelper.LoadOptions loadOptions;
     private Object loadLock = new Object();
+    private final Object prefetchLock = new Object();
+    private volatile AlignmentInterval prefetchedInterval;
+    private final AtomicInteger sortGeneration = new AtomicInteger();
+    private static ExecutorService sortExecutor;
     AlignmentTrack.ExperimentType inferredExperimentType;
     private Set<Track> subscribedTracks;
 
     public AlignmentDataManager(ResourceLocator locator, Genome genome) throws IOException {
         this.locator = locator;
-        reader = new AlignmentTileLoader(AlignmentReaderFactory.getReader(locator));
+        reader = new AlignmentTileLoader(AlignmentReaderFactory.getReader(locator), locator);
         peStats = new HashMap();
         initLoadOptions();
         initChrMap(genome);
@@ -258,6 +266,8 @@ public class AlignmentDataManager implements IGVEventObserver {
      */
     public boolean sortRows(SortOption option, ReferenceFrame frame, double location, String tag) {
 
+        sortGeneration.incrementAndGet();
+
         AlignmentInterval interval = getLoadedInterval(frame);
         if (interval == null) {
             return false;
@@ -267,16 +277,72 @@ public class AlignmentDataManager implements IGVEventObserver {
                 return false;
             }
 
+            packedAlignments.getSortIndex().updateScores(option, location, interval, tag);
             for (List<Row> alignmentRows : packedAlignments.values()) {
-                for (Row row : alignmentRows) {
-                    row.updateScore(option, location, interval, tag);
+                synchronized (alignmentRows) {
+                    Collections.sort(alignmentRows);
                 }
-                Collections.sort(alignmentRows);
             }
             return true;
         }
     }
 
+    /**
+     * Sort rows group by group on a background thread.  The sorted rows are swapped in on the event dispatch thread,
+     * group by group,  unless a later sort or a repacking has superseded them.
+     *
+     * @param option
+     * @param location
+     * @param onSorted called on the event dispatch thread after the rows are swapped in
+     * @return false if there are no packed rows to sort
+     */
+    public boolean sortRowsInBackground(SortOption option, ReferenceFrame frame, double location, String tag,
+                                        Runnable onSorted) {
+
+        AlignmentInterval interval = getLoadedInterval(frame);
+        PackedAlignments packedAlignments = interval == null ? null : interval.getPackedAlignments();
+        if (packedAlignments == null) {
+            return false;
+        }
+
+        final int generation = sortGeneration.incrementAndGet();
+        getSortExecutor().submit(() -> {
+            if (generation != sortGeneration.get()) {
+                return;
+            }
+            packedAlignments.getSortIndex().updateScores(option, location, interval, tag);
+            for (List<Row> alignmentRows : packedAlignments.values()) {
+                List<Row> sortedRows;
+                synchronized (alignmentRows) {
+                    sortedRows = new ArrayList<>(alignmentRows);
+                }
+                // Rows were last sorted at a nearby position more often than not, so this is usually close to linear
+                Collections.sort(sortedRows);
+                UIUtilities.invokeOnEventThread(() -> {
+                    if (generation == sortGeneration.get() && interval.getPackedAlignments() == packedAlignments) {
+                        synchronized (alignmentRows) {
+                            alignmentRows.clear();
+                            alignmentRows.addAll(sortedRows);
+                        }
+                    }
+                });
+            }
+            UIUtilities.invokeOnEventThread(onSorted);
+        });
+        return true;
+    }
+
+    private static synchronized ExecutorService getSortExecutor() {
+        if (sortExecutor == null) {
+            sortExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "AlignmentDataManager-sort");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return sortExecutor;
+    }
+
     public void setViewAsPairs(boolean option, AlignmentTrack.RenderOptions renderOptions) {
         if (option == renderOptions.isViewPairs()) {
             return;
@@ -298,6 +364,17 @@ public class AlignmentDataManager implements IGVEventObserver {
         }
     }
 
+    /**
+     * Repack currently loaded alignments from scratch, rather than reusing a previous packing
+     *
+     * @param renderOptions
+     */
+    void repackAlignments(AlignmentTrack.RenderOptions renderOptions) {
+        for (AlignmentInterval interval : intervalCache) {
+            interval.repackAlignments(renderOptions);
+        }
+    }
+
 
     public boolean isLoaded(ReferenceFrame frame) {
         return getLoadedInterval(frame) != null;
@@ -326,39 +403,113 @@ public class AlignmentDataManager implements IGVEventObserver {
 
             isLoading.add(range);
 
-            final String chr = referenceFrame.getChrName();
+            AlignmentInterval loadedInterval = prefetchedInterval;
+            if (loadedInterval == null || !loadedInterval.contains(range)) {
+                deleteSpillFile(loadedInterval);
+                loadedInterval = loadRange(range, renderOptions, expandEnds, peStats);
+            }
+            prefetchedInterval = null;
+
+            trimCache();
+
+            intervalCache.add(loadedInterval);
 
-            final int start = (int) range.getStart();
-            final int end = (int) range.getEnd();
-            int adjustedStart = start;
-            int adjustedEnd = end;
+            packAlignments(renderOptions);
+            isLoading.remove(range);
 
-            // Expand the interval by the lesser of  +/- a 2 screens, or max visible range
-            int windowSize = Math.min(4 * (end - start), PreferencesManager.getPreferences().getAsInt(SAM_MAX_VISIBLE_RANGE) * 1000);
-            int center = (end + start) / 2;
-            int expand = Math.max(end - start, windowSize / 2);
+            //  IGVEventBus.getInstance().post(new DataLoadedEvent(referenceFrame));
+
+        }
+    }
 
-            if (expandEnds) {
-                adjustedStart = Math.max(0, Math.min(start, center - expand));
-                adjustedEnd = Math.max(end, center + expand);
+    /**
+     * Load alignments for the frame in the background.  The interval is held aside,  and moved to the cache when
+     * a frame is loaded within it.  Only the most recently prefetched interval is kept.
+     * <p/>
+     * The load does not hold the lock taken by {@link #load},  so a load of the visible range is not delayed by a
+     * prefetch.  Pair statistics are collected separately and merged when the interval is published.
+     *
+     * @param referenceFrame typically a copy of a displayed frame,  positioned where the user is expected to move
+     * @param renderOptions
+     */
+    public void prefetch(ReferenceFrame referenceFrame, AlignmentTrack.RenderOptions renderOptions) {
+
+        if (referenceFrame.getChrName().equals(Globals.CHR_ALL) ||
+                referenceFrame.getScale() > getMinVisibleScale() ||
+                isLoaded(referenceFrame)) {
+            return;
+        }
+
+        synchronized (prefetchLock) {
+            Range range = referenceFrame.getCurrentRange();
+            AlignmentInterval interval = prefetchedInterval;
+            if (interval != null && interval.contains(range)) {
+                return;
+            }
+
+            log.debug("Prefetching alignments: " + range.getChr() + ":" + range.getStart() + "-" + range.getEnd());
+            Map<String, PEStats> prefetchStats = new HashMap<>();
+            AlignmentInterval prefetched = loadRange(range, renderOptions, true, prefetchStats);
+
+            synchronized (loadLock) {
+                mergePEStats(prefetchStats);
+                interval = prefetchedInterval;
+                prefetchedInterval = prefetched;
+                deleteSpillFile(interval);
             }
+        }
+    }
+
+    /**
+     * Merge pair statistics collected by a prefetch and recompute thresholds over the combined data
+     */
+    private void mergePEStats(Map<String, PEStats> prefetchStats) {
 
+        final IGVPreferences prefs = PreferencesManager.getPreferences();
+        for (Map.Entry<String, PEStats> entry : prefetchStats.entrySet()) {
+            PEStats stats = peStats.get(entry.getKey());
+            if (stats == null) {
+                peStats.put(entry.getKey(), entry.getValue());
+            } else {
+                stats.merge(entry.getValue());
+                stats.computeInsertSize(prefs.getAsFloat(SAM_MIN_INSERT_SIZE_PERCENTILE),
+                        prefs.getAsFloat(SAM_MAX_INSERT_SIZE_PERCENTILE));
+                stats.computeExpectedOrientation();
+            }
+        }
+    }
 
-            log.debug("Loading alignments: " + chr + ":" + adjustedStart + "-" + adjustedEnd + " for " + AlignmentDataManager.this);
+    private AlignmentInterval loadRange(Range range, AlignmentTrack.RenderOptions renderOptions, boolean expandEnds,
+                                        Map<String, PEStats> peStats) {
 
+        final String chr = range.getChr();
 
-            AlignmentInterval loadedInterval = loadInterval(chr, adjustedStart, adjustedEnd, renderOptions);
+        final int start = range.getStart();
+        final int end = range.getEnd();
+        int adjustedStart = start;
+        int adjustedEnd = end;
 
-            trimCache();
+        // Expand the interval by the lesser of  +/- a 2 screens, or max visible range
+        int windowSize = Math.min(4 * (end - start), PreferencesManager.getPreferences().getAsInt(SAM_MAX_VISIBLE_RANGE) * 1000);
+        int center = (end + start) / 2;
+        int expand = Math.max(end - start, windowSize / 2);
 
-            intervalCache.add(loadedInterval);
+        if (expandEnds) {
+            adjustedStart = Math.max(0, Math.min(start, center - expand));
+            adjustedEnd = Math.max(end, center + expand);
+        }
 
-            packAlignments(renderOptions);
-            isLoading.remove(range);
 
-            //  IGVEventBus.getInstance().post(new DataLoadedEvent(referenceFrame));
+        log.debug("Loading alignments: " + chr + ":" + adjustedStart + "-" + adjustedEnd + " for " + AlignmentDataManager.this);
 
+        if (expandEnds && PreferencesManager.getPreferences().getAsBoolean(SAM_INCREMENTAL_LOAD)) {
+            for (AlignmentInterval interval : new ArrayList<>(intervalCache)) {
+                if (isExtendable(interval, chr, adjustedStart, adjustedEnd, renderOptions)) {
+                    return extendInterval(interval, adjustedStart, adjustedEnd, renderOptions, peStats);
+                }
+            }
         }
+        return loadInterval(chr, adjustedStart, adjustedEnd, renderOptions, peStats);
     }
 
 
@@ -373,10 +524,22 @@ public class AlignmentDataManager implements IGVEventObserver {
             AlignmentInterval interval = iter.next();
             if (!intervalInView(interval)) {
                 iter.remove();
+                deleteSpillFile(interval);
             }
         }
     }
 
+    /**
+     * Delete the spill file of an interval that has left the cache,  if its alignments were spilled to disk.
+     * The temporary file and its mapped segments would otherwise be kept until exit.
+     */
+    private static void deleteSpillFile(AlignmentInterval interval) {
+        AlignmentSpillFile spillFile = interval == null ? null : interval.getSpillFile();
+        if (spillFile != null) {
+            spillFile.delete();
+        }
+    }
+
 
     private boolean intervalInView(AlignmentInterval interval) {
 
@@ -390,6 +553,11 @@ public class AlignmentDataManager implements IGVEventObserver {
 
 
     AlignmentInterval loadInterval(String chr, int start, int end, AlignmentTrack.RenderOptions renderOptions) {
+        return loadInterval(chr, start, end, renderOptions, peStats);
+    }
+
+    private AlignmentInterval loadInterval(String chr, int start, int end, AlignmentTrack.RenderOptions renderOptions,
+                                           Map<String, PEStats> peStats) {
 
         String sequence = chrMappings.containsKey(chr) ? chrMappings.get(chr) : chr;
 
@@ -415,6 +583,95 @@ public class AlignmentDataManager implements IGVEventObserver {
         return new AlignmentInterval(chr, start, end, alignments, t.getCounts(), spliceJunctionHelper, downsampledIntervals);
     }
 
+    /**
+     * Return true if {@code interval} can be extended to chr:start-end by {@link #extendInterval}.  This requires
+     * an overlap, and dense counts without bisulfite counts, which are the only counts that support merging.
+     * Intervals spilled to disk are not extended.
+     */
+    private boolean isExtendable(AlignmentInterval interval, String chr, int start, int end,
+                                 AlignmentTrack.RenderOptions renderOptions) {
+
+        AlignmentCounts counts = interval.getCounts();
+        return interval.getChr().equals(chr) &&
+                !interval.isSpilled() &&
+                interval.getStart() < end && interval.getEnd() > start &&
+                counts instanceof DenseAlignmentCounts &&
+                counts.getBisulfiteCounts() == null &&
+                interval.getSpliceJunctionHelper() != null &&
+                (renderOptions == null || renderOptions.bisulfiteContext == null) &&
+                (end - start) <= AlignmentTileLoader.AlignmentTile.DENSE_COUNTS_MAX_WIDTH &&
+                !PreferencesManager.getPreferences().getAsBoolean(SAM_REDUCED_MEMORY_MODE);
+    }
+
+    /**
+     * Create an interval for start-end from {@code interval}, which must overlap it.  Only the flanks of start-end
+     * not covered by {@code interval} are queried.  Counts, splice junctions, and alignments in the overlap are
+     * carried over from {@code interval}, those outside start-end are dropped.  The cost of panning is thus
+     * proportional to the distance scrolled rather than to the width of the interval.  {@code interval} is not
+     * modified.
+     */
+    AlignmentInterval extendInterval(AlignmentInterval interval, int start, int end,
+                                     AlignmentTrack.RenderOptions renderOptions, Map<String, PEStats> peStats) {
+
+        final String chr = interval.getChr();
+        String sequence = chrMappings.containsKey(chr) ? chrMappings.get(chr) : chr;
+        Range loadedRange = new Range(sequence, interval.getStart(), interval.getEnd());
+
+        DenseAlignmentCounts counts = new DenseAlignmentCounts(start, end, null);
+        counts.merge((DenseAlignmentCounts) interval.getCounts());
+
+        SpliceJunctionHelper spliceJunctionHelper = new SpliceJunctionHelper(this.loadOptions);
+        spliceJunctionHelper.merge(interval.getSpliceJunctionHelper(), start, end);
+
+        List<Alignment> alignments = new ArrayList<>();
+        List<DownsampledInterval> downsampledIntervals = new ArrayList<>();
+
+        if (start < interval.getStart()) {
+            SpliceJunctionHelper flankHelper = new SpliceJunctionHelper(this.loadOptions);
+            AlignmentTileLoader.AlignmentTile t = loadFlank(sequence, start, interval.getStart(), flankHelper, loadedRange, peStats);
+            counts.merge((DenseAlignmentCounts) t.getCounts());
+            spliceJunctionHelper.merge(flankHelper);
+            alignments.addAll(t.getAlignments());
+            downsampledIntervals.addAll(t.getDownsampledIntervals());
+        }
+
+        for (Alignment alignment : interval.getAlignments()) {
+            if (alignment.getAlignmentEnd() > start && alignment.getAlignmentStart() < end) {
+                alignments.add(alignment);
+            }
+        }
+        for (DownsampledInterval downsampledInterval : interval.getDownsampledIntervals()) {
+            if (downsampledInterval.getEnd() > start && downsampledInterval.getStart() < end) {
+                downsampledIntervals.add(downsampledInterval);
+            }
+        }
+
+        if (end > interval.getEnd()) {
+            SpliceJunctionHelper flankHelper = new SpliceJunctionHelper(this.loadOptions);
+            AlignmentTileLoader.AlignmentTile t = loadFlank(sequence, interval.getEnd(), end, flankHelper, loadedRange, peStats);
+            counts.merge((DenseAlignmentCounts) t.getCounts());
+            spliceJunctionHelper.merge(flankHelper);
+            alignments.addAll(t.getAlignments());
+            downsampledIntervals.addAll(t.getDownsampledIntervals());
+        }
+
+        // Alignments from the left flank can start after those spanning its boundary
+        if (start < interval.getStart()) {
+            Collections.sort(alignments, (a1, a2) -> a1.getStart() - a2.getStart());
+            Collections.sort(downsampledIntervals, (d1, d2) -> d1.getStart() - d2.getStart());
+        }
+
+        counts.finish();
+        return new AlignmentInterval(chr, start, end, alignments, counts, spliceJunctionHelper, downsampledIntervals);
+    }
+
+    private AlignmentTileLoader.AlignmentTile loadFlank(String sequence, int start, int end,
+                                                        SpliceJunctionHelper spliceJunctionHelper, Range loadedRange,
+                                                        Map<String, PEStats> peStats) {
+        return reader.loadTile(sequence, start, end, spliceJunctionHelper, new DownsampleOptions(), null, peStats,
+                null, loadedRange);
+    }
+
     /**
      * Some empirical metrics for determining experiment type
      *
@@ -445,13 +702,22 @@ public class AlignmentDataManager implements IGVEventObserver {
     }
 
     public void clear() {
-        intervalCache.clear();
+        synchronized (intervalCache) {
+            for (AlignmentInterval interval : intervalCache) {
+                deleteSpillFile(interval);
+            }
+            intervalCache.clear();
+        }
+        deleteSpillFile(prefetchedInterval);
+        prefetchedInterval = null;
     }
 
     public void dumpAlignments() {
         for (AlignmentInterval interval : intervalCache) {
             interval.dumpAlignments();
         }
+        deleteSpillFile(prefetchedInterval);
+        prefetchedInterval = null;
     }
 
     /**
@@ -30,6 +30,7 @@ import org.broad.igv.feature.Locus;
 import org.broad.igv.feature.Range;
 import org.broad.igv.feature.genome.Genome;
 import org.broad.igv.feature.genome.GenomeManager;
+import org.broad.igv.util.collections.LRUCache;
 
 import java.util.*;
 
@@ -47,6 +48,10 @@ public class AlignmentInterval extends Locus {
     private List<DownsampledInterval> downsampledIntervals;
     private PackedAlignments packedAlignments;
 
+    // Recently used packings,  keyed by AlignmentPacker.getPackingKey
+    private static final int MAX_CACHED_PACKINGS = 4;
+    private final LRUCache<Object, PackedAlignments> packingCache = new LRUCache<>(MAX_CACHED_PACKINGS);
+
     public AlignmentInterval(String chr, int start, int end,
                              List<Alignment> alignments,
                              AlignmentCounts counts,
@@ -164,19 +169,58 @@ public class AlignmentInterval extends Locus {
         return new Range(getChr(), getStart(), getEnd());
     }
 
-    public void packAlignments(AlignmentTrack.RenderOptions renderOptions) {
+    /**
+     * Pack alignments for the render options,  reusing the packing from a recent call with the same grouping,
+     * pairing and linking options if there is one.
+     *
+     * @param renderOptions
+     */
+    public synchronized void packAlignments(AlignmentTrack.RenderOptions renderOptions) {
+
+        Object key = AlignmentPacker.getPackingKey(renderOptions);
+        PackedAlignments packed = key == null ? null : packingCache.get(key);
+        if (packed == null) {
+            packed = new AlignmentPacker().packAlignments(this, renderOptions);
+            if (key != null) {
+                packingCache.put(key, packed);
+            }
+        }
+        this.packedAlignments = packed;
+    }
+
+    /**
+     * Pack alignments from scratch,  discarding recent packings.
+     *
+     * @param renderOptions
+     */
+    public synchronized void repackAlignments(AlignmentTrack.RenderOptions renderOptions) {
+        packingCache.clear();
+        packAlignments(renderOptions);
+    }
+
+    /**
+     * Return true if the alignments of this interval have been spilled to disk.
+     */
+    public boolean isSpilled() {
+        return getSpillFile() != null;
+    }
 
-        final AlignmentPacker alignmentPacker = new AlignmentPacker();
-        this.packedAlignments = alignmentPacker.packAlignments(this, renderOptions);
+    AlignmentSpillFile getSpillFile() {
+        return AlignmentSpillFile.getSpillFile(alignments);
     }
 
     public PackedAlignments getPackedAlignments() {
         return packedAlignments;
     }
 
-    public void dumpAlignments() {
-        if (this.alignments != null) this.alignments.clear();
+    public synchronized void dumpAlignments() {
+        AlignmentSpillFile spillFile = getSpillFile();
+        if (spillFile != null) {
+            spillFile.delete();
+            this.alignments = Collections.emptyList();
+        } else if (this.alignments != null) this.alignments.clear();
         this.packedAlignments = null;
+        packingCache.clear();
     }
 
 
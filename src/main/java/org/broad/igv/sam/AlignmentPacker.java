@@ -33,8 +33,14 @@ import org.apache.log4j.Logger;
 import org.broad.igv.feature.Range;
 import org.broad.igv.feature.Strand;
 import org.broad.igv.sam.AlignmentTrack.GroupOption;
+import org.broad.igv.ui.util.MessageUtils;
+import org.broad.igv.util.ArrayHeapIntSorter;
+import org.broad.igv.util.collections.IntArrayList;
 
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Packs alignments such that there is no overlap
@@ -49,13 +55,6 @@ public class AlignmentPacker {
      * Minimum gap between the end of one alignment and start of another.
      */
     public static final int MIN_ALIGNMENT_SPACING = 2;
-    private static final Comparator<Alignment> lengthComparator = new Comparator<Alignment>() {
-        public int compare(Alignment row1, Alignment row2) {
-            return (row2.getEnd() - row2.getStart()) -
-                    (row1.getEnd() - row2.getStart());
-
-        }
-    };
 
     private static final String NULL_GROUP_VALUE = "";
     public static final int tenMB = 10000000;
@@ -70,6 +69,20 @@ public class AlignmentPacker {
         LinkedHashMap<String, List<Row>> packedAlignments = new LinkedHashMap<String, List<Row>>();
 
         List<Alignment> alList = interval.getAlignments();
+        AlignmentSpillFile spillFile = interval.getSpillFile();
+        if (spillFile != null) {
+            if (renderOptions.isViewPairs() || renderOptions.isLinkedReads()) {
+                String msg = "Alignments were moved to disk to save memory, pairs and linked reads are not shown for " +
+                        interval.getChr() + ":" + interval.getStart() + "-" + interval.getEnd();
+                log.info(msg);
+                MessageUtils.setStatusBarMessage(msg);
+            }
+            packSpilled(spillFile, renderOptions, packedAlignments);
+            List<AlignmentInterval> tmp = new ArrayList<AlignmentInterval>();
+            tmp.add(interval);
+            return new PackedAlignments(tmp, packedAlignments);
+        }
+
         // TODO -- means to undo this
         if (renderOptions.isLinkedReads()) {
             alList = linkByTag(alList, renderOptions.getLinkByTag());
@@ -81,12 +94,16 @@ public class AlignmentPacker {
             packedAlignments.put("", alignmentRows);
         } else {
 
-            // Separate alignments into groups.
+            // Separate alignments into groups.  Group values,  often tag lookups,  are computed in parallel.
+            final List<Alignment> alignments = alList;
+            Object[] groupValues = new Object[alignments.size()];
+            IntStream.range(0, groupValues.length).parallel().forEach(i ->
+                    groupValues[i] = getGroupValue(alignments.get(i), renderOptions));
+
             Map<Object, List<Alignment>> groupedAlignments = new HashMap<Object, List<Alignment>>();
-            Iterator<Alignment> iter = alList.iterator();
-            while (iter.hasNext()) {
-                Alignment alignment = iter.next();
-                Object groupKey = getGroupValue(alignment, renderOptions);
+            for (int i = 0; i < groupValues.length; i++) {
+                Alignment alignment = alignments.get(i);
+                Object groupKey = groupValues[i];
                 if (groupKey == null) {
                     groupKey = NULL_GROUP_VALUE;
                 }
@@ -99,16 +116,21 @@ public class AlignmentPacker {
             }
 
 
-            // Now alphabetize (sort) and pack the groups
+            // Now alphabetize (sort) and pack the groups.  Groups are independent,  so they are packed concurrently
+            // on the common fork-join pool.
             List<Object> keys = new ArrayList<Object>(groupedAlignments.keySet());
             Comparator<Object> groupComparator = getGroupComparator(renderOptions.getGroupByOption());
             Collections.sort(keys, groupComparator);
 
-            for (Object key : keys) {
+            Stream<Object> keyStream = keys.size() > 1 ? keys.parallelStream() : keys.stream();
+            List<List<Row>> groupRows = keyStream.map(key -> {
                 List<Row> alignmentRows = new ArrayList<>(10000);
-                List<Alignment> group = groupedAlignments.get(key);
-                pack(group, renderOptions, alignmentRows);
-                packedAlignments.put(key.toString(), alignmentRows);
+                pack(groupedAlignments.get(key), renderOptions, alignmentRows);
+                return alignmentRows;
+            }).collect(Collectors.toList());
+
+            for (int i = 0; i < keys.size(); i++) {
+                packedAlignments.put(keys.get(i).toString(), groupRows.get(i));
             }
         }
 
@@ -117,42 +139,47 @@ public class AlignmentPacker {
         return new PackedAlignments(tmp, packedAlignments);
     }
 
+    /**
+     * Return a key identifying the packing produced by the render options,  or null if the packing depends on
+     * state outside the options and should not be reused.
+     */
+    static Object getPackingKey(AlignmentTrack.RenderOptions renderOptions) {
+
+        AlignmentTrack.GroupOption groupBy = renderOptions.getGroupByOption();
+        if (groupBy == AlignmentTrack.GroupOption.PAIR_ORIENTATION || groupBy == AlignmentTrack.GroupOption.HAPLOTYPE) {
+            // Orientation types depend on insert size statistics,  which change as data is loaded.  Haplotype
+            // names are rewritten each time the alignments are clustered.
+            return null;
+        }
+        return Arrays.asList(
+                groupBy,
+                groupBy == AlignmentTrack.GroupOption.TAG ? renderOptions.getGroupByTag() : null,
+                groupBy == AlignmentTrack.GroupOption.BASE_AT_POS ? renderOptions.getGroupByPos() : null,
+                renderOptions.isViewPairs(),
+                renderOptions.isLinkedReads() ? renderOptions.getLinkByTag() : null);
+    }
+
 
     private void pack(List<Alignment> alList, AlignmentTrack.RenderOptions renderOptions, List<Row> alignmentRows) {
 
         Map<String, PairedAlignment> pairs = null;
 
         boolean isPairedAlignments = renderOptions.isViewPairs();
-        String linkByTag = renderOptions.getLinkByTag();
 
         if (isPairedAlignments) {
             pairs = new HashMap<>(1000);
         }
 
-
-        // Allocate alignemnts to buckets for each range.
-        // We use priority queues to keep the buckets sorted by alignment length.  However this  is probably a needless
-        // complication,  any collection type would do.
-
-        int totalCount = 0;
-
-
         if (alList == null || alList.size() == 0) return;
 
         Range curRange = getAlignmentListRange(alList);
+        final int curRangeStart = curRange.getStart();
 
-        BucketCollection bucketCollection;
-
-        // Use dense buckets for < 10,000,000 bp windows sparse otherwise
+        // Alignments starting at or beyond the end of windows < 10,000,000 bp are dropped, as they have always been
         int bpLength = curRange.getLength();
+        int maxOffset = bpLength < tenMB ? bpLength : Integer.MAX_VALUE;
 
-        if (bpLength < tenMB) {
-            bucketCollection = new DenseBucketCollection(bpLength, curRange);
-        } else {
-            bucketCollection = new SparseBucketCollection(curRange);
-        }
-
-        int curRangeStart = curRange.getStart();
+        List<Alignment> alignments = new ArrayList<>(alList.size());
         for (Alignment al : alList) {
 
             if (al.isMapped()) {
@@ -175,81 +202,188 @@ public class AlignmentPacker {
                     }
                 }
 
-                // Allocate to bucket.
-                // Negative "bucketNumbers" can arise with soft clips at the left edge of the chromosome. Allocate
-                // these alignments to the first bucket.
-                int bucketNumber = Math.max(0, al.getStart() - curRangeStart);
-                if (bucketNumber < bucketCollection.getBucketCount()) {
-                    PriorityQueue<Alignment> bucket = bucketCollection.get(bucketNumber);
-                    if (bucket == null) {
-                        bucket = new PriorityQueue<Alignment>(5, lengthComparator);
-                        bucketCollection.set(bucketNumber, bucket);
-                    }
-                    bucket.add(alignment);
-                    totalCount++;
+                if (Math.max(0, al.getStart() - curRangeStart) < maxOffset) {
+                    alignments.add(alignment);
                 } else {
                     log.debug("Alignment out of bounds. name: " + alignment.getReadName() + " startPos:" + alignment.getStart());
                 }
             }
         }
-        bucketCollection.finishedAdding();
-
 
-        // Now allocate alignments to rows.
+        // Sort by start, and by end descending at the same start so the longest alignment is placed first.
+        // Negative offsets can arise with soft clips at the left edge of the chromosome,  these alignments are
+        // packed as if they started at the start of the range.  Pairs are sorted after pairing is complete,  as
+        // adding the second alignment changes the end of a pair.
         long t0 = System.currentTimeMillis();
-        int allocatedCount = 0;
-        Row currentRow = new Row();
+        Alignment[] sorted = alignments.toArray(new Alignment[alignments.size()]);
+        Arrays.sort(sorted, (a1, a2) -> {
+            int s1 = Math.max(curRangeStart, a1.getStart());
+            int s2 = Math.max(curRangeStart, a2.getStart());
+            return s1 != s2 ? Integer.compare(s1, s2) : Integer.compare(a2.getEnd(), a1.getEnd());
+        });
+
+        // Now allocate alignments to rows.  Taking alignments in order and putting each in the first row with room
+        // for it allocates exactly as filling one row at a time, left to right, would.  The first row with room is
+        // found by descending a tree holding the minimum next free position over ranges of rows.
+        RowTree rowTree = new RowTree();
+        for (Alignment alignment : sorted) {
+            int start = Math.max(curRangeStart, alignment.getStart());
+            int rowNumber = rowTree.firstRowFor(start);
+            if (rowNumber == alignmentRows.size()) {
+                alignmentRows.add(new Row());
+            }
+            alignmentRows.get(rowNumber).addAlignment(alignment);
+            rowTree.setNextStart(rowNumber, alignment.getEnd() + MIN_ALIGNMENT_SPACING);
+        }
+        if (log.isDebugEnabled()) {
+            long dt = System.currentTimeMillis() - t0;
+            log.debug("Packed alignments in " + dt);
+        }
+    }
 
-        while (allocatedCount < totalCount) {
+    /**
+     * Pack the alignments of an interval spilled to disk.  Rows are allocated from the start and end positions held
+     * by the spill file,  as {@link #pack} allocates them,  so alignments are only decoded to compute group values.
+     * Alignments are always packed individually,  pairs and linked reads are not supported for spilled intervals.
+     */
+    private void packSpilled(AlignmentSpillFile spillFile,
+                             AlignmentTrack.RenderOptions renderOptions,
+                             LinkedHashMap<String, List<Row>> packedAlignments) {
 
-            curRange = bucketCollection.getRange();
+        int size = spillFile.size();
+        if (renderOptions.getGroupByOption() == AlignmentTrack.GroupOption.NONE) {
+            IntArrayList indices = new IntArrayList(Math.max(1, size));
+            for (int i = 0; i < size; i++) {
+                if (spillFile.isMapped(i)) {
+                    indices.add(i);
+                }
+            }
+            packedAlignments.put("", packSpilled(spillFile, indices.toArray()));
+        } else {
 
-            curRangeStart = curRange.getStart();
-            int nextStart = curRangeStart;
-            List<Integer> emptyBuckets = new ArrayList<Integer>(100);
+            // Group values are computed in blocks,  so only one block of alignments is decoded at a time
+            final int blockSize = 10000;
+            Map<Object, IntArrayList> groupedIndices = new HashMap<>();
+            Object[] groupValues = new Object[blockSize];
+            for (int blockStart = 0; blockStart < size; blockStart += blockSize) {
+                final int offset = blockStart;
+                final int blockEnd = Math.min(size, blockStart + blockSize);
+                IntStream.range(blockStart, blockEnd).parallel().forEach(i ->
+                        groupValues[i - offset] = spillFile.isMapped(i) ?
+                                getGroupValue(spillFile.get(i), renderOptions) : null);
+                for (int i = blockStart; i < blockEnd; i++) {
+                    if (spillFile.isMapped(i)) {
+                        Object groupKey = groupValues[i - offset];
+                        if (groupKey == null) {
+                            groupKey = NULL_GROUP_VALUE;
+                        }
+                        groupedIndices.computeIfAbsent(groupKey, k -> new IntArrayList(1000)).add(i);
+                    }
+                }
+            }
 
-            while (true) {
-                int bucketNumber = nextStart - curRangeStart;
-                PriorityQueue<Alignment> bucket = bucketCollection.getNextBucket(bucketNumber, emptyBuckets);
+            List<Object> keys = new ArrayList<Object>(groupedIndices.keySet());
+            Collections.sort(keys, getGroupComparator(renderOptions.getGroupByOption()));
+            for (Object key : keys) {
+                packedAlignments.put(key.toString(), packSpilled(spillFile, groupedIndices.get(key).toArray()));
+            }
+        }
+    }
 
-                // Pull the next alignment out of the bucket and add to the current row
-                if (bucket != null) {
-                    Alignment alignment = bucket.remove();
-                    currentRow.addAlignment(alignment);
-                    allocatedCount++;
+    private List<Row> packSpilled(AlignmentSpillFile spillFile, int[] indices) {
 
-                    nextStart = alignment.getEnd() + MIN_ALIGNMENT_SPACING;
+        List<Row> alignmentRows = new ArrayList<>();
+        if (indices.length == 0) return alignmentRows;
 
-                }
+        final int curRangeStart = spillFile.getStart(indices[0]);
+        int maxEnd = spillFile.getEnd(indices[0]);
+        for (int index : indices) {
+            maxEnd = Math.max(maxEnd, spillFile.getEnd(index));
+        }
+        int bpLength = maxEnd - curRangeStart;
+        int maxOffset = bpLength < tenMB ? bpLength : Integer.MAX_VALUE;
 
-                //Reached the end of this range, move to the next
-                if (bucket == null || nextStart > curRange.getEnd()) {
-                    //Remove empty buckets.  This has no affect on the dense implementation,
-                    //they are removed on the fly, but is needed for the sparse implementation
-                    bucketCollection.removeBuckets(emptyBuckets);
-                    emptyBuckets.clear();
-                    break;
-                }
+        IntArrayList inBounds = new IntArrayList(indices.length);
+        for (int index : indices) {
+            if (Math.max(0, spillFile.getStart(index) - curRangeStart) < maxOffset) {
+                inBounds.add(index);
             }
+        }
+        int[] sorted = inBounds.toArray();
+        (new ArrayHeapIntSorter()).sort(sorted, (i1, i2) -> {
+            int s1 = Math.max(curRangeStart, spillFile.getStart(i1));
+            int s2 = Math.max(curRangeStart, spillFile.getStart(i2));
+            if (s1 != s2) return Integer.compare(s1, s2);
+            int e1 = spillFile.getEnd(i1);
+            int e2 = spillFile.getEnd(i2);
+            return e1 != e2 ? Integer.compare(e2, e1) : Integer.compare(i1, i2);
+        });
+
+        RowTree rowTree = new RowTree();
+        List<IntArrayList> rowIndices = new ArrayList<>();
+        for (int index : sorted) {
+            int start = Math.max(curRangeStart, spillFile.getStart(index));
+            int rowNumber = rowTree.firstRowFor(start);
+            if (rowNumber == rowIndices.size()) {
+                rowIndices.add(new IntArrayList());
+            }
+            rowIndices.get(rowNumber).add(index);
+            rowTree.setNextStart(rowNumber, spillFile.getEnd(index) + MIN_ALIGNMENT_SPACING);
+        }
+        for (IntArrayList row : rowIndices) {
+            alignmentRows.add(new Row(spillFile, row.toArray()));
+        }
+        return alignmentRows;
+    }
 
+    /**
+     * Minimum next free position over ranges of rows,  as a complete binary tree in an array.  Leaves of rows not
+     * yet created are free at any position,  so the first of these is found when no existing row has room.
+     */
+    private static class RowTree {
 
-            // We've reached the end of the interval,  start a new row
-            if (currentRow.alignments.size() > 0) {
-                alignmentRows.add(currentRow);
+        private int capacity = 64;
+        private int[] minNextStart = newTree(capacity);
+        private int rowCount = 0;
+
+        /**
+         * Return the first row whose next free position is <= start.  This is the number of rows if none are free.
+         */
+        int firstRowFor(int start) {
+            if (rowCount == capacity) {
+                grow();
             }
-            currentRow = new Row();
-        }
-        if (log.isDebugEnabled()) {
-            long dt = System.currentTimeMillis() - t0;
-            log.debug("Packed alignments in " + dt);
+            int node = 1;
+            while (node < capacity) {
+                node = minNextStart[2 * node] <= start ? 2 * node : 2 * node + 1;
+            }
+            return node - capacity;
         }
 
-        // Add the last row
-        if (currentRow != null && currentRow.alignments.size() > 0) {
-            alignmentRows.add(currentRow);
+        void setNextStart(int row, int nextStart) {
+            rowCount = Math.max(rowCount, row + 1);
+            int node = row + capacity;
+            minNextStart[node] = nextStart;
+            for (node >>= 1; node > 0; node >>= 1) {
+                minNextStart[node] = Math.min(minNextStart[2 * node], minNextStart[2 * node + 1]);
+            }
         }
 
+        private void grow() {
+            int[] tree = newTree(2 * capacity);
+            System.arraycopy(minNextStart, capacity, tree, 2 * capacity, capacity);
+            capacity *= 2;
+            minNextStart = tree;
+            for (int node = capacity - 1; node > 0; node--) {
+                minNextStart[node] = Math.min(minNextStart[2 * node], minNextStart[2 * node + 1]);
+            }
+        }
 
+        private static int[] newTree(int capacity) {
+            int[] tree = new int[2 * capacity];
+            Arrays.fill(tree, Integer.MIN_VALUE);
+            return tree;
+        }
     }
 
     private boolean isPairable(Alignment al) {
@@ -485,192 +619,6 @@ public class AlignmentPacker {
         return null;
     }
 
-    interface BucketCollection {
-
-        Range getRange();
-
-        void set(int idx, PriorityQueue<Alignment> bucket);
-
-        PriorityQueue<Alignment> get(int idx);
-
-        PriorityQueue<Alignment> getNextBucket(int bucketNumber, Collection<Integer> emptyBuckets);
-
-        void removeBuckets(Collection<Integer> emptyBuckets);
-
-        void finishedAdding();
-
-        int getBucketCount();
-    }
-
-    /**
-     * Dense array implementation of BucketCollection.  Assumption is all or nearly all the genome region is covered
-     * with reads.
-     */
-    static class DenseBucketCollection implements BucketCollection {
-
-        Range range;
-        int lastBucketNumber = -1;
-        final PriorityQueue[] bucketArray;
-
-        DenseBucketCollection(int bucketCount, Range range) {
-            this.bucketArray = new PriorityQueue[bucketCount];
-            this.range = range;
-        }
-
-        public void set(int idx, PriorityQueue<Alignment> bucket) {
-            bucketArray[idx] = bucket;
-        }
-
-        public PriorityQueue<Alignment> get(int idx) {
-            return bucketArray[idx];
-        }
-
-        public int getBucketCount() {
-            return this.bucketArray.length;
-        }
-
-        public Range getRange() {
-            return range;
-        }
-
-        /**
-         * Return the next occupied bucket after bucketNumber
-         *
-         * @param bucketNumber
-         * @param emptyBuckets ignored
-         * @return
-         */
-        public PriorityQueue<Alignment> getNextBucket(int bucketNumber, Collection<Integer> emptyBuckets) {
-
-            if (bucketNumber == lastBucketNumber) {
-                // TODO -- detect inf loop here
-            }
-
-            PriorityQueue<Alignment> bucket = null;
-            while (bucketNumber < bucketArray.length) {
-
-                if (bucketNumber < 0) {
-                    log.info("Negative bucket number: " + bucketNumber);
-                }
-
-                bucket = bucketArray[bucketNumber];
-                if (bucket != null) {
-                    if (bucket.isEmpty()) {
-                        bucketArray[bucketNumber] = null;
-                    } else {
-                        return bucket;
-                    }
-                }
-                bucketNumber++;
-            }
-            return null;
-        }
-
-        public void removeBuckets(Collection<Integer> emptyBuckets) {
-            // Nothing to do, empty buckets are removed "on the fly"
-        }
-
-        public void finishedAdding() {
-            // nothing to do
-        }
-    }
-
-
-    /**
-     * "Sparse" implementation of an alignment BucketCollection.  Assumption is there are small clusters of alignments
-     * along the genome, with mostly "white space".
-     */
-    static class SparseBucketCollection implements BucketCollection {
-
-        Range range;
-        boolean finished = false;
-        List<Integer> keys;
-        final HashMap<Integer, PriorityQueue<Alignment>> buckets;
-
-        SparseBucketCollection(Range range) {
-            this.range = range;
-            this.buckets = new HashMap(1000);
-        }
-
-        public void set(int idx, PriorityQueue<Alignment> bucket) {
-            if (finished) {
-                log.error("Error: bucket added after finishAdding() called");
-            }
-            buckets.put(idx, bucket);
-        }
-
-        public PriorityQueue<Alignment> get(int idx) {
-            return buckets.get(idx);
-        }
-
-        public Range getRange() {
-            return range;
-        }
-
-        /**
-         * Return the next occupied bucket at or after after bucketNumber.
-         *
-         * @param bucketNumber -- the hash bucket index for the alignments, essential the position relative to the start
-         *                     of this packing interval
-         * @return the next occupied bucket at or after bucketNumber, or null if there are none.
-         */
-        public PriorityQueue<Alignment> getNextBucket(int bucketNumber, Collection<Integer> emptyBuckets) {
-
-            PriorityQueue<Alignment> bucket = null;
-            int min = 0;
-            int max = keys.size() - 1;
-
-            // Get close to the right index, rather than scan from the beginning
-            while ((max - min) > 5) {
-                int mid = (max + min) / 2;
-                Integer key = keys.get(mid);
-                if (key > bucketNumber) {
-                    max = mid;
-                } else {
-                    min = mid;
-                }
-            }
-
-            // Now march from min to max until we cross bucketNumber
-            for (int i = min; i < keys.size(); i++) {
-                Integer key = keys.get(i);
-                if (key >= bucketNumber) {
-                    bucket = buckets.get(key);
-                    if (bucket.isEmpty()) {
-                        emptyBuckets.add(key);
-                        bucket = null;
-                    } else {
-                        return bucket;
-                    }
-                }
-            }
-            return null;     // No bucket found
-        }
-
-        public void removeBuckets(Collection<Integer> emptyBuckets) {
-
-            if (emptyBuckets.isEmpty()) {
-                return;
-            }
-
-            for (Integer i : emptyBuckets) {
-                buckets.remove(i);
-            }
-            keys = new ArrayList<Integer>(buckets.keySet());
-            Collections.sort(keys);
-        }
-
-        public void finishedAdding() {
-            finished = true;
-            keys = new ArrayList<Integer>(buckets.keySet());
-            Collections.sort(keys);
-        }
-
-        public int getBucketCount() {
-            return Integer.MAX_VALUE;
-        }
-    }
-
     private class PairOrientationComparator implements Comparator<Object> {
         private final List<AlignmentTrack.OrientationType> orientationTypes;
         //private final Set<String> orientationNames = new HashSet<String>(AlignmentTrack.OrientationType.values().length);
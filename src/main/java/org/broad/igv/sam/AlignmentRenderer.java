@@ -45,6 +45,9 @@ import org.broad.igv.util.ChromosomeColors;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -95,6 +98,8 @@ public class AlignmentRenderer {
     public static final HSLColorTable tenXColorTable2 = new HSLColorTable(270);
     public static final GreyscaleColorTable tenXColorTable3 = new GreyscaleColorTable();
 
+    private static final float ALIGNMENT_ALPHA = 0.75f;
+
     public static final Color GROUP_DIVIDER_COLOR = new Color(200, 200, 200);
     // A "dummy" reference for soft-clipped reads.
     private static byte[] softClippedReference = new byte[1000];
@@ -242,6 +247,13 @@ public class AlignmentRenderer {
 
     AlignmentTrack track;
 
+    // Per-pixel summary of a row,  and the mismatch sites of the current render,  for dense views
+    private final AlignmentRowRaster rowRaster = new AlignmentRowRaster(ALIGNMENT_ALPHA);
+    private List<Object> mismatchSitesKey;
+    private BitSet mismatchSites;
+    private byte[] mismatchSitesReference;
+    private int mismatchSitesStart;
+
     public AlignmentRenderer(AlignmentTrack track) {
         this.track = track;
     }
@@ -251,7 +263,7 @@ public class AlignmentRenderer {
         Font font = FontManager.getFont(10);
         Graphics2D g = context.getGraphics2D("ALIGNMENT");
 
-        float alpha = 0.75f;
+        float alpha = ALIGNMENT_ALPHA;
         int type = AlphaComposite.SRC_OVER;
         Composite alignmentAlphaComposite = AlphaComposite.getInstance(type, alpha);
         g.setComposite(alignmentAlphaComposite);
@@ -296,69 +308,569 @@ public class AlignmentRenderer {
 
         if ((alignments != null) && (alignments.size() > 0)) {
 
-            int lastPixelDrawn = -1;
+            if (isLevelOfDetail(context, renderOptions, alignmentCounts, prefs)) {
+                renderRowRaster(alignments, context, rowRect, renderOptions, leaveMargin, selectedReadNames, alignmentCounts, prefs);
+            } else {
+                renderAlignmentsDetailed(alignments, context, rowRect, renderOptions, leaveMargin, selectedReadNames, alignmentCounts, prefs);
+            }
 
-            for (Alignment alignment : alignments) {
-                // Compute the start and dend of the alignment in pixels
-                double pixelStart = ((alignment.getStart() - origin) / locScale);
-                double pixelEnd = ((alignment.getEnd() - origin) / locScale);
+            // Optionally draw a border around the center base
+            boolean showCenterLine = prefs.getAsBoolean(SAM_SHOW_CENTER_LINE);
+            final int bottom = rowRect.y + rowRect.height;
+            if (showCenterLine) {
+                // Calculate center lines
+                double center = (int) (context.getReferenceFrame().getCenter() - origin);
+                int centerLeftP = (int) (center / locScale);
+                int centerRightP = (int) ((center + 1) / locScale);
+                //float transparency = Math.max(0.5f, (float) Math.round(10 * (1 - .75 * locScale)) / 10);
+                Graphics2D g = context.getGraphics();
+                g.setColor(Color.black);
+                GraphicUtils.drawDottedDashLine(g, centerLeftP, rowRect.y, centerLeftP, bottom);
+                if ((centerRightP - centerLeftP > 2)) {
+                    GraphicUtils.drawDottedDashLine(g, centerRightP, rowRect.y, centerRightP, bottom);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Draw each alignment of a row,  with its blocks, gaps, insertions, and bases.
+     */
+    private void renderAlignmentsDetailed(List<Alignment> alignments,
+                                          RenderContext context,
+                                          Rectangle rowRect,
+                                          AlignmentTrack.RenderOptions renderOptions,
+                                          boolean leaveMargin,
+                                          Map<String, Color> selectedReadNames,
+                                          AlignmentCounts alignmentCounts,
+                                          IGVPreferences prefs) {
+
+        double origin = context.getOrigin();
+        double locScale = context.getScale();
+        int lastPixelDrawn = -1;
+
+        for (Alignment alignment : alignments) {
+            // Compute the start and dend of the alignment in pixels
+            double pixelStart = ((alignment.getStart() - origin) / locScale);
+            double pixelEnd = ((alignment.getEnd() - origin) / locScale);
+
+            // If any any part of the feature fits in the track rectangle draw  it
+            if (pixelEnd < rowRect.x || pixelStart > rowRect.getMaxX()) {
+                continue;
+            }
+
+
+            // If the alignment is 3 pixels or less,  draw alignment as a single block,
+            // further detail would not be seen and just add to drawing overhead
+            // Does the change for Bisulfite kill some machines?
+            double pixelWidth = pixelEnd - pixelStart;
+
+            Color alignmentColor = getAlignmentColor(alignment, renderOptions);
+
+            if ((pixelWidth < 2) && !(AlignmentTrack.isBisulfiteColorType(renderOptions.getColorOption()) && (pixelWidth >= 1))) {
 
-                // If any any part of the feature fits in the track rectangle draw  it
-                if (pixelEnd < rowRect.x || pixelStart > rowRect.getMaxX()) {
+                // Optimization for really zoomed out views.  If this alignment occupies screen space already taken,
+                // and it is the default color, skip drawing.
+                if (pixelEnd <= lastPixelDrawn && alignmentColor == DEFAULT_ALIGNMENT_COLOR) {
                     continue;
                 }
 
+                Graphics2D g = context.getGraphics2D("ALIGNMENT");
+                g.setColor(alignmentColor);
+                int w = Math.max(1, (int) (pixelWidth));
+                int h = (int) Math.max(1, rowRect.getHeight() - 2);
+                int y = (int) (rowRect.getY() + (rowRect.getHeight() - h) / 2);
+                g.fillRect((int) pixelStart, y, w, h);
+                lastPixelDrawn = (int) pixelStart + w;
+            } else if (alignment instanceof PairedAlignment) {
+                drawPairedAlignment((PairedAlignment) alignment, rowRect, context, renderOptions, leaveMargin, selectedReadNames, alignmentCounts, prefs);
+            } else if (alignment instanceof LinkedAlignment) {
+                drawLinkedAlignment((LinkedAlignment) alignment, rowRect, context, renderOptions, leaveMargin, selectedReadNames, alignmentCounts, prefs);
+            } else {
+                drawAlignment(alignment, rowRect, context, alignmentColor, renderOptions, leaveMargin, selectedReadNames, alignmentCounts, false, prefs);
+            }
+        }
+    }
+
+    /**
+     * Return true if rows should be drawn from per-pixel summaries rather than alignment by alignment.  Above the
+     * threshold scale many bases and blocks share a pixel,  and drawing each of them is wasted work.  Mismatch sites
+     * are found from the coverage counts,  so base counts are required when mismatches are shown.
+     */
+    private boolean isLevelOfDetail(RenderContext context,
+                                    AlignmentTrack.RenderOptions renderOptions,
+                                    AlignmentCounts alignmentCounts,
+                                    IGVPreferences prefs) {
+
+        float threshold = prefs.getAsFloat(SAM_LOD_THRESHOLD);
+        double locScale = context.getScale();
+        if (threshold <= 0 || locScale < threshold) {
+            return false;
+        }
+        if (renderOptions.isShowAllBases() || AlignmentTrack.isBisulfiteColorType(renderOptions.getColorOption())) {
+            return false;
+        }
+        boolean showMismatches = locScale < 100 && renderOptions.isShowMismatches();
+        return !showMismatches ||
+                (alignmentCounts != null && alignmentCounts.hasBaseCounts() && alignmentCounts.getBucketSize() == 1);
+    }
+
+    /**
+     * Draw a row of alignments from per-pixel summaries of blocks, gaps, mismatches, and insertions.  Each summary is
+     * drawn as runs of equal color.  Outlined and linked alignments are drawn individually on top.
+     */
+    private void renderRowRaster(List<Alignment> alignments,
+                                 RenderContext context,
+                                 Rectangle rowRect,
+                                 AlignmentTrack.RenderOptions renderOptions,
+                                 boolean leaveMargin,
+                                 Map<String, Color> selectedReadNames,
+                                 AlignmentCounts alignmentCounts,
+                                 IGVPreferences prefs) {
 
-                // If the alignment is 3 pixels or less,  draw alignment as a single block,
-                // further detail would not be seen and just add to drawing overhead
-                // Does the change for Bisulfite kill some machines?
-                double pixelWidth = pixelEnd - pixelStart;
+        RowRasterizer rasterizer = new RowRasterizer(context, rowRect, renderOptions, leaveMargin, alignmentCounts, prefs);
+        double origin = context.getOrigin();
+        double locScale = context.getScale();
+        List<Alignment> detailed = new ArrayList<>();
+        int lastPixelDrawn = -1;
 
+        for (Alignment alignment : alignments) {
+            double pixelStart = ((alignment.getStart() - origin) / locScale);
+            double pixelEnd = ((alignment.getEnd() - origin) / locScale);
+            if (pixelEnd < rowRect.x || pixelStart > rowRect.getMaxX()) {
+                continue;
+            }
+
+            double pixelWidth = pixelEnd - pixelStart;
+            if (pixelWidth < 2) {
+                // As in the detailed drawing,  narrow alignments are bars without outlines,  and default colored
+                // alignments do not cover those already drawn
                 Color alignmentColor = getAlignmentColor(alignment, renderOptions);
+                if (pixelEnd <= lastPixelDrawn && alignmentColor == DEFAULT_ALIGNMENT_COLOR) {
+                    continue;
+                }
+                int w = Math.max(1, (int) (pixelWidth));
+                rasterizer.addBar((int) pixelStart, w, alignmentColor);
+                lastPixelDrawn = (int) pixelStart + w;
+            } else if (alignment instanceof LinkedAlignment || isOutlined(alignment, renderOptions, selectedReadNames)) {
+                detailed.add(alignment);
+            } else if (alignment instanceof PairedAlignment) {
+                PairedAlignment pair = (PairedAlignment) alignment;
+                if (pair.secondAlignment != null && isOutlined(pair.secondAlignment, renderOptions, selectedReadNames)) {
+                    detailed.add(alignment);
+                } else {
+                    rasterizer.addPair(pair);
+                }
+            } else {
+                rasterizer.add(alignment, getAlignmentColor(alignment, renderOptions));
+            }
+        }
+        rasterizer.paint();
+
+        for (Alignment alignment : detailed) {
+            if (alignment instanceof PairedAlignment) {
+                drawPairedAlignment((PairedAlignment) alignment, rowRect, context, renderOptions, leaveMargin, selectedReadNames, alignmentCounts, prefs);
+            } else if (alignment instanceof LinkedAlignment) {
+                drawLinkedAlignment((LinkedAlignment) alignment, rowRect, context, renderOptions, leaveMargin, selectedReadNames, alignmentCounts, prefs);
+            } else {
+                drawAlignment(alignment, rowRect, context, getAlignmentColor(alignment, renderOptions), renderOptions, leaveMargin, selectedReadNames, alignmentCounts, false, prefs);
+            }
+        }
+    }
+
+    /**
+     * Return true if the alignment is drawn with an outline,  which the per-pixel summary does not represent.
+     */
+    private static boolean isOutlined(Alignment alignment,
+                                      AlignmentTrack.RenderOptions renderOptions,
+                                      Map<String, Color> selectedReadNames) {
+        return selectedReadNames.containsKey(alignment.getReadName()) ||
+                (renderOptions.isFlagUnmappedPairs() && alignment.isPaired() && !alignment.getMate().isMapped()) ||
+                (alignment.getMappingQuality() == 0 && renderOptions.isFlagZeroQualityAlignments());
+    }
+
+    /**
+     * Return the positions in view where some read base differs from the reference,  according to the coverage
+     * counts,  as offsets from {@code mismatchSitesStart}.  In quick consensus mode only positions with a consensus
+     * mismatch are returned.  Positions outside the counted interval are assumed to be mismatch sites.  Sites are
+     * computed once per render.
+     */
+    private BitSet getMismatchSites(RenderContext context, AlignmentCounts alignmentCounts,
+                                    boolean quickConsensus, float snpThreshold) {
+
+        List<Object> key = Arrays.asList(context, alignmentCounts, quickConsensus, snpThreshold);
+        if (key.equals(mismatchSitesKey)) {
+            return mismatchSites;
+        }
+
+        String chr = context.getChr();
+        int start = (int) context.getOrigin();
+        int end = (int) Math.ceil(context.getEndLocation()) + 1;
+        Genome genome = GenomeManager.getInstance().getCurrentGenome();
+        byte[] reference = genome == null ? null : genome.getSequence(chr, start, end);
+
+        BitSet sites = new BitSet();
+        if (reference != null) {
+            int countsStart = alignmentCounts.getStart();
+            int countsEnd = alignmentCounts.getEnd();
+            int length = Math.min(end - start, reference.length);
+            for (int i = 0; i < length; i++) {
+                int pos = start + i;
+                byte ref = reference[i];
+                if (ref == 0) {
+                    continue;
+                }
+                if (quickConsensus) {
+                    if (alignmentCounts.isConsensusMismatch(pos, ref, chr, snpThreshold)) {
+                        sites.set(i);
+                    }
+                } else if (pos < countsStart || pos >= countsEnd) {
+                    sites.set(i);
+                } else {
+                    for (char c : BaseAlignmentCounts.nucleotides) {
+                        if (alignmentCounts.getCount(pos, (byte) c) > 0 && !AlignmentUtils.compareBases(ref, (byte) c)) {
+                            sites.set(i);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        mismatchSitesKey = key;
+        mismatchSites = sites;
+        mismatchSitesReference = reference;
+        mismatchSitesStart = start;
+        return sites;
+    }
 
-                if ((pixelWidth < 2) && !(AlignmentTrack.isBisulfiteColorType(renderOptions.getColorOption()) && (pixelWidth >= 1))) {
+    /**
+     * Accumulates the alignments of one row into {@link #rowRaster},  following the geometry of the detailed
+     * drawing methods,  then paints the raster.
+     */
+    private class RowRasterizer {
+
+        final RenderContext context;
+        final Rectangle rowRect;
+        final AlignmentTrack.RenderOptions renderOptions;
+        final IGVPreferences prefs;
+        final boolean leaveMargin;
+        final double origin;
+        final double locScale;
+        final double contextChromStart;
+        final double contextChromEnd;
+        final int y;
+        final int h;
+        final int insertionY;
+        final int pxWing;
+
+        final boolean flagLargeIndels;
+        final int largeIndelsThreshold;
+        final boolean hideSmallIndelsBP;
+        final int indelThresholdBP;
+        final boolean shadeQuality;
+        final int expandedPosition;
+        final BitSet sites;
+
+        final List<IndelLabel> labels = new ArrayList<>();
+
+        RowRasterizer(RenderContext context,
+                      Rectangle rowRect,
+                      AlignmentTrack.RenderOptions renderOptions,
+                      boolean leaveMargin,
+                      AlignmentCounts alignmentCounts,
+                      IGVPreferences prefs) {
+
+            this.context = context;
+            this.rowRect = rowRect;
+            this.renderOptions = renderOptions;
+            this.prefs = prefs;
+            this.leaveMargin = leaveMargin;
+            origin = context.getOrigin();
+            locScale = context.getScale();
+            contextChromStart = context.getOrigin();
+            contextChromEnd = Math.ceil(context.getEndLocation());
+            h = (int) Math.max(1, rowRect.getHeight() - (leaveMargin ? 2 : 0));
+            y = rowRect.y;
+            insertionY = (int) (rowRect.getY() + (rowRect.getHeight() - h) / 2) - (leaveMargin ? 1 : 0);
+            pxWing = (h > 10 ? 2 : (h > 5) ? 1 : 0);
+
+            flagLargeIndels = prefs.getAsBoolean(SAM_FLAG_LARGE_INDELS);
+            largeIndelsThreshold = prefs.getAsInt(SAM_LARGE_INDELS_THRESHOLD);
+            hideSmallIndelsBP = prefs.getAsBoolean(SAM_HIDE_SMALL_INDEL);
+            indelThresholdBP = prefs.getAsInt(SAM_SMALL_INDEL_BP_THRESHOLD);
+            shadeQuality = renderOptions.getShadeBasesOption() == ShadeBasesOption.QUALITY;
+
+            InsertionMarker expandedInsertion = InsertionManager.getInstance().getSelectedInsertion(context.getReferenceFrame().getChrName());
+            expandedPosition = expandedInsertion == null ? -1 : expandedInsertion.position;
+
+            boolean showMismatches = locScale < 100 && renderOptions.isShowMismatches();
+            sites = showMismatches ?
+                    getMismatchSites(context, alignmentCounts, renderOptions.isQuickConsensusMode(), prefs.getAsFloat(SAM_ALLELE_THRESHOLD)) :
+                    null;
+
+            rowRaster.reset(rowRect.x, rowRect.width);
+        }
+
+        void addBar(int x, int w, Color alignmentColor) {
+            rowRaster.fillBar(x, x + w, alignmentColor);
+        }
+
+        void addPair(PairedAlignment pair) {
+
+            Color alignmentColor1 = getAlignmentColor(pair.firstAlignment, renderOptions);
+            add(pair.firstAlignment, alignmentColor1);
+            if (pair.secondAlignment == null) {
+                return;
+            }
+
+            Color alignmentColor2 = getAlignmentColor(pair.secondAlignment, renderOptions);
+            add(pair.secondAlignment, alignmentColor2);
 
-                    // Optimization for really zoomed out views.  If this alignment occupies screen space already taken,
-                    // and it is the default color, skip drawing.
-                    if (pixelEnd <= lastPixelDrawn && alignmentColor == DEFAULT_ALIGNMENT_COLOR) {
+            Color lineColor = alignmentColor1.equals(alignmentColor2) ? alignmentColor1 : DEFAULT_ALIGNMENT_COLOR;
+            int startX = (int) ((pair.firstAlignment.getEnd() - origin) / locScale);
+            int endX = (int) ((pair.firstAlignment.getMate().getStart() - origin) / locScale);
+            rowRaster.fillLink(startX, endX, lineColor);
+        }
+
+        void add(Alignment alignment, Color alignmentColor) {
+
+            AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
+            if (blocks == null || blocks.length == 0) {
+                int x = (int) ((alignment.getStart() - origin) / locScale);
+                int w = (int) Math.ceil((alignment.getEnd() - alignment.getStart()) / locScale);
+                rowRaster.fillBlock(x, x + Math.max(1, w), alignmentColor);
+                return;
+            }
+
+            addBlocks(alignment, blocks, alignmentColor);
+            addInsertions(alignment);
+            if (sites != null) {
+                addMismatches(blocks, alignmentColor);
+            }
+        }
+
+        private void addBlocks(Alignment alignment, AlignmentBlock[] blocks, Color alignmentColor) {
+
+            AlignmentBlock firstBlock = blocks[0], lastBlock = blocks[blocks.length - 1];
+            int alignmentChromStart = firstBlock.getStart(),
+                    alignmentChromEnd = lastBlock.getStart() + lastBlock.getLength();
+            double blockChromStart = Math.max(alignmentChromStart, contextChromStart);
+
+            List<Gap> gaps = alignment.getGaps();
+            if (gaps != null) {
+                for (Gap gap : gaps) {
+                    int gapChromStart = gap.getStart(),
+                            gapChromWidth = gap.getnBases(),
+                            gapChromEnd = gapChromStart + gapChromWidth,
+                            gapPxEnd = (int) ((Math.min(contextChromEnd, gapChromEnd) - contextChromStart) / locScale);
+
+                    if (gapChromEnd <= contextChromStart) {
+                        continue;
+                    } else if (gapChromStart >= contextChromEnd) {
+                        break;
+                    }
+                    if (hideSmallIndelsBP && gapChromWidth < indelThresholdBP) {
                         continue;
                     }
 
-                    Graphics2D g = context.getGraphics2D("ALIGNMENT");
-                    g.setColor(alignmentColor);
-                    int w = Math.max(1, (int) (pixelWidth));
-                    int h = (int) Math.max(1, rowRect.getHeight() - 2);
-                    int y = (int) (rowRect.getY() + (rowRect.getHeight() - h) / 2);
-                    g.fillRect((int) pixelStart, y, w, h);
-                    lastPixelDrawn = (int) pixelStart + w;
-                } else if (alignment instanceof PairedAlignment) {
-                    drawPairedAlignment((PairedAlignment) alignment, rowRect, context, renderOptions, leaveMargin, selectedReadNames, alignmentCounts, prefs);
-                } else if (alignment instanceof LinkedAlignment) {
-                    drawLinkedAlignment((LinkedAlignment) alignment, rowRect, context, renderOptions, leaveMargin, selectedReadNames, alignmentCounts, prefs);
+                    int blockPxStart = (int) ((blockChromStart - contextChromStart) / locScale),
+                            blockPxWidth = (int) Math.max(1, (gapChromStart - blockChromStart) / locScale - 1),
+                            blockPxEnd = blockPxStart + blockPxWidth;
+                    rowRaster.fillBlock(blockPxStart, blockPxEnd, alignmentColor);
+
+                    Color gapColor = gap.getType() == SAMAlignment.UNKNOWN ? unknownGapColor :
+                            gap.getType() == SAMAlignment.SKIPPED_REGION ? skippedColor :
+                                    deletionColor;
+                    rowRaster.fillGap(blockPxEnd, gapPxEnd, gapColor);
+
+                    if (flagLargeIndels && (gap.getType() == SAMAlignment.DELETION) && gapChromWidth > largeIndelsThreshold) {
+                        labels.add(new IndelLabel(false, gapChromWidth, (blockPxEnd + gapPxEnd) / 2, y,
+                                gapPxEnd - blockPxEnd - 2, null));
+                    }
+                    blockChromStart = gapChromEnd;
+                }
+            }
+
+            int blockPxStart = (int) ((blockChromStart - contextChromStart) / locScale),
+                    blockChromEnd = (int) Math.min(contextChromEnd, alignmentChromEnd),
+                    blockPxWidth = (int) Math.max(1, (blockChromEnd - blockChromStart) / locScale - 1);
+            rowRaster.fillBlock(blockPxStart, blockPxStart + blockPxWidth, alignmentColor);
+        }
+
+        private void addInsertions(Alignment alignment) {
+
+            AlignmentBlock[] insertions = alignment.getInsertions();
+            if (insertions == null) {
+                return;
+            }
+            for (AlignmentBlock aBlock : insertions) {
+
+                if (aBlock.getStart() == expandedPosition) continue;   // Drawn expanded
+
+                int x = (int) ((aBlock.getStart() - origin) / locScale);
+                if (x > rowRect.getMaxX()) {
+                    break;
+                } else if (x < rowRect.getX()) {
+                    continue;
+                }
+
+                int bpWidth = aBlock.getBases().length;
+                if (hideSmallIndelsBP && bpWidth < indelThresholdBP) {
+                    continue;
+                }
+                if (flagLargeIndels && bpWidth > largeIndelsThreshold) {
+                    labels.add(new IndelLabel(true, bpWidth, x - 1, insertionY, (int) (bpWidth / locScale), aBlock));
                 } else {
-                    drawAlignment(alignment, rowRect, context, alignmentColor, renderOptions, leaveMargin, selectedReadNames, alignmentCounts, false, prefs);
+                    rowRaster.setInsertion(x);
+                    int px = x + context.translateX;
+                    aBlock.setPixelRange(px - pxWing, px + 2 + pxWing);
                 }
             }
+        }
 
-            // Optionally draw a border around the center base
-            boolean showCenterLine = prefs.getAsBoolean(SAM_SHOW_CENTER_LINE);
-            final int bottom = rowRect.y + rowRect.height;
-            if (showCenterLine) {
-                // Calculate center lines
-                double center = (int) (context.getReferenceFrame().getCenter() - origin);
-                int centerLeftP = (int) (center / locScale);
-                int centerRightP = (int) ((center + 1) / locScale);
-                //float transparency = Math.max(0.5f, (float) Math.round(10 * (1 - .75 * locScale)) / 10);
-                Graphics2D g = context.getGraphics();
-                g.setColor(Color.black);
-                GraphicUtils.drawDottedDashLine(g, centerLeftP, rowRect.y, centerLeftP, bottom);
-                if ((centerRightP - centerLeftP > 2)) {
-                    GraphicUtils.drawDottedDashLine(g, centerRightP, rowRect.y, centerRightP, bottom);
+        private void addMismatches(AlignmentBlock[] blocks, Color alignmentColor) {
+
+            for (AlignmentBlock aBlock : blocks) {
+                int blockStart = aBlock.getStart(),
+                        blockEnd = aBlock.getStart() + aBlock.getLength();
+
+                if (blockEnd <= contextChromStart) {
+                    continue;
+                } else if (blockStart >= contextChromEnd) {
+                    break;
+                }
+                if (!aBlock.hasBases() || aBlock.getLength() == 0) {
+                    continue;
+                }
+
+                if (aBlock.isSoftClipped()) {
+                    addSoftClippedBases(aBlock, alignmentColor);
+                    continue;
+                }
+
+                byte[] read = aBlock.getBases();
+                byte[] reference = mismatchSitesReference;
+                int from = Math.max(blockStart, mismatchSitesStart) - mismatchSitesStart;
+                for (int i = sites.nextSetBit(from); i >= 0; i = sites.nextSetBit(i + 1)) {
+                    int loc = mismatchSitesStart + i;
+                    if (loc >= blockEnd) {
+                        break;
+                    }
+                    int idx = loc - blockStart;
+                    byte base = read[idx];
+                    if (base == '=' || AlignmentUtils.compareBases(reference[i], base)) {
+                        continue;
+                    }
+                    rowRaster.setMismatch((int) ((loc - origin) / locScale), getBaseColor(aBlock, idx, alignmentColor));
+                }
+            }
+        }
+
+        /**
+         * Soft clipped bases are all shown.  Only the last base drawn in each pixel column is visible,  so only it
+         * is examined.
+         */
+        private void addSoftClippedBases(AlignmentBlock aBlock, Color alignmentColor) {
+
+            int blockStart = aBlock.getStart(),
+                    blockEnd = aBlock.getStart() + aBlock.getLength();
+            byte[] read = aBlock.getBases();
+            int pxStart = (int) ((Math.max(blockStart, contextChromStart) - origin) / locScale);
+            int pxEnd = (int) ((Math.min(blockEnd, contextChromEnd) - 1 - origin) / locScale);
+            for (int px = pxStart; px <= pxEnd; px++) {
+                int loc = Math.min(blockEnd - 1, (int) Math.ceil(origin + (px + 1) * locScale) - 1);
+                while (loc > blockStart && (int) ((loc - origin) / locScale) > px) {
+                    loc--;
+                }
+                int idx = loc - blockStart;
+                if (idx < 0 || read[idx] == '=') {
+                    continue;
+                }
+                rowRaster.setMismatch(px, getBaseColor(aBlock, idx, alignmentColor));
+            }
+        }
+
+        private Color getBaseColor(AlignmentBlock aBlock, int idx, Color alignmentColor) {
+            Color color = nucleotideColors.get((char) aBlock.getBases()[idx]);
+            if (color == null) {
+                color = Color.black;
+            }
+            if (shadeQuality) {
+                color = getShadedColor(aBlock.getQuality(idx), color, alignmentColor, prefs);
+            }
+            return color;
+        }
+
+        void paint() {
+
+            Graphics2D g = context.getGraphics2D("ALIGNMENT");
+            int barHeight = (int) Math.max(1, rowRect.getHeight() - 2);
+            int barY = (int) (rowRect.getY() + (rowRect.getHeight() - barHeight) / 2);
+            rowRaster.paintBars((color, start, end) -> {
+                g.setColor(color);
+                g.fillRect(start, barY, end - start, barHeight);
+            });
+            rowRaster.paintBlocks((color, start, end) -> {
+                g.setColor(color);
+                g.fillRect(start, y, end - start, h);
+            });
+            rowRaster.paintLinks((color, start, end) -> {
+                g.setColor(color);
+                g.drawLine(start, y + h / 2, end - 1, y + h / 2);
+            });
+
+            rowRaster.paintGaps((color, start, end) -> {
+                Graphics2D gapGraphics = context.getGraphics2D(color == deletionColor && h > 5 ? "THICK_STROKE" : "GAP");
+                gapGraphics.setColor(color);
+                gapGraphics.drawLine(start, y + h / 2, end - 1, y + h / 2);
+            });
+
+            Graphics2D bpGraphics = context.getGraphics2D("BASE");
+            int baseHeight = rowRect.height - (leaveMargin ? 2 : 0);
+            rowRaster.paintMismatches((color, start, end) -> {
+                bpGraphics.setColor(color);
+                bpGraphics.fillRect(start, y, end - start, baseHeight);
+            });
+
+            Graphics2D insertionGraphics = context.getGraphics();
+            rowRaster.paintInsertions((color, start, end) -> {
+                insertionGraphics.setColor(color);
+                insertionGraphics.fillRect(start, insertionY, 2, h);
+                insertionGraphics.fillRect(start - pxWing, insertionY, 2 + 2 * pxWing, 2);
+                insertionGraphics.fillRect(start - pxWing, insertionY + h - 2, 2 + 2 * pxWing, 2);
+            }, purple);
+
+            if (!labels.isEmpty()) {
+                Graphics2D labelGraphics = context.getGraphics2D("INDEL_LABEL");
+                labelGraphics.setFont(FontManager.getFont(Font.BOLD, h - 2));
+                for (IndelLabel label : labels) {
+                    drawLargeIndelLabel(labelGraphics, label.isInsertion, Globals.DECIMAL_FORMAT.format(label.bpWidth),
+                            label.pxCenter, label.pxTop, h, label.pxWmax, context.translateX, label.insertionBlock);
                 }
             }
         }
     }
 
+    private static class IndelLabel {
+
+        final boolean isInsertion;
+        final int bpWidth;
+        final int pxCenter;
+        final int pxTop;
+        final int pxWmax;
+        final AlignmentBlock insertionBlock;
+
+        IndelLabel(boolean isInsertion, int bpWidth, int pxCenter, int pxTop, int pxWmax, AlignmentBlock insertionBlock) {
+            this.isInsertion = isInsertion;
+            this.bpWidth = bpWidth;
+            this.pxCenter = pxCenter;
+            this.pxTop = pxTop;
+            this.pxWmax = pxWmax;
+            this.insertionBlock = insertionBlock;
+        }
+    }
 
     public void renderExpandedInsertion(InsertionMarker i,
                                         List<Alignment> alignments,
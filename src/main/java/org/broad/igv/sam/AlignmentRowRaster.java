@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.ui.color.ColorUtilities;
+
+import java.awt.*;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * Per-pixel summary of one row of alignments,  used to draw dense views where many bases share a pixel.  Each
+ * layer holds the color of the last feature drawn in a pixel column,  and is drawn as runs of equal color.
+ */
+class AlignmentRowRaster {
+
+    interface RunPainter {
+        void paint(Color color, int start, int end);
+    }
+
+    private final float blockAlpha;
+
+    private int x;
+    private int width;
+
+    private Color[] bars = new Color[0];
+    private Color[] blocks = new Color[0];
+    private Color[] links = new Color[0];
+    private Color[] gaps = new Color[0];
+    private Color[] mismatches = new Color[0];
+    private final BitSet insertions = new BitSet();
+
+    /**
+     * @param blockAlpha alpha of alignment blocks,  which blend with mismatches they are drawn over
+     */
+    AlignmentRowRaster(float blockAlpha) {
+        this.blockAlpha = blockAlpha;
+    }
+
+    /**
+     * Clear the raster for a row covering pixels x to x + width.
+     */
+    void reset(int x, int width) {
+        this.x = x;
+        this.width = Math.max(0, width);
+        if (blocks.length < this.width) {
+            bars = new Color[this.width];
+            blocks = new Color[this.width];
+            links = new Color[this.width];
+            gaps = new Color[this.width];
+            mismatches = new Color[this.width];
+        } else {
+            Arrays.fill(bars, 0, this.width, null);
+            Arrays.fill(blocks, 0, this.width, null);
+            Arrays.fill(links, 0, this.width, null);
+            Arrays.fill(gaps, 0, this.width, null);
+            Arrays.fill(mismatches, 0, this.width, null);
+        }
+        insertions.clear();
+    }
+
+    /**
+     * Fill the pixels of an alignment too narrow to show detail,  from start (inclusive) to end (exclusive)
+     */
+    void fillBar(int start, int end, Color color) {
+        fill(bars, start, end, color);
+        cover(start, end, color);
+    }
+
+    /**
+     * Fill alignment block pixels from start (inclusive) to end (exclusive)
+     */
+    void fillBlock(int start, int end, Color color) {
+        fill(blocks, start, end, color);
+        cover(start, end, color);
+    }
+
+    /**
+     * Fill the pixels of a line joining paired alignments,  start and end inclusive
+     */
+    void fillLink(int start, int end, Color color) {
+        fill(links, start, end + 1, color);
+    }
+
+    /**
+     * Fill the pixels of a gap line,  start and end inclusive
+     */
+    void fillGap(int start, int end, Color color) {
+        fill(gaps, start, end + 1, color);
+    }
+
+    void setMismatch(int px, Color color) {
+        fill(mismatches, px, px + 1, color);
+    }
+
+    void setInsertion(int px) {
+        if (px >= x && px < x + width) {
+            insertions.set(px - x);
+        }
+    }
+
+    void paintBars(RunPainter painter) {
+        paintRuns(bars, painter);
+    }
+
+    void paintBlocks(RunPainter painter) {
+        paintRuns(blocks, painter);
+    }
+
+    void paintLinks(RunPainter painter) {
+        paintRuns(links, painter);
+    }
+
+    void paintGaps(RunPainter painter) {
+        paintRuns(gaps, painter);
+    }
+
+    void paintMismatches(RunPainter painter) {
+        paintRuns(mismatches, painter);
+    }
+
+    /**
+     * Paint each pixel with an insertion as a run of length 1
+     */
+    void paintInsertions(RunPainter painter, Color color) {
+        for (int i = insertions.nextSetBit(0); i >= 0; i = insertions.nextSetBit(i + 1)) {
+            painter.paint(color, x + i, x + i + 1);
+        }
+    }
+
+    private void fill(Color[] pixels, int start, int end, Color color) {
+        int s = Math.max(start, x) - x;
+        int e = Math.min(end, x + width) - x;
+        if (s < e) {
+            Arrays.fill(pixels, s, e, color);
+        }
+    }
+
+    /**
+     * Blend mismatches of earlier alignments with a block drawn over them
+     */
+    private void cover(int start, int end, Color color) {
+        int s = Math.max(start, x) - x;
+        int e = Math.min(end, x + width) - x;
+        for (int i = s; i < e; i++) {
+            if (mismatches[i] != null) {
+                mismatches[i] = ColorUtilities.getCompositeColor(mismatches[i], color, blockAlpha);
+            }
+        }
+    }
+
+    private void paintRuns(Color[] pixels, RunPainter painter) {
+        int i = 0;
+        while (i < width) {
+            Color color = pixels[i];
+            int j = i + 1;
+            while (j < width && Objects.equals(pixels[j], color)) {
+                j++;
+            }
+            if (color != null) {
+                painter.paint(color, x + i, x + j);
+            }
+            i = j;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import com.google.common.io.CountingOutputStream;
+import htsjdk.samtools.BAMRecordCodec;
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+ * Alignments moved off the heap to a temporary file when memory runs low while loading.  Records are appended in
+ * BAM encoding,  and are decoded from a read-only memory map of the file on access.  Only the offset, start, and end
+ * of each record are held on the heap,  which is enough to pack spilled alignments into rows without decoding them.
+ * <p/>
+ * Rows of a spilled interval are paged in from the file as they are used,  and the least recently used rows are
+ * released once more than {@link #MAX_PAGED_ALIGNMENTS} alignments,  by default,  are on the heap.
+ */
+class AlignmentSpillFile {
+
+    private static Logger log = Logger.getLogger(AlignmentSpillFile.class);
+
+    /**
+     * Maximum number of alignments held on the heap by paged-in rows
+     */
+    static final int MAX_PAGED_ALIGNMENTS = 200000;
+
+    /**
+     * Files are mapped in segments,  a single mapped buffer is limited to 2 GB
+     */
+    private static final long SEGMENT_SIZE = 1 << 30;
+
+    private final File file;
+    private final int maxPagedAlignments;
+    private SAMFileHeader header;
+    private CountingOutputStream out;
+    private BAMRecordCodec codec;
+
+    private int size = 0;
+    private long[] offsets = new long[1024];
+    private int[] starts = new int[1024];
+    private int[] ends = new int[1024];
+    private final BitSet unmapped = new BitSet();
+
+    // Insertions of the spilled alignments,  collected as they are written so they need not be decoded again
+    private final InsertionManager.InsertionCollector insertions = new InsertionManager.InsertionCollector();
+
+    private MappedByteBuffer[] segments;
+
+    // Rows currently paged in,  in access order
+    private final LinkedHashMap<Row, Integer> pagedRows = new LinkedHashMap<>(16, 0.75f, true);
+    private int pagedCount = 0;
+
+    AlignmentSpillFile() throws IOException {
+        this(MAX_PAGED_ALIGNMENTS);
+    }
+
+    AlignmentSpillFile(int maxPagedAlignments) throws IOException {
+        this.maxPagedAlignments = maxPagedAlignments;
+        file = File.createTempFile("igv", ".alignments");
+        file.deleteOnExit();
+        out = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+    }
+
+    /**
+     * Return the spill file backing {@code alignments},  or null if they are held on the heap.
+     */
+    static AlignmentSpillFile getSpillFile(List<Alignment> alignments) {
+        return alignments instanceof SpilledAlignmentList ? ((SpilledAlignmentList) alignments).getSpillFile() : null;
+    }
+
+    /**
+     * Append an alignment to the file.  Alignments must be added in order of start position.
+     */
+    void add(PicardAlignment alignment) throws IOException {
+        SAMRecord record = alignment.getRecord();
+        if (codec == null) {
+            header = record.getHeader();
+            codec = new BAMRecordCodec(header);
+            codec.setOutputStream(out, file.getName());
+        }
+        ensureCapacity(size + 1);
+        offsets[size] = out.getCount();
+        starts[size] = alignment.getStart();
+        ends[size] = alignment.getEnd();
+        if (!alignment.isMapped()) {
+            unmapped.set(size);
+        }
+        insertions.add(alignment);
+        codec.encode(record);
+        size++;
+    }
+
+    /**
+     * Append all alignments of another,  finished,  spill file to this one.  The other file is deleted.
+     */
+    void addAll(AlignmentSpillFile other) throws IOException {
+        if (other.size == 0) {
+            other.delete();
+            return;
+        }
+        if (codec == null) {
+            header = other.header;
+            codec = new BAMRecordCodec(header);
+            codec.setOutputStream(out, file.getName());
+        }
+        ensureCapacity(size + other.size);
+        for (int i = 0; i < other.size; i++) {
+            offsets[size] = out.getCount();
+            starts[size] = other.starts[i];
+            ends[size] = other.ends[i];
+            if (other.unmapped.get(i)) {
+                unmapped.set(size);
+            }
+            out.write(other.readBytes(i));
+            size++;
+        }
+        insertions.addAll(other.insertions);
+        other.delete();
+    }
+
+    /**
+     * Close the file for writing and map it for reading.
+     */
+    void finish() throws IOException {
+        if (segments != null) {
+            return;
+        }
+        ensureCapacity(size + 1);
+        offsets[size] = out.getCount();
+        out.close();
+        out = null;
+        codec = null;
+
+        long length = offsets[size];
+        int segmentCount = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        segments = new MappedByteBuffer[segmentCount];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            for (int i = 0; i < segmentCount; i++) {
+                long position = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+            }
+        }
+        log.info("Spilled " + size + " alignments (" + (length / 1000000) + " MB) to " + file.getAbsolutePath());
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getStart(int index) {
+        return starts[index];
+    }
+
+    int getEnd(int index) {
+        return ends[index];
+    }
+
+    boolean isMapped(int index) {
+        return !unmapped.get(index);
+    }
+
+    /**
+     * Decode the alignment at {@code index}.  The file must be finished.
+     */
+    Alignment get(int index) {
+        BAMRecordCodec decoder = new BAMRecordCodec(header);
+        decoder.setInputStream(new ByteArrayInputStream(readBytes(index)), file.getName());
+        return new PicardAlignment(decoder.decode());
+    }
+
+    /**
+     * Return a list view of all alignments in the file,  decoded on access.
+     */
+    List<Alignment> getAlignments() {
+        return new SpilledAlignmentList(this);
+    }
+
+    /**
+     * Return the alignments of a row,  decoding them if the row is not paged in.  Rows that have not been used
+     * recently are released to keep the number of alignments on the heap within bounds.
+     */
+    synchronized List<Alignment> pageIn(Row row) {
+
+        List<Alignment> alignments = row.alignments;
+        if (alignments != null) {
+            pagedRows.get(row);   // Mark as recently used
+            return alignments;
+        }
+
+        int[] indices = row.getSpillIndices();
+        alignments = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            alignments.add(get(index));
+        }
+        row.alignments = alignments;
+        pagedRows.put(row, indices.length);
+        pagedCount += indices.length;
+
+        Iterator<Map.Entry<Row, Integer>> iter = pagedRows.entrySet().iterator();
+        while (pagedCount > maxPagedAlignments && pagedRows.size() > 1) {
+            Map.Entry<Row, Integer> eldest = iter.next();
+            eldest.getKey().alignments = null;
+            pagedCount -= eldest.getValue();
+            iter.remove();
+        }
+        return alignments;
+    }
+
+    /**
+     * Release all paged-in rows,  for example when the interval is repacked.
+     */
+    synchronized void pageOutAll() {
+        for (Row row : pagedRows.keySet()) {
+            row.alignments = null;
+        }
+        pagedRows.clear();
+        pagedCount = 0;
+    }
+
+    InsertionManager.InsertionCollector getInsertions() {
+        return insertions;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    synchronized int getPagedCount() {
+        return pagedCount;
+    }
+
+    void delete() {
+        pageOutAll();
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.error("Error closing " + file.getAbsolutePath(), e);
+            }
+            out = null;
+        }
+        // Mapped buffers are unmapped when collected,  on some platforms the file can't be deleted before then
+        segments = null;
+        if (!file.delete()) {
+            log.debug("Could not delete " + file.getAbsolutePath() + ",  it will be deleted on exit");
+        }
+    }
+
+    private byte[] readBytes(int index) {
+        long offset = offsets[index];
+        byte[] bytes = new byte[(int) (offsets[index + 1] - offset)];
+        int pos = 0;
+        while (pos < bytes.length) {
+            MappedByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)];
+            int segmentOffset = (int) (offset % SEGMENT_SIZE);
+            int n = Math.min(bytes.length - pos, segment.limit() - segmentOffset);
+            ByteBuffer buffer = segment.duplicate();
+            buffer.position(segmentOffset);
+            buffer.get(bytes, pos, n);
+            pos += n;
+            offset += n;
+        }
+        return bytes;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            int newCapacity = Math.max(capacity, starts.length + starts.length / 2);
+            offsets = Arrays.copyOf(offsets, newCapacity);
+            starts = Arrays.copyOf(starts, newCapacity);
+            ends = Arrays.copyOf(ends, newCapacity);
+        }
+    }
+
+    /**
+     * Read-only list of spilled alignments.  Each access decodes a new alignment.
+     */
+    static class SpilledAlignmentList extends AbstractList<Alignment> implements RandomAccess {
+
+        private final AlignmentSpillFile spillFile;
+
+        SpilledAlignmentList(AlignmentSpillFile spillFile) {
+            this.spillFile = spillFile;
+        }
+
+        AlignmentSpillFile getSpillFile() {
+            return spillFile;
+        }
+
+        @Override
+        public Alignment get(int index) {
+            return spillFile.get(index);
+        }
+
+        @Override
+        public int size() {
+            return spillFile.size();
+        }
+    }
+}
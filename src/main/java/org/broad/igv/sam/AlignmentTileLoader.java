@@ -29,22 +29,30 @@ import htsjdk.samtools.SAMFileHeader;
 import htsjdk.samtools.util.CloseableIterator;
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
+import org.broad.igv.feature.Range;
 import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
 import org.broad.igv.sam.reader.ReadGroupFilter;
 import org.broad.igv.ui.IGV;
 import org.broad.igv.event.IGVEventBus;
 import org.broad.igv.event.IGVEventObserver;
 import org.broad.igv.event.StopEvent;
 import org.broad.igv.ui.util.MessageUtils;
-import org.broad.igv.util.ObjectCache;
+import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.RuntimeUtils;
 
 import javax.swing.*;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.broad.igv.prefs.Constants.*;
 
@@ -57,20 +65,43 @@ public class AlignmentTileLoader implements IGVEventObserver {
 
     private static Logger log = Logger.getLogger(AlignmentTileLoader.class);
 
-    private static Set<WeakReference<AlignmentTileLoader>> activeLoaders = Collections.synchronizedSet(new HashSet());
+    private static Set<WeakReference<AlignmentTileLoader>> activeLoaders = Collections.synchronizedSet(new HashSet<>());
 
     /**
      * Flag to mark a corrupt index.  Without this attempted reads will continue in an infinite loop
      */
     private boolean corruptIndex = false;
 
+    /**
+     * Minimum width of a sub-range loaded in parallel
+     */
+    static final int MIN_SHARD_WIDTH = 10000;
+
+    /**
+     * Counts for a sub-range extend this far past its end.  Alignments which extend further, such as long or spliced
+     * reads,  are counted when the sub-ranges are merged.
+     */
+    static int SHARD_COUNTS_FLANK = 10000;
+
+    /**
+     * Weight quota for the mate maps used while loading a range,  roughly 2000 short reads
+     */
+    static final long MATE_CACHE_SIZE = 1000000;
+
+    private static ExecutorService shardExecutor;
+
     private AlignmentReader reader;
-    private boolean cancel = false;
-    private boolean pairedEnd = false;
-    private boolean tenX = false;
-    private boolean phased = false;
+    private ResourceLocator locator;
+    private final Deque<AlignmentReader<?>> shardReaders = new ArrayDeque<>();
+    private final ReentrantLock readerLock = new ReentrantLock();
+    private volatile boolean cancel = false;
+
+    // File properties detected while loading,  possibly on sub-range worker threads
+    private volatile boolean pairedEnd = false;
+    private volatile boolean tenX = false;
+    private volatile boolean phased = false;
     private boolean moleculo = false;
-    private boolean ycTags = false;
+    private volatile boolean ycTags = false;
 
     static void cancelReaders() {
         for (WeakReference<AlignmentTileLoader> readerRef : activeLoaders) {
@@ -84,8 +115,18 @@ public class AlignmentTileLoader implements IGVEventObserver {
     }
 
 
-    public AlignmentTileLoader(AlignmentReader reader) {
+    public AlignmentTileLoader(AlignmentReader<?> reader) {
+        this(reader, null);
+    }
+
+    /**
+     * @param reader
+     * @param locator locator for {@code reader}.  If non-null additional readers are opened as needed to load
+     *                sub-ranges of large intervals in parallel.
+     */
+    public AlignmentTileLoader(AlignmentReader<?> reader, ResourceLocator locator) {
         this.reader = reader;
+        this.locator = locator;
 
         Set<String> platforms = this.reader.getPlatforms();
         moleculo = platforms != null && platforms.contains("MOLECULO");
@@ -93,6 +134,12 @@ public class AlignmentTileLoader implements IGVEventObserver {
 
     public void close() throws IOException {
         reader.close();
+        synchronized (shardReaders) {
+            for (AlignmentReader<?> shardReader : shardReaders) {
+                shardReader.close();
+            }
+            shardReaders.clear();
+        }
     }
 
     public SAMFileHeader getFileHeader() {
@@ -122,19 +169,34 @@ public class AlignmentTileLoader implements IGVEventObserver {
                            AlignmentDataManager.DownsampleOptions downsampleOptions,
                            ReadStats readStats, Map<String, PEStats> peStats,
                            AlignmentTrack.BisulfiteContext bisulfiteContext) {
+        return loadTile(chr, start, end, spliceJunctionHelper, downsampleOptions, readStats, peStats,
+                bisulfiteContext, null);
+    }
 
-        final IGVPreferences prefMgr = PreferencesManager.getPreferences();
-        boolean filterFailedReads = prefMgr.getAsBoolean(SAM_FILTER_FAILED_READS);
-        boolean filterSecondaryAlignments = prefMgr.getAsBoolean(SAM_FILTER_SECONDARY_ALIGNMENTS);
-        boolean filterSupplementaryAlignments = prefMgr.getAsBoolean(SAM_FILTER_SUPPLEMENTARY_ALIGNMENTS);
-        ReadGroupFilter filter = ReadGroupFilter.getFilter();
-        boolean showDuplicates = prefMgr.getAsBoolean(SAM_SHOW_DUPLICATES) || !prefMgr.getAsBoolean(SAM_FILTER_DUPLICATES);
-        int qualityThreshold = prefMgr.getAsInt(SAM_QUALITY_THRESHOLD);
-        int alignmentScoreTheshold = prefMgr.getAsInt(SAM_ALIGNMENT_SCORE_THRESHOLD);
+    /**
+     * Load the interval start-end,  typically a flank adjacent to an interval that is already loaded.  Alignments
+     * overlapping {@code loadedRange} are included in the counts for start-end but are not added to the tile, as
+     * they are already held by the loaded interval.
+     *
+     * @param loadedRange range of the loaded interval,  or null
+     */
+    AlignmentTile loadTile(String chr,
+                           int start,
+                           int end,
+                           SpliceJunctionHelper spliceJunctionHelper,
+                           AlignmentDataManager.DownsampleOptions downsampleOptions,
+                           ReadStats readStats, Map<String, PEStats> peStats,
+                           AlignmentTrack.BisulfiteContext bisulfiteContext,
+                           Range loadedRange) {
 
+        final IGVPreferences prefMgr = PreferencesManager.getPreferences();
+        RecordFilter recordFilter = new RecordFilter(prefMgr);
         boolean reducedMemory = prefMgr.getAsBoolean(SAM_REDUCED_MEMORY_MODE);
 
         AlignmentTile t = new AlignmentTile(start, end, spliceJunctionHelper, downsampleOptions, bisulfiteContext, reducedMemory);
+        if (loadedRange != null) {
+            t.setLoadedRange(loadedRange.getStart(), loadedRange.getEnd());
+        }
 
 
         //assert (tiles.size() > 0);
@@ -142,15 +204,15 @@ public class AlignmentTileLoader implements IGVEventObserver {
             return t;
         }
 
+        int shardCount = getShardCount(start, end, reducedMemory, bisulfiteContext);
 
-        CloseableIterator<Alignment> iter = null;
+        AlignmentReader<?> queryReader = null;
+        CloseableIterator<? extends Alignment> iter = null;
 
         //log.debug("Loading : " + start + " - " + end);
-        int alignmentCount = 0;
-        WeakReference<AlignmentTileLoader> ref = new WeakReference(this);
+        AtomicInteger alignmentCount = new AtomicInteger(0);
+        WeakReference<AlignmentTileLoader> ref = new WeakReference<>(this);
         try {
-            ObjectCache<String, Alignment> mappedMates = new ObjectCache<String, Alignment>(1000);
-            ObjectCache<String, Alignment> unmappedMates = new ObjectCache<String, Alignment>(1000);
 
             activeLoaders.add(ref);
             IGVEventBus.getInstance().subscribe(StopEvent.class, this);
@@ -159,116 +221,26 @@ public class AlignmentTileLoader implements IGVEventObserver {
                 IGV.getInstance().enableStopButton(true);
             }
 
-            iter = reader.query(chr, start, end, false);
-
-            while (iter != null && iter.hasNext()) {
-
-                if (cancel) {
-                    break;
-                }
-
-                Alignment record = iter.next();
-
-                if (readStats != null) {
-                    readStats.addAlignment(record);
-                }
-                ;
-
-                // Set mate sequence of unmapped mates
-                // Put a limit on the total size of this collection.
-                String readName = record.getReadName();
-                if (record.isPaired()) {
-                    pairedEnd = true;
-                    if (record.isMapped()) {
-                        if (!record.getMate().isMapped()) {
-                            // record is mapped, mate is not
-                            Alignment mate = unmappedMates.get(readName);
-                            if (mate == null) {
-                                mappedMates.put(readName, record);
-                            } else {
-                                record.setMateSequence(mate.getReadSequence());
-                                unmappedMates.remove(readName);
-                                mappedMates.remove(readName);
-                            }
-
-                        }
-                    } else if (record.getMate().isMapped()) {
-                        // record not mapped, mate is
-                        Alignment mappedMate = mappedMates.get(readName);
-                        if (mappedMate == null) {
-                            unmappedMates.put(readName, record);
-                        } else {
-                            mappedMate.setMateSequence(record.getReadSequence());
-                            unmappedMates.remove(readName);
-                            mappedMates.remove(readName);
-                        }
-                    }
-                }
-
-                if (!ycTags && record.getAttribute("YC") != null) {
-                    ycTags = true;
-                }
-
-                // TODO -- this is not reliable tests for TenX.  Other platforms might use BX
-                if (!tenX && record.getAttribute("BX") != null) {
-                    tenX = true;
-                }
-                if (tenX && !phased && record.getAttribute("HP") != null) {
-                    phased = true;
-                }
-
-
-                if (!record.isMapped() || (!showDuplicates && record.isDuplicate()) ||
-                        (filterFailedReads && record.isVendorFailedRead()) ||
-                        (filterSecondaryAlignments && !record.isPrimary()) ||
-                        (filterSupplementaryAlignments && record.isSupplementary()) ||
-                        record.getMappingQuality() < qualityThreshold ||
-                        (filter != null && filter.filterAlignment(record))) {
-                    continue;
-                }
-
-                // Alignment score (optional tag)
-                if(alignmentScoreTheshold > 0) {
-
-                    Object alignmentScoreObj = record.getAttribute("AS");
-
-                    if(alignmentScoreObj != null) {
-                        int as = ((Number) alignmentScoreObj).intValue();
-                        if(as < alignmentScoreTheshold) {
-                            continue;
-                        }
-                    }
-
-                }
-
-                t.addRecord(record, reducedMemory);
-
-                alignmentCount++;
-                int interval = Globals.isTesting() ? 100000 : 1000;
-                if (alignmentCount % interval == 0) {
-                    String msg = "Reads loaded: " + alignmentCount;
-                    MessageUtils.setStatusBarMessage(msg);
-                    if (memoryTooLow()) {
-                        cancelReaders();
-                        t.finish();
-                        return t;
-                    }
-                }
+            boolean complete;
+            if (shardCount > 1) {
+                complete = loadShards(chr, start, end, shardCount, t, recordFilter, downsampleOptions,
+                        readStats, peStats, alignmentCount);
+            } else {
+                queryReader = borrowReader();
+                iter = queryReader.query(chr, start, end, false);
+                complete = loadRange(iter, Integer.MIN_VALUE, Integer.MAX_VALUE, t, recordFilter, reducedMemory,
+                        readStats, peStats, alignmentCount);
+            }
 
-                // Update pe stats
-                if (peStats != null && record.isPaired() && record.isProperPair()) {
-                    String lb = record.getLibrary();
-                    if (lb == null) lb = "null";
-                    PEStats stats = peStats.get(lb);
-                    if (stats == null) {
-                        stats = new PEStats(lb);
-                        peStats.put(lb, stats);
-                    }
-                    stats.update(record);
+            t.finish();
+            final boolean columnarStore = !reducedMemory && !t.isSpilled() && prefMgr.getAsBoolean(SAM_COLUMNAR_STORE);
 
+            if (!complete) {
+                if (columnarStore) {
+                    t.alignments = ColumnarAlignmentStore.pack(t.alignments);
                 }
+                return t;
             }
-            // End iteration over alignments
 
             // Compute peStats
             if (peStats != null) {
@@ -285,21 +257,18 @@ public class AlignmentTileLoader implements IGVEventObserver {
                 readStats.compute();
             }
 
-
-            // Clean up any remaining unmapped mate sequences
-            for (String mappedMateName : mappedMates.getKeys()) {
-                Alignment mappedMate = mappedMates.get(mappedMateName);
-                if (mappedMate != null) {
-                    Alignment mate = unmappedMates.get(mappedMate.getReadName());
-                    if (mate != null) {
-                        mappedMate.setMateSequence(mate.getReadSequence());
-                    }
-                }
+            // Move alignments to compact storage,  the original records can then be collected
+            if (columnarStore) {
+                t.alignments = ColumnarAlignmentStore.pack(t.alignments);
             }
-            t.finish();
 
             // TODO -- make this optional (on a preference)
-            InsertionManager.getInstance().processAlignments(chr, t.alignments);
+            AlignmentSpillFile spillFile = AlignmentSpillFile.getSpillFile(t.alignments);
+            if (spillFile != null) {
+                InsertionManager.getInstance().processInsertions(chr, spillFile.getInsertions());
+            } else {
+                InsertionManager.getInstance().processAlignments(chr, t.alignments);
+            }
 
 
         } catch (java.nio.BufferUnderflowException e) {
@@ -330,6 +299,9 @@ public class AlignmentTileLoader implements IGVEventObserver {
             if (iter != null) {
                 iter.close();
             }
+            if (queryReader != null) {
+                returnReader(queryReader);
+            }
             if (!Globals.isHeadless()) {
                 IGV.getInstance().resetStatusMessage();
             }
@@ -339,13 +311,318 @@ public class AlignmentTileLoader implements IGVEventObserver {
 
     }
 
+    /**
+     * Add alignments from {@code iter} whose start position is in the range [minStart, maxStart) to tile {@code t}.
+     *
+     * @return false if loading was terminated due to low memory, true otherwise
+     */
+    private boolean loadRange(CloseableIterator<? extends Alignment> iter,
+                              int minStart,
+                              int maxStart,
+                              AlignmentTile t,
+                              RecordFilter recordFilter,
+                              boolean reducedMemory,
+                              ReadStats readStats,
+                              Map<String, PEStats> peStats,
+                              AtomicInteger alignmentCount) {
+
+        // Rather than terminate when memory is low,  alignments are moved to disk if possible
+        boolean spillOnLowMemory = PreferencesManager.getPreferences().getAsBoolean(SAM_SPILL_ON_LOW_MEMORY);
+
+        MateMap mappedMates = new MateMap(MATE_CACHE_SIZE);
+        MateMap unmappedMates = new MateMap(MATE_CACHE_SIZE);
+
+        while (iter != null && iter.hasNext()) {
+
+            if (cancel) {
+                break;
+            }
+
+            Alignment record = iter.next();
+
+            // Alignments starting outside this range are loaded with an adjacent range
+            final int alignmentStart = record.getAlignmentStart();
+            if (alignmentStart < minStart || alignmentStart >= maxStart) {
+                continue;
+            }
+
+            if (readStats != null) {
+                readStats.addAlignment(record);
+            }
+
+            // Set mate sequence of unmapped mates
+            // Put a limit on the total size of this collection.
+            String readName = record.getReadName();
+            if (record.isPaired()) {
+                if (!pairedEnd) {
+                    pairedEnd = true;
+                }
+                if (record.isMapped()) {
+                    if (!record.getMate().isMapped()) {
+                        // record is mapped, mate is not
+                        Alignment mate = unmappedMates.get(readName);
+                        if (mate == null) {
+                            mappedMates.put(readName, record);
+                        } else {
+                            record.setMateSequence(mate.getReadSequence());
+                            unmappedMates.remove(readName);
+                            mappedMates.remove(readName);
+                        }
+
+                    }
+                } else if (record.getMate().isMapped()) {
+                    // record not mapped, mate is
+                    Alignment mappedMate = mappedMates.get(readName);
+                    if (mappedMate == null) {
+                        unmappedMates.put(readName, record);
+                    } else {
+                        mappedMate.setMateSequence(record.getReadSequence());
+                        unmappedMates.remove(readName);
+                        mappedMates.remove(readName);
+                    }
+                }
+            }
+
+            if (!ycTags && record.getAttribute("YC") != null) {
+                ycTags = true;
+            }
+
+            // TODO -- this is not reliable tests for TenX.  Other platforms might use BX
+            if (!tenX && record.getAttribute("BX") != null) {
+                tenX = true;
+            }
+            if (tenX && !phased && record.getAttribute("HP") != null) {
+                phased = true;
+            }
+
+            if (recordFilter.filterAlignment(record)) {
+                continue;
+            }
+
+            t.addRecord(record, reducedMemory);
+
+            int count = alignmentCount.incrementAndGet();
+            int interval = Globals.isTesting() ? 100000 : 1000;
+            if (count % interval == 0) {
+                String msg = "Reads loaded: " + count;
+                MessageUtils.setStatusBarMessage(msg);
+                if (memoryTooLow() && !(spillOnLowMemory && t.spill())) {
+                    MessageUtils.showMessage("Memory is low, reading terminating.");
+                    cancelReaders();
+                    return false;
+                }
+            }
+
+            // Update pe stats
+            if (peStats != null && record.isPaired() && record.isProperPair()) {
+                String lb = record.getLibrary();
+                if (lb == null) lb = "null";
+                PEStats stats = peStats.get(lb);
+                if (stats == null) {
+                    stats = new PEStats(lb);
+                    peStats.put(lb, stats);
+                }
+                stats.update(record);
+
+            }
+        }
+        // End iteration over alignments
+
+        // Clean up any remaining unmapped mate sequences
+        for (String mappedMateName : mappedMates.readNames()) {
+            Alignment mappedMate = mappedMates.get(mappedMateName);
+            if (mappedMate != null) {
+                Alignment mate = unmappedMates.get(mappedMate.getReadName());
+                if (mate != null) {
+                    mappedMate.setMateSequence(mate.getReadSequence());
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the number of sub-ranges to load in parallel for the interval start-end.  Sharding requires an indexed
+     * BAM or CRAM file, so that each sub-range can be queried with an independent reader, and dense counts, which are
+     * the only counts that support merging.
+     */
+    private int getShardCount(int start, int end, boolean reducedMemory, AlignmentTrack.BisulfiteContext bisulfiteContext) {
+
+        if (locator == null || reducedMemory || bisulfiteContext != null || !reader.hasIndex() ||
+                (end - start) > AlignmentTile.DENSE_COUNTS_MAX_WIDTH) {
+            return 1;
+        }
+
+        String typeString = locator.getTypeString();
+        if (!(typeString.endsWith(".bam") || typeString.endsWith(".cram"))) {
+            return 1;
+        }
+
+        int maxShards = PreferencesManager.getPreferences().getAsInt(SAM_LOAD_THREADS);
+        return Math.max(1, Math.min(maxShards, (end - start) / MIN_SHARD_WIDTH));
+    }
+
+    /**
+     * Load the interval start-end by splitting it into {@code shardCount} sub-ranges which are queried, decoded,
+     * counted, and downsampled concurrently.  Each alignment is assigned to the sub-range containing its start
+     * position.  The partial results are merged into {@code t} in genomic order, so the result does not depend on
+     * the order in which the sub-ranges complete.
+     *
+     * @return false if loading was terminated due to low memory, true otherwise
+     */
+    private boolean loadShards(final String chr,
+                               final int start,
+                               final int end,
+                               final int shardCount,
+                               AlignmentTile t,
+                               final RecordFilter recordFilter,
+                               final AlignmentDataManager.DownsampleOptions downsampleOptions,
+                               ReadStats readStats,
+                               Map<String, PEStats> peStats,
+                               final AtomicInteger alignmentCount) throws Exception {
+
+        final SpliceJunctionHelper spliceJunctionHelper = t.spliceJunctionHelper;
+        final boolean computeReadStats = readStats != null;
+        final boolean computePEStats = peStats != null;
+        final int shardWidth = (end - start) / shardCount;
+
+        List<Future<Shard>> futures = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+
+            final int shardStart = start + i * shardWidth;
+            final int shardEnd = (i == shardCount - 1) ? end : shardStart + shardWidth;
+            final int minStart = (i == 0) ? Integer.MIN_VALUE : shardStart;
+            final int maxStart = (i == shardCount - 1) ? Integer.MAX_VALUE : shardEnd;
+
+            futures.add(getShardExecutor().submit(() -> {
+
+                // Alignments can overlap subsequent ranges,  so counts for a sub-range extend past its end
+                int countsEnd = (int) Math.min(end, (long) shardEnd + SHARD_COUNTS_FLANK);
+                SpliceJunctionHelper shardHelper = spliceJunctionHelper == null ? null :
+                        new SpliceJunctionHelper(spliceJunctionHelper.getLoadOptions());
+                Shard shard = new Shard(new AlignmentTile(shardStart, countsEnd, shardHelper, downsampleOptions, null, false),
+                        computeReadStats ? new ReadStats() : null,
+                        computePEStats ? new HashMap<>() : null);
+                shard.tile.setLoadedRange(t.loadedStart, t.loadedEnd);
+                shard.tile.overflow = new ArrayList<>();
+
+                AlignmentReader<?> shardReader = borrowShardReader();
+                CloseableIterator<? extends Alignment> iter = null;
+                boolean success = false;
+                try {
+                    iter = shardReader.query(chr, shardStart, shardEnd, false);
+                    shard.complete = loadRange(iter, minStart, maxStart, shard.tile, recordFilter, false,
+                            shard.readStats, shard.peStats, alignmentCount);
+                    shard.tile.finish();
+                    success = true;
+                } finally {
+                    if (iter != null) {
+                        iter.close();
+                    }
+                    if (success) {
+                        returnShardReader(shardReader);
+                    } else {
+                        shardReader.close();
+                    }
+                }
+                return shard;
+            }));
+        }
+
+        // Wait for all sub-ranges,  even after a failure,  so no worker is left using a pooled reader.
+        List<Shard> shards = new ArrayList<>(shardCount);
+        Exception exception = null;
+        for (Future<Shard> future : futures) {
+            try {
+                shards.add(future.get());
+            } catch (ExecutionException e) {
+                cancel = true;
+                if (exception == null) {
+                    Throwable cause = e.getCause();
+                    exception = cause instanceof Exception ? (Exception) cause : e;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+
+        boolean complete = true;
+        for (Shard shard : shards) {
+            t.merge(shard.tile);
+            if (readStats != null) {
+                readStats.merge(shard.readStats);
+            }
+            if (peStats != null) {
+                for (Map.Entry<String, PEStats> entry : shard.peStats.entrySet()) {
+                    PEStats stats = peStats.get(entry.getKey());
+                    if (stats == null) {
+                        peStats.put(entry.getKey(), entry.getValue());
+                    } else {
+                        stats.merge(entry.getValue());
+                    }
+                }
+            }
+            complete &= shard.complete;
+        }
+        return complete;
+    }
+
+    /**
+     * Return a reader for a serial load.  Loads can run concurrently,  for example a prefetch and a load of the
+     * visible range,  so the primary reader is used only if it is free.  Otherwise another reader is borrowed if
+     * the locator is known,  or the load waits for the primary reader.
+     */
+    private AlignmentReader<?> borrowReader() throws IOException {
+        if (readerLock.tryLock()) {
+            return reader;
+        }
+        if (locator != null) {
+            return borrowShardReader();
+        }
+        readerLock.lock();
+        return reader;
+    }
+
+    private void returnReader(AlignmentReader<?> queryReader) {
+        if (queryReader == reader) {
+            readerLock.unlock();
+        } else {
+            returnShardReader(queryReader);
+        }
+    }
+
+    private AlignmentReader<?> borrowShardReader() throws IOException {
+        synchronized (shardReaders) {
+            if (!shardReaders.isEmpty()) {
+                return shardReaders.pop();
+            }
+        }
+        return AlignmentReaderFactory.getReader(locator);
+    }
+
+    private void returnShardReader(AlignmentReader<?> shardReader) {
+        synchronized (shardReaders) {
+            shardReaders.push(shardReader);
+        }
+    }
+
+    private static synchronized ExecutorService getShardExecutor() {
+        if (shardExecutor == null) {
+            shardExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "AlignmentTileLoader-shard");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return shardExecutor;
+    }
+
 
     private static synchronized boolean memoryTooLow() {
         if (RuntimeUtils.getAvailableMemoryFraction() < 0.2) {
             System.gc();
             if (RuntimeUtils.getAvailableMemoryFraction() < 0.2) {
-                String msg = "Memory is low, reading terminating.";
-                MessageUtils.showMessage(msg);
                 return true;
             }
 
@@ -353,6 +630,68 @@ public class AlignmentTileLoader implements IGVEventObserver {
         return false;
     }
 
+    /**
+     * Approximate retained size of a cached mate,  dominated by read bases and qualities
+     */
+    private static long getMateWeight(Alignment alignment) {
+        return 200 + 2L * Math.max(0, alignment.getEnd() - alignment.getStart());
+    }
+
+    /**
+     * Mates pending while a range loads,  least recently used first and bounded by total weight.  This is load-local
+     * state rather than a shared cache,  so it is not registered with the CacheManager and global budget pressure
+     * cannot evict mates in the middle of a load.
+     */
+    static class MateMap {
+
+        private final LinkedHashMap<String, Alignment> map = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxWeight;
+        private long weight = 0;
+
+        MateMap(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        Alignment get(String readName) {
+            return map.get(readName);
+        }
+
+        void put(String readName, Alignment alignment) {
+            Alignment previous = map.put(readName, alignment);
+            if (previous != null) {
+                weight -= getMateWeight(previous);
+            }
+            weight += getMateWeight(alignment);
+            Iterator<Alignment> iter = map.values().iterator();
+            while (weight > maxWeight && iter.hasNext()) {
+                weight -= getMateWeight(iter.next());
+                iter.remove();
+            }
+        }
+
+        void remove(String readName) {
+            Alignment previous = map.remove(readName);
+            if (previous != null) {
+                weight -= getMateWeight(previous);
+            }
+        }
+
+        /**
+         * Snapshot of the read names,  safe to iterate while calling get()
+         */
+        List<String> readNames() {
+            return new ArrayList<>(map.keySet());
+        }
+
+        int size() {
+            return map.size();
+        }
+
+        long getWeight() {
+            return weight;
+        }
+    }
+
 
     /**
      * Does this file contain paired end data?  Assume not until proven otherwise.
@@ -394,6 +733,74 @@ public class AlignmentTileLoader implements IGVEventObserver {
         return reader.getSequenceDictionary();
     }
 
+    /**
+     * Alignment filters from preferences,  read once per load
+     */
+    static class RecordFilter {
+
+        final boolean filterFailedReads;
+        final boolean filterSecondaryAlignments;
+        final boolean filterSupplementaryAlignments;
+        final ReadGroupFilter filter;
+        final boolean showDuplicates;
+        final int qualityThreshold;
+        final int alignmentScoreTheshold;
+
+        RecordFilter(IGVPreferences prefMgr) {
+            filterFailedReads = prefMgr.getAsBoolean(SAM_FILTER_FAILED_READS);
+            filterSecondaryAlignments = prefMgr.getAsBoolean(SAM_FILTER_SECONDARY_ALIGNMENTS);
+            filterSupplementaryAlignments = prefMgr.getAsBoolean(SAM_FILTER_SUPPLEMENTARY_ALIGNMENTS);
+            filter = ReadGroupFilter.getFilter();
+            showDuplicates = prefMgr.getAsBoolean(SAM_SHOW_DUPLICATES) || !prefMgr.getAsBoolean(SAM_FILTER_DUPLICATES);
+            qualityThreshold = prefMgr.getAsInt(SAM_QUALITY_THRESHOLD);
+            alignmentScoreTheshold = prefMgr.getAsInt(SAM_ALIGNMENT_SCORE_THRESHOLD);
+        }
+
+        /**
+         * @return true if the record should be excluded
+         */
+        boolean filterAlignment(Alignment record) {
+
+            if (!record.isMapped() || (!showDuplicates && record.isDuplicate()) ||
+                    (filterFailedReads && record.isVendorFailedRead()) ||
+                    (filterSecondaryAlignments && !record.isPrimary()) ||
+                    (filterSupplementaryAlignments && record.isSupplementary()) ||
+                    record.getMappingQuality() < qualityThreshold ||
+                    (filter != null && filter.filterAlignment(record))) {
+                return true;
+            }
+
+            // Alignment score (optional tag)
+            if (alignmentScoreTheshold > 0) {
+                Object alignmentScoreObj = record.getAttribute("AS");
+                if (alignmentScoreObj != null) {
+                    int as = ((Number) alignmentScoreObj).intValue();
+                    if (as < alignmentScoreTheshold) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Partial results for a sub-range of a parallel load
+     */
+    private static class Shard {
+
+        final AlignmentTile tile;
+        final ReadStats readStats;
+        final Map<String, PEStats> peStats;
+        boolean complete;
+
+        Shard(AlignmentTile tile, ReadStats readStats, Map<String, PEStats> peStats) {
+            this.tile = tile;
+            this.readStats = readStats;
+            this.peStats = peStats;
+        }
+    }
+
     /**
      * Caches alignments, coverage, splice junctions, and downsampled intervals
      */
@@ -408,7 +815,17 @@ public class AlignmentTileLoader implements IGVEventObserver {
         private List<DownsampledInterval> downsampledIntervals;
         private SpliceJunctionHelper spliceJunctionHelper;
 
-        private static final Random RAND = new Random();
+        /**
+         * Alignments moved to disk when memory ran low,  null if alignments are held on the heap
+         */
+        private AlignmentSpillFile spillFile;
+
+        /**
+         * Intervals wider than this use sparse counts
+         */
+        static final int DENSE_COUNTS_MAX_WIDTH = 10000000;
+
+        private final Random rand = new Random();
 
         private boolean downsample;
         private int samplingWindowSize;
@@ -430,6 +847,18 @@ public class AlignmentTileLoader implements IGVEventObserver {
         private int offset = 0;
         private int indelLimit;
 
+        /**
+         * Range of an adjacent interval that is already loaded,  empty by default
+         */
+        private int loadedStart = Integer.MAX_VALUE;
+        private int loadedEnd = Integer.MIN_VALUE;
+
+        /**
+         * If non-null,  alignments extending past the end of this tile are collected here instead of being counted,
+         * and are counted by the tile this one is merged into
+         */
+        private List<Alignment> overflow;
+
         AlignmentTile(int start,
                       int end,
                       SpliceJunctionHelper spliceJunctionHelper,
@@ -444,12 +873,12 @@ public class AlignmentTileLoader implements IGVEventObserver {
 
             long seed = System.currentTimeMillis();
             //System.out.println("seed: " + seed);
-            RAND.setSeed(seed);
+            rand.setSeed(seed);
 
             // Use a sparse array for large regions  (> 10 mb)
             if (reducedMemory) {
                 this.counts = new ReducedMemoryAlignment.ReducedMemoryAlignmentCounts(start, end, 25);
-            } else if ((end - start) > 10000000) {
+            } else if ((end - start) > DENSE_COUNTS_MAX_WIDTH) {
                 this.counts = new SparseAlignmentCounts(start, end, bisulfiteContext);
             } else {
                 this.counts = new DenseAlignmentCounts(start, end, bisulfiteContext);
@@ -482,6 +911,11 @@ public class AlignmentTileLoader implements IGVEventObserver {
             this.start = start;
         }
 
+        void setLoadedRange(int loadedStart, int loadedEnd) {
+            this.loadedStart = loadedStart;
+            this.loadedEnd = loadedEnd;
+        }
+
         int ignoredCount = 0;    // <= just for debugging
 
         /**
@@ -495,7 +929,16 @@ public class AlignmentTileLoader implements IGVEventObserver {
                 alignment = new ReducedMemoryAlignment(alignment, this.indelLimit);
             }
 
-            counts.incCounts(alignment);
+            if (overflow != null && alignment.getAlignmentEnd() > end) {
+                overflow.add(alignment);
+            } else {
+                counts.incCounts(alignment);
+            }
+
+            // Alignments overlapping the loaded range are counted here,  but are otherwise held by the loaded interval
+            if (alignment.getAlignmentStart() < loadedEnd && alignment.getAlignmentEnd() > loadedStart) {
+                return;
+            }
 
             if (spliceJunctionHelper != null) {
                 spliceJunctionHelper.addAlignment(alignment);
@@ -510,6 +953,8 @@ public class AlignmentTileLoader implements IGVEventObserver {
 
                 attemptAddRecordDownsampled(alignment);
 
+            } else if (spillFile != null) {
+                addToSpillFile(alignment);
             } else {
                 alignments.add(alignment);
             }
@@ -517,6 +962,102 @@ public class AlignmentTileLoader implements IGVEventObserver {
             alignment.finish();
         }
 
+        /**
+         * Move the alignments of this tile to a spill file on disk,  alignments added later are appended to the file.
+         * This is only possible for alignments that are not downsampled and are backed by SAM records.
+         *
+         * @return true if the alignments were moved,  false if they are already spilled or can't be
+         */
+        boolean spill() {
+            if (spillFile != null || downsample || alignments == null) {
+                return false;
+            }
+            for (Alignment alignment : alignments) {
+                if (!(alignment instanceof PicardAlignment)) {
+                    return false;
+                }
+            }
+            AlignmentSpillFile file = null;
+            try {
+                file = new AlignmentSpillFile();
+                for (Alignment alignment : alignments) {
+                    file.add((PicardAlignment) alignment);
+                }
+            } catch (IOException e) {
+                log.error("Error writing alignments to disk", e);
+                if (file != null) {
+                    file.delete();
+                }
+                return false;
+            }
+            spillFile = file;
+            alignments = null;
+            return true;
+        }
+
+        boolean isSpilled() {
+            return spillFile != null;
+        }
+
+        private void addToSpillFile(Alignment alignment) {
+            if (!(alignment instanceof PicardAlignment)) {
+                throw new IllegalStateException("Only SAM records can be written to disk: " + alignment.getClass());
+            }
+            try {
+                spillFile.add((PicardAlignment) alignment);
+            } catch (IOException e) {
+                throw new RuntimeException("Error writing alignments to disk", e);
+            }
+        }
+
+        /**
+         * Merge a finished tile for a sub-range of this tile.  Tiles must be merged in order of start position so
+         * that alignments remain sorted.
+         *
+         * @param other
+         */
+        void merge(AlignmentTile other) {
+
+            if (!(counts instanceof DenseAlignmentCounts && other.counts instanceof DenseAlignmentCounts)) {
+                throw new IllegalStateException("Only dense alignment counts can be merged");
+            }
+            ((DenseAlignmentCounts) counts).merge((DenseAlignmentCounts) other.counts);
+            if (other.overflow != null) {
+                for (Alignment alignment : other.overflow) {
+                    counts.incCounts(alignment);
+                }
+            }
+
+            if (spliceJunctionHelper != null && other.spliceJunctionHelper != null) {
+                spliceJunctionHelper.merge(other.spliceJunctionHelper);
+            }
+
+            if (spillFile != null || other.spillFile != null) {
+                // Once any sub-range is spilled,  all alignments that follow it are spilled to the same file
+                if (spillFile == null && !spill()) {
+                    throw new IllegalStateException("Alignments could not be written to disk");
+                }
+                if (other.spillFile != null) {
+                    try {
+                        spillFile.addAll(other.spillFile);
+                    } catch (IOException e) {
+                        throw new RuntimeException("Error writing alignments to disk", e);
+                    }
+                } else {
+                    for (Alignment alignment : other.getAlignments()) {
+                        addToSpillFile(alignment);
+                    }
+                }
+            } else {
+                List<Alignment> otherAlignments = other.getAlignments();
+                if (alignments == null) {
+                    alignments = new ArrayList<Alignment>(otherAlignments.size());
+                }
+                alignments.addAll(otherAlignments);
+            }
+            downsampledIntervals.addAll(other.downsampledIntervals);
+        }
+
         /**
          * Attempt to add this alignment. The alignment is definitely added if there is another
          * read with the same name. Typically this other read is a mate pair, but it could also be a secondary alignment
@@ -550,8 +1091,8 @@ public class AlignmentTileLoader implements IGVEventObserver {
                     curEffSamplingWindowDepth++;
                 } else {
                     double samplingProb = ((double) samplingDepth) / (samplingDepth + downsampledCount + 1);
-                    if (RAND.nextDouble() < samplingProb) {
-                        int rndInt = (int) (RAND.nextDouble() * (samplingDepth - 1));
+                    if (rand.nextDouble() < samplingProb) {
+                        int rndInt = (int) (rand.nextDouble() * (samplingDepth - 1));
                         int idx = offset + rndInt;
                         // Replace random record with this one
                         List<Alignment> removedValues = imAlignments.replace(idx, readName, alignment);
@@ -662,6 +1203,14 @@ public class AlignmentTileLoader implements IGVEventObserver {
             if (downsample) {
                 sortFilterDownsampled();
             }
+            if (spillFile != null) {
+                try {
+                    spillFile.finish();
+                } catch (IOException e) {
+                    throw new RuntimeException("Error mapping alignments from disk", e);
+                }
+                alignments = spillFile.getAlignments();
+            }
             finalizeSpliceJunctions();
             counts.finish();
         }
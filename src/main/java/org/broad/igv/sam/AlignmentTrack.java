@@ -418,6 +418,11 @@ public class AlignmentTrack extends AbstractTrack implements IGVEventObserver {
         dataManager.load(referenceFrame, renderOptions, true);
     }
 
+    @Override
+    public void prefetch(ReferenceFrame referenceFrame) {
+        dataManager.prefetch(referenceFrame, renderOptions);
+    }
+
     public void render(RenderContext context, Rectangle rect) {
 
         Graphics2D g = context.getGraphics2D("LABEL");
@@ -611,7 +616,7 @@ public class AlignmentTrack extends AbstractTrack implements IGVEventObserver {
                     Rectangle rowRectangle = new Rectangle(inputRect.x, (int) y, inputRect.width, (int) h);
                     AlignmentCounts alignmentCounts = dataManager.getLoadedInterval(context.getReferenceFrame()).getCounts();
 
-                    renderer.renderAlignments(row.alignments, context, rowRectangle,
+                    renderer.renderAlignments(row.getAlignments(), context, rowRectangle,
                             inputRect, renderOptions, leaveMargin, selectedReadNames, alignmentCounts, getPreferences());
                     row.y = y;
                     row.h = h;
@@ -715,7 +720,7 @@ public class AlignmentTrack extends AbstractTrack implements IGVEventObserver {
 
                 if (y + h > visibleRect.getY()) {
                     Rectangle rowRectangle = new Rectangle(inputRect.x, (int) y, inputRect.width, (int) h);
-                    renderer.renderExpandedInsertion(insertionMarker, row.alignments, context, rowRectangle, leaveMargin);
+                    renderer.renderExpandedInsertion(insertionMarker, row.getAlignments(), context, rowRectangle, leaveMargin);
                     row.y = y;
                     row.h = h;
                 }
@@ -799,6 +804,10 @@ public class AlignmentTrack extends AbstractTrack implements IGVEventObserver {
      * @return Whether sorting was performed. If data is still loading, this will return false
      */
     public boolean sortRows(SortOption option, ReferenceFrame referenceFrame, double location, String tag) {
+        // Keep the UI responsive when sorting interactively.  Batch commands expect rows to be sorted on return.
+        if (SwingUtilities.isEventDispatchThread() && !Globals.isBatch()) {
+            return dataManager.sortRowsInBackground(option, referenceFrame, location, tag, AlignmentTrack::refresh);
+        }
         return dataManager.sortRows(option, referenceFrame, location, tag);
     }
 
@@ -820,7 +829,7 @@ public class AlignmentTrack extends AbstractTrack implements IGVEventObserver {
     }
 
     public void packAlignments() {
-        dataManager.packAlignments(renderOptions);
+        dataManager.repackAlignments(renderOptions);
     }
 
     /**
@@ -1025,7 +1034,7 @@ public class AlignmentTrack extends AbstractTrack implements IGVEventObserver {
         for (List<Row> rows : groups.values()) {
             for (Row row : rows) {
                 if (y >= row.y && y <= row.y + row.h) {
-                    List<Alignment> features = row.alignments;
+                    List<Alignment> features = row.getAlignments();
 
                     // No buffer for alignments,  you must zoom in far enough for them to be visible
                     int buffer = 0;
@@ -0,0 +1,1003 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.broad.igv.sam;
+
+import htsjdk.samtools.*;
+import htsjdk.samtools.util.BinaryCodec;
+import org.apache.log4j.Logger;
+import org.broad.igv.feature.Strand;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Column oriented storage for the alignments of an interval.  Coordinates, flags, mapping qualities, bases (packed
+ * 2 per byte), base qualities, CIGAR operations, alignment blocks,  and tags of all reads are held in a small number
+ * of primitive arrays rather than in an object graph per read.  Reads are exposed as lightweight
+ * {@link StoredAlignment} views which decode values on demand.
+ * <p/>
+ * Only PicardAlignments are stored,  other alignment types are passed through pack() unchanged.
+ *
+ * @see #pack(List)
+ */
+public class ColumnarAlignmentStore {
+
+    private static Logger log = Logger.getLogger(ColumnarAlignmentStore.class);
+
+    private static final int READ_PAIRED_FLAG = 0x1;
+    private static final int PROPER_PAIR_FLAG = 0x2;
+    private static final int READ_UNMAPPED_FLAG = 0x4;
+    private static final int MATE_UNMAPPED_FLAG = 0x8;
+    private static final int READ_STRAND_FLAG = 0x10;
+    private static final int MATE_STRAND_FLAG = 0x20;
+    private static final int FIRST_OF_PAIR_FLAG = 0x40;
+    private static final int SECOND_OF_PAIR_FLAG = 0x80;
+    private static final int NOT_PRIMARY_ALIGNMENT_FLAG = 0x100;
+    private static final int READ_FAILS_VENDOR_QUALITY_CHECK_FLAG = 0x200;
+    private static final int DUPLICATE_READ_FLAG = 0x400;
+    private static final int SUPPLEMENTARY_ALIGNMENT_FLAG = 0x800;
+
+    // Flags used in addition to the SAM flags
+    private static final int NO_BASES_FLAG = 0x10000;
+    private static final int NO_QUALITIES_FLAG = 0x20000;
+    private static final int RAW_BASES_FLAG = 0x40000;    // Bases outside the 4-bit alphabet, stored 1 per byte
+    private static final int FIRST_OF_PAIR_STRAND_SHIFT = 20;
+    private static final int SECOND_OF_PAIR_STRAND_SHIFT = 22;
+
+    // Block fields
+    private static final int BLOCK_INTS = 4;
+    private static final int BLOCK_START = 0;
+    private static final int BLOCK_READ_OFFSET = 1;
+    private static final int BLOCK_LENGTH = 2;
+    private static final int BLOCK_PADDING = 3;        // Padding for insertions, -1 for soft clipped blocks
+
+    // Gap fields
+    private static final int GAP_INTS = 5;
+
+    /**
+     * The BAM 4-bit base encoding
+     */
+    static final byte[] BASE_DECODER = {'=', 'A', 'C', 'M', 'G', 'R', 'S', 'V', 'T', 'W', 'Y', 'H', 'K', 'D', 'B', 'N'};
+    static final byte[] BASE_ENCODER = new byte[256];
+
+    static final CigarOperator[] CIGAR_OPERATORS = CigarOperator.values();
+
+    static {
+        Arrays.fill(BASE_ENCODER, (byte) -1);
+        for (int i = 0; i < BASE_DECODER.length; i++) {
+            BASE_ENCODER[BASE_DECODER[i]] = (byte) i;
+        }
+    }
+
+    private int size = 0;
+
+    // Per read columns
+    private int[] starts;
+    private int[] ends;
+    private int[] alignmentStarts;
+    private int[] alignmentEnds;
+    private int[] flags;
+    private byte[] mappingQualities;
+    private int[] insertSizes;
+    private int[] chrs;                 // Index into strings
+    private int[] mateChrs;             // Index into strings, -1 if no mate
+    private int[] mateStarts;
+    private int[] readGroups;           // Index into readGroupTable, -1 if none
+    private int[] pairOrientations;     // Index into strings
+    private int[] readLengths;
+
+    // Variable length data.  Offsets are indexed by read and have size + 1 entries
+    private int[] nameOffsets;
+    private byte[] names;
+    private int[] baseOffsets;          // In units of 4-bit nibbles
+    private byte[] bases;
+    private int[] qualityOffsets;
+    private byte[] qualities;
+    private int[] cigarOffsets;
+    private int[] cigars;               // length << 4 | operator ordinal
+    private int[] blockOffsets;         // Alignment blocks,  followed by insertions
+    private int[] insertionOffsets;
+    private int[] blocks;
+    private int[] pixelRanges;          // Pixel start and end for each block,  set by the renderer
+    private int[] gapOffsets;
+    private int[] gaps;
+    private int[] tagOffsets;
+    private byte[] tags;
+
+    private List<String> strings = new ArrayList<>();
+    private Map<String, Integer> stringIndices = new HashMap<>();
+    private List<String[]> readGroupTable = new ArrayList<>();    // id, sample, library
+    private Map<String, Integer> readGroupIndices = new HashMap<>();
+    private Map<Integer, Color> ycColors;
+
+    // Sizes of variable length data
+    private int nNames, nBases, nQualities, nCigars, nBlocks, nGaps, nTags;
+
+    ColumnarAlignmentStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        starts = new int[capacity];
+        ends = new int[capacity];
+        alignmentStarts = new int[capacity];
+        alignmentEnds = new int[capacity];
+        flags = new int[capacity];
+        mappingQualities = new byte[capacity];
+        insertSizes = new int[capacity];
+        chrs = new int[capacity];
+        mateChrs = new int[capacity];
+        mateStarts = new int[capacity];
+        readGroups = new int[capacity];
+        pairOrientations = new int[capacity];
+        readLengths = new int[capacity];
+
+        nameOffsets = new int[capacity + 1];
+        baseOffsets = new int[capacity + 1];
+        qualityOffsets = new int[capacity + 1];
+        cigarOffsets = new int[capacity + 1];
+        blockOffsets = new int[capacity + 1];
+        insertionOffsets = new int[capacity];
+        gapOffsets = new int[capacity + 1];
+        tagOffsets = new int[capacity + 1];
+
+        names = new byte[capacity * 24];
+        bases = new byte[capacity * 64];
+        qualities = new byte[capacity * 128];
+        cigars = new int[capacity * 2];
+        blocks = new int[capacity * BLOCK_INTS * 2];
+        pixelRanges = new int[capacity * 4];
+        gaps = new int[16];
+        tags = new byte[capacity * 32];
+    }
+
+    /**
+     * Store the alignments in {@code alignments} in a new ColumnarAlignmentStore.  Returns a list of the same size and
+     * order,  containing views of the stored alignments and any alignments which could not be stored.
+     */
+    public static List<Alignment> pack(List<Alignment> alignments) {
+
+        if (alignments == null) {
+            return null;
+        }
+
+        ColumnarAlignmentStore store = new ColumnarAlignmentStore(alignments.size());
+        List<Alignment> packed = new ArrayList<>(alignments.size());
+        for (Alignment a : alignments) {
+            Alignment view = (a instanceof PicardAlignment) ? store.add((PicardAlignment) a) : null;
+            packed.add(view == null ? a : view);
+        }
+        store.trimToSize();
+        return packed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public StoredAlignment get(int index) {
+        return new StoredAlignment(this, index);
+    }
+
+    /**
+     * Add an alignment to the store.  Returns a view of the stored alignment, or null if the alignment could not
+     * be represented (in which case the store is unchanged).
+     */
+    StoredAlignment add(PicardAlignment alignment) {
+
+        SAMRecord record = alignment.getRecord();
+        byte[] readBases = record.getReadBases();
+        byte[] readQualities = record.getBaseQualities();
+        List<CigarElement> cigarElements = record.getCigar().getCigarElements();
+
+        int[] blockReadOffsets = getBlockReadOffsets(alignment, cigarElements);
+        int[] insertionReadOffsets = getInsertionReadOffsets(alignment, cigarElements);
+        if (blockReadOffsets == null || insertionReadOffsets == null) {
+            log.debug("Unable to locate alignment blocks for " + alignment.getReadName());
+            return null;
+        }
+
+        final int i = size;
+        if (i == starts.length) {
+            growColumns(2 * size);
+        }
+
+        starts[i] = alignment.getStart();
+        ends[i] = alignment.getEnd();
+        alignmentStarts[i] = alignment.getAlignmentStart();
+        alignmentEnds[i] = alignment.getAlignmentEnd();
+        mappingQualities[i] = (byte) record.getMappingQuality();
+        insertSizes[i] = record.getInferredInsertSize();
+        chrs[i] = getStringIndex(alignment.getChr());
+        pairOrientations[i] = getStringIndex(alignment.getPairOrientation());
+
+        ReadMate mate = alignment.getMate();
+        mateChrs[i] = mate == null ? -1 : getStringIndex(mate.getChr());
+        mateStarts[i] = mate == null ? -1 : mate.getStart();
+
+        String readGroup = alignment.getReadGroup();
+        if (readGroup == null) {
+            readGroups[i] = -1;
+        } else {
+            String[] rg = {readGroup, alignment.getSample(), alignment.getLibrary()};
+            String key = rg[0] + '\t' + rg[1] + '\t' + rg[2];
+            Integer idx = readGroupIndices.get(key);
+            if (idx == null) {
+                idx = readGroupTable.size();
+                readGroupTable.add(rg);
+                readGroupIndices.put(key, idx);
+            }
+            readGroups[i] = idx;
+        }
+
+        Color yc = alignment.getYcColor();
+        if (yc != null) {
+            if (ycColors == null) {
+                ycColors = new HashMap<>();
+            }
+            ycColors.put(i, yc);
+        }
+
+        // Flags
+        int f = record.getFlags();
+        if (readBases == null || readBases.length == 0) {
+            f |= NO_BASES_FLAG;
+        }
+        if (readQualities == null || readQualities.length == 0) {
+            f |= NO_QUALITIES_FLAG;
+        }
+        if ((f & NO_BASES_FLAG) == 0) {
+            for (byte b : readBases) {
+                if (BASE_ENCODER[b & 0xff] < 0) {
+                    f |= RAW_BASES_FLAG;
+                    break;
+                }
+            }
+        }
+        f |= strandCode(alignment.getFirstOfPairStrand()) << FIRST_OF_PAIR_STRAND_SHIFT;
+        f |= strandCode(alignment.getSecondOfPairStrand()) << SECOND_OF_PAIR_STRAND_SHIFT;
+        flags[i] = f;
+
+        // Read name
+        byte[] nameBytes = alignment.getReadName().getBytes();
+        names = ensureCapacity(names, nNames + nameBytes.length);
+        System.arraycopy(nameBytes, 0, names, nNames, nameBytes.length);
+        nNames += nameBytes.length;
+        nameOffsets[i + 1] = nNames;
+
+        // Bases.  Raw bases are aligned on a byte boundary.
+        int readLength = (f & NO_BASES_FLAG) == 0 ? readBases.length : 0;
+        readLengths[i] = readLength;
+        if ((f & RAW_BASES_FLAG) != 0) {
+            int start = (nBases + 1) & ~1;
+            bases = ensureCapacity(bases, start / 2 + readLength);
+            System.arraycopy(readBases, 0, bases, start / 2, readLength);
+            baseOffsets[i] = start;
+            nBases = start + 2 * readLength;
+        } else {
+            bases = ensureCapacity(bases, (nBases + readLength) / 2 + 1);
+            baseOffsets[i] = nBases;
+            for (int k = 0; k < readLength; k++) {
+                setNibble(bases, nBases++, BASE_ENCODER[readBases[k] & 0xff]);
+            }
+        }
+        baseOffsets[i + 1] = nBases;
+
+        // Qualities
+        int nQual = (f & NO_QUALITIES_FLAG) == 0 ? readQualities.length : 0;
+        qualities = ensureCapacity(qualities, nQualities + nQual);
+        if (nQual > 0) {
+            System.arraycopy(readQualities, 0, qualities, nQualities, nQual);
+        }
+        nQualities += nQual;
+        qualityOffsets[i + 1] = nQualities;
+
+        // Cigar
+        cigars = ensureCapacity(cigars, nCigars + cigarElements.size());
+        for (CigarElement e : cigarElements) {
+            cigars[nCigars++] = (e.getLength() << 4) | e.getOperator().ordinal();
+        }
+        cigarOffsets[i + 1] = nCigars;
+
+        // Alignment blocks, then insertions
+        AlignmentBlock[] alignmentBlocks = alignment.getAlignmentBlocks();
+        AlignmentBlock[] insertions = alignment.getInsertions();
+        int nNew = (alignmentBlocks == null ? 0 : alignmentBlocks.length) + (insertions == null ? 0 : insertions.length);
+        blocks = ensureCapacity(blocks, (nBlocks + nNew) * BLOCK_INTS);
+        pixelRanges = ensureCapacity(pixelRanges, (nBlocks + nNew) * 2);
+        blockOffsets[i] = nBlocks;
+        if (alignmentBlocks != null) {
+            for (int b = 0; b < alignmentBlocks.length; b++) {
+                AlignmentBlock block = alignmentBlocks[b];
+                addBlock(block.getStart(), blockReadOffsets[b], block.getLength(), block.isSoftClipped() ? -1 : 0);
+            }
+        }
+        insertionOffsets[i] = nBlocks;
+        if (insertions != null) {
+            for (int b = 0; b < insertions.length; b++) {
+                AlignmentBlock block = insertions[b];
+                int padding = block.getPadding();
+                addBlock(block.getStart(), insertionReadOffsets[b], block.getLength() - padding, padding);
+            }
+        }
+        blockOffsets[i + 1] = nBlocks;
+
+        // Gaps
+        List<Gap> gapList = alignment.getGaps();
+        if (gapList != null) {
+            gaps = ensureCapacity(gaps, (nGaps + gapList.size()) * GAP_INTS);
+            for (Gap gap : gapList) {
+                int idx = nGaps * GAP_INTS;
+                gaps[idx] = gap.getStart();
+                gaps[idx + 1] = gap.getnBases();
+                gaps[idx + 2] = gap.getType();
+                if (gap instanceof SpliceGap) {
+                    gaps[idx + 3] = ((SpliceGap) gap).getFlankingLeft();
+                    gaps[idx + 4] = ((SpliceGap) gap).getFlankingRight();
+                }
+                nGaps++;
+            }
+        }
+        gapOffsets[i + 1] = nGaps;
+
+        // Tags, in BAM binary form
+        List<SAMRecord.SAMTagAndValue> attributes = record.getAttributes();
+        if (attributes != null && !attributes.isEmpty()) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            BinaryTagCodec tagCodec = new BinaryTagCodec(new BinaryCodec(bos));
+            for (SAMRecord.SAMTagAndValue attribute : attributes) {
+                tagCodec.writeTag(SAMTag.makeBinaryTag(attribute.tag), attribute.value,
+                        record.isUnsignedArrayAttribute(attribute.tag));
+            }
+            byte[] tagBytes = bos.toByteArray();
+            tags = ensureCapacity(tags, nTags + tagBytes.length);
+            System.arraycopy(tagBytes, 0, tags, nTags, tagBytes.length);
+            nTags += tagBytes.length;
+        }
+        tagOffsets[i + 1] = nTags;
+
+        size++;
+        return new StoredAlignment(this, i);
+    }
+
+    private void addBlock(int start, int readOffset, int length, int padding) {
+        int idx = nBlocks * BLOCK_INTS;
+        blocks[idx + BLOCK_START] = start;
+        blocks[idx + BLOCK_READ_OFFSET] = readOffset;
+        blocks[idx + BLOCK_LENGTH] = length;
+        blocks[idx + BLOCK_PADDING] = padding;
+        nBlocks++;
+    }
+
+    /**
+     * Return the offsets within the read of the alignment's blocks,  or null if any block cannot be located.
+     */
+    private static int[] getBlockReadOffsets(Alignment alignment, List<CigarElement> cigarElements) {
+
+        AlignmentBlock[] alignmentBlocks = alignment.getAlignmentBlocks();
+        if (alignmentBlocks == null) {
+            return new int[0];
+        }
+
+        int[] offsets = new int[alignmentBlocks.length];
+        if (cigarElements.isEmpty()) {
+            // No cigar ("*"),  a single block covering the read
+            return offsets;
+        }
+
+        for (int b = 0; b < alignmentBlocks.length; b++) {
+            AlignmentBlock block = alignmentBlocks[b];
+            final boolean leadingClip = block.isSoftClipped() && block.getStart() < alignment.getAlignmentStart();
+            offsets[b] = -1;
+            int refPos = alignment.getAlignmentStart();
+            int readPos = 0;
+            for (CigarElement e : cigarElements) {
+                CigarOperator op = e.getOperator();
+                int len = e.getLength();
+                if (block.isSoftClipped()) {
+                    if (op == CigarOperator.S && (leadingClip ? readPos == 0 : refPos == block.getStart())) {
+                        offsets[b] = readPos;
+                        break;
+                    }
+                } else if (op.consumesReadBases() && op.consumesReferenceBases() &&
+                        block.getStart() >= refPos && block.getStart() < refPos + len) {
+                    offsets[b] = readPos + block.getStart() - refPos;
+                    break;
+                }
+                if (op.consumesReadBases()) readPos += len;
+                if (op.consumesReferenceBases()) refPos += len;
+            }
+            if (offsets[b] < 0) {
+                return null;
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Return the offsets within the read of the alignment's insertions,  or null if any insertion cannot be located.
+     */
+    private static int[] getInsertionReadOffsets(Alignment alignment, List<CigarElement> cigarElements) {
+
+        AlignmentBlock[] insertions = alignment.getInsertions();
+        if (insertions == null) {
+            return new int[0];
+        }
+
+        int[] offsets = new int[insertions.length];
+        int b = 0;
+        int refPos = alignment.getAlignmentStart();
+        int readPos = 0;
+        for (CigarElement e : cigarElements) {
+            if (b == insertions.length) break;
+            CigarOperator op = e.getOperator();
+            if (op == CigarOperator.I && refPos == insertions[b].getStart()) {
+                offsets[b++] = readPos;
+            }
+            if (op.consumesReadBases()) readPos += e.getLength();
+            if (op.consumesReferenceBases()) refPos += e.getLength();
+        }
+        return b == insertions.length ? offsets : null;
+    }
+
+    private int getStringIndex(String s) {
+        if (s == null) {
+            return -1;
+        }
+        Integer idx = stringIndices.get(s);
+        if (idx == null) {
+            idx = strings.size();
+            strings.add(s);
+            stringIndices.put(s, idx);
+        }
+        return idx;
+    }
+
+    private String getString(int idx) {
+        return idx < 0 ? null : strings.get(idx);
+    }
+
+    private static int strandCode(Strand strand) {
+        return strand == null ? Strand.NONE.ordinal() : strand.ordinal();
+    }
+
+    private static Strand strandFromCode(int code) {
+        return Strand.values()[code & 0x3];
+    }
+
+    private static void setNibble(byte[] bytes, int nibble, int value) {
+        int idx = nibble >> 1;
+        if ((nibble & 1) == 0) {
+            bytes[idx] = (byte) ((bytes[idx] & 0x0f) | (value << 4));
+        } else {
+            bytes[idx] = (byte) ((bytes[idx] & 0xf0) | value);
+        }
+    }
+
+    private static int getNibble(byte[] bytes, int nibble) {
+        int b = bytes[nibble >> 1];
+        return (nibble & 1) == 0 ? (b >> 4) & 0x0f : b & 0x0f;
+    }
+
+    private static byte[] ensureCapacity(byte[] array, int n) {
+        return n <= array.length ? array : Arrays.copyOf(array, Math.max(n, 2 * array.length));
+    }
+
+    private static int[] ensureCapacity(int[] array, int n) {
+        return n <= array.length ? array : Arrays.copyOf(array, Math.max(n, 2 * array.length));
+    }
+
+    private void growColumns(int capacity) {
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        alignmentStarts = Arrays.copyOf(alignmentStarts, capacity);
+        alignmentEnds = Arrays.copyOf(alignmentEnds, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        mappingQualities = Arrays.copyOf(mappingQualities, capacity);
+        insertSizes = Arrays.copyOf(insertSizes, capacity);
+        chrs = Arrays.copyOf(chrs, capacity);
+        mateChrs = Arrays.copyOf(mateChrs, capacity);
+        mateStarts = Arrays.copyOf(mateStarts, capacity);
+        readGroups = Arrays.copyOf(readGroups, capacity);
+        pairOrientations = Arrays.copyOf(pairOrientations, capacity);
+        readLengths = Arrays.copyOf(readLengths, capacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+        baseOffsets = Arrays.copyOf(baseOffsets, capacity + 1);
+        qualityOffsets = Arrays.copyOf(qualityOffsets, capacity + 1);
+        cigarOffsets = Arrays.copyOf(cigarOffsets, capacity + 1);
+        blockOffsets = Arrays.copyOf(blockOffsets, capacity + 1);
+        insertionOffsets = Arrays.copyOf(insertionOffsets, capacity);
+        gapOffsets = Arrays.copyOf(gapOffsets, capacity + 1);
+        tagOffsets = Arrays.copyOf(tagOffsets, capacity + 1);
+    }
+
+    /**
+     * Release unused capacity.  Called when all alignments have been added.
+     */
+    void trimToSize() {
+        if (starts.length > size) {
+            growColumns(size);
+        }
+        names = Arrays.copyOf(names, nNames);
+        bases = Arrays.copyOf(bases, (nBases + 1) / 2);
+        qualities = Arrays.copyOf(qualities, nQualities);
+        cigars = Arrays.copyOf(cigars, nCigars);
+        blocks = Arrays.copyOf(blocks, nBlocks * BLOCK_INTS);
+        gaps = Arrays.copyOf(gaps, nGaps * GAP_INTS);
+        tags = Arrays.copyOf(tags, nTags);
+        pixelRanges = Arrays.copyOf(pixelRanges, 2 * nBlocks);
+    }
+
+    // Accessors used by the views
+
+    private byte getBase(int i, int readOffset) {
+        if ((flags[i] & NO_BASES_FLAG) != 0) {
+            return '=';
+        } else if (readOffset >= readLengths[i]) {
+            return '?';
+        } else if ((flags[i] & RAW_BASES_FLAG) != 0) {
+            return bases[baseOffsets[i] / 2 + readOffset];
+        } else {
+            return BASE_DECODER[getNibble(bases, baseOffsets[i] + readOffset)];
+        }
+    }
+
+    private byte getQuality(int i, int readOffset) {
+        int idx = qualityOffsets[i] + readOffset;
+        return idx < qualityOffsets[i + 1] && readOffset < readLengths[i] ? qualities[idx] : (byte) 126;
+    }
+
+    private String getReadName(int i) {
+        return new String(names, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i]);
+    }
+
+    private String getReadSequence(int i) {
+        if ((flags[i] & NO_BASES_FLAG) != 0) {
+            return "*";
+        }
+        byte[] seq = new byte[readLengths[i]];
+        for (int k = 0; k < seq.length; k++) {
+            seq[k] = getBase(i, k);
+        }
+        return new String(seq);
+    }
+
+    private String getCigarString(int i) {
+        if (cigarOffsets[i] == cigarOffsets[i + 1]) {
+            return "*";
+        }
+        StringBuilder buf = new StringBuilder();
+        for (int c = cigarOffsets[i]; c < cigarOffsets[i + 1]; c++) {
+            buf.append(cigars[c] >>> 4).append((char) CigarOperator.enumToCharacter(CIGAR_OPERATORS[cigars[c] & 0xf]));
+        }
+        return buf.toString();
+    }
+
+    private SAMBinaryTagAndValue getTags(int i) {
+        int length = tagOffsets[i + 1] - tagOffsets[i];
+        return length == 0 ? null :
+                BinaryTagCodec.readTags(tags, tagOffsets[i], length, ValidationStringency.SILENT);
+    }
+
+    /**
+     * Estimate the memory used by this store in bytes
+     */
+    public long getSizeInBytes() {
+        long bytes = 0;
+        bytes += 4L * (starts.length * 13 + (nameOffsets.length * 7));
+        bytes += mappingQualities.length;
+        bytes += names.length + bases.length + qualities.length + tags.length;
+        bytes += 4L * (cigars.length + blocks.length + pixelRanges.length + gaps.length);
+        return bytes;
+    }
+
+
+    /**
+     * A view of an alignment in the store.  Instances are cheap,  most values are decoded from the store on each
+     * call.
+     */
+    public static class StoredAlignment extends SAMAlignment {
+
+        private final ColumnarAlignmentStore store;
+        private final int index;
+
+        StoredAlignment(ColumnarAlignmentStore store, int index) {
+            this.store = store;
+            this.index = index;
+        }
+
+        private int flags() {
+            return store.flags[index];
+        }
+
+        @Override
+        public String getChr() {
+            return store.getString(store.chrs[index]);
+        }
+
+        @Override
+        public String getContig() {
+            return getChr();
+        }
+
+        @Override
+        public void setChr(String chr) {
+            store.chrs[index] = store.getStringIndex(chr);
+        }
+
+        @Override
+        public int getStart() {
+            return store.starts[index];
+        }
+
+        @Override
+        public void setStart(int start) {
+            store.starts[index] = start;
+        }
+
+        @Override
+        public int getEnd() {
+            return store.ends[index];
+        }
+
+        @Override
+        public void setEnd(int end) {
+            store.ends[index] = end;
+        }
+
+        @Override
+        public int getAlignmentStart() {
+            return store.alignmentStarts[index];
+        }
+
+        @Override
+        public int getAlignmentEnd() {
+            return store.alignmentEnds[index];
+        }
+
+        @Override
+        public String getReadName() {
+            return store.getReadName(index);
+        }
+
+        @Override
+        public int getMappingQuality() {
+            return store.mappingQualities[index] & 0xff;
+        }
+
+        @Override
+        public int getInferredInsertSize() {
+            return store.insertSizes[index];
+        }
+
+        @Override
+        public String getCigarString() {
+            return store.getCigarString(index);
+        }
+
+        @Override
+        public int getReadLength() {
+            return store.readLengths[index];
+        }
+
+        @Override
+        public String getReadSequence() {
+            return store.getReadSequence(index);
+        }
+
+        @Override
+        public ReadMate getMate() {
+            int mateChr = store.mateChrs[index];
+            if (mateChr < 0) {
+                return null;
+            }
+            int f = flags();
+            return new ReadMate(store.getString(mateChr), store.mateStarts[index],
+                    (f & MATE_STRAND_FLAG) != 0, (f & MATE_UNMAPPED_FLAG) != 0);
+        }
+
+        @Override
+        public Color getYcColor() {
+            return store.ycColors == null ? null : store.ycColors.get(index);
+        }
+
+        @Override
+        public String getPairOrientation() {
+            String po = store.getString(store.pairOrientations[index]);
+            return po == null ? "" : po;
+        }
+
+        @Override
+        public Strand getFirstOfPairStrand() {
+            return strandFromCode(flags() >> FIRST_OF_PAIR_STRAND_SHIFT);
+        }
+
+        @Override
+        public Strand getSecondOfPairStrand() {
+            return strandFromCode(flags() >> SECOND_OF_PAIR_STRAND_SHIFT);
+        }
+
+        @Override
+        public AlignmentBlock[] getAlignmentBlocks() {
+            return getBlocks(store.blockOffsets[index], store.insertionOffsets[index]);
+        }
+
+        @Override
+        public AlignmentBlock[] getInsertions() {
+            return getBlocks(store.insertionOffsets[index], store.blockOffsets[index + 1]);
+        }
+
+        private AlignmentBlock[] getBlocks(int from, int to) {
+            AlignmentBlock[] result = new AlignmentBlock[to - from];
+            for (int b = from; b < to; b++) {
+                result[b - from] = new StoredAlignmentBlock(store, index, b);
+            }
+            return result;
+        }
+
+        @Override
+        public AlignmentBlock getInsertionAt(int position) {
+            for (int b = store.insertionOffsets[index]; b < store.blockOffsets[index + 1]; b++) {
+                int start = store.blocks[b * BLOCK_INTS + BLOCK_START];
+                if (start == position) return new StoredAlignmentBlock(store, index, b);
+                if (start > position) return null;  // Blocks increase lineraly
+            }
+            return null;
+        }
+
+        @Override
+        public List<Gap> getGaps() {
+            int from = store.gapOffsets[index];
+            int to = store.gapOffsets[index + 1];
+            if (from == to) {
+                return null;
+            }
+            List<Gap> gapList = new ArrayList<>(to - from);
+            for (int g = from; g < to; g++) {
+                int idx = g * GAP_INTS;
+                char type = (char) store.gaps[idx + 2];
+                if (type == SKIPPED_REGION) {
+                    gapList.add(new SpliceGap(store.gaps[idx], store.gaps[idx + 1], type, store.gaps[idx + 3], store.gaps[idx + 4]));
+                } else {
+                    gapList.add(new Gap(store.gaps[idx], store.gaps[idx + 1], type));
+                }
+            }
+            return gapList;
+        }
+
+        @Override
+        public byte getBase(double position) {
+            int b = findBlock((int) position);
+            return b < 0 ? 0 : store.getBase(index, store.blocks[b * BLOCK_INTS + BLOCK_READ_OFFSET] +
+                    (int) position - store.blocks[b * BLOCK_INTS + BLOCK_START]);
+        }
+
+        @Override
+        public byte getPhred(double position) {
+            int b = findBlock((int) position);
+            return b < 0 ? 0 : store.getQuality(index, store.blocks[b * BLOCK_INTS + BLOCK_READ_OFFSET] +
+                    (int) position - store.blocks[b * BLOCK_INTS + BLOCK_START]);
+        }
+
+        private int findBlock(int position) {
+            for (int b = store.blockOffsets[index]; b < store.insertionOffsets[index]; b++) {
+                int start = store.blocks[b * BLOCK_INTS + BLOCK_START];
+                if (position >= start && position < start + store.blocks[b * BLOCK_INTS + BLOCK_LENGTH]) {
+                    return b;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public Object getAttribute(String key) {
+            // SAM alignment tag keys must be of length 2
+            if (key.length() == 2) {
+                SAMBinaryTagAndValue tags = store.getTags(index);
+                SAMBinaryTagAndValue tag = tags == null ? null : tags.find(SAMTag.makeBinaryTag(key));
+                return tag == null ? null : tag.value;
+            } else {
+                return key.equals("TEMPLATE_ORIENTATION") ? getPairOrientation() : null;
+            }
+        }
+
+        @Override
+        protected String getAttributeString(boolean truncate) {
+            List<SAMRecord.SAMTagAndValue> attributes = new ArrayList<>();
+            for (SAMBinaryTagAndValue tag = store.getTags(index); tag != null; tag = tag.getNext()) {
+                attributes.add(new SAMRecord.SAMTagAndValue(SAMTag.makeStringTag(tag.tag), tag.value));
+            }
+            return PicardAlignment.getAttributeString(attributes, truncate);
+        }
+
+        @Override
+        public String getSample() {
+            int rg = store.readGroups[index];
+            return rg < 0 ? null : store.readGroupTable.get(rg)[1];
+        }
+
+        @Override
+        public String getReadGroup() {
+            int rg = store.readGroups[index];
+            return rg < 0 ? null : store.readGroupTable.get(rg)[0];
+        }
+
+        @Override
+        public String getLibrary() {
+            int rg = store.readGroups[index];
+            return rg < 0 ? null : store.readGroupTable.get(rg)[2];
+        }
+
+        public boolean isFirstOfPair() {
+            return isPaired() && (flags() & FIRST_OF_PAIR_FLAG) != 0;
+        }
+
+        public boolean isSecondOfPair() {
+            return isPaired() && (flags() & SECOND_OF_PAIR_FLAG) != 0;
+        }
+
+        public boolean isDuplicate() {
+            return (flags() & DUPLICATE_READ_FLAG) != 0;
+        }
+
+        public boolean isMapped() {
+            return (flags() & READ_UNMAPPED_FLAG) == 0;
+        }
+
+        public boolean isPaired() {
+            return (flags() & READ_PAIRED_FLAG) != 0;
+        }
+
+        public boolean isProperPair() {
+            return ((flags() & READ_PAIRED_FLAG) != 0) && ((flags() & PROPER_PAIR_FLAG) != 0);
+        }
+
+        public boolean isNegativeStrand() {
+            return (flags() & READ_STRAND_FLAG) != 0;
+        }
+
+        @Override
+        public boolean isSupplementary() {
+            return (flags() & SUPPLEMENTARY_ALIGNMENT_FLAG) != 0;
+        }
+
+        public boolean isVendorFailedRead() {
+            return (flags() & READ_FAILS_VENDOR_QUALITY_CHECK_FLAG) != 0;
+        }
+
+        @Override
+        public boolean isPrimary() {
+            return (flags() & NOT_PRIMARY_ALIGNMENT_FLAG) == 0;
+        }
+
+        @Override
+        public String toString() {
+            return getReadName() + " " + getChr() + ":" + (getAlignmentStart() + 1) + " " + getCigarString();
+        }
+    }
+
+
+    /**
+     * A view of an alignment block or insertion in the store
+     */
+    static class StoredAlignmentBlock implements AlignmentBlock {
+
+        private final ColumnarAlignmentStore store;
+        private final int read;
+        private final int block;
+
+        StoredAlignmentBlock(ColumnarAlignmentStore store, int read, int block) {
+            this.store = store;
+            this.read = read;
+            this.block = block;
+        }
+
+        private int field(int f) {
+            return store.blocks[block * BLOCK_INTS + f];
+        }
+
+        @Override
+        public int getStart() {
+            return field(BLOCK_START);
+        }
+
+        @Override
+        public int getLength() {
+            return field(BLOCK_LENGTH) + getPadding();
+        }
+
+        @Override
+        public int getEnd() {
+            return getStart() + getLength();
+        }
+
+        @Override
+        public int getPadding() {
+            return Math.max(0, field(BLOCK_PADDING));
+        }
+
+        @Override
+        public boolean isSoftClipped() {
+            return field(BLOCK_PADDING) < 0;
+        }
+
+        @Override
+        public boolean contains(int position) {
+            int offset = position - getStart();
+            return offset >= 0 && offset < getLength();
+        }
+
+        @Override
+        public byte getBase(int offset) {
+            return offset < field(BLOCK_LENGTH) ? store.getBase(read, field(BLOCK_READ_OFFSET) + offset) : 0;
+        }
+
+        @Override
+        public byte[] getBases() {
+            byte[] result = new byte[field(BLOCK_LENGTH)];
+            int readOffset = field(BLOCK_READ_OFFSET);
+            for (int k = 0; k < result.length; k++) {
+                result[k] = store.getBase(read, readOffset + k);
+            }
+            return result;
+        }
+
+        @Override
+        public byte getQuality(int offset) {
+            return offset < field(BLOCK_LENGTH) ? store.getQuality(read, field(BLOCK_READ_OFFSET) + offset) : (byte) 126;
+        }
+
+        @Override
+        public byte[] getQualities() {
+            byte[] result = new byte[field(BLOCK_LENGTH)];
+            int readOffset = field(BLOCK_READ_OFFSET);
+            for (int k = 0; k < result.length; k++) {
+                result[k] = store.getQuality(read, readOffset + k);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean hasBases() {
+            return (store.flags[read] & NO_BASES_FLAG) == 0;
+        }
+
+        @Override
+        public void setPixelRange(int s, int e) {
+            store.pixelRanges[2 * block] = s;
+            store.pixelRanges[2 * block + 1] = e;
+        }
+
+        @Override
+        public boolean containsPixel(int x) {
+            return x >= store.pixelRanges[2 * block] && x <= store.pixelRanges[2 * block + 1];
+        }
+
+        @Override
+        public String toString() {
+            return "[block " + (isSoftClipped() ? "softClipped " : " ") + getStart() + "-" + getEnd() + " " +
+                    new String(getBases()) + "]";
+        }
+    }
+}
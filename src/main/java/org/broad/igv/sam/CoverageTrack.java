@@ -172,6 +172,11 @@ public class CoverageTrack extends AbstractTrack implements ScalableTrack {
         dataManager.load(referenceFrame, alignmentTrack.renderOptions, true);
     }
 
+    @Override
+    public void prefetch(ReferenceFrame referenceFrame) {
+        dataManager.prefetch(referenceFrame, alignmentTrack.renderOptions);
+    }
+
 
     public void setSnpThreshold(float snpThreshold) {
         this.snpThreshold = snpThreshold;
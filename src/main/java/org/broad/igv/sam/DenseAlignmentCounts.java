@@ -125,6 +125,60 @@ public class DenseAlignmentCounts extends BaseAlignmentCounts {
         // Noop
     }
 
+    /**
+     * Add the counts from {@code other} to this instance over the range where the two overlap.  Used to combine
+     * counts computed in parallel over sub-ranges of an interval, and to carry counts over when a loaded interval
+     * is extended.
+     *
+     * @param other
+     */
+    void merge(DenseAlignmentCounts other) {
+
+        final int mergeStart = Math.max(start, other.start);
+        final int mergeEnd = Math.min(end, other.end);
+        if (mergeEnd <= mergeStart) {
+            return;
+        }
+
+        final int sourceOffset = mergeStart - other.start;
+        final int offset = mergeStart - start;
+        final int nPts = mergeEnd - mergeStart;
+        add(other.posA, posA, sourceOffset, offset, nPts);
+        add(other.posT, posT, sourceOffset, offset, nPts);
+        add(other.posC, posC, sourceOffset, offset, nPts);
+        add(other.posG, posG, sourceOffset, offset, nPts);
+        add(other.posN, posN, sourceOffset, offset, nPts);
+        add(other.negA, negA, sourceOffset, offset, nPts);
+        add(other.negT, negT, sourceOffset, offset, nPts);
+        add(other.negC, negC, sourceOffset, offset, nPts);
+        add(other.negG, negG, sourceOffset, offset, nPts);
+        add(other.negN, negN, sourceOffset, offset, nPts);
+        add(other.qA, qA, sourceOffset, offset, nPts);
+        add(other.qT, qT, sourceOffset, offset, nPts);
+        add(other.qC, qC, sourceOffset, offset, nPts);
+        add(other.qG, qG, sourceOffset, offset, nPts);
+        add(other.qN, qN, sourceOffset, offset, nPts);
+        add(other.posTotal, posTotal, sourceOffset, offset, nPts);
+        add(other.negTotal, negTotal, sourceOffset, offset, nPts);
+        add(other.del, del, sourceOffset, offset, nPts);
+        add(other.ins, ins, sourceOffset, offset, nPts);
+        add(other.totalQ, totalQ, sourceOffset, offset, nPts);
+
+        for (int i = offset; i < offset + nPts; i++) {
+            int tmp = posTotal[i] + negTotal[i];
+            int maxCountInt = i / MAX_COUNT_INTERVAL;
+            if (tmp > maxCounts[maxCountInt]) {
+                maxCounts[maxCountInt] = tmp;
+            }
+        }
+    }
+
+    private static void add(int[] source, int[] target, int sourceOffset, int offset, int nPts) {
+        for (int i = 0; i < nPts; i++) {
+            target[offset + i] += source[sourceOffset + i];
+        }
+    }
+
     public int getTotalCount(int pos) {
         int offset = pos - start;
         if (offset < 0 || offset >= posA.length) {
@@ -31,6 +31,7 @@ import org.broad.igv.feature.genome.GenomeManager;
 import org.broad.igv.prefs.PreferencesManager;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.broad.igv.prefs.Constants.SAM_HIDE_SMALL_INDEL;
 import static org.broad.igv.prefs.Constants.SAM_SMALL_INDEL_BP_THRESHOLD;
@@ -39,49 +40,36 @@ import static org.broad.igv.prefs.Constants.SAM_SMALL_INDEL_BP_THRESHOLD;
  * Created by jrobinso on 12/22/16.
  * <p>
  * Experimental class to test strategies for drawing insertions
+ * <p>
+ * The insertions of each chromosome are an immutable snapshot of sorted positions.  Loaders build the snapshot of a
+ * tile without locking,  then merge it with the current snapshot of the chromosome,  which only excludes other
+ * loaders of the same chromosome.  Readers never block.
  */
 public class InsertionManager {
 
     private static InsertionManager theInstance = new InsertionManager();
 
-    private Map<String, Map<Integer, InsertionMarker>> insertionMaps;
-    private Map<String, List<Integer>> positionsMap;
-    private Map<String, Integer> selectedInsertions;
+    private final ConcurrentHashMap<String, Insertions> insertionMaps;
+    private final Map<String, Integer> selectedInsertions;
 
-    public static synchronized InsertionManager getInstance() {
+    public static InsertionManager getInstance() {
         return theInstance;
     }
 
     private InsertionManager() {
-        this.insertionMaps = Collections.synchronizedMap(new HashMap<>(100));
-        this.positionsMap = Collections.synchronizedMap(new HashMap<>(100));
-        this.selectedInsertions = Collections.synchronizedMap(new HashMap<>(100));
+        this.insertionMaps = new ConcurrentHashMap<>(100);
+        this.selectedInsertions = new ConcurrentHashMap<>(100);
     }
 
     public void clear() {
         this.insertionMaps.clear();
-        this.positionsMap.clear();
-        this.selectedInsertions.clear();;
+        this.selectedInsertions.clear();
     }
 
-    public synchronized List<InsertionMarker> getInsertions(String chrName, double start, double end) {
-
-
-        Map<Integer, InsertionMarker> insertionMap = insertionMaps.get(chrName);
-        List<Integer> positions = positionsMap.get(chrName);
-        if(insertionMap == null || positions == null) return null;
-
-        List<InsertionMarker> insertionMarkers = new ArrayList<>();
-        for (int i = 0; i < positions.size(); i++) {
-            final Integer key = positions.get(i);
-            if (key > end) break;
-            if (key >= start) {
-                final InsertionMarker insertionMarker = insertionMap.get(key);
-                insertionMarkers.add(insertionMarker);
-            }
-        }
-        return insertionMarkers;
+    public List<InsertionMarker> getInsertions(String chrName, double start, double end) {
 
+        Insertions insertions = insertionMaps.get(chrName);
+        return insertions == null ? null : insertions.getMarkers(start, end);
     }
 
     public void setSelected(String chrName, int position) {
@@ -94,57 +82,180 @@ public class InsertionManager {
 
     public InsertionMarker getSelectedInsertion(String chrName) {
         Integer selectedInsertion = selectedInsertions.get(chrName);
-        Map<Integer, InsertionMarker> insertionMap = insertionMaps.get(chrName);
-        return (selectedInsertion == null  || insertionMap == null) ? null : insertionMap.get(selectedInsertion);
+        Insertions insertions = insertionMaps.get(chrName);
+        return (selectedInsertion == null || insertions == null) ? null : insertions.getMarker(selectedInsertion);
     }
 
-    
-    public synchronized void processAlignments(String chr, List<Alignment> alignments) {
 
+    public void processAlignments(String chr, List<Alignment> alignments) {
+        processInsertions(chr, Insertions.fromAlignments(alignments, getMinInsertionLength()));
+    }
 
+    /**
+     * Add insertions collected while alignments were loaded,  for alignments that are no longer held on the heap.
+     */
+    void processInsertions(String chr, InsertionCollector collector) {
+        processInsertions(chr, collector.toInsertions());
+    }
+
+    private void processInsertions(String chr, Insertions insertions) {
         Genome genome = GenomeManager.getInstance().getCurrentGenome();
         chr = genome == null ? chr : genome.getCanonicalChrName(chr);
+        insertionMaps.merge(chr, insertions, Insertions::merge);
+    }
 
-        Map<Integer, InsertionMarker> insertionMap = insertionMaps.get(chr);
-        if(insertionMap == null) {
-            insertionMap =  Collections.synchronizedMap(new HashMap<>());
-            insertionMaps.put(chr, insertionMap);
-        }
-        List<Integer> positions = positionsMap.get(chr);
-        if(positions == null) {
-            positions = new ArrayList<>();
-            positionsMap.put(chr, positions);
-        }
-
+    static int getMinInsertionLength() {
         int minLength = 0;
         if (PreferencesManager.getPreferences().getAsBoolean(SAM_HIDE_SMALL_INDEL)) {
             minLength = PreferencesManager.getPreferences().getAsInt(SAM_SMALL_INDEL_BP_THRESHOLD);
         }
+        return minLength;
+    }
+
+
+    /**
+     * Insertion markers of a chromosome,  sorted by position.  Snapshots are never modified after publication,
+     * including the sizes of their markers.
+     */
+    static final class Insertions {
+
+        final int[] positions;
+        final InsertionMarker[] markers;
+
+        Insertions(int[] positions, InsertionMarker[] markers) {
+            this.positions = positions;
+            this.markers = markers;
+        }
+
+        /**
+         * Return the markers with start <= position <= end
+         */
+        List<InsertionMarker> getMarkers(double start, double end) {
+            int from = lowerBound((int) Math.ceil(start));
+            int to = from;
+            while (to < positions.length && positions[to] <= end) {
+                to++;
+            }
+            return Arrays.asList(Arrays.copyOfRange(markers, from, to));
+        }
+
+        InsertionMarker getMarker(int position) {
+            int idx = Arrays.binarySearch(positions, position);
+            return idx < 0 ? null : markers[idx];
+        }
+
+        int size() {
+            return positions.length;
+        }
+
+        private int lowerBound(int position) {
+            int idx = Arrays.binarySearch(positions, position);
+            return idx < 0 ? -idx - 1 : idx;
+        }
 
-        for (Alignment a : alignments) {
+        /**
+         * Collect the insertions of a list of alignments.
+         */
+        static Insertions fromAlignments(List<Alignment> alignments, int minLength) {
+            InsertionCollector collector = new InsertionCollector(minLength);
+            for (Alignment a : alignments) {
+                collector.add(a);
+            }
+            return collector.toInsertions();
+        }
+
+        /**
+         * Merge two snapshots.  Markers of the current snapshot are kept unless the other has a larger insertion at
+         * the same position.
+         */
+        static Insertions merge(Insertions current, Insertions other) {
+
+            if (other.size() == 0) {
+                return current;
+            }
+
+            int[] positions = new int[current.size() + other.size()];
+            InsertionMarker[] markers = new InsertionMarker[positions.length];
+            int i = 0, j = 0, n = 0;
+            while (i < current.size() || j < other.size()) {
+                InsertionMarker marker;
+                if (j == other.size() || (i < current.size() && current.positions[i] < other.positions[j])) {
+                    marker = current.markers[i++];
+                } else if (i == current.size() || other.positions[j] < current.positions[i]) {
+                    marker = other.markers[j++];
+                } else {
+                    InsertionMarker a = current.markers[i++];
+                    InsertionMarker b = other.markers[j++];
+                    marker = b.size > a.size ? b : a;
+                }
+                positions[n] = marker.position;
+                markers[n] = marker;
+                n++;
+            }
+            return new Insertions(Arrays.copyOf(positions, n), Arrays.copyOf(markers, n));
+        }
+    }
+
+    /**
+     * Accumulates the insertions of alignments as they are added,  without retaining the alignments.  Each insertion
+     * is packed as position and size in a long,  so sorting orders them by position,  and the last of each position
+     * has the largest size.
+     */
+    static final class InsertionCollector {
+
+        private final int minLength;
+        private long[] packed = new long[64];
+        private int count = 0;
+
+        InsertionCollector() {
+            this(getMinInsertionLength());
+        }
+
+        InsertionCollector(int minLength) {
+            this.minLength = minLength;
+        }
+
+        void add(Alignment a) {
             AlignmentBlock[] blocks = a.getInsertions();
             if (blocks != null) {
                 for (AlignmentBlock block : blocks) {
-
                     if (block.getBases().length < minLength) continue;
-
-                    Integer key = block.getStart();
-                    InsertionMarker insertionMarker = insertionMap.get(key);
-                    if (insertionMarker == null) {
-                        insertionMarker = new InsertionMarker(block.getStart(), block.getLength());
-                        insertionMap.put(key, insertionMarker);
-                        positions.add(block.getStart());
-                    } else {
-                        insertionMarker.size = Math.max(insertionMarker.size, block.getLength());
-                    }
+                    ensureCapacity(count + 1);
+                    packed[count++] = ((long) block.getStart() << 32) | (block.getLength() & 0xFFFFFFFFL);
                 }
             }
         }
 
+        void addAll(InsertionCollector other) {
+            ensureCapacity(count + other.count);
+            System.arraycopy(other.packed, 0, packed, count, other.count);
+            count += other.count;
+        }
 
-        positions.addAll(insertionMap.keySet());
-        positions.sort((o1, o2) -> o1 - o2);
-    }
+        private void ensureCapacity(int capacity) {
+            if (capacity > packed.length) {
+                packed = Arrays.copyOf(packed, Math.max(capacity, 2 * packed.length));
+            }
+        }
 
+        Insertions toInsertions() {
 
+            long[] sorted = Arrays.copyOf(packed, count);
+            Arrays.sort(sorted);
+
+            int[] positions = new int[count];
+            InsertionMarker[] markers = new InsertionMarker[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                int position = (int) (sorted[i] >>> 32);
+                if (i + 1 < count && (int) (sorted[i + 1] >>> 32) == position) {
+                    continue;
+                }
+                positions[n] = position;
+                markers[n] = new InsertionMarker(position, (int) sorted[i]);
+                n++;
+            }
+            return new Insertions(Arrays.copyOf(positions, n), Arrays.copyOf(markers, n));
+        }
+    }
 }
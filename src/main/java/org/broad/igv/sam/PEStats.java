@@ -109,6 +109,21 @@ public class PEStats {
         }
     }
 
+    /**
+     * Merge counts and insert sizes from another instance for the same library,  e.g. from a parallel load of a
+     * sub-range.
+     *
+     * @param other
+     */
+    public void merge(PEStats other) {
+        insertSizes.addAll(other.insertSizes);
+        frCount += other.frCount;
+        rfCount += other.rfCount;
+        f1f2Count += other.f1f2Count;
+        f2f1Count += other.f2f1Count;
+        totalCount += other.totalCount;
+    }
+
     public void computeInsertSize(double minPercentile, double maxPercentile) {
 
         if (insertSizes.size() > 100) {
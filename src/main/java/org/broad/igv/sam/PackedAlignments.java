@@ -45,6 +45,8 @@ public class PackedAlignments extends LinkedHashMap<String, List<Row>> {
      */
     private List<? extends Range> ranges;
 
+    private RowSortIndex sortIndex;
+
     PackedAlignments(List<? extends Range> ranges, Map<String, List<Row>> packedAlignments){
         super(packedAlignments);
         this.ranges = ranges;
@@ -79,4 +81,14 @@ public class PackedAlignments extends LinkedHashMap<String, List<Row>> {
         return false;
     }
 
+    /**
+     * Return the sort key index for these rows,  creating it on first use.
+     */
+    synchronized RowSortIndex getSortIndex() {
+        if (sortIndex == null) {
+            sortIndex = new RowSortIndex(values());
+        }
+        return sortIndex;
+    }
+
 }
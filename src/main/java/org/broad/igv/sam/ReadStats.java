@@ -77,6 +77,19 @@ public class ReadStats {
         }
     }
 
+    /**
+     * Merge the raw statistics from another instance.  Call before {@link #compute()}.
+     *
+     * @param other
+     */
+    public void merge(ReadStats other) {
+        readCount += other.readCount;
+        indelCount += other.indelCount;
+        nCount += other.nCount;
+        readLengths.addAll(other.readLengths);
+        refToReadRatios.addAll(other.refToReadRatios);
+    }
+
     public void compute() {
 
         if (readLengths.size() > 0) {
@@ -44,9 +44,41 @@ public class Row implements Comparable<Row> {
     public double y;
     public double h;
 
+    // Rows of a spilled interval hold the indices of their alignments in the spill file,  the alignments
+    // are paged in as the row is used.  See AlignmentSpillFile.
+    private final AlignmentSpillFile spillFile;
+    private final int[] spillIndices;
+
     public Row() {
         nextIdx = 0;
         this.alignments = new ArrayList(100);
+        this.spillFile = null;
+        this.spillIndices = null;
+    }
+
+    Row(AlignmentSpillFile spillFile, int[] spillIndices) {
+        nextIdx = 0;
+        this.spillFile = spillFile;
+        this.spillIndices = spillIndices;
+    }
+
+    /**
+     * Return the alignments of this row,  paging them in from the spill file if necessary.
+     */
+    public List<Alignment> getAlignments() {
+        return spillFile == null ? alignments : spillFile.pageIn(this);
+    }
+
+    AlignmentSpillFile getSpillFile() {
+        return spillFile;
+    }
+
+    int[] getSpillIndices() {
+        return spillIndices;
+    }
+
+    public int size() {
+        return spillFile == null ? alignments.size() : spillIndices.length;
     }
 
     public void addAlignment(Alignment alignment) {
@@ -67,7 +99,17 @@ public class Row implements Comparable<Row> {
     public double calculateScore(AlignmentTrack.SortOption option, double center, AlignmentInterval interval, String tag) {
 
         int adjustedCenter = (int) center;
-        Alignment centerAlignment = AlignmentInterval.getFeatureContaining(alignments, adjustedCenter);
+        Alignment centerAlignment = AlignmentInterval.getFeatureContaining(getAlignments(), adjustedCenter);
+        return calculateScore(centerAlignment, option, center, interval, tag);
+    }
+
+    /**
+     * Score a row by the alignment it has at the center position,  or null if there is none.
+     */
+    static double calculateScore(Alignment centerAlignment, AlignmentTrack.SortOption option, double center,
+                                 AlignmentInterval interval, String tag) {
+
+        int adjustedCenter = (int) center;
         if (centerAlignment == null) {
             return Integer.MAX_VALUE;
         } else {
@@ -102,42 +144,8 @@ public class Row implements Comparable<Row> {
                 case NUCLEOTIDE:
                     byte base = centerAlignment.getBase(adjustedCenter);
                     byte ref = interval.getReference(adjustedCenter);
-
-                    // Check insertions
-                    int insertionScore = 0;
-                    AlignmentBlock[] insertions = centerAlignment.getInsertions();
-                    for (AlignmentBlock ins : insertions) {
-                        int s = ins.getStart();
-                        if (s == adjustedCenter || (s - 1) == adjustedCenter) {
-                            insertionScore += ins.getLength();
-                        }
-                    }
-
-                    float baseScore;
-                    if (base == 'N' || base == 'n') {
-                        baseScore = 2;  // Base is "n"
-                    } else if (base == ref) {
-                        baseScore = 3;  // Base is reference
-                    } else {
-                        //If base is 0, base not covered (splice junction) or is deletion.
-                        if (base == 0) {
-                            int delCount = interval.getDelCount(adjustedCenter);
-                            if (delCount > 0) {
-                                baseScore = -delCount;
-                            } else {
-                                //Base not covered, NOT a deletion
-                                baseScore = 1;
-                            }
-                        } else {
-                            int count = interval.getCount(adjustedCenter, base);
-                            byte phred = centerAlignment.getPhred(adjustedCenter);
-                            baseScore = -(count + (phred / 1000.0f));   // The second bit will always be < 1
-                        }
-
-
-                    }
-
-                    return baseScore - insertionScore;
+                    return nucleotideScore(base, centerAlignment.getPhred(adjustedCenter),
+                            insertionLength(centerAlignment, adjustedCenter), ref, interval, adjustedCenter);
 
                 case QUALITY:
                     return -centerAlignment.getMappingQuality();
@@ -180,9 +188,52 @@ public class Row implements Comparable<Row> {
 
     }
 
+    /**
+     * Return the total length of insertions in the alignment immediately before or after the position.
+     */
+    static int insertionLength(Alignment alignment, int position) {
+        int insertionScore = 0;
+        AlignmentBlock[] insertions = alignment.getInsertions();
+        for (AlignmentBlock ins : insertions) {
+            int s = ins.getStart();
+            if (s == position || (s - 1) == position) {
+                insertionScore += ins.getLength();
+            }
+        }
+        return insertionScore;
+    }
+
+    static double nucleotideScore(byte base, byte phred, int insertionScore, byte ref, AlignmentInterval interval, int position) {
+
+        float baseScore;
+        if (base == 'N' || base == 'n') {
+            baseScore = 2;  // Base is "n"
+        } else if (base == ref) {
+            baseScore = 3;  // Base is reference
+        } else {
+            //If base is 0, base not covered (splice junction) or is deletion.
+            if (base == 0) {
+                int delCount = interval.getDelCount(position);
+                if (delCount > 0) {
+                    baseScore = -delCount;
+                } else {
+                    //Base not covered, NOT a deletion
+                    baseScore = 1;
+                }
+            } else {
+                int count = interval.getCount(position, base);
+                baseScore = -(count + (phred / 1000.0f));   // The second bit will always be < 1
+            }
+
+
+        }
+
+        return baseScore - insertionScore;
+    }
+
     public Alignment nextAlignment() {
-        if (nextIdx < alignments.size()) {
-            Alignment tmp = alignments.get(nextIdx);
+        if (nextIdx < size()) {
+            Alignment tmp = getAlignments().get(nextIdx);
             nextIdx++;
             return tmp;
         } else {
@@ -191,15 +242,15 @@ public class Row implements Comparable<Row> {
     }
 
     public int getNextStartPos() {
-        if (nextIdx < alignments.size()) {
-            return alignments.get(nextIdx).getStart();
+        if (nextIdx < size()) {
+            return spillFile == null ? alignments.get(nextIdx).getStart() : spillFile.getStart(spillIndices[nextIdx]);
         } else {
             return Integer.MAX_VALUE;
         }
     }
 
     public boolean hasNext() {
-        return nextIdx < alignments.size();
+        return nextIdx < size();
     }
 
     public void resetIdx() {
@@ -0,0 +1,242 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.util.collections.LRUCache;
+
+import java.util.*;
+
+/**
+ * Sort keys for the rows of a packing.  The start of each row's alignments is held in a primitive array,  so the
+ * alignment under a position is found by a binary search over ints rather than through the alignment objects.
+ * Base, quality and insertion columns at recently sorted positions and the values of sort tags are cached,  so
+ * sorting again at the same or a neighbouring position gathers keys in O(rows).
+ *
+ * @see PackedAlignments#getSortIndex()
+ */
+class RowSortIndex {
+
+    private static final int MAX_COLUMNS = 32;
+    private static final Object NOT_LOADED = new Object();
+
+    private final Row[] rows;
+    // Alignments of rows[r] are at rowOffsets[r] ... rowOffsets[r + 1] - 1
+    private final int[] rowOffsets;
+    private final int[] starts;
+    private final Alignment[] alignments;
+
+    // For rows of a spilled interval,  the index and end of each alignment in the spill file
+    private final AlignmentSpillFile spillFile;
+    private final int[] spillIndices;
+    private final int[] ends;
+
+    private final LRUCache<Integer, Column> columns = new LRUCache<>(MAX_COLUMNS);
+    private final Map<String, Object[]> tagValues = new HashMap<>();
+
+    RowSortIndex(Collection<List<Row>> groups) {
+
+        int rowCount = 0;
+        int alignmentCount = 0;
+        AlignmentSpillFile rowSpillFile = null;
+        for (List<Row> group : groups) {
+            rowCount += group.size();
+            for (Row row : group) {
+                alignmentCount += row.size();
+                if (row.getSpillFile() != null) {
+                    rowSpillFile = row.getSpillFile();
+                }
+            }
+        }
+
+        rows = new Row[rowCount];
+        rowOffsets = new int[rowCount + 1];
+        starts = new int[alignmentCount];
+        spillFile = rowSpillFile;
+
+        int r = 0;
+        int i = 0;
+        if (spillFile == null) {
+            alignments = new Alignment[alignmentCount];
+            spillIndices = null;
+            ends = null;
+            for (List<Row> group : groups) {
+                for (Row row : group) {
+                    rows[r] = row;
+                    rowOffsets[r] = i;
+                    for (Alignment alignment : row.alignments) {
+                        starts[i] = alignment.getStart();
+                        alignments[i] = alignment;
+                        i++;
+                    }
+                    r++;
+                }
+            }
+        } else {
+            // Alignments of spilled rows are decoded from the file as needed,  rather than paging in every row
+            alignments = null;
+            spillIndices = new int[alignmentCount];
+            ends = new int[alignmentCount];
+            for (List<Row> group : groups) {
+                for (Row row : group) {
+                    rows[r] = row;
+                    rowOffsets[r] = i;
+                    for (int index : row.getSpillIndices()) {
+                        starts[i] = spillFile.getStart(index);
+                        ends[i] = spillFile.getEnd(index);
+                        spillIndices[i] = index;
+                        i++;
+                    }
+                    r++;
+                }
+            }
+        }
+        rowOffsets[rowCount] = i;
+    }
+
+    /**
+     * Set the score of each row for sorting by the option at the center position.  Scores are the same as
+     * {@link Row#updateScore(AlignmentTrack.SortOption, double, AlignmentInterval, String)} computes.
+     */
+    synchronized void updateScores(AlignmentTrack.SortOption option, double center, AlignmentInterval interval, String tag) {
+
+        int position = (int) center;
+        Column column = getColumn(position);
+        int[] centerAlignments = column.alignmentIndices;
+
+        switch (option) {
+            case NUCLEOTIDE:
+                column.loadBases(position);
+                byte ref = interval.getReference(position);
+                for (int r = 0; r < rows.length; r++) {
+                    rows[r].setScore(centerAlignments[r] < 0 ? Integer.MAX_VALUE :
+                            Row.nucleotideScore(column.bases[r], column.phreds[r], column.insertionLengths[r],
+                                    ref, interval, position));
+                }
+                break;
+            case TAG:
+                Object[] values = tagValues.computeIfAbsent(tag, k -> {
+                    Object[] v = new Object[starts.length];
+                    Arrays.fill(v, NOT_LOADED);
+                    return v;
+                });
+                for (int r = 0; r < rows.length; r++) {
+                    int idx = centerAlignments[r];
+                    if (idx < 0) {
+                        rows[r].setScore(Integer.MAX_VALUE);
+                    } else {
+                        Object tagValue = values[idx];
+                        if (tagValue == NOT_LOADED) {
+                            tagValue = getAlignment(idx).getAttribute(tag);
+                            values[idx] = tagValue;
+                        }
+                        rows[r].setScore(tagValue == null ? 0 : tagValue.hashCode());
+                    }
+                }
+                break;
+            default:
+                for (int r = 0; r < rows.length; r++) {
+                    int idx = centerAlignments[r];
+                    rows[r].setScore(Row.calculateScore(idx < 0 ? null : getAlignment(idx), option, center, interval, tag));
+                }
+        }
+    }
+
+    private Alignment getAlignment(int idx) {
+        return spillFile == null ? alignments[idx] : spillFile.get(spillIndices[idx]);
+    }
+
+    private Column getColumn(int position) {
+        Column column = columns.get(position);
+        if (column == null) {
+            column = new Column(position);
+            columns.put(position, column);
+        }
+        return column;
+    }
+
+    /**
+     * Index of the alignment of row r containing the position,  or -1 if there is none.  Alignments in a row do not
+     * overlap,  so only the last one starting at or before the position can contain it.
+     */
+    private int indexOfAlignmentContaining(int r, int position) {
+        int low = rowOffsets[r];
+        int high = rowOffsets[r + 1] - 1;
+        int idx = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= position) {
+                idx = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (idx < 0) {
+            return -1;
+        } else if (spillFile == null) {
+            return alignments[idx].contains(position) ? idx : -1;
+        } else {
+            return position < ends[idx] ? idx : -1;
+        }
+    }
+
+    /**
+     * The alignment of each row at a position,  and their bases,  qualities and adjacent insertion lengths,
+     * which are only loaded for nucleotide sorts.
+     */
+    private class Column {
+
+        final int[] alignmentIndices;
+        byte[] bases;
+        byte[] phreds;
+        int[] insertionLengths;
+
+        Column(int position) {
+            alignmentIndices = new int[rows.length];
+            for (int r = 0; r < rows.length; r++) {
+                alignmentIndices[r] = indexOfAlignmentContaining(r, position);
+            }
+        }
+
+        void loadBases(int position) {
+            if (bases != null) {
+                return;
+            }
+            bases = new byte[rows.length];
+            phreds = new byte[rows.length];
+            insertionLengths = new int[rows.length];
+            for (int r = 0; r < rows.length; r++) {
+                int idx = alignmentIndices[r];
+                if (idx >= 0) {
+                    Alignment alignment = getAlignment(idx);
+                    bases[r] = alignment.getBase(position);
+                    phreds[r] = alignment.getPhred(position);
+                    insertionLengths[r] = Row.insertionLength(alignment, position);
+                }
+            }
+        }
+    }
+}
@@ -150,7 +150,7 @@ public abstract class SAMAlignment implements Alignment {
         return alignmentBlocks;
     }
 
-    public AlignmentBlockImpl[] getInsertions() {
+    public AlignmentBlock[] getInsertions() {
         return insertions;
     }
 
@@ -162,7 +162,7 @@ public abstract class SAMAlignment implements Alignment {
 
     public byte getBase(double position) {
         int basePosition = (int) position;
-        for (AlignmentBlock block : this.alignmentBlocks) {
+        for (AlignmentBlock block : getAlignmentBlocks()) {
             if (block.contains(basePosition)) {
                 int offset = basePosition - block.getStart();
                 byte base = block.getBase(offset);
@@ -174,7 +174,7 @@ public abstract class SAMAlignment implements Alignment {
 
     public byte getPhred(double position) {
         int basePosition = (int) position;
-        for (AlignmentBlock block : this.alignmentBlocks) {
+        for (AlignmentBlock block : getAlignmentBlocks()) {
             if (block.contains(basePosition)) {
                 int offset = basePosition - block.getStart();
                 byte qual = block.getQuality(offset);
@@ -475,8 +475,9 @@ public abstract class SAMAlignment implements Alignment {
         buf.append("Dist: " + getHapDistance() + "<br>");
 
         // First check insertions.  Position is zero based, block coords 1 based
-        if (this.insertions != null) {
-            for (AlignmentBlock block : this.insertions) {
+        AlignmentBlock[] insertions = getInsertions();
+        if (insertions != null) {
+            for (AlignmentBlock block : insertions) {
 
                 if (block.containsPixel(mouseX)) {
 
@@ -622,7 +623,7 @@ public abstract class SAMAlignment implements Alignment {
 
         // Specific base
 
-        for (AlignmentBlock block : this.alignmentBlocks) {
+        for (AlignmentBlock block : getAlignmentBlocks()) {
             if (block.contains(basePosition)) {
 
                 buf.append("<hr>");
@@ -735,7 +736,7 @@ public abstract class SAMAlignment implements Alignment {
 
     @Override
     public AlignmentBlock getInsertionAt(int position) {
-        for (AlignmentBlock block : insertions) {
+        for (AlignmentBlock block : getInsertions()) {
             if (block.getStart() == position) return block;
             if (block.getStart() > position) return null;  // Blocks increase lineraly
         }
@@ -802,6 +803,7 @@ public abstract class SAMAlignment implements Alignment {
 
          */
 
+        ReadMate mate = getMate();
         if (isPaired() && isMapped() && mate != null && mate.isMapped() && getChr().equals(mate.getChr())) {   // && name === mate.name
 
             char s1 = isNegativeStrand() ? 'R' : 'F';
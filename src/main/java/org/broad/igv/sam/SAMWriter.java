@@ -256,11 +256,11 @@ public class SAMWriter {
         Range range = new Range(sequence, start, end);
         AlignmentInterval interval = dataManager.getLoadedInterval(frame);
         if (interval != null) {
-            List<Alignment> alignments = new ArrayList(interval.getAlignments());
+            List<Alignment> alignments = interval.getAlignments();
 
-            // We need to sort if soft-clipping is on, so just sort always.  Its cheap.
-            alignments.sort((o1, o2) -> o1.getAlignmentStart() - o2.getAlignmentStart());
-            Iterator<PicardAlignment> samIter = new SamAlignmentIterable(alignments.iterator(), sequence, start, end);
+            // We need to sort if soft-clipping is on, so just sort always.  Its cheap.  An index is sorted rather than
+            // a copy of the list,  so alignments spilled to disk are decoded one at a time as they are written.
+            Iterator<PicardAlignment> samIter = new SamAlignmentIterable(sortedIterator(alignments), sequence, start, end);
 
             SAMWriter writer = new SAMWriter(fileHeader);
             return writer.writeToFile(outFile, samIter, true);
@@ -269,6 +269,32 @@ public class SAMWriter {
         }
     }
 
+    /**
+     * Return an iterator over the alignments in order of alignment start.  The sort is stable.
+     */
+    static Iterator<Alignment> sortedIterator(final List<Alignment> alignments) {
+        final int size = alignments.size();
+        final long[] keys = new long[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = ((long) alignments.get(i).getAlignmentStart() << 32) | i;
+        }
+        Arrays.sort(keys);
+        return new Iterator<Alignment>() {
+            int next = 0;
+
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            public Alignment next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return alignments.get((int) keys[next++]);
+            }
+        };
+    }
+
     /**
      * Use Picard to write alignment subset, as read from a file
      *
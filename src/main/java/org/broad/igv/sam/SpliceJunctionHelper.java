@@ -26,8 +26,6 @@
 
 package org.broad.igv.sam;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
 import org.apache.log4j.Logger;
 import org.broad.igv.feature.FeatureUtils;
 import org.broad.igv.feature.SpliceJunctionFeature;
@@ -37,12 +35,19 @@ import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A helper class for computing splice junctions from alignments.
  * Junctions are filtered based on minimum flanking width on loading, so data
  * needs to be
+ * <p/>
+ * Junctions are accumulated per strand in {@link JunctionTable}s,  which keep depths and flanking region
+ * statistics in primitive arrays.  SpliceJunctionFeatures are created on demand and cached until more
+ * junctions are added.
  *
  * @author dhmay, jrobinso
  * @date Jul 3, 2011
@@ -51,12 +56,14 @@ public class SpliceJunctionHelper {
 
     static Logger log = Logger.getLogger(SpliceJunctionHelper.class);
 
-    List<SpliceJunctionFeature> allSpliceJunctionFeatures = new ArrayList<SpliceJunctionFeature>();
-    //  List<SpliceJunctionFeature> filteredSpliceJunctionFeatures = null;
-    List<SpliceJunctionFeature> filteredCombinedFeatures = null;
+    private final JunctionTable posJunctions = new JunctionTable();
+    private final JunctionTable negJunctions = new JunctionTable();
 
-    Table<Integer, Integer, SpliceJunctionFeature> posStartEndJunctionsMap = HashBasedTable.create();
-    Table<Integer, Integer, SpliceJunctionFeature> negStartEndJunctionsMap = HashBasedTable.create();
+    private String chr;
+
+    // Unfiltered junctions for each strand option,  sorted by start.  Cleared when junctions are added.
+    private final Map<SpliceJunctionTrack.StrandOption, List<SpliceJunctionFeature>> junctionCache =
+            new EnumMap<>(SpliceJunctionTrack.StrandOption.class);
 
     private LoadOptions loadOptions;
 
@@ -66,29 +73,37 @@ public class SpliceJunctionHelper {
 
     public List<SpliceJunctionFeature> getFilteredJunctions(SpliceJunctionTrack.StrandOption strandOption) {
 
-        List<SpliceJunctionFeature> junctions;
-
-        switch (strandOption) {
-            case FORWARD:
-                junctions = new ArrayList<>(posStartEndJunctionsMap.values());
-                break;
-            case REVERSE:
-                junctions = new ArrayList<>(negStartEndJunctionsMap.values());
-                break;
-            case BOTH:
-                junctions = new ArrayList<>(posStartEndJunctionsMap.values());
-                junctions.addAll(negStartEndJunctionsMap.values());
-                break;
-            default:
-                junctions = combineStrandJunctionsMaps();
-        }
+        List<SpliceJunctionFeature> junctions = getJunctions(strandOption);
 
+        // The cached list is already sorted,  and filtering preserves order
         List<SpliceJunctionFeature> filteredJunctions = filterJunctionList(this.loadOptions, junctions);
 
-        FeatureUtils.sortFeatureList(filteredJunctions);
+        return filteredJunctions == junctions ? new ArrayList<>(junctions) : filteredJunctions;
 
-        return filteredJunctions;
+    }
 
+    private synchronized List<SpliceJunctionFeature> getJunctions(SpliceJunctionTrack.StrandOption strandOption) {
+
+        List<SpliceJunctionFeature> junctions = junctionCache.get(strandOption);
+        if (junctions == null) {
+            switch (strandOption) {
+                case FORWARD:
+                    junctions = posJunctions.getFeatures(chr, Strand.POSITIVE);
+                    break;
+                case REVERSE:
+                    junctions = negJunctions.getFeatures(chr, Strand.NEGATIVE);
+                    break;
+                case BOTH:
+                    junctions = new ArrayList<>(getJunctions(SpliceJunctionTrack.StrandOption.FORWARD));
+                    junctions.addAll(getJunctions(SpliceJunctionTrack.StrandOption.REVERSE));
+                    break;
+                default:
+                    junctions = combineStrandJunctions();
+            }
+            FeatureUtils.sortFeatureList(junctions);
+            junctionCache.put(strandOption, junctions);
+        }
+        return junctions;
     }
 
     public void addAlignment(Alignment alignment) {
@@ -110,8 +125,7 @@ public class SpliceJunctionHelper {
                 isNegativeStrand = alignment.isNegativeStrand(); // <= TODO -- this isn't correct for all libraries.
             }
         }
-        Table<Integer, Integer, SpliceJunctionFeature> startEndJunctionsTableThisStrand =
-                isNegativeStrand ? negStartEndJunctionsMap : posStartEndJunctionsMap;
+        JunctionTable junctionsThisStrand = isNegativeStrand ? negJunctions : posJunctions;
 
 
         // For each gap marked "skip" (cigar N), create or add evidence to a splice junction
@@ -129,18 +143,13 @@ public class SpliceJunctionHelper {
 
                         int junctionStart = spliceGap.getStart();
                         int junctionEnd = junctionStart + spliceGap.getnBases();
-                        int flankingStart = junctionStart - spliceGap.getFlankingLeft();
-                        int flankingEnd = junctionEnd + spliceGap.getFlankingRight();
 
-                        SpliceJunctionFeature junction = startEndJunctionsTableThisStrand.get(junctionStart, junctionEnd);
-
-                        if (junction == null) {
-                            junction = new SpliceJunctionFeature(alignment.getChr(), junctionStart, junctionEnd,
-                                    isNegativeStrand ? Strand.NEGATIVE : Strand.POSITIVE);
-                            startEndJunctionsTableThisStrand.put(junctionStart, junctionEnd, junction);
-                            allSpliceJunctionFeatures.add(junction);
+                        if (chr == null) {
+                            chr = alignment.getChr();
                         }
-                        junction.addRead(flankingStart, flankingEnd);
+                        junctionsThisStrand.addRead(junctionStart, junctionEnd,
+                                spliceGap.getFlankingLeft(), spliceGap.getFlankingRight());
+                        invalidate();
                     }
 
                 }
@@ -148,6 +157,41 @@ public class SpliceJunctionHelper {
         }
     }
 
+    /**
+     * Merge junctions computed by another helper,  typically over an adjacent sub-range of the same interval.  Depths
+     * are additive so the result does not depend on the order in which helpers are merged.
+     *
+     * @param other
+     */
+    void merge(SpliceJunctionHelper other) {
+        merge(other, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Merge the junctions of another helper whose reads overlap the range start-end.  Used to carry
+     * junctions over when a loaded interval is extended.  {@code other} is not modified.
+     *
+     * @param other
+     * @param start
+     * @param end
+     */
+    void merge(SpliceJunctionHelper other, int start, int end) {
+        if (chr == null) {
+            chr = other.chr;
+        }
+        posJunctions.merge(other.posJunctions, start, end);
+        negJunctions.merge(other.negJunctions, start, end);
+        invalidate();
+    }
+
+    private void invalidate() {
+        if (!junctionCache.isEmpty()) {
+            synchronized (this) {
+                junctionCache.clear();
+            }
+        }
+    }
+
     private static List<SpliceJunctionFeature> filterJunctionList(LoadOptions loadOptions, List<SpliceJunctionFeature> unfiltered) {
 
         if (loadOptions.minJunctionCoverage > 1) {
@@ -168,44 +212,42 @@ public class SpliceJunctionHelper {
      * Combine junctions from both strands.  Used for Sashimi plot.
      * Note: Flanking depth arrays are not combined.
      */
-    private List<SpliceJunctionFeature> combineStrandJunctionsMaps() {
-
-        // Start with all + junctions
-        Table<Integer, Integer, SpliceJunctionFeature> combinedMap = HashBasedTable.create();
-
-        for (SpliceJunctionFeature posFeature : posStartEndJunctionsMap.values()) {
-            final int junctionStart = posFeature.getJunctionStart();
-            final int junctionEnd = posFeature.getJunctionEnd();
-
-            SpliceJunctionFeature combinedFeature = new SpliceJunctionFeature(posFeature.getChr(), junctionStart, junctionEnd);
-            combinedFeature.setJunctionDepth(posFeature.getJunctionDepth());
-            combinedMap.put(junctionStart, junctionEnd, combinedFeature);
-        }
+    private List<SpliceJunctionFeature> combineStrandJunctions() {
 
+        List<SpliceJunctionFeature> combined = new ArrayList<>(posJunctions.size() + negJunctions.size());
 
-        // Merge in - junctions
-        for (SpliceJunctionFeature negFeature: negStartEndJunctionsMap.values()) {
+        // Start with all + junctions,  adding the depth of the matching - junction if any
+        for (int j = 0; j < posJunctions.size(); j++) {
+            final int junctionStart = posJunctions.starts[j];
+            final int junctionEnd = posJunctions.ends[j];
 
-            int junctionStart = negFeature.getJunctionStart();
-            int junctionEnd = negFeature.getJunctionEnd();
+            int depth = posJunctions.depths[j];
+            int n = negJunctions.indexOf(junctionStart, junctionEnd);
+            if (n >= 0) {
+                depth += negJunctions.depths[n];
+            }
 
-            SpliceJunctionFeature junction = combinedMap.get(junctionStart, junctionEnd);
+            SpliceJunctionFeature combinedFeature = new SpliceJunctionFeature(chr, junctionStart, junctionEnd);
+            combinedFeature.setJunctionDepth(depth);
+            combined.add(combinedFeature);
+        }
 
-            if (junction == null) {
-                // No existing (+) junction here, just add the (-) one\
-                SpliceJunctionFeature combinedFeature = new SpliceJunctionFeature(negFeature.getChr(), junctionStart, junctionEnd);
-                combinedFeature.setJunctionDepth(negFeature.getJunctionDepth());
-                combinedMap.put(junctionStart, junctionEnd, negFeature);
-            } else {
-                int newJunctionDepth = junction.getJunctionDepth() + negFeature.getJunctionDepth();
-                junction.setJunctionDepth(newJunctionDepth);
+        // Add - junctions with no + junction at the same location
+        List<SpliceJunctionFeature> negFeatures = getJunctions(SpliceJunctionTrack.StrandOption.REVERSE);
+        for (SpliceJunctionFeature negFeature : negFeatures) {
+            if (posJunctions.indexOf(negFeature.getJunctionStart(), negFeature.getJunctionEnd()) < 0) {
+                combined.add(negFeature);
             }
         }
 
-        return new ArrayList<>(combinedMap.values());
+        return combined;
     }
 
 
+    LoadOptions getLoadOptions() {
+        return loadOptions;
+    }
+
     void setLoadOptions(LoadOptions loadOptions) {
         int oldMinJunctionCoverage = this.loadOptions.minJunctionCoverage;
         //Can't change this, need to reload everything
@@ -214,6 +256,201 @@ public class SpliceJunctionHelper {
 
     }
 
+    /**
+     * Splice junctions for one strand.  Junctions are found through an open-addressing hash table keyed on
+     * start and end;  depths and flanking region statistics are stored in primitive arrays indexed by junction,
+     * in order of first occurrence.  Rather than a depth array per flanking region,  which would cost O(flank)
+     * per read,  the number of reads with each flanking region length is counted,  and depth arrays are computed
+     * from these counts when features are created.
+     */
+    static final class JunctionTable {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        // Hash slots.  Each holds the index of a junction + 1,  or 0 if empty.
+        private int[] slots = new int[INITIAL_CAPACITY];
+        private int size;
+
+        int[] starts = new int[INITIAL_CAPACITY / 2];
+        int[] ends = new int[INITIAL_CAPACITY / 2];
+        int[] depths = new int[INITIAL_CAPACITY / 2];
+
+        // Counts of reads by flanking region length,  element n - 1 is the number of reads with a flank of n bases.
+        // Null for junctions with no flanking region on that side.
+        int[][] startFlankCounts = new int[INITIAL_CAPACITY / 2][];
+        int[][] endFlankCounts = new int[INITIAL_CAPACITY / 2][];
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Return the index of the junction start-end,  or -1 if there is none.
+         */
+        int indexOf(int start, int end) {
+            final int mask = slots.length - 1;
+            for (int slot = hash(start, end) & mask; ; slot = (slot + 1) & mask) {
+                int j = slots[slot] - 1;
+                if (j < 0) {
+                    return -1;
+                }
+                if (starts[j] == start && ends[j] == end) {
+                    return j;
+                }
+            }
+        }
+
+        void addRead(int start, int end, int startFlank, int endFlank) {
+            int j = getOrAdd(start, end);
+            depths[j]++;
+            if (startFlank > 0) {
+                startFlankCounts[j] = increment(startFlankCounts[j], startFlank, 1);
+            }
+            if (endFlank > 0) {
+                endFlankCounts[j] = increment(endFlankCounts[j], endFlank, 1);
+            }
+        }
+
+        /**
+         * Add the junctions of another table whose reads overlap the range start-end.
+         */
+        void merge(JunctionTable other, int start, int end) {
+            for (int i = 0; i < other.size; i++) {
+                int[] otherStartCounts = other.startFlankCounts[i];
+                int[] otherEndCounts = other.endFlankCounts[i];
+                int flankingStart = other.starts[i] - (otherStartCounts == null ? 0 : otherStartCounts.length);
+                int flankingEnd = other.ends[i] + (otherEndCounts == null ? 0 : otherEndCounts.length);
+                if (flankingEnd <= start || flankingStart >= end) {
+                    continue;
+                }
+
+                int j = getOrAdd(other.starts[i], other.ends[i]);
+                depths[j] += other.depths[i];
+                if (otherStartCounts != null) {
+                    for (int n = 0; n < otherStartCounts.length; n++) {
+                        if (otherStartCounts[n] > 0) {
+                            startFlankCounts[j] = increment(startFlankCounts[j], n + 1, otherStartCounts[n]);
+                        }
+                    }
+                }
+                if (otherEndCounts != null) {
+                    for (int n = 0; n < otherEndCounts.length; n++) {
+                        if (otherEndCounts[n] > 0) {
+                            endFlankCounts[j] = increment(endFlankCounts[j], n + 1, otherEndCounts[n]);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<SpliceJunctionFeature> getFeatures(String chr, Strand strand) {
+            List<SpliceJunctionFeature> features = new ArrayList<>(size);
+            for (int j = 0; j < size; j++) {
+                SpliceJunctionFeature feature = new SpliceJunctionFeature(chr, starts[j], ends[j], strand);
+                feature.setDepth(depths[j], startFlankDepths(startFlankCounts[j]), endFlankDepths(endFlankCounts[j]));
+                features.add(feature);
+            }
+            return features;
+        }
+
+        /**
+         * Depths over a start flanking region,  which ends at the junction start.  A read with a flank of n bases
+         * covers the last n positions.
+         */
+        private static int[] startFlankDepths(int[] counts) {
+            if (counts == null) {
+                return null;
+            }
+            final int length = counts.length;
+            int[] depths = new int[length];
+            int depth = 0;
+            for (int i = 0; i < length; i++) {
+                depth += counts[length - 1 - i];
+                depths[i] = depth;
+            }
+            return depths;
+        }
+
+        /**
+         * Depths over an end flanking region,  which begins at the junction end.  A read with a flank of n bases
+         * covers the first n positions.
+         */
+        private static int[] endFlankDepths(int[] counts) {
+            if (counts == null) {
+                return null;
+            }
+            int[] depths = new int[counts.length];
+            int depth = 0;
+            for (int i = counts.length - 1; i >= 0; i--) {
+                depth += counts[i];
+                depths[i] = depth;
+            }
+            return depths;
+        }
+
+        private static int[] increment(int[] counts, int flank, int n) {
+            if (counts == null) {
+                counts = new int[flank];
+            } else if (counts.length < flank) {
+                counts = Arrays.copyOf(counts, flank);
+            }
+            counts[flank - 1] += n;
+            return counts;
+        }
+
+        private int getOrAdd(int start, int end) {
+            int mask = slots.length - 1;
+            int slot = hash(start, end) & mask;
+            for (; ; slot = (slot + 1) & mask) {
+                int j = slots[slot] - 1;
+                if (j < 0) {
+                    break;
+                }
+                if (starts[j] == start && ends[j] == end) {
+                    return j;
+                }
+            }
+
+            int j = size++;
+            if (j == starts.length) {
+                int capacity = 2 * starts.length;
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                depths = Arrays.copyOf(depths, capacity);
+                startFlankCounts = Arrays.copyOf(startFlankCounts, capacity);
+                endFlankCounts = Arrays.copyOf(endFlankCounts, capacity);
+            }
+            starts[j] = start;
+            ends[j] = end;
+            slots[slot] = j + 1;
+
+            // Keep the load factor at or below 1/2
+            if (2 * size > slots.length) {
+                rehash(2 * slots.length);
+            }
+            return j;
+        }
+
+        private void rehash(int capacity) {
+            int[] newSlots = new int[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < size; j++) {
+                int slot = hash(starts[j], ends[j]) & mask;
+                while (newSlots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newSlots[slot] = j + 1;
+            }
+            slots = newSlots;
+        }
+
+        private static int hash(int start, int end) {
+            long key = ((long) start << 32) | (end & 0xffffffffL);
+            key *= 0x9E3779B97F4A7C15L;
+            return (int) (key ^ (key >>> 32));
+        }
+    }
+
     public static class LoadOptions {
 
         private static IGVPreferences prefs = PreferencesManager.getPreferences();
@@ -265,6 +265,11 @@ public class SpliceJunctionTrack extends FeatureTrack {
 
     }
 
+    @Override
+    public void prefetch(ReferenceFrame frame) {
+        dataManager.prefetch(frame, alignmentTrack.renderOptions);
+    }
+
     @Override
     public boolean isReadyToPaint(ReferenceFrame frame) {
         if (frame.getChrName().equals(Globals.CHR_ALL) ||  frame.getScale() > dataManager.getMinVisibleScale()) {
@@ -370,4 +375,11 @@ public class SpliceJunctionTrack extends FeatureTrack {
 
     }
 
+    /**
+     * Junctions are drawn from the alignment data manager,  which is not tracked by a render key.
+     */
+    @Override
+    public Object getRenderKey(ReferenceFrame frame) {
+        return null;
+    }
 }
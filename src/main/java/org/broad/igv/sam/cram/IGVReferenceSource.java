@@ -39,7 +39,7 @@ import org.broad.igv.ui.IGV;
 import org.broad.igv.event.GenomeChangeEvent;
 import org.broad.igv.event.IGVEventBus;
 import org.broad.igv.event.IGVEventObserver;
-import org.broad.igv.util.ObjectCache;
+import org.broad.igv.util.collections.WeightedCache;
 
 import java.io.IOException;
 
@@ -55,7 +55,8 @@ public class IGVReferenceSource implements CRAMReferenceSource {
 
     private static Logger log = Logger.getLogger(IGVReferenceSource.class);
 
-    static ObjectCache<String, byte[]> cachedSequences = new ObjectCache<String, byte[]>(2);
+    static WeightedCache<String, byte[]> cachedSequences =
+            new WeightedCache<>("CRAM reference", 512000000, bases -> bases.length);
 
     static GenomeChangeListener genomeChangeListener;
 
@@ -2,6 +2,7 @@ package org.broad.igv.sam.lite;
 
 import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.util.StringUtil;
+import org.apache.log4j.Logger;
 import org.broad.igv.prefs.Constants;
 import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
@@ -14,9 +15,15 @@ import java.util.*;
 
 /**
  * Created by jrobinso on 3/13/17.
+ * <p>
+ * A flyweight view of a BAM record within a decompressed buffer shared by all records decoded from the same chunk.
+ * Only the fixed length fields needed for filtering and layout are read when the record is decoded.  Read name,
+ * bases, qualities, cigar, blocks, mate and tags are materialized on first use.
  */
 public class BAMAlignment extends SAMAlignment {
 
+    private static Logger log = Logger.getLogger(BAMAlignment.class);
+
     static int READ_PAIRED_FLAG = 0x1;
     static int PROPER_PAIR_FLAG = 0x2;
     static int READ_UNMAPPED_FLAG = 0x4;
@@ -30,23 +37,97 @@ public class BAMAlignment extends SAMAlignment {
     static int DUPLICATE_READ_FLAG = 0x400;
     static int SUPPLEMENTARY_ALIGNMENT_FLAG = 0x800;
 
-    public int flags;
-    public int fragmentLength;
-    public int lengthOnRef;
-    public int start;
-    public byte[] sequence;
-    public byte[] qualities;
-    public int mq;
-    public String readName;
-    public byte[] tagBytes;
-    public byte[] cigarBytes;
-    public String chr;
-    public ReadMate mate;
+    static final byte[] SECRET_DECODER = {'=', 'A', 'C', 'M', 'G', 'R', 'S', 'V', 'T', 'W', 'Y', 'H', 'K', 'D', 'B', 'N'};
+    static final char[] CIGAR_DECODER = {'M', 'I', 'D', 'N', 'S', 'H', 'P', '=', 'X', '?', '?', '?', '?', '?', '?', '?'};
+
+    // Offsets of fixed length fields from the start of the record,  including the block_size field
+    static final int REF_ID_OFFSET = 4;
+    static final int POS_OFFSET = 8;
+    static final int BIN_MQ_NL_OFFSET = 12;
+    static final int FLAG_NC_OFFSET = 16;
+    static final int LSEQ_OFFSET = 20;
+    static final int NEXT_REF_ID_OFFSET = 24;
+    static final int NEXT_POS_OFFSET = 28;
+    static final int TLEN_OFFSET = 32;
+    static final int READ_NAME_OFFSET = 36;
+
+    private final byte[] buffer;
+    private final int offset;
+    private final String[] indexToChr;
+
+    private final int flags;
+    private final int mq;
+    private final int lengthOnRef;
+
+    private String readName;
+    private byte[] sequence;
+    private boolean mateDecoded;
+    private ReadMate mate;
+    private boolean pairOrientationSet;
     private Map<String, Object> tagDictionary;
 
+    /**
+     * @param buffer     decompressed data,  shared and never modified
+     * @param offset     offset of the record in buffer
+     * @param indexToChr chromosome names by reference index
+     * @param lengthOnRef length of the alignment on the reference,  computed from the cigar while decoding
+     */
+    BAMAlignment(byte[] buffer, int offset, String[] indexToChr, int lengthOnRef) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.indexToChr = indexToChr;
+        this.lengthOnRef = lengthOnRef;
+        this.flags = getFlags(buffer, offset);
+        this.mq = getMappingQuality(buffer, offset);
+
+        int pos = BAMReader.readInt(buffer, offset + POS_OFFSET);
+        setChr(indexToChr[BAMReader.readInt(buffer, offset + REF_ID_OFFSET)]);
+        setStart(pos);
+        setEnd(pos + lengthOnRef);
+    }
+
+    static int getFlags(byte[] buffer, int offset) {
+        return BAMReader.readInt(buffer, offset + FLAG_NC_OFFSET) >>> 16;
+    }
+
+    static int getMappingQuality(byte[] buffer, int offset) {
+        return (BAMReader.readInt(buffer, offset + BIN_MQ_NL_OFFSET) >> 8) & 0xff;
+    }
+
+    private int getNameLength() {
+        return buffer[offset + BIN_MQ_NL_OFFSET] & 0xff;
+    }
+
+    private int getCigarCount() {
+        return BAMReader.readInt(buffer, offset + FLAG_NC_OFFSET) & 0xffff;
+    }
+
+    private int getCigarOffset() {
+        return offset + READ_NAME_OFFSET + getNameLength();
+    }
+
+    private int getSequenceOffset() {
+        return getCigarOffset() + 4 * getCigarCount();
+    }
+
+    private int getQualityOffset() {
+        return getSequenceOffset() + ((getReadLength() + 1) >> 1);
+    }
+
+    private int getTagOffset() {
+        return getQualityOffset() + getReadLength();
+    }
+
+    private int getRecordEnd() {
+        return offset + 4 + BAMReader.readInt(buffer, offset);
+    }
 
     @Override
     public String getReadName() {
+        if (readName == null) {
+            // Name is null terminated
+            readName = new String(buffer, offset + READ_NAME_OFFSET, Math.max(0, getNameLength() - 1));
+        }
         return readName;
     }
 
@@ -57,22 +138,170 @@ public class BAMAlignment extends SAMAlignment {
 
     @Override
     public int getInferredInsertSize() {
-        return 0;
+        return BAMReader.readInt(buffer, offset + TLEN_OFFSET);
     }
 
     @Override
     public String getCigarString() {
-        return new String(cigarBytes);
+        int nc = getCigarCount();
+        if (nc == 0) {
+            return "*";
+        }
+        StringBuilder cigar = new StringBuilder();
+        int p = getCigarOffset();
+        for (int c = 0; c < nc; c++) {
+            int cigop = BAMReader.readInt(buffer, p + 4 * c);
+            cigar.append(cigop >>> 4).append(CIGAR_DECODER[cigop & 0xf]);
+        }
+        return cigar.toString();
     }
 
     @Override
     public int getReadLength() {
-        return sequence.length;
+        return BAMReader.readInt(buffer, offset + LSEQ_OFFSET);
     }
 
     @Override
     public String getReadSequence() {
-        return new String(sequence);
+        return getReadLength() == 0 ? "*" : new String(getSequence());
+    }
+
+    /**
+     * Decode read bases,  4 bits per base
+     */
+    private byte[] getSequence() {
+        if (sequence == null) {
+            int lseq = getReadLength();
+            int p = getSequenceOffset();
+            byte[] seq = new byte[lseq];
+            for (int j = 0; j < lseq; j++) {
+                int sb = buffer[p + (j >> 1)];
+                seq[j] = SECRET_DECODER[(j & 1) == 0 ? (sb >> 4) & 0xf : sb & 0xf];
+            }
+            sequence = seq;
+        }
+        return sequence;
+    }
+
+    /**
+     * Return base qualities,  or null if they are not recorded
+     */
+    private byte[] getQualities() {
+        int lseq = getReadLength();
+        int p = getQualityOffset();
+        if (lseq == 0 || (buffer[p] & 0xff) == 0xff) {
+            return null;
+        }
+        return Arrays.copyOfRange(buffer, p, p + lseq);
+    }
+
+    @Override
+    public AlignmentBlock[] getAlignmentBlocks() {
+        if (alignmentBlocks == null) {
+            makeBlocks();
+        }
+        return alignmentBlocks;
+    }
+
+    @Override
+    public AlignmentBlockImpl[] getInsertions() {
+        if (alignmentBlocks == null) {
+            makeBlocks();
+        }
+        return insertions;
+    }
+
+    /**
+     * Split the alignment record into blocks as specified in the cigar.  Each aligned block contains
+     * its portion of the read sequence and base quality strings.
+     */
+    private synchronized void makeBlocks() {
+
+        if (alignmentBlocks != null) {
+            return;
+        }
+
+        byte[] seq = getReadLength() == 0 ? null : getSequence();
+        byte[] quals = getQualities();
+
+        List<AlignmentBlockImpl> blocks = new ArrayList<>();
+        List<AlignmentBlockImpl> insertions = new ArrayList<>();
+        int seqOffset = 0;
+        int pos = getStart();
+        int nc = getCigarCount();
+        int p = getCigarOffset();
+
+        for (int c = 0; c < nc; c++) {
+
+            int cigop = BAMReader.readInt(buffer, p + 4 * c);
+            int opLen = cigop >>> 4;
+            char op = CIGAR_DECODER[cigop & 0xf];
+
+            switch (op) {
+                case 'H':
+                    break; // ignore hard clips
+                case 'P':
+                    break; // ignore pads
+                case 'S':
+                    seqOffset += opLen;
+                    break; // soft clip read bases
+                case 'N':
+                case 'D':
+                    pos += opLen;
+                    break;  // reference skip or deletion
+                case 'I':
+                    insertions.add(new AlignmentBlockImpl(pos, copyRange(seq, seqOffset, opLen), copyRange(quals, seqOffset, opLen)));
+                    seqOffset += opLen;
+                    break;
+                case 'M':
+                case '=':
+                case 'X':
+                    byte[] blockSeq = copyRange(seq, seqOffset, opLen);
+                    blocks.add(new AlignmentBlockImpl(pos, blockSeq == null ? new byte[opLen] : blockSeq, copyRange(quals, seqOffset, opLen)));
+                    seqOffset += opLen;
+                    pos += opLen;
+                    break;
+
+                default:
+                    log.error("Error processing cigar element: " + opLen + op);
+            }
+        }
+
+        this.insertions = insertions.toArray(new AlignmentBlockImpl[insertions.size()]);
+        this.alignmentBlocks = blocks.toArray(new AlignmentBlockImpl[blocks.size()]);
+    }
+
+    private static byte[] copyRange(byte[] bytes, int start, int length) {
+        if (bytes == null) {
+            return null;
+        }
+        int end = Math.min(bytes.length, start + length);
+        return Arrays.copyOfRange(bytes, Math.min(start, end), end);
+    }
+
+    @Override
+    public ReadMate getMate() {
+        if (!mateDecoded) {
+            if (isPaired()) {
+                int mateRefID = BAMReader.readInt(buffer, offset + NEXT_REF_ID_OFFSET);
+                int matePos = BAMReader.readInt(buffer, offset + NEXT_POS_OFFSET);
+                boolean mateIsMapped = (flags & MATE_UNMAPPED_FLAG) == 0;
+                String mateChr = mateRefID >= 0 ? indexToChr[mateRefID] : "";
+                boolean mateIsNegativeStrand = (flags & MATE_STRAND_FLAG) != 0;
+                mate = new ReadMate(mateChr, matePos, mateIsNegativeStrand, mateIsMapped);
+            }
+            mateDecoded = true;
+        }
+        return mate;
+    }
+
+    @Override
+    public String getPairOrientation() {
+        if (!pairOrientationSet) {
+            setPairOrientation();
+            pairOrientationSet = true;
+        }
+        return super.getPairOrientation();
     }
 
     @Override
@@ -127,17 +356,18 @@ public class BAMAlignment extends SAMAlignment {
 
     @Override
     public int getAlignmentStart() {
-        return start;
+        return getStart();
     }
 
     @Override
     public int getAlignmentEnd() {
-        return start + lengthOnRef;
+        return getStart() + lengthOnRef;
     }
 
     @Override
     public Object getAttribute(String key) {
-        return null;
+        Map<String, Object> tags = getTagDictionary();
+        return tags == null ? null : tags.get(key);
     }
 
 
@@ -241,10 +471,12 @@ public class BAMAlignment extends SAMAlignment {
 
     private Map<String, Object> getTagDictionary() {
         if (this.tagDictionary == null) {
-            if (this.tagBytes == null) {
+            int tagOffset = getTagOffset();
+            int recordEnd = getRecordEnd();
+            if (tagOffset >= recordEnd) {
                 return null;
             } else {
-                this.tagDictionary = decodeTags(this.tagBytes);
+                this.tagDictionary = decodeTags(buffer, tagOffset, recordEnd);
 
             }
         }
@@ -260,10 +492,10 @@ public class BAMAlignment extends SAMAlignment {
      H [0-9A-F]+ Byte array in the Hex format6
      B [cCsSiIf](,[-+]?[0-9]*\.?[0-9]+([eE][-+]?[0-9]+)?)+ Integer or numeric array
      */
-    private Map<String, Object> decodeTags(byte[] ba) {
+    private static Map<String, Object> decodeTags(byte[] ba, int start, int end) {
 
         Map<String, Object> tags = new LinkedHashMap<>();
-        ByteBuffer byteBuffer = ByteBuffer.wrap(ba);
+        ByteBuffer byteBuffer = ByteBuffer.wrap(ba, start, end - start);
         byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
 
         while (byteBuffer.hasRemaining()) {
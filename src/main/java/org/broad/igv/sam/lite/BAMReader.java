@@ -32,8 +32,6 @@ public class BAMReader implements AlignmentReader<Alignment> {
     private final String indexPath;
     int BAM_MAGIC = 21840194;
     int BAI_MAGIC = 21578050;
-    char[] SECRET_DECODER = {'=', 'A', 'C', 'x', 'G', 'x', 'x', 'x', 'T', 'x', 'x', 'x', 'x', 'x', 'x', 'N'};
-    char[] CIGAR_DECODER = {'M', 'I', 'D', 'N', 'S', 'H', 'P', '=', 'X', '?', '?', '?', '?', '?', '?', '?'};
 
     int PAIRED_FLAG = 0x1;
     int READ_STRAND_FLAG = 0x10;
@@ -54,6 +52,9 @@ public class BAMReader implements AlignmentReader<Alignment> {
 
     BAMIndex bamIndex = null;
 
+    private int excludeFlags = 0;
+    private int minMappingQuality = 0;
+
     Genome genome;
     Map<String, Integer> chrToIndex;
     private String[] indexToChr;
@@ -287,12 +288,15 @@ public class BAMReader implements AlignmentReader<Alignment> {
         }
     }
 
-    void decodeBamRecords(byte[] ba, int offset, List<Alignment> alignmentContainer, int min, int max, int chrId) {  //, filter){
-
+    /**
+     * Decode records overlapping min-max from the decompressed buffer.  Records are views over the buffer, only the
+     * fixed length fields and cigar are read here,  and filtered records are skipped without allocation.
+     */
+    void decodeBamRecords(byte[] ba, int offset, List<Alignment> alignmentContainer, int min, int max, int chrId) {
 
         while (true) {
 
-            if (offset >= ba.length) {
+            if (offset + 4 > ba.length) {
                 return;
             }
 
@@ -311,110 +315,49 @@ public class BAMReader implements AlignmentReader<Alignment> {
             } else if (refID > chrId || pos > max) {
                 return;    // off right edge, we're done
             } else if (refID < chrId) {
+                offset = blockEnd;
                 continue;   // to left of start, not sure this is possible
             }
 
-            int bmn = readInt(ba, offset + 12);
-            int bin = (bmn & 0xffff0000) >> 16;
-            int mq = (bmn & 0xff00) >> 8;
-            int nl = bmn & 0xff;
-
-            int flag_nc = readInt(ba, offset + 16);
-            int flag = (flag_nc & 0xffff0000) >> 16;
-            int nc = flag_nc & 0xffff;
-
-
-            int lseq = readInt(ba, offset + 20);
-
-            int mateRefID = readInt(ba, offset + 24);
-            int matePos = readInt(ba, offset + 28);
-
-
-            byte[] readNameBytes = Arrays.copyOfRange(ba, offset + 36, offset + 36 + nl);
-            String readName = new String(readNameBytes);
+            int flag = BAMAlignment.getFlags(ba, offset);
+            if ((flag & excludeFlags) != 0 || BAMAlignment.getMappingQuality(ba, offset) < minMappingQuality) {
+                offset = blockEnd;
+                continue;
+            }
 
+            int nl = ba[offset + 12] & 0xff;
+            int nc = readInt(ba, offset + 16) & 0xffff;
             int p = offset + 36 + nl;
-            byte[] cigarBytes = Arrays.copyOfRange(ba, p, p + 4 * nc);
-            p += 4 * nc;
-
-            CigarOperator[] cigarArray = new CigarOperator[nc];
             int lengthOnRef = 0;
             for (int c = 0; c < nc; ++c) {
-                int cigop = readInt(cigarBytes, c);
-                int opLen = (cigop >> 4);
-                char opLtr = CIGAR_DECODER[cigop & 0xf];
-                if (opLtr == 'M' || opLtr == 'X' || opLtr == 'D' || opLtr == 'N' || opLtr == '=')
-                    lengthOnRef += opLen;
-                cigarArray[c] = new CigarOperator(opLen, opLtr);
-            }
-
-
-            if (pos + lengthOnRef < min) {
-                offset = blockEnd;
-                continue;  // Record out-of-range "to the left", skip to next one
-            }
-
-            int seqSize = (lseq + 1) >> 1;
-            byte[] seqBytes = Arrays.copyOfRange(ba, p, p + seqSize);
-            byte[] sequence = new byte[lseq];
-
-            for (int j = 0; j < seqSize; ++j) {
-                byte sb = seqBytes[j];
-                sequence[2 * j] = (byte) (SECRET_DECODER[(sb & 0xf0) >> 4]);
-                if ((2 * j + 1) < lseq) sequence[2 * j + 1] += SECRET_DECODER[(sb & 0x0f)];
-            }
-
-
-            p += seqSize;
-
-
-            byte[] qualities;
-            if (lseq == 1 && sequence[0] == '*') {
-                qualities = new byte[]{Byte.MAX_VALUE}; // TODO == how to represent this?
-            } else {
-                qualities = Arrays.copyOfRange(ba, p, p + lseq);
+                int cigop = readInt(ba, p + 4 * c);
+                switch (cigop & 0xf) {
+                    case 0:   // M
+                    case 2:   // D
+                    case 3:   // N
+                    case 7:   // =
+                    case 8:   // X
+                        lengthOnRef += cigop >>> 4;
+                }
             }
-            p += lseq;
 
-
-            ReadMate mate = null;
-            boolean isPaired = (flag & PAIRED_FLAG) != 0;
-            if (isPaired) {
-                boolean mateIsMapped = (flag & MATE_IS_MAPPED_FLAG) != 0;
-                String mateChr = mateRefID > 0 ? this.indexToChr[mateRefID] : "";
-                boolean mateIsNegativeStrand = ((flag & MATE_STRAND_FLAG) != 0);
-                mate = new ReadMate(mateChr, matePos, mateIsNegativeStrand, mateIsMapped);
-            }
-
-
-            byte[] tagBytes = Arrays.copyOfRange(ba, p, blockEnd);
-
-
-            if (pos + lengthOnRef >= min && pos <= max) {   // && pass filter
-
-                BAMAlignment alignment = new BAMAlignment();
-                alignment.start = pos;
-                alignment.flags = flag;
-                alignment.fragmentLength = readInt(ba, offset + 32);
-                alignment.cigarBytes = cigarBytes;
-                alignment.lengthOnRef = lengthOnRef;
-                alignment.sequence = sequence;
-                alignment.mq = mq;
-                alignment.readName = readName;
-                alignment.chr = this.indexToChr[refID];
-                alignment.qualities = qualities;
-                alignment.mate = mate;
-                alignment.tagBytes = tagBytes;   // Decode these on demand
-
-                makeBlocks(cigarArray, alignment);
-
-                alignmentContainer.add(alignment);
+            if (pos + lengthOnRef >= min && pos <= max) {
+                alignmentContainer.add(new BAMAlignment(ba, offset, indexToChr, lengthOnRef));
             }
 
             offset = blockEnd;
         }
     }
 
+    /**
+     * Skip records with any of the flags in excludeFlags set (e.g. duplicates 0x400),  or with mapping quality below
+     * minMappingQuality.
+     */
+    public void setFilter(int excludeFlags, int minMappingQuality) {
+        this.excludeFlags = excludeFlags;
+        this.minMappingQuality = minMappingQuality;
+    }
+
 
     void readHeader() throws IOException {
 
@@ -465,83 +408,6 @@ public class BAMReader implements AlignmentReader<Alignment> {
 
     }
 
-    /**
-     * Split the alignment record into blocks as specified in the cigarArray.  Each aligned block contains
-     * its portion of the read sequence and base quality strings.  A read sequence or base quality string
-     * of "*" indicates the value is not recorded.  In all other cases the length of the block sequence (block.seq)
-     * and quality string (block.qual) must == the block length.
-     * <p>
-     * NOTE: Insertions are not yet treated // TODO
-     *
-     * @returns array of blocks
-     */
-    void makeBlocks(CigarOperator[] cigarArray, BAMAlignment alignment) {
-
-        List<AlignmentBlock> blocks = new ArrayList<>();
-        List<AlignmentBlock> insertions = null;
-        int seqOffset = 0;
-        int pos = alignment.start;
-        int len = cigarArray.length;
-        byte[] blockSeq;
-        char gapType;
-        byte[] blockQuals;
-//                    gapType,
-//                    minQ = 5,  //prefs.getAsInt(PreferenceManager.SAM_BASE_QUALITY_MIN)
-//                    maxQ = 20; //prefs.getAsInt(PreferenceManager.SAM_BASE_QUALITY_MAX)
-
-        for (int i = 0; i < len; i++) {
-
-            CigarOperator c = cigarArray[i];
-
-            switch (c.letter) {
-                case 'H':
-                    break; // ignore hard clips
-                case 'P':
-                    break; // ignore pads
-                case 'S':
-                    seqOffset += c.length;
-                    gapType = 'S';
-                    break; // soft clip read bases
-                case 'N':
-                    pos += c.length;
-                    gapType = 'N';
-                    break;  // reference skip
-                case 'D':
-                    pos += c.length;
-                    gapType = 'D';
-                    break;
-                case 'I':
-                    blockSeq = alignment.sequence.length == 1 ? alignment.sequence : Arrays.copyOfRange(alignment.sequence, seqOffset, seqOffset + c.length);
-                    blockQuals = alignment.qualities == null ? null : Arrays.copyOfRange(alignment.qualities, seqOffset, seqOffset + c.length);
-                    if (insertions == null) {
-                        insertions = new ArrayList<>();
-                    }
-                    insertions.add(new AlignmentBlockImpl(pos, blockSeq, blockQuals));
-                    seqOffset += c.length;
-                    break;
-                case 'M':
-                case '=':
-                case 'X':
-                    blockSeq = alignment.sequence.length == 1 ? alignment.sequence : Arrays.copyOfRange(alignment.sequence, seqOffset, seqOffset + c.length);
-                    blockQuals = alignment.qualities == null ? null : Arrays.copyOfRange(alignment.qualities, seqOffset, seqOffset + c.length);
-                    blocks.add(new AlignmentBlockImpl(pos, blockSeq, blockQuals));
-                    seqOffset += c.length;
-                    pos += c.length;
-                    break;
-
-                default:
-                    log.error("Error processing cigar element: " + c.length + c.letter);
-            }
-        }
-
-        alignment.alignmentBlocks = blocks.toArray(new AlignmentBlockImpl[]{});
-        if (insertions != null) {
-            alignment.insertions = insertions.toArray(new AlignmentBlockImpl[]{});
-        }
-
-    }
-
-
     public String readString(ByteBuffer ba) throws IOException {
         ByteArrayOutputStream bis = new ByteArrayOutputStream(100);
 
@@ -31,9 +31,9 @@ package org.broad.igv.tdf;
 
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
-import org.broad.igv.data.BasicScore;
 import org.broad.igv.data.CompositeScore;
 import org.broad.igv.data.CoverageDataSource;
+import org.broad.igv.data.LocusScoreBatch;
 import org.broad.igv.data.NamedScore;
 import org.broad.igv.feature.Chromosome;
 import org.broad.igv.feature.LocusScore;
@@ -205,7 +205,7 @@ public class TDFDataSource implements CoverageDataSource {
                 }
             }
 
-            scores = new ArrayList(1000);
+            LocusScoreBatch batch = new LocusScoreBatch(1000);
             if (tiles != null && tiles.size() > 0) {
                 for (TDFTile tile : tiles) {
 
@@ -214,12 +214,13 @@ public class TDFDataSource implements CoverageDataSource {
                             float v = tile.getValue(trackNumber, i);
                             if (!Float.isNaN(v)) {
                                 v *= normalizationFactor;
-                                scores.add(new BasicScore(tile.getStartPosition(i), tile.getEndPosition(i), v));
+                                batch.add(tile.getStartPosition(i), tile.getEndPosition(i), v);
                             }
                         }
                     }
                 }
             }
+            scores = batch;
 
         } else {
 
@@ -262,7 +263,7 @@ public class TDFDataSource implements CoverageDataSource {
 
     private List<LocusScore> getWGRawScores() {
 
-        List<LocusScore> scores = new ArrayList(10000);
+        LocusScoreBatch scores = new LocusScoreBatch(10000);
 
         for (String chr : genome.getAllChromosomeNames()) {
             Chromosome c = genome.getChromosome(chr);
@@ -283,7 +284,7 @@ public class TDFDataSource implements CoverageDataSource {
                                 if (!Float.isNaN(v)) {
                                     v *= normalizationFactor;
                                 }
-                                scores.add(new BasicScore(s, e, v));
+                                scores.add(s, e, v);
                             }
                         }
                     }
@@ -306,6 +307,7 @@ public class TDFDataSource implements CoverageDataSource {
             if (rawTiles.size() > 0) {
 
                 if (windowFunction == WindowFunction.none) {
+                    LocusScoreBatch batch = new LocusScoreBatch(1000);
                     for (TDFTile rawTile : rawTiles) {
                         // Tile of raw data
                         if (rawTile != null && rawTile.getSize() > 0) {
@@ -323,10 +325,11 @@ public class TDFDataSource implements CoverageDataSource {
                                 if (!Float.isNaN(v)) {
                                     v *= normalizationFactor;
                                 }
-                                scores.add(new BasicScore(s, e, v));
+                                batch.add(s, e, v);
                             }
                         }
                     }
+                    scores = batch;
 
 
                 } else {
@@ -428,8 +431,6 @@ public class TDFDataSource implements CoverageDataSource {
         String tmp = chrNameMap.get(chr);
         String querySeq = tmp == null ? chr : tmp;
 
-        ArrayList scores = new ArrayList();
-
         // TODO -- this whole section could be computed once and stored,  it is only a function of the genome, chr, and zoom level.
         int tileWidth = 0;
         if (chr.equals(Globals.CHR_ALL)) {
@@ -446,17 +447,41 @@ public class TDFDataSource implements CoverageDataSource {
         int startTile = (startLocation / tileWidth);
         int endTile = ((endLocation - 1) / tileWidth);
 
+        List<List<LocusScore>> tileScores = new ArrayList<>(endTile - startTile + 1);
+        boolean columnar = true;
         for (int t = startTile; t <= endTile; t++) {
             List<LocusScore> cachedScores = getCachedSummaryScores(querySeq, zoom, t, tileWidth);
             if (cachedScores != null) {
-                for (LocusScore s : cachedScores) {
-                    if (s.getEnd() >= startLocation) {
-                        scores.add(s);
-                    } else if (s.getStart() > endLocation) {
+                tileScores.add(cachedScores);
+                columnar &= cachedScores instanceof LocusScoreBatch;
+            }
+        }
+
+        // Keep scores in columnar form if every tile is
+        if (columnar) {
+            LocusScoreBatch scores = new LocusScoreBatch(1000);
+            for (List<LocusScore> cachedScores : tileScores) {
+                LocusScoreBatch batch = (LocusScoreBatch) cachedScores;
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.getEnd(i) >= startLocation) {
+                        scores.add(batch.getStart(i), batch.getEnd(i), batch.getScore(i));
+                    } else if (batch.getStart(i) > endLocation) {
                         break;
                     }
                 }
             }
+            return scores;
+        }
+
+        List<LocusScore> scores = new ArrayList<>();
+        for (List<LocusScore> cachedScores : tileScores) {
+            for (LocusScore s : cachedScores) {
+                if (s.getEnd() >= startLocation) {
+                    scores.add(s);
+                } else if (s.getStart() > endLocation) {
+                    break;
+                }
+            }
         }
 
         return scores;
@@ -30,13 +30,15 @@
 package org.broad.igv.tdf;
 
 import org.broad.igv.util.StringUtils;
-import org.broad.igv.util.collections.LRUCache;
+import org.broad.igv.util.collections.IntArrayList;
+import org.broad.igv.util.collections.WeightedCache;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents the data for a particular chromosome and zoom level
@@ -55,7 +57,9 @@ public class TDFDataset extends TDFEntity {
     long[] tilePositions;  // File position in TDF file
     int[] tileSizes;       // Tile size in bytes
     int nTiles;
-    LRUCache<String, TDFTile> cache = new LRUCache(20);
+    WeightedCache<String, TDFTile> cache = new WeightedCache<>("TDF tiles", 50000000, this::getTileMemorySize);
+    // Tiles currently being read,  shared by concurrent requests for the same tile
+    private final ConcurrentHashMap<Integer, CompletableFuture<TDFTile>> loadingTiles = new ConcurrentHashMap<>();
     // TODO -- refactor this dependency out
     TDFReader reader;
 
@@ -118,15 +122,12 @@ public class TDFDataset extends TDFEntity {
 
     // TODO -- this uses an implied linear index.  Abstract index or replace
     // with general interval index
-    // TODO -- gather all non-cached tiles and read in one chunk.  See BAM
-    // alignment reader class
     public List<TDFTile> getTiles(int startLocation, int endLocation) {
 
         List<TDFTile> tiles = new ArrayList();
         int startTile = (int) (startLocation / tileWidth);
         int endTile = (int) (endLocation / tileWidth);
-        for (int t = startTile; t <= endTile; t++) {
-            TDFTile tile = getTile(t);
+        for (TDFTile tile : getTiles(startTile, endTile, true)) {
             if (tile != null && tile.getSize() > 0) {
                 tiles.add(tile);
             }
@@ -137,8 +138,7 @@ public class TDFDataset extends TDFEntity {
 
     public List<TDFTile> getTiles() {
         List<TDFTile> tiles = new ArrayList<TDFTile>();
-        for (int t = 0; t < nTiles; t++) {
-            TDFTile tile = getTile(t);
+        for (TDFTile tile : getTiles(0, nTiles - 1, true)) {
             if (tile != null) {
                 tiles.add(tile);
             }
@@ -147,17 +147,110 @@ public class TDFDataset extends TDFEntity {
     }
 
     // TDFTile computeTile(TDFDataset ds, int t, List<LocusScore> scores, String chr)
-    synchronized TDFTile getTile(int t) {
-        String key = getName() + "_" + t;
-
-        TDFTile tile = null;
-        if (!cache.containsKey(key)) {
-            tile = reader.readTile(this, t);
-            cache.put(key, tile);
-        } else {
-            tile = cache.get(key);
+    TDFTile getTile(int t) {
+        return getTiles(t, t, true)[0];
+    }
+
+    /**
+     * Return tiles startTile through endTile,  inclusive.  Tiles not in the cache are read from the file in a single
+     * batch.  A tile being read by another thread is not read again,  its reader is waited on instead.
+     *
+     * @param useCache
+     */
+    TDFTile[] getTiles(int startTile, int endTile, boolean useCache) {
+
+        TDFTile[] tiles = new TDFTile[Math.max(0, endTile - startTile + 1)];
+
+        IntArrayList missing = new IntArrayList();
+        List<CompletableFuture<TDFTile>> loads = new ArrayList<>();
+        Map<Integer, CompletableFuture<TDFTile>> pending = new HashMap<>();
+
+        for (int t = startTile; t <= endTile; t++) {
+            if (t < 0 || t >= nTiles) {
+                continue;
+            }
+            String key = getTileKey(t);
+            TDFTile tile = cache.get(key);
+            if (tile != null || cache.containsKey(key)) {
+                // Empty tiles are cached as null,  get again in case the tile was added after the first get
+                tiles[t - startTile] = tile != null ? tile : cache.get(key);
+                continue;
+            }
+
+            CompletableFuture<TDFTile> load = new CompletableFuture<>();
+            CompletableFuture<TDFTile> existing = loadingTiles.putIfAbsent(t, load);
+            if (existing != null) {
+                pending.put(t, existing);
+            } else if (cache.containsKey(key)) {
+                // Loaded by another thread since checking the cache
+                loadingTiles.remove(t, load);
+                tiles[t - startTile] = cache.get(key);
+            } else {
+                missing.add(t);
+                loads.add(load);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            int[] tileNumbers = missing.toArray();
+            try {
+                TDFTile[] loaded = reader.readTiles(this, tileNumbers);
+                for (int i = 0; i < tileNumbers.length; i++) {
+                    tiles[tileNumbers[i] - startTile] = loaded[i];
+                    if (useCache) {
+                        cache.put(getTileKey(tileNumbers[i]), loaded[i]);
+                    }
+                    loads.get(i).complete(loaded[i]);
+                }
+            } catch (Throwable e) {
+                // Errors too,  e.g. out of memory while inflating,  threads waiting on these loads must not block
+                for (CompletableFuture<TDFTile> load : loads) {
+                    load.completeExceptionally(e);
+                }
+                throw e;
+            } finally {
+                for (int i = 0; i < tileNumbers.length; i++) {
+                    loadingTiles.remove(tileNumbers[i], loads.get(i));
+                }
+            }
+        }
+
+        for (Map.Entry<Integer, CompletableFuture<TDFTile>> entry : pending.entrySet()) {
+            try {
+                tiles[entry.getKey() - startTile] = entry.getValue().join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
         }
-        return tile;
+
+        return tiles;
+    }
+
+    private String getTileKey(int t) {
+        return getName() + "_" + t;
+    }
+
+    /**
+     * Estimated size of a tile in bytes,  used to weight tile cache entries.  Start and end positions and a value
+     * per track are stored for each tile position.
+     */
+    private long getTileMemorySize(TDFTile tile) {
+        int nTracks = reader == null ? 1 : reader.getTrackNames().length;
+        long size = 64 + tile.getSize() * (8L + 4L * nTracks);
+        if (tile.getNames() != null) {
+            size += tile.getSize() * 48L;
+        }
+        return size;
+    }
+
+    /**
+     * Estimated size of this dataset (header) in bytes,  excluding cached tiles
+     */
+    long getMemorySize() {
+        return 256 + 12L * nTiles;
     }
 
     public void clearCache() {
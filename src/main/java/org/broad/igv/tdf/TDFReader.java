@@ -39,7 +39,8 @@ import org.broad.igv.track.WindowFunction;
 import org.broad.igv.util.CompressionUtils;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.StringUtils;
-import org.broad.igv.util.collections.LRUCache;
+import org.broad.igv.util.collections.WeightedCache;
+import org.broad.igv.util.stream.ByteRange;
 import org.broad.igv.util.stream.IGVSeekableStreamFactory;
 
 import java.io.IOException;
@@ -47,6 +48,10 @@ import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @author jrobinso
@@ -56,6 +61,18 @@ public class TDFReader {
     static final Logger log = Logger.getLogger(TDFReader.class);
     public static final int GZIP_FLAG = 0x1;
 
+    /**
+     * Upper bound on the size of a single coalesced tile read
+     */
+    private static final int MAX_RUN_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Minimum number of (compressed) bytes decoded by a single task of a batch read
+     */
+    private static final int MIN_DECODE_TASK_SIZE = 16 * 1024;
+
+    private static ExecutorService decodeExecutor;
+
     private SeekableStream seekableStream = null;
     private int version;
     private Map<String, IndexEntry> datasetIndex;
@@ -64,8 +81,8 @@ public class TDFReader {
     private String trackLine;
     private String[] trackNames;
     private String genomeId;
-    LRUCache<String, TDFGroup> groupCache = new LRUCache(20);
-    LRUCache<String, TDFDataset> datasetCache = new LRUCache(20);
+    WeightedCache<String, TDFGroup> groupCache = new WeightedCache<>("TDF groups", 1000000, group -> 1000);
+    WeightedCache<String, TDFDataset> datasetCache = new WeightedCache<>("TDF datasets", 10000000, TDFDataset::getMemorySize);
     TDFTile wgTile;
 
     Map<WindowFunction, Double> valueCache = new HashMap();
@@ -75,7 +92,6 @@ public class TDFReader {
     boolean compressed = false;
 
     Set<String> chrNames;
-    private final CompressionUtils compressionUtils;
 
     //private String path;
 
@@ -101,7 +117,6 @@ public class TDFReader {
             log.error("Error loading file: " + locator.getPath(), ex);
             throw new DataLoadException("Error loading file: " + ex.toString(), locator.getPath());
         }
-        compressionUtils = new CompressionUtils();
     }
 
     public void close() {
@@ -245,8 +260,9 @@ public class TDFReader {
 
     public synchronized TDFDataset getDataset(String name) {
 
-        if (datasetCache.containsKey(name)) {
-            return datasetCache.get(name);
+        TDFDataset cachedDataset = datasetCache.get(name);
+        if (cachedDataset != null || datasetCache.containsKey(name)) {
+            return cachedDataset;
         }
 
         try {
@@ -285,8 +301,9 @@ public class TDFReader {
     }
 
     public synchronized TDFGroup getGroup(String name) {
-        if (groupCache.containsKey(name)) {
-            return groupCache.get(name);
+        TDFGroup cachedGroup = groupCache.get(name);
+        if (cachedGroup != null) {
+            return cachedGroup;
         }
 
         try {
@@ -336,12 +353,7 @@ public class TDFReader {
             //byte[] buffer = new byte[nBytes];
             //readFully(buffer);
             byte[] buffer = readBytes(position, nBytes);
-            if (compressed) {
-                buffer = compressionUtils.decompress(buffer);
-
-            }
-
-            return TileFactory.createTile(buffer, trackNames.length);
+            return decodeTile(buffer);
         } catch (IOException ex) {
             String tileName = ds.getName() + "[" + tileNumber + "]";
             log.error("Error reading data tile: " + tileName, ex);
@@ -349,6 +361,128 @@ public class TDFReader {
         }
     }
 
+    /**
+     * Read a batch of tiles.  Tiles stored contiguously in the file are fetched with a single read,  and tiles are
+     * decompressed and decoded in parallel.
+     *
+     * @param ds
+     * @param tileNumbers
+     * @return the tiles,  in the order of tileNumbers.  Empty tiles are null,  as for readTile.
+     */
+    public TDFTile[] readTiles(TDFDataset ds, int[] tileNumbers) {
+
+        TDFTile[] tiles = new TDFTile[tileNumbers.length];
+
+        // Indices of non-empty tiles,  ordered by file position
+        List<Integer> indices = new ArrayList<>(tileNumbers.length);
+        for (int i = 0; i < tileNumbers.length; i++) {
+            int t = tileNumbers[i];
+            if (t < ds.tilePositions.length && ds.tilePositions[t] >= 0) {
+                indices.add(i);
+            }
+        }
+        if (indices.isEmpty()) {
+            return tiles;
+        }
+        if (indices.size() == 1) {
+            int i = indices.get(0);
+            tiles[i] = readTile(ds, tileNumbers[i]);
+            return tiles;
+        }
+        indices.sort(Comparator.comparingLong(i -> ds.tilePositions[tileNumbers[i]]));
+
+        // Coalesce tiles into runs of adjacent byte ranges
+        List<ByteRange> runs = new ArrayList<>();
+        int[] runIndex = new int[indices.size()];
+        long runStart = -1;
+        long runEnd = -1;
+        for (int k = 0; k < indices.size(); k++) {
+            int t = tileNumbers[indices.get(k)];
+            long position = ds.tilePositions[t];
+            long end = position + ds.tileSizes[t];
+            if (position != runEnd || end - runStart > MAX_RUN_SIZE) {
+                if (runStart >= 0) {
+                    runs.add(new ByteRange(runStart, (int) (runEnd - runStart)));
+                }
+                runStart = position;
+            }
+            runEnd = Math.max(runEnd, end);
+            runIndex[k] = runs.size();
+        }
+        runs.add(new ByteRange(runStart, (int) (runEnd - runStart)));
+
+        try {
+            List<ByteBuffer> buffers = readRanges(runs);
+
+            byte[][] tileBytes = new byte[indices.size()][];
+            for (int k = 0; k < indices.size(); k++) {
+                int t = tileNumbers[indices.get(k)];
+                ByteBuffer run = buffers.get(runIndex[k]);
+                int offset = (int) (ds.tilePositions[t] - runs.get(runIndex[k]).getStart());
+                int nBytes = Math.max(0, Math.min(ds.tileSizes[t], run.remaining() - offset));
+                tileBytes[k] = new byte[nBytes];
+                ByteBuffer slice = run.duplicate();
+                slice.position(slice.position() + offset);
+                slice.get(tileBytes[k]);
+            }
+
+            // Decode in tasks of at least MIN_DECODE_TASK_SIZE bytes,  tiles are often too small to be worth a
+            // task each.  The last task is run on this thread.
+            List<Future<?>> futures = new ArrayList<>();
+            int from = 0;
+            int taskSize = 0;
+            for (int k = 0; k < indices.size(); k++) {
+                taskSize += tileBytes[k].length;
+                if (taskSize >= MIN_DECODE_TASK_SIZE && k < indices.size() - 1) {
+                    int taskFrom = from, taskTo = k + 1;
+                    futures.add(getDecodeExecutor().submit(() -> {
+                        decodeTiles(tileBytes, indices, taskFrom, taskTo, tiles);
+                        return null;
+                    }));
+                    from = k + 1;
+                    taskSize = 0;
+                }
+            }
+            decodeTiles(tileBytes, indices, from, indices.size(), tiles);
+
+            for (Future<?> f : futures) {
+                f.get();
+            }
+            return tiles;
+
+        } catch (IOException | ExecutionException ex) {
+            log.error("Error reading data tiles: " + ds.getName(), ex);
+            throw new RuntimeException("System error occured while reading tiles: " + ds.getName());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reading tiles: " + ds.getName());
+        }
+    }
+
+    private void decodeTiles(byte[][] tileBytes, List<Integer> indices, int from, int to, TDFTile[] tiles) throws IOException {
+        for (int k = from; k < to; k++) {
+            tiles[indices.get(k)] = decodeTile(tileBytes[k]);
+        }
+    }
+
+    private TDFTile decodeTile(byte[] buffer) throws IOException {
+        if (compressed) {
+            buffer = CompressionUtils.getThreadInstance().decompress(buffer);
+        }
+        return TileFactory.createTile(buffer, trackNames.length);
+    }
+
+    private static synchronized ExecutorService getDecodeExecutor() {
+        if (decodeExecutor == null) {
+            decodeExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "TDFReader-decode");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return decodeExecutor;
+    }
+
     /**
      * @return the version
      */
@@ -439,6 +573,14 @@ public class TDFReader {
         return buffer;
     }
 
+    /**
+     * Read several byte ranges in one call.  Remote streams fetch the ranges concurrently,  local streams seek,  so
+     * this is synchronized with readBytes.
+     */
+    private synchronized List<ByteBuffer> readRanges(List<ByteRange> ranges) throws IOException {
+        return IGVSeekableStreamFactory.readRanges(seekableStream, ranges);
+    }
+
     /**
      * @return the windowFunctions
      */
@@ -515,9 +657,9 @@ public class TDFReader {
                 TDFDataset chrDataset = getDataset(chrName, 0, wf);
                 if(chrDataset == null) continue;
 
-                List<TDFTile> chrTiles = chrDataset.getTiles();
-                chrDataset.clearCache(); // Don't cache these
+                TDFTile[] chrTiles = chrDataset.getTiles(0, chrDataset.nTiles - 1, false); // Don't cache these
                 for (TDFTile t : chrTiles) {
+                    if (t == null) continue;
                     int[] chrStart = t.getStart();
                     int[] chrEnd = t.getEnd();
 
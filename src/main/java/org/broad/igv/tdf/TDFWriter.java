@@ -36,10 +36,15 @@ import org.broad.igv.track.WindowFunction;
 import org.broad.igv.util.CompressionUtils;
 
 import java.io.*;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Assumptions
@@ -56,6 +61,13 @@ public class TDFWriter {
     static final String ROOT_GROUP = "/";
     public static final String CHROMOSOMES = "chromosomes";
 
+    /**
+     * Maximum number of tiles waiting to be written,  bounding the memory held by encoded tiles
+     */
+    private static final int MAX_PENDING_TILES = 4 * Runtime.getRuntime().availableProcessors();
+
+    private static ExecutorService tileExecutor;
+
     OutputStream fos = null;
     long bytesWritten = 0;
 
@@ -66,7 +78,11 @@ public class TDFWriter {
     Map<String, IndexEntry> groupIndex = new LinkedHashMap();
     long indexPositionPosition;
     boolean compressed;
-    private final CompressionUtils compressionUtils;
+
+    // Tiles submitted for encoding but not yet written,  in the order submitted
+    private final ArrayDeque<PendingTile> pendingTiles = new ArrayDeque<>();
+    // If false tiles are encoded on the calling thread
+    boolean parallel = true;
 
     public TDFWriter(File f,
                      String genomeId,
@@ -101,8 +117,6 @@ public class TDFWriter {
             log.error("Error opening output stream to file: " + file, ex);
             throw new DataLoadException("Error creating file", "" + file);
         }
-
-        compressionUtils = new CompressionUtils();
     }
 
     private void writeHeader(String genomeId,
@@ -170,6 +184,7 @@ public class TDFWriter {
     public void closeFile() {
 
         try {
+            writePendingTiles(0);
             writeDatasets();
             writeGroups();
 
@@ -237,6 +252,11 @@ public class TDFWriter {
     // Note this will only work for "fixed step" format.  Others need location arrays
     // Tile layout
 
+    /**
+     * Write a tile.  Tiles are serialized and compressed on a worker pool,  and written to the file in the order
+     * this method is called,  so the tile must not be modified after the call.  Tiles are written no later than
+     * {@link #closeFile()}.
+     */
     public void writeTile(String dsId, int tileNumber, TDFTile tile) throws IOException {
 
         TDFDataset dataset = datasetCache.get(dsId);
@@ -244,26 +264,16 @@ public class TDFWriter {
             throw new java.lang.NoSuchFieldError("Dataset: " + dsId + " doese not exist.  " +
                     "Call createDataset first");
         }
-        long pos = bytesWritten;
 
         if (tileNumber < dataset.tilePositions.length) {
-            dataset.tilePositions[tileNumber] = pos;
-
-            // Write the tile contents to a byte buffer first,  so we can optionally gzip it
-
 
-            BufferedByteWriter buffer = new BufferedByteWriter();
-            tile.writeTo(buffer);
-
-            byte[] bytes = buffer.getBytes();
-            if (compressed) {
-                bytes = compressionUtils.compress(bytes);
+            if (parallel) {
+                pendingTiles.add(new PendingTile(dataset, tileNumber, getTileExecutor().submit(() -> encodeTile(tile))));
+                writePendingTiles(MAX_PENDING_TILES);
+            } else {
+                writeTileBytes(dataset, tileNumber, encodeTile(tile));
             }
 
-            write(bytes);
-            int nBytes = bytes.length;
-
-            dataset.tileSizes[tileNumber] = nBytes;
         } else {
             // The occasional tile number == tile array size is expected, but tile
             // numbers larger than that are not
@@ -275,6 +285,59 @@ public class TDFWriter {
 
     }
 
+    /**
+     * Write the contents of a tile to a byte buffer,  so we can optionally gzip it
+     */
+    private byte[] encodeTile(TDFTile tile) throws IOException {
+        BufferedByteWriter buffer = new BufferedByteWriter();
+        tile.writeTo(buffer);
+
+        byte[] bytes = buffer.getBytes();
+        if (compressed) {
+            bytes = CompressionUtils.getThreadInstance().compress(bytes);
+        }
+        return bytes;
+    }
+
+    private void writeTileBytes(TDFDataset dataset, int tileNumber, byte[] bytes) throws IOException {
+        dataset.tilePositions[tileNumber] = bytesWritten;
+        write(bytes);
+        dataset.tileSizes[tileNumber] = bytes.length;
+    }
+
+    /**
+     * Write pending tiles which have been encoded,  in order,  then wait for tiles until no more than maxPending
+     * remain.
+     */
+    private void writePendingTiles(int maxPending) throws IOException {
+        while (!pendingTiles.isEmpty()) {
+            PendingTile next = pendingTiles.peek();
+            if (!next.bytes.isDone() && pendingTiles.size() <= maxPending) {
+                break;
+            }
+            pendingTiles.poll();
+            try {
+                writeTileBytes(next.dataset, next.tileNumber, next.bytes.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted writing tile: " + next.dataset.getName());
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getTileExecutor() {
+        if (tileExecutor == null) {
+            tileExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "TDFWriter-tile");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return tileExecutor;
+    }
+
     private void writeGroups() throws IOException {
         for (TDFGroup group : groupCache.values()) {
             long position = bytesWritten;
@@ -365,4 +428,17 @@ public class TDFWriter {
             this.nBytes = nBytes;
         }
     }
+
+    private static class PendingTile {
+
+        final TDFDataset dataset;
+        final int tileNumber;
+        final Future<byte[]> bytes;
+
+        PendingTile(TDFDataset dataset, int tileNumber, Future<byte[]> bytes) {
+            this.dataset = dataset;
+            this.tileNumber = tileNumber;
+            this.bytes = bytes;
+        }
+    }
 }
@@ -25,6 +25,7 @@
 
 package org.broad.igv.tools;
 
+import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.util.CloseableIterator;
 import org.apache.log4j.Logger;
 import org.broad.igv.feature.Chromosome;
@@ -38,10 +39,11 @@ import org.broad.igv.tools.parsers.DataConsumer;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Class to compute coverage on an alignment or feature file.  This class is designed to be instantiated and executed
- * from a single thread.
+ * from a single thread,  see {@link #setThreads(int)} for counting chromosomes concurrently.
  */
 public class CoverageCounter {
 
@@ -152,19 +154,29 @@ public class CoverageCounter {
      */
     private float[] buffer;
 
-    private final static Set<Byte> nucleotidesKeep = new HashSet<Byte>();
+    /**
+     * Number of threads used to count.  If > 1 chromosomes of indexed files are counted concurrently.
+     */
+    private int nThreads = 1;
+
     public static final byte DEL = 126;
     public static final byte INS = 127;
     private final static byte[] nucleotides = new byte[]{'A', 'C', 'G', 'T', 'N', DEL, INS};
 
+    /**
+     * Lookup table of byte value -> index in {@code nucleotides},  or -1 for bytes which are not counted
+     */
+    private final static int[] nucleotideIndex = new int[256];
+
     /**
      * Whether to write wig data to standard out (stdout)
      */
     private boolean writeStdOut;
 
     static {
-        for (byte b : nucleotides) {
-            nucleotidesKeep.add(b);
+        Arrays.fill(nucleotideIndex, -1);
+        for (int i = 0; i < nucleotides.length; i++) {
+            nucleotideIndex[nucleotides[i] & 0xff] = i;
         }
     }
 
@@ -213,6 +225,16 @@ public class CoverageCounter {
         this.postExtFactor = postExtFactor;
     }
 
+    /**
+     * Set the number of threads used to count.  Multiple threads are only used for indexed alignment files when no
+     * query interval is set,  otherwise the file is counted with a single thread.
+     *
+     * @param nThreads
+     */
+    public void setThreads(int nThreads) {
+        this.nThreads = Math.max(1, nThreads);
+    }
+
     /**
      * Take additional optional command line arguments and parse them
      *
@@ -272,7 +294,9 @@ public class CoverageCounter {
     /**
      * Parse and "count" the alignment file.  The main method.
      * <p/>
-     * This method is not thread safe due to the use of the member variable "buffer".
+     * If more than 1 thread is requested and the alignment file is indexed each chromosome is counted concurrently,
+     * from an independent reader query.  Output is passed to the consumer in the sequence dictionary order,  which is
+     * identical to the order of a single-threaded count of a sorted file.
      *
      * @throws IOException
      */
@@ -283,17 +307,40 @@ public class CoverageCounter {
         int tolerance = (int) (windowSize * (Math.floor(maxExtFactor / windowSize) + 2));
         consumer.setSortTolerance(tolerance);
 
+        WigWriter wigWriter = null;
+        if (wigFile != null || writeStdOut) {
+            wigWriter = new WigWriter(wigFile, windowSize);
+        }
+
+        try {
+            if (nThreads > 1 && queryInterval == null && isIndexed()) {
+                parseChromosomes(tolerance, wigWriter);
+            } else {
+                parseFile(tolerance, wigWriter);
+            }
+            consumer.setAttribute("totalCount", String.valueOf(totalCount));
+            consumer.parsingComplete();
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            if (wigWriter != null) {
+                wigWriter.close();
+            }
+        }
+    }
+
+    /**
+     * Count the alignment file,  or the query interval if set,  in a single pass from a single reader.
+     */
+    private void parseFile(int tolerance, WigWriter wigWriter) throws IOException {
+
         AlignmentReader reader = null;
         CloseableIterator<Alignment> iter = null;
 
         String lastChr = "";
         ReadCounter counter = null;
 
-        WigWriter wigWriter = null;
-        if (wigFile != null || writeStdOut) {
-            wigWriter = new WigWriter(wigFile, windowSize);
-        }
-
         try {
 
             if (queryInterval == null) {
@@ -307,22 +354,11 @@ public class CoverageCounter {
             while (iter != null && iter.hasNext()) {
                 Alignment alignment = iter.next();
                 if (passFilter(alignment)) {
-                    //Sort into the read strand or first-in-pair strand,
-                    //depending on input flag. Note that this can
-                    //be very unreliable depending on data
-                    Strand strand;
-                    if (firstInPair) {
-                        strand = alignment.getFirstOfPairStrand();
-                    } else if (secondInPair) {
-                        strand = alignment.getSecondOfPairStrand();
-                    } else {
-                        strand = alignment.getReadStrand();
-                    }
+                    Strand strand = getCountStrand(alignment);
                     if (strand.equals(Strand.NONE)) {
                         //TODO move this into passFilter, or move passFilter here
                         continue;
                     }
-                    boolean readNegStrand = alignment.isNegativeStrand();
 
                     totalCount++;
 
@@ -337,145 +373,298 @@ public class CoverageCounter {
                         if (counter != null) {
                             counter.closeBucketsBefore(Integer.MAX_VALUE, wigWriter);
                         }
-                        counter = new ReadCounter(alignmentChr);
+                        counter = new ReadCounter(alignmentChr, null);
                         lastChr = alignmentChr;
                     }
 
-                    AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
-
-                    if (blocks != null && !pairedCoverage) {
-                        for (AlignmentBlock block : blocks) {
-
-                            if (!block.isSoftClipped()) {
-
-                                int blockStart = block.getStart();
-                                int blockEnd = block.getEnd();
-
-
-                                int adjustedStart = block.getStart();
-                                int adjustedEnd = block.getEnd();
-
-
-                                if (preExtFactor > 0) {
-                                    if (readNegStrand) {
-                                        adjustedEnd = blockEnd + preExtFactor;
-                                    } else {
-                                        adjustedStart = Math.max(0, blockStart - preExtFactor);
-                                    }
-                                }
-
-                                // If both postExtFactor and extFactor are specified, postExtFactor takes precedence
-                                if (postExtFactor > 0) {
-                                    if (readNegStrand) {
-                                        adjustedStart = Math.max(0, blockEnd - postExtFactor);
-                                    } else {
-                                        adjustedEnd = blockStart + postExtFactor;
-                                    }
-
-                                } else if (extFactor > 0) {
-                                    // Standard extension option -- extend read on 3' end
-                                    if (readNegStrand) {
-                                        adjustedStart = Math.max(0, adjustedStart - extFactor);
-                                    } else {
-                                        adjustedEnd += extFactor;
-                                    }
-                                }
-
-
-                                if (queryInterval != null) {
-                                    adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
-                                    adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
-                                }
-
-                                byte[] bases = block.getBases();
-                                for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
-                                    byte base = 0;
-                                    int baseIdx = pos - blockStart;
-                                    if (bases != null && baseIdx >= 0 && baseIdx < bases.length) {
-                                        base = bases[baseIdx];
-                                    }
-                                    //int idx = pos - blockStart;
-                                    //byte quality = (idx >= 0 && idx < block.qualities.length) ?
-                                    //block.qualities[pos - blockStart] : (byte) 0;
-                                    counter.incrementCount(pos, base, strand);
-                                }
-                            }
-                        }
+                    countAlignment(alignment, strand, counter);
+                }
 
-                        final AlignmentBlock[] insertions = alignment.getInsertions();
-                        if (insertions != null) {
-                            for (AlignmentBlock insBlock : insertions) {
-                                int pos = insBlock.getStart();
-                                if (queryInterval == null || (pos >= queryInterval.getStart() && pos <= queryInterval.getEnd()))
-                                    counter.incrementInsertion(pos, strand);
-                            }
-                        }
+            }
+        } finally {
 
-                        // Count deletions
-                        List<Gap> gaps = alignment.getGaps();
-                        if (gaps != null) {
-                            for (Gap gap : gaps) {
-                                if (gap.getType() == SAMAlignment.DELETION) {
-                                    int adjustedStart = gap.getStart();
-                                    int adjustedEnd = gap.getStart() + gap.getnBases();
-                                    if (queryInterval != null) {
-                                        adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
-                                        adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
-                                    }
-                                    for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
-                                        counter.incrementDeletion(pos, strand);
-                                    }
-                                }
-                            }
-                        }
+            if (counter != null) {
+                counter.closeBucketsBefore(Integer.MAX_VALUE, wigWriter);
+            }
+            if (iter != null) {
+                iter.close();
+            }
+            if (reader != null) {
+                reader.close();
+            }
+        }
+    }
 
+    /**
+     * Count each chromosome of an indexed alignment file concurrently.  Results for a chromosome are handed to the
+     * parsing thread in fixed size chunks and passed to the consumer once all preceding chromosomes are complete.
+     * The number of chromosomes in progress, and the number of chunks queued for each, are bounded so memory use
+     * does not depend on window size or chromosome length.  See {@link ChromosomeData}.
+     */
+    private void parseChromosomes(final int tolerance, WigWriter wigWriter) throws Exception {
 
-                    } else {
-                        int adjustedStart = alignment.getAlignmentStart();
-                        int adjustedEnd = pairedCoverage ?
-                                adjustedStart + Math.abs(alignment.getInferredInsertSize()) :
-                                alignment.getAlignmentEnd();
+        List<String> chrNames;
+        AlignmentReader<?> reader = AlignmentReaderFactory.getReader(alignmentFile, true);
+        try {
+            chrNames = new ArrayList<>(reader.getSequenceNames());
+        } finally {
+            reader.close();
+        }
 
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        List<ChromosomeData> pending = new ArrayList<>(chrNames.size());
+        List<Future<ChromosomeData>> results = new ArrayList<>(chrNames.size());
+        final int maxPending = 2 * nThreads;
+
+        try {
+            int next = 0;
+            for (int i = 0; i < chrNames.size(); i++) {
+
+                while (next < chrNames.size() && next - i < maxPending) {
+                    final String chr = chrNames.get(next++);
+                    final ChromosomeData sink = new ChromosomeData(buffer.length);
+                    pending.add(sink);
+                    results.add(executor.submit(() -> parseChromosome(chr, tolerance, sink)));
+                }
+
+                // Replay chunks as they arrive.  A null chunk means the worker ended without finishing,  the cause
+                // is rethrown below.
+                ChromosomeData data = pending.get(i);
+                Future<ChromosomeData> result = results.get(i);
+                ChromosomeData.Chunk chunk;
+                do {
+                    chunk = data.nextChunk(result);
+                    if (chunk != null) {
+                        chunk.replay(data.chr, wigWriter);
+                    }
+                } while (chunk != null && !chunk.last);
+
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : e;
+                }
+                pending.set(i, null);
+                results.set(i, null);
+
+                totalCount += data.count;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Count a single chromosome from an independent reader.  Called from a worker thread.
+     *
+     * @param sequenceName - the sequence name as it appears in the file header, which might be an alias of the
+     *                     genome chromosome name
+     * @param data         - destination for the window data,  read concurrently by the parsing thread
+     */
+    private ChromosomeData parseChromosome(String sequenceName, int tolerance, ChromosomeData data) throws IOException {
+
+        ReadCounter counter = null;
+
+        AlignmentReader<?> reader = null;
+        CloseableIterator<? extends Alignment> iter = null;
+        try {
+            reader = AlignmentReaderFactory.getReader(alignmentFile, true);
+            SAMSequenceRecord sequence = reader.getFileHeader() == null ? null :
+                    reader.getFileHeader().getSequence(sequenceName);
+            int end = sequence == null ? Integer.MAX_VALUE : sequence.getSequenceLength();
+            iter = reader.query(sequenceName, 0, end, false);
+
+            while (iter != null && iter.hasNext()) {
+                Alignment alignment = iter.next();
+                if (!passFilter(alignment)) {
+                    continue;
+                }
+                Strand strand = getCountStrand(alignment);
+                if (strand.equals(Strand.NONE)) {
+                    continue;
+                }
+                data.count++;
+                if (counter == null) {
+                    data.chr = alignment.getChr();
+                    counter = new ReadCounter(data.chr, data);
+                } else {
+                    counter.closeBucketsBefore(alignment.getAlignmentStart() - tolerance, null);
+                }
+                countAlignment(alignment, strand, counter);
+            }
+            if (counter != null) {
+                counter.closeBucketsBefore(Integer.MAX_VALUE, null);
+            }
+            data.finish();
+        } finally {
+            if (iter != null) {
+                iter.close();
+            }
+            if (reader != null) {
+                reader.close();
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Return true if the alignment file is an indexed bam or cram file,  and can therefore be queried by chromosome.
+     */
+    private boolean isIndexed() {
+        String path = alignmentFile.toLowerCase();
+        if (!(path.endsWith(".bam") || path.endsWith(".cram"))) {
+            return false;
+        }
+        AlignmentReader<?> reader = null;
+        try {
+            reader = AlignmentReaderFactory.getReader(alignmentFile, true);
+            return reader.hasIndex();
+        } catch (Exception e) {
+            log.info("Alignment file could not be queried, counting with a single thread: " + alignmentFile);
+            return false;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    log.error("Error closing reader", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort into the read strand or first-in-pair strand, depending on input flag. Note that this can be very
+     * unreliable depending on data
+     */
+    private Strand getCountStrand(Alignment alignment) {
+        if (firstInPair) {
+            return alignment.getFirstOfPairStrand();
+        } else if (secondInPair) {
+            return alignment.getSecondOfPairStrand();
+        } else {
+            return alignment.getReadStrand();
+        }
+    }
+
+    /**
+     * Increment the counts for all positions covered by the alignment
+     */
+    private void countAlignment(Alignment alignment, Strand strand, ReadCounter counter) {
+
+        boolean readNegStrand = alignment.isNegativeStrand();
+
+        AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
+
+        if (blocks != null && !pairedCoverage) {
+            for (AlignmentBlock block : blocks) {
+
+                if (!block.isSoftClipped()) {
+
+                    int blockStart = block.getStart();
+                    int blockEnd = block.getEnd();
+
+
+                    int adjustedStart = block.getStart();
+                    int adjustedEnd = block.getEnd();
+
+
+                    if (preExtFactor > 0) {
+                        if (readNegStrand) {
+                            adjustedEnd = blockEnd + preExtFactor;
+                        } else {
+                            adjustedStart = Math.max(0, blockStart - preExtFactor);
+                        }
+                    }
+
+                    // If both postExtFactor and extFactor are specified, postExtFactor takes precedence
+                    if (postExtFactor > 0) {
+                        if (readNegStrand) {
+                            adjustedStart = Math.max(0, blockEnd - postExtFactor);
+                        } else {
+                            adjustedEnd = blockStart + postExtFactor;
+                        }
+
+                    } else if (extFactor > 0) {
+                        // Standard extension option -- extend read on 3' end
                         if (readNegStrand) {
                             adjustedStart = Math.max(0, adjustedStart - extFactor);
                         } else {
                             adjustedEnd += extFactor;
                         }
+                    }
+
+
+                    if (queryInterval != null) {
+                        adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
+                        adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
+                    }
+
+                    byte[] bases = block.getBases();
+                    for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
+                        byte base = 0;
+                        int baseIdx = pos - blockStart;
+                        if (bases != null && baseIdx >= 0 && baseIdx < bases.length) {
+                            base = bases[baseIdx];
+                        }
+                        //int idx = pos - blockStart;
+                        //byte quality = (idx >= 0 && idx < block.qualities.length) ?
+                        //block.qualities[pos - blockStart] : (byte) 0;
+                        counter.incrementCount(pos, base, strand);
+                    }
+                }
+            }
+
+            final AlignmentBlock[] insertions = alignment.getInsertions();
+            if (insertions != null) {
+                for (AlignmentBlock insBlock : insertions) {
+                    int pos = insBlock.getStart();
+                    if (queryInterval == null || (pos >= queryInterval.getStart() && pos <= queryInterval.getEnd()))
+                        counter.incrementInsertion(pos, strand);
+                }
+            }
 
+            // Count deletions
+            List<Gap> gaps = alignment.getGaps();
+            if (gaps != null) {
+                for (Gap gap : gaps) {
+                    if (gap.getType() == SAMAlignment.DELETION) {
+                        int adjustedStart = gap.getStart();
+                        int adjustedEnd = gap.getStart() + gap.getnBases();
                         if (queryInterval != null) {
                             adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
                             adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
                         }
-
-
                         for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
-                            counter.incrementCount(pos, (byte) 'N', strand);
+                            counter.incrementDeletion(pos, strand);
                         }
                     }
-
                 }
-
             }
-            consumer.setAttribute("totalCount", String.valueOf(totalCount));
-            consumer.parsingComplete();
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
 
-            if (counter != null) {
-                counter.closeBucketsBefore(Integer.MAX_VALUE, wigWriter);
-            }
-            if (iter != null) {
-                iter.close();
-            }
-            if (reader != null) {
-                reader.close();
+        } else {
+            int adjustedStart = alignment.getAlignmentStart();
+            int adjustedEnd = pairedCoverage ?
+                    adjustedStart + Math.abs(alignment.getInferredInsertSize()) :
+                    alignment.getAlignmentEnd();
+
+            if (readNegStrand) {
+                adjustedStart = Math.max(0, adjustedStart - extFactor);
+            } else {
+                adjustedEnd += extFactor;
             }
-            if (wigWriter != null) {
-                wigWriter.close();
+
+            if (queryInterval != null) {
+                adjustedStart = Math.max(queryInterval.getStart() - 1, adjustedStart);
+                adjustedEnd = Math.min(queryInterval.getEnd(), adjustedEnd);
             }
 
+
+            for (int pos = adjustedStart; pos < adjustedEnd; pos++) {
+                counter.incrementCount(pos, (byte) 'N', strand);
+            }
         }
     }
 
@@ -520,16 +709,73 @@ public class CoverageCounter {
         this.writeStdOut = writeStdOut;
     }
 
+    /**
+     * Counts for the windows of a single chromosome.  Counts are stored in a ring buffer of primitive arrays indexed
+     * by window.  For sorted input the span of open windows is bounded by the sort tolerance,  the buffer grows as
+     * needed to accommodate alignments spanning many windows,  such as reads with large gaps.
+     */
     class ReadCounter {
 
+        private static final int INITIAL_CAPACITY = 1024;
+
         String chr;
+
+        /**
+         * Destination for window data if counting on a worker thread,  otherwise null and data is passed directly
+         * to the consumer.
+         */
+        ChromosomeData sink;
+
+        /**
+         * Data buffer for a single window.  Each counter has its own buffer so counters can be used concurrently.
+         */
+        float[] windowData;
+
+        /**
+         * Length of the chromosome, or -1 if unknown
+         */
+        int chrLength = -1;
+
         /**
-         * Map of window index -> counter
+         * Capacity of the ring buffer in windows, always a power of 2
          */
-        TreeMap<Integer, Counter> counts = new TreeMap<Integer, Counter>();
+        int capacity;
+        int mask;
 
-        ReadCounter(String chr) {
+        /**
+         * Range of window indices currently in the buffer (inclusive).  The buffer is empty if lastIdx < firstIdx.
+         */
+        int firstIdx = 0;
+        int lastIdx = -1;
+
+        /**
+         * Flag for windows which have been visited.  Only visited windows are output.
+         */
+        boolean[] open;
+        int[] totalCounts;
+
+        /**
+         * Counts by strand, NUM_STRANDS values per window.  Allocated only if strands are output separately
+         */
+        int[] strandCounts;
+
+        /**
+         * Counts by strand and nucleotide, NUM_STRANDS * nucleotides.length values per window.  Allocated only if
+         * bases are output.
+         */
+        int[] baseCounts;
+
+        ReadCounter(String chr, ChromosomeData sink) {
             this.chr = chr;
+            this.sink = sink;
+            this.windowData = new float[buffer.length];
+            if (genome != null) {
+                Chromosome chromosome = genome.getChromosome(chr);
+                if (chromosome != null) {
+                    chrLength = chromosome.getLength();
+                }
+            }
+            allocate(INITIAL_CAPACITY);
         }
 
         /**
@@ -538,40 +784,130 @@ public class CoverageCounter {
          * @param strand   - which strand to increment count. Should be POSITIVE or NEGATIVE
          */
         void incrementCount(int position, byte base, Strand strand) {
-            final Counter counter = getCounterForPosition(position);
-            int strandNum = strand.equals(Strand.POSITIVE) ? 0 : 1;
-            counter.increment(base, strandNum);
+            final int slot = getSlotForPosition(position);
+            int strandNum = strand == Strand.POSITIVE ? 0 : 1;
+
+            if (outputBases) {
+                incrementNucleotide(slot, base, strandNum);
+            }
+            if (outputSeparate) {
+                strandCounts[slot * NUM_STRANDS + strandNum]++;
+            }
+            totalCounts[slot]++;
         }
 
         void incrementDeletion(int position, Strand strand) {
-            final Counter counter = getCounterForPosition(position);
-            int strandNum = strand.equals(Strand.POSITIVE) ? 0 : 1;
+            final int slot = getSlotForPosition(position);
+            int strandNum = strand == Strand.POSITIVE ? 0 : 1;
             if (outputBases) {
-                counter.incrementNucleotide(DEL, strandNum);
+                incrementNucleotide(slot, DEL, strandNum);
             }
         }
 
         void incrementInsertion(int position, Strand strand) {
             // Insertions are between 2 bases, we increment the counter for the position preceding the insertion
-            final Counter counter = getCounterForPosition(position-1);
-            int strandNum = strand.equals(Strand.POSITIVE) ? 0 : 1;
+            final int slot = getSlotForPosition(position - 1);
+            int strandNum = strand == Strand.POSITIVE ? 0 : 1;
             if (outputBases) {
-                counter.incrementNucleotide(INS, strandNum);
+                incrementNucleotide(slot, INS, strandNum);
             }
-
         }
 
+        /**
+         * Increment the nucleotide count.  Bases other than A, C, G, T, N, deletion and insertion are not counted.
+         */
+        private void incrementNucleotide(int slot, byte base, int strandNum) {
+            int n = nucleotideIndex[base & 0xff];
+            if (n >= 0) {
+                baseCounts[(slot * NUM_STRANDS + strandNum) * nucleotides.length + n]++;
+            }
+        }
 
-        private Counter getCounterForPosition(int position) {
+        private int getSlotForPosition(int position) {
             int idx = position / windowSize;
-            return getCounter(idx);
+            return getSlot(idx);
         }
 
-        private Counter getCounter(int idx) {
-            if (!counts.containsKey(idx)) {
-                counts.put(idx, new Counter());
+        /**
+         * Return the buffer slot for window {@code idx}, growing the buffer if required,  and mark the window visited.
+         */
+        private int getSlot(int idx) {
+            if (lastIdx < firstIdx) {
+                firstIdx = idx;
+                lastIdx = idx;
+            } else if (idx < firstIdx) {
+                ensureCapacity(lastIdx - idx + 1);
+                firstIdx = idx;
+            } else if (idx > lastIdx) {
+                ensureCapacity(idx - firstIdx + 1);
+                lastIdx = idx;
             }
-            return counts.get(idx);
+            int slot = idx & mask;
+            open[slot] = true;
+            return slot;
+        }
+
+        private void allocate(int capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            open = new boolean[capacity];
+            totalCounts = new int[capacity];
+            if (outputSeparate) {
+                strandCounts = new int[capacity * NUM_STRANDS];
+            }
+            if (outputBases) {
+                baseCounts = new int[capacity * NUM_STRANDS * nucleotides.length];
+            }
+        }
+
+        private void ensureCapacity(int nWindows) {
+
+            if (nWindows <= capacity) {
+                return;
+            }
+
+            int newCapacity = capacity;
+            while (newCapacity < nWindows) {
+                newCapacity <<= 1;
+            }
+
+            boolean[] oldOpen = open;
+            int[] oldTotalCounts = totalCounts;
+            int[] oldStrandCounts = strandCounts;
+            int[] oldBaseCounts = baseCounts;
+            int oldMask = mask;
+
+            allocate(newCapacity);
+
+            final int baseStride = NUM_STRANDS * nucleotides.length;
+            for (int idx = firstIdx; idx <= lastIdx; idx++) {
+                int oldSlot = idx & oldMask;
+                int newSlot = idx & mask;
+                open[newSlot] = oldOpen[oldSlot];
+                totalCounts[newSlot] = oldTotalCounts[oldSlot];
+                if (outputSeparate) {
+                    System.arraycopy(oldStrandCounts, oldSlot * NUM_STRANDS, strandCounts, newSlot * NUM_STRANDS, NUM_STRANDS);
+                }
+                if (outputBases) {
+                    System.arraycopy(oldBaseCounts, oldSlot * baseStride, baseCounts, newSlot * baseStride, baseStride);
+                }
+            }
+        }
+
+        private void clearSlot(int slot) {
+            open[slot] = false;
+            totalCounts[slot] = 0;
+            if (outputSeparate) {
+                Arrays.fill(strandCounts, slot * NUM_STRANDS, (slot + 1) * NUM_STRANDS, 0);
+            }
+            if (outputBases) {
+                final int baseStride = NUM_STRANDS * nucleotides.length;
+                Arrays.fill(baseCounts, slot * baseStride, (slot + 1) * baseStride, 0);
+            }
+        }
+
+        private int getBaseCount(int slot, int nucleotide, int strandNum) {
+            return baseCounts[(slot * NUM_STRANDS + strandNum) * nucleotides.length + nucleotide];
         }
 
 
@@ -582,176 +918,184 @@ public class CoverageCounter {
          * @param position - genomic position
          */
         void closeBucketsBefore(int position, WigWriter wigWriter) {
-            List<Integer> bucketsToClose = new ArrayList<Integer>();
 
             int bucket = position / windowSize;
-            for (Map.Entry<Integer, Counter> entry : counts.entrySet()) {
-                if (entry.getKey() < bucket) {
-
-                    // Divide total count by window size.  This is the average count per
-                    // base over the window,  so for example 30x coverage remains 30x irrespective of window size.
-                    int bucketStartPosition = entry.getKey() * windowSize;
-                    int bucketEndPosition = bucketStartPosition + windowSize;
-
-                    if (genome != null) {
-                        Chromosome chromosome = genome.getChromosome(chr);
-                        if (chromosome != null) {
-                            bucketEndPosition = Math.min(bucketEndPosition, chromosome.getLength());
-                        }
-                    }
-                    int bucketSize = bucketEndPosition - bucketStartPosition;
+            int closeEnd = Math.min(lastIdx, bucket - 1);
 
-                    final Counter counter = entry.getValue();
+            for (int idx = firstIdx; idx <= closeEnd; idx++) {
 
-                    int col = 0;
+                final int slot = idx & mask;
+                if (!open[slot]) {
+                    continue;
+                }
 
-                    //Not outputting base info, just totals
-                    if (!outputBases) {
-                        if (outputSeparate) {
-                            //Output strand specific information, if applicable
-                            for (int strandNum : output_strands) {
-                                buffer[col] = ((float) counter.getCount(strandNum)) / bucketSize;
-                                col++;
-                            }
+                // Divide total count by window size.  This is the average count per
+                // base over the window,  so for example 30x coverage remains 30x irrespective of window size.
+                int bucketStartPosition = idx * windowSize;
+                int bucketEndPosition = bucketStartPosition + windowSize;
+                if (chrLength >= 0) {
+                    bucketEndPosition = Math.min(bucketEndPosition, chrLength);
+                }
+                int bucketSize = bucketEndPosition - bucketStartPosition;
 
-                        } else {
-                            buffer[col] = ((float) counter.getTotalCounts()) / bucketSize;
+                int col = 0;
+
+                //Not outputting base info, just totals
+                if (!outputBases) {
+                    if (outputSeparate) {
+                        //Output strand specific information, if applicable
+                        for (int strandNum : output_strands) {
+                            windowData[col] = ((float) strandCounts[slot * NUM_STRANDS + strandNum]) / bucketSize;
                             col++;
                         }
 
-                        //Output counts of each base
                     } else {
-                        if (outputSeparate) {
-                            for (int strandNum : output_strands) {
-                                for (byte base : nucleotides) {
-                                    buffer[col] = ((float) counter.getBaseCount(base, strandNum)) / bucketSize;
-                                    col++;
-                                }
-                            }
-                        } else {
-                            for (byte base : nucleotides) {
-                                buffer[col] = ((float) counter.getBaseCount(base)) / bucketSize;
+                        windowData[col] = ((float) totalCounts[slot]) / bucketSize;
+                        col++;
+                    }
+
+                    //Output counts of each base
+                } else {
+                    if (outputSeparate) {
+                        for (int strandNum : output_strands) {
+                            for (int n = 0; n < nucleotides.length; n++) {
+                                windowData[col] = ((float) getBaseCount(slot, n, strandNum)) / bucketSize;
                                 col++;
                             }
                         }
+                    } else {
+                        for (int n = 0; n < nucleotides.length; n++) {
+                            int count = 0;
+                            for (int strandNum = 0; strandNum < NUM_STRANDS; strandNum++) {
+                                count += getBaseCount(slot, n, strandNum);
+                            }
+                            windowData[col] = ((float) count) / bucketSize;
+                            col++;
+                        }
                     }
+                }
 
 
-                    consumer.addData(chr, bucketStartPosition, bucketEndPosition, buffer, null);
+                if (sink != null) {
+                    sink.add(bucketStartPosition, bucketEndPosition, windowData);
+                } else {
+                    consumer.addData(chr, bucketStartPosition, bucketEndPosition, windowData, null);
 
                     if (wigWriter != null) {
-                        wigWriter.addData(chr, bucketStartPosition, bucketEndPosition, buffer);
+                        wigWriter.addData(chr, bucketStartPosition, bucketEndPosition, windowData);
                     }
-
-
-                    bucketsToClose.add(entry.getKey());
                 }
-            }
 
-            for (Integer key : bucketsToClose) {
-                counts.remove(key);
+                clearSlot(slot);
             }
 
-
+            if (closeEnd >= firstIdx) {
+                firstIdx = closeEnd + 1;
+            }
         }
 
     }
 
 
     /**
-     * Class for counting nucleotides and strands over an interval.
+     * Window data for a single chromosome,  passed from the worker thread to the parsing thread in chunks of
+     * CHUNK_SIZE windows so it can be given to the consumer in order.  At most MAX_QUEUED_CHUNKS chunks are queued per
+     * chromosome,  beyond that the worker blocks until the parsing thread catches up.  Buffered data is therefore
+     * bounded by about maxPending * (MAX_QUEUED_CHUNKS + 1) * CHUNK_SIZE windows,  irrespective of window size or
+     * chromosome length.
      */
+    class ChromosomeData {
 
-    class Counter {
-        /**
-         * The total number of counts on this Counter. Will
-         * be the sum of baseCount over the second index.
-         */
-        int[] strandCount;
-        int totalCount = 0;
-        //int qualityCount = 0;
-
-        //String chr;
-        //int start;
-        //int end;
-        //byte[] ref;
-        /**
-         * The number of times a particular base has been encountered (ie # of reads of that base)
-         */
-        //int[][] baseCount = new int[NUM_STRANDS][];
+        static final int CHUNK_SIZE = 4096;
+        static final int MAX_QUEUED_CHUNKS = 2;
 
-        private Map<Byte, Integer>[] baseTypeCounts;
+        String chr;
+        int nColumns;
+        int count = 0;
+        BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(MAX_QUEUED_CHUNKS);
+        Chunk current;
 
-        Counter() {
-            //this.chr = chr;
-            //this.start = start;
-            //this.end = end;
+        ChromosomeData(int nColumns) {
+            this.nColumns = nColumns;
+        }
 
-            if (outputBases) {
-                baseTypeCounts = new HashMap[NUM_STRANDS];
-                for (int ii = 0; ii < NUM_STRANDS; ii++) {
-                    baseTypeCounts[ii] = new HashMap<Byte, Integer>();
-                }
+        /**
+         * Add the data for a window.  Called from the worker thread.
+         */
+        void add(int start, int end, float[] data) {
+            if (current == null) {
+                current = new Chunk();
             }
-
-            if (outputSeparate) {
-                strandCount = new int[NUM_STRANDS];
+            current.add(start, end, data);
+            if (current.size == CHUNK_SIZE) {
+                put(current);
+                current = null;
             }
         }
 
-
-        int getCount(int strand) {
-            return strandCount[strand];
-        }
-
-        public int getTotalCounts() {
-            return totalCount;
-        }
-
-        void increment(byte base, int strand) {
-
-            if (outputBases) {
-                incrementNucleotide(base, strand);
+        /**
+         * Queue the remaining data,  marking the last chunk.  Called from the worker thread.
+         */
+        void finish() {
+            if (current == null) {
+                current = new Chunk();
             }
+            current.last = true;
+            put(current);
+            current = null;
+        }
 
-            if (outputSeparate) {
-                this.strandCount[strand]++;
+        private void put(Chunk chunk) {
+            try {
+                queue.put(chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while counting " + chr, e);
             }
-
-            this.totalCount++;
         }
 
         /**
-         * Increment the nucleotide counts.
-         *
-         * @param base   65, 67, 71, 84, 78, 126, 127
-         *               aka A, C, G, T, N, deletion, insertion.
-         *               Anything else is stored as 0
-         * @param strand index of strand, 0 for positive and 1 for negative
+         * Return the next chunk,  waiting until one is available,  or null if the worker has ended without
+         * finishing.  Called from the parsing thread.
          */
-        private void incrementNucleotide(byte base, int strand) {
-            Map<Byte, Integer> btc = baseTypeCounts[strand];
-            if (!nucleotidesKeep.contains(base)) {
-                base = 0;
-            }
-
-            int orig = 0;
-            if (btc.containsKey(base)) {
-                orig = btc.get(base);
+        Chunk nextChunk(Future<?> result) throws InterruptedException {
+            Chunk chunk;
+            while ((chunk = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                if (result.isDone()) {
+                    // The worker might have queued its last chunk between the poll and this check
+                    return queue.poll();
+                }
             }
-            btc.put(base, orig + 1);
+            return chunk;
         }
 
-        public int getBaseCount(byte base, int strand) {
-            return baseTypeCounts[strand].containsKey(base) ? baseTypeCounts[strand].get(base) : 0;
-        }
+        class Chunk {
 
-        public int getBaseCount(byte base) {
-            int count = 0;
-            for (int strand = 0; strand < NUM_STRANDS; strand++) {
-                count += getBaseCount(base, strand);
+            int size = 0;
+            boolean last = false;
+            int[] starts = new int[CHUNK_SIZE];
+            int[] ends = new int[CHUNK_SIZE];
+            float[] values = new float[CHUNK_SIZE * nColumns];
+
+            void add(int start, int end, float[] data) {
+                starts[size] = start;
+                ends[size] = end;
+                System.arraycopy(data, 0, values, size * nColumns, nColumns);
+                size++;
+            }
+
+            /**
+             * Pass the chunk to the consumer,  and optionally the wig writer.  Called from the parsing thread.
+             */
+            void replay(String chr, WigWriter wigWriter) {
+                for (int i = 0; i < size; i++) {
+                    System.arraycopy(values, i * nColumns, buffer, 0, nColumns);
+                    consumer.addData(chr, starts[i], ends[i], buffer, null);
+                    if (wigWriter != null) {
+                        wigWriter.addData(chr, starts[i], ends[i], buffer);
+                    }
+                }
             }
-            return count;
         }
     }
 
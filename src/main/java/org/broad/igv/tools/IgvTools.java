@@ -177,6 +177,7 @@ public class IgvTools {
     private static CmdLineParser.Option minMapQualityOpt = null;
     private static CmdLineParser.Option includeDupsOpt = null;
     private static CmdLineParser.Option pairedCoverageOpt = null;
+    private static CmdLineParser.Option<Integer> threadsOption = null;
 
     // options for index
     private static CmdLineParser.Option indexTypeOption = null;
@@ -368,10 +369,12 @@ public class IgvTools {
                     String queryString = (String) parser.getOptionValue(queryStringOpt);
                     int minMapQuality = (Integer) parser.getOptionValue(minMapQualityOpt, 0);
 
+                    int nThreads = parser.getOptionValue(threadsOption, 1);
+
                     int windowSizeValue = (Integer) parser.getOptionValue(windowSizeOption, WINDOW_SIZE);
                     doCount(ifile, ofile, genomeId, maxZoomValue, wfList, windowSizeValue, extFactorValue,
                             preFactorValue, posFactorValue,
-                            trackLine, queryString, minMapQuality, countFlags);
+                            trackLine, queryString, minMapQuality, countFlags, nThreads);
                 } else {
                     String probeFile = (String) parser.getOptionValue(probeFileOption, PROBE_FILE);
                     toTDF(typeString, ifile, ofile, probeFile, genomeId, maxZoomValue, wfList, tmpDirName, maxRecords);
@@ -591,6 +594,7 @@ public class IgvTools {
                 minMapQualityOpt = parser.addIntegerOption("minMapQuality");
                 includeDupsOpt = parser.addBooleanOption("includeDuplicates");
                 pairedCoverageOpt = parser.addBooleanOption("pairs");
+                threadsOption = parser.addIntegerOption("threads");
 
                 // Trackline
                 colorOption = parser.addStringOption("color");
@@ -833,6 +837,22 @@ public class IgvTools {
                         Collection<WindowFunction> windowFunctions, int windowSizeValue,
                         int extFactorValue, int preExtFactorValue, int postExtFactorValue,
                         String trackLine, String queryString, int minMapQuality, int countFlags) throws IOException {
+        doCount(ifile, ofile, genomeId, maxZoomValue, windowFunctions, windowSizeValue, extFactorValue,
+                preExtFactorValue, postExtFactorValue, trackLine, queryString, minMapQuality, countFlags, 1);
+    }
+
+    /**
+     * Compute coverage or density of an alignment or feature file,  optionally counting chromosomes concurrently.
+     *
+     * @param nThreads Number of threads used to count.  Values > 1 require an indexed alignment file,  see
+     *                 {@link CoverageCounter#setThreads(int)}
+     * @see #doCount(String, String, String, int, java.util.Collection, int, int, int, int, String, String, int, int)
+     */
+    public void doCount(String ifile, String ofile, String genomeId, int maxZoomValue,
+                        Collection<WindowFunction> windowFunctions, int windowSizeValue,
+                        int extFactorValue, int preExtFactorValue, int postExtFactorValue,
+                        String trackLine, String queryString, int minMapQuality, int countFlags,
+                        int nThreads) throws IOException {
 
 
         log.info("Computing coverage.  File = " + ifile);
@@ -844,6 +864,9 @@ public class IgvTools {
         }
         log.info(wfString);
         log.info("Ext factor = " + extFactorValue);
+        if (nThreads > 1) {
+            log.info("Threads = " + nThreads);
+        }
 
 
         Genome genome = loadGenome(genomeId);
@@ -882,6 +905,7 @@ public class IgvTools {
             counter.setWriteStdOut(wigStdOut);
             counter.setPreExtFactor(preExtFactorValue);
             counter.setPosExtFactor(postExtFactorValue);
+            counter.setThreads(nThreads);
 
             String prefix = FilenameUtils.getName(ifile);
             String[] tracknames = counter.getTrackNames(prefix + " ");
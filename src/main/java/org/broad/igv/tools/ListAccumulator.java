@@ -33,18 +33,20 @@ import org.broad.igv.util.collections.DoubleArrayList;
 import org.apache.commons.math.stat.StatUtils;
 import org.apache.log4j.Logger;
 import org.broad.igv.track.WindowFunction;
+import org.broad.igv.util.collections.TDigest;
 
 import java.util.*;
 
 /**
- * Estimating percentiles -- weighted average of multiple estimates
+ * Estimating percentiles -- values are kept, and percentiles computed exactly, up to MAX_VALUE_COUNT points.
+ * Beyond that values are summarized with a TDigest,  which bounds memory per accumulator.
  *
  * @author jrobinso
  */
 public class ListAccumulator {
 
     static Set<WindowFunction> PERCENTILE_WINDOW_FUNCTIONS = new HashSet();
-    public static int MAX_VALUE_COUNT = 100000;
+    public static int MAX_VALUE_COUNT = 1000;
     private static Logger log = Logger.getLogger(ListAccumulator.class);
 
     static {
@@ -60,8 +62,8 @@ public class ListAccumulator {
 
     List<WindowFunction> windowFunctions;
     List<WindowFunction> quantileFunctions;
-    Map<WindowFunction, List<PercentileValue>> percentiles = new HashMap();
     DoubleArrayList values = null;
+    TDigest digest = null;
     float sum = 0.0f;
     int basesCovered = 0;
     int nPts = 0;
@@ -96,11 +98,16 @@ public class ListAccumulator {
             sum += w*v;
             basesCovered +=w;
             nPts++;
-            if (values != null) {
+            if (digest != null) {
+                digest.add(v);
+            } else if (values != null) {
                 values.add(v);
                 if (values.size() > MAX_VALUE_COUNT) {
-                    computePercentiles();
-                    values.clear();
+                    digest = new TDigest();
+                    for (int i = 0; i < values.size(); i++) {
+                        digest.add(values.get(i));
+                    }
+                    values = null;
                 }
             }
         }
@@ -115,63 +122,37 @@ public class ListAccumulator {
 
         mean = Float.isNaN(sum) ? Float.NaN : sum / basesCovered;
 
-        if (values != null) {
+        if (values != null || digest != null) {
             if (nPts == 1) {
                 for (WindowFunction wf : quantileFunctions) {
                     setValue(wf, mean);
                 }
             } else {
-                if (values.size() > 1) {
-                    computePercentiles();
-                }
+                double[] valueArray = digest == null && values.size() > 1 ? values.toArray() : null;
                 for (WindowFunction wf : quantileFunctions) {
-
-                    List<PercentileValue> pList = percentiles.get(wf);
                     float v = Float.NaN; // <= Default,
-                    if (pList != null && pList.size() > 0) {
-                        double weightedSum = 0;
-                        double sumOfWeights = 0;
-                        for (PercentileValue pv : pList) {
-                            double weight = (double) pv.nPoints / nPts;
-                            sumOfWeights += weight;
-                            weightedSum += weight * pv.value;
+                    double p = this.getPercentile(wf);
+                    if (p > 0) {
+                        if (digest != null) {
+                            v = (float) digest.quantile(p / 100);
+                        } else if (valueArray != null) {
+                            v = (float) StatUtils.percentile(valueArray, p);
+                        }
+                        if (Float.isInfinite(v)) {
+                            log.error("Infinite percentile (" + wf + ")");
+                            v = Float.NaN;
                         }
-                        v = (float) (weightedSum / sumOfWeights);
                     }
                     setValue(wf, v);
-
                 }
-
             }
         }
         values = null;
+        digest = null;
         isFinished = true;
 
     }
 
-    private void computePercentiles() {
-        if (values != null) {
-            double[] valueArray = values.toArray();
-            for (WindowFunction wf : quantileFunctions) {
-                double p = this.getPercentile(wf);
-                if (p > 0) {
-                    float v = (float) StatUtils.percentile(valueArray, p);
-                    if (Float.isInfinite(v)) {
-                        log.error("Infinite percentile (" + wf + ")");
-                    } else {
-                        List<PercentileValue> pList = percentiles.get(wf);
-                        if (pList == null) {
-                            pList = new ArrayList();
-                            percentiles.put(wf, pList);
-                        }
-                        pList.add(new PercentileValue(valueArray.length, v));
-                    }
-                }
-            }
-        }
-
-    }
-
     private void setValue(WindowFunction wf, float value) {
         switch (wf) {
             case mean:
@@ -252,15 +233,4 @@ public class ListAccumulator {
         }
     }
 
-
-    class PercentileValue {
-        int nPoints;
-        double value;
-
-        PercentileValue(int nPoints, double value) {
-            this.nPoints = nPoints;
-            this.value = value;
-        }
-    }
-
 }
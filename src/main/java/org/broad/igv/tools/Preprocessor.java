@@ -470,7 +470,7 @@ public class Preprocessor implements DataConsumer {
         String dsName;
         TDFDataset dataset;
         int tileWidth;
-        Map<Integer, RawTile> activeTiles = new HashMap();
+        TreeMap<Integer, RawTile> activeTiles = new TreeMap<>();
 
         Raw(String chr, int chrLength, int tileWidth) {
 
@@ -493,15 +493,8 @@ public class Preprocessor implements DataConsumer {
 
             // Check for closed tiles -- tiles we are guaranteed to not revisit
             int tmp = (start - maxExtFactor) / tileWidth;
-            while (!activeTiles.isEmpty()) {
-                Integer tileNumber = activeTiles.keySet().iterator().next();
-                if (tileNumber < tmp) {
-                    RawTile t = activeTiles.get(tileNumber);
-                    t.close();
-                    activeTiles.remove(tileNumber);
-                } else {
-                    break;
-                }
+            while (!activeTiles.isEmpty() && activeTiles.firstKey() < tmp) {
+                activeTiles.pollFirstEntry().getValue().close();
             }
 
             // Add data to all tiles it spans.  The data will be effectively "cut" if it spans multiple tiles.
@@ -542,7 +535,7 @@ public class Preprocessor implements DataConsumer {
 
         int level;
         int tileWidth;
-        LinkedHashMap<Integer, Tile> activeTiles = new LinkedHashMap();
+        TreeMap<Integer, Tile> activeTiles = new TreeMap<>();
         Map<WindowFunction, TDFDataset> datasets = new HashMap();
 
 
@@ -565,15 +558,8 @@ public class Preprocessor implements DataConsumer {
 
             // Check for closed tiles
             int tmp = (start - maxExtFactor) / tileWidth;
-            while (!activeTiles.isEmpty()) {
-                Integer tileNumber = activeTiles.keySet().iterator().next();
-                if (tileNumber < tmp) {
-                    Tile t = activeTiles.get(tileNumber);
-                    t.close();
-                    activeTiles.remove(tileNumber);
-                } else {
-                    break;
-                }
+            while (!activeTiles.isEmpty() && activeTiles.firstKey() < tmp) {
+                activeTiles.pollFirstEntry().getValue().close();
             }
 
 
@@ -592,6 +578,7 @@ public class Preprocessor implements DataConsumer {
             for (Tile t : activeTiles.values()) {
                 t.close();
             }
+            activeTiles.clear();
         }
     }
 
@@ -829,6 +829,22 @@ public abstract class AbstractTrack implements Track {
         this.showDataRange = showDataRange;
     }
 
+    /**
+     * Return the attributes common to all tracks that affect rendering,  for use in render keys.  Range and scale
+     * values are copied,  as these objects are modified in place by autoscaling.
+     *
+     * @see Track#getRenderKey(ReferenceFrame)
+     */
+    protected List<Object> getRenderAttributes() {
+        return Arrays.asList(getClass(), getColor(), getAltColor(), getDisplayMode(), trackType, getFontSize(),
+                itemRGB, useScore, viewLimitMin, viewLimitMax, showDataRange, autoScale,
+                isLogNormalized(), getWindowFunction(), getVisibilityWindow(),
+                dataRange == null ? null : Arrays.asList(dataRange.getType(), dataRange.getMinimum(),
+                        dataRange.getBaseline(), dataRange.getMaximum(), dataRange.isFlipAxis(),
+                        dataRange.isDrawBaseline()),
+                colorScale == null ? null : colorScale.asString());
+    }
+
 
     /**
      * Overriden by subclasses
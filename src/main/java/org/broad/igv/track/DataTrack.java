@@ -73,6 +73,8 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
     private DataRenderer renderer;
 
     private Map<String, LoadedDataInterval<List<LocusScore>>> loadedIntervalCache = new HashMap(200);
+    private Map<String, LoadedDataInterval<List<LocusScore>>> prefetchedIntervalCache = Collections.synchronizedMap(new HashMap<>());
+    private final Object prefetchLock = new Object();
 
     public DataTrack(ResourceLocator locator, String id, String name) {
         super(locator, id, name);
@@ -94,6 +96,7 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
                 newCache.put(f.getName(), loadedIntervalCache.get(f.getName()));
             }
             loadedIntervalCache = newCache;
+            prefetchedIntervalCache.clear();
 
 
         } else {
@@ -122,6 +125,37 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
 
         if (isReadyToPaint(referenceFrame)) return; // already loaded
 
+        LoadedDataInterval<List<LocusScore>> interval = prefetchedIntervalCache.remove(referenceFrame.getName());
+        if (interval == null || !interval.contains(referenceFrame)) {
+            interval = loadInterval(referenceFrame);
+        }
+        loadedIntervalCache.put(referenceFrame.getName(), interval);
+
+    }
+
+    /**
+     * Load scores for the frame into a separate cache,  which is used by {@link #load(ReferenceFrame)} if the frame
+     * moves within the prefetched interval.  Scores are loaded without holding the track monitor,  so a load of the
+     * visible frame is not blocked by a prefetch.  Prefetches of a track are run one at a time.
+     */
+    @Override
+    public void prefetch(ReferenceFrame referenceFrame) {
+
+        if (isReadyToPaint(referenceFrame)) return; // already loaded
+
+        synchronized (prefetchLock) {
+            LoadedDataInterval<List<LocusScore>> interval = prefetchedIntervalCache.get(referenceFrame.getName());
+            if (interval != null && interval.contains(referenceFrame)) return;
+
+            interval = loadInterval(referenceFrame);
+            synchronized (this) {
+                prefetchedIntervalCache.put(referenceFrame.getName(), interval);
+            }
+        }
+    }
+
+    private LoadedDataInterval<List<LocusScore>> loadInterval(ReferenceFrame referenceFrame) {
+
         String chr = referenceFrame.getChrName();
         int start = (int) referenceFrame.getOrigin();
         int end = (int) referenceFrame.getEnd() + 1;
@@ -141,9 +175,7 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
         int delta = multiLocus ? 1 : (end - start) / 2;
         int expandedStart = Math.max(0, start - delta);
         int expandedEnd = Math.min(maxEnd, end + delta);
-        LoadedDataInterval<List<LocusScore>> interval = getSummaryScores(queryChr, expandedStart, expandedEnd, zoom);
-        loadedIntervalCache.put(referenceFrame.getName(), interval);
-
+        return getSummaryScores(queryChr, expandedStart, expandedEnd, zoom);
     }
 
 
@@ -161,6 +193,19 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
     }
 
 
+    /**
+     * Renderings are reused while the loaded interval and the rendering attributes are unchanged.
+     */
+    @Override
+    public Object getRenderKey(ReferenceFrame frame) {
+        LoadedDataInterval<List<LocusScore>> interval = loadedIntervalCache.get(frame.getName());
+        if (interval == null) {
+            return null;
+        }
+        return Arrays.asList(interval, getRenderer(), getRenderAttributes());
+    }
+
+
     public void overlay(RenderContext context, Rectangle rect) {
 
         List<LocusScore> inViewScores = getInViewScores(context.getReferenceFrame());
@@ -236,6 +281,7 @@ public abstract class DataTrack extends AbstractTrack implements ScalableTrack,
 
     public void clearCaches() {
         loadedIntervalCache.clear();
+        prefetchedIntervalCache.clear();
     }
 
     public void setRendererClass(Class rc) {
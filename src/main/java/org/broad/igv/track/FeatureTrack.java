@@ -96,6 +96,14 @@ public class FeatureTrack extends AbstractTrack implements IGVEventObserver {
      */
     protected Map<String, PackedFeatures<IGVFeature>> packedFeaturesMap = Collections.synchronizedMap(new HashMap<String, PackedFeatures<IGVFeature>>());
 
+    /**
+     * Map of reference frame name -> packed features loaded in the background for the region the frame is expected
+     * to move to
+     */
+    private Map<String, PackedFeatures<IGVFeature>> prefetchedFeaturesMap = Collections.synchronizedMap(new HashMap<>());
+
+    private final Object loadLock = new Object();
+
     protected Renderer renderer;
 
     private DataRenderer coverageRenderer;
@@ -691,7 +699,35 @@ public class FeatureTrack extends AbstractTrack implements IGVEventObserver {
     }
 
     public void load(ReferenceFrame frame) {
-        loadFeatures(frame.getChrName(), (int) frame.getOrigin(), (int) frame.getEnd(), frame);
+        String chr = frame.getChrName();
+        int start = (int) frame.getOrigin();
+        int end = (int) frame.getEnd();
+        PackedFeatures<IGVFeature> prefetched = prefetchedFeaturesMap.remove(frame.getName());
+        if (prefetched != null && prefetched.containsInterval(chr, start, end)) {
+            packedFeaturesMap.put(frame.getName(), prefetched);
+        } else {
+            loadFeatures(chr, start, end, frame);
+        }
+    }
+
+    @Override
+    public void prefetch(ReferenceFrame frame) {
+        if (!isShowFeatures(frame) || isReadyToPaint(frame)) {
+            return;
+        }
+        String chr = frame.getChrName();
+        int start = (int) frame.getOrigin();
+        int end = (int) frame.getEnd();
+        PackedFeatures<IGVFeature> prefetched = prefetchedFeaturesMap.get(frame.getName());
+        if (prefetched != null && prefetched.containsInterval(chr, start, end)) {
+            return;
+        }
+        try {
+            prefetchedFeaturesMap.put(frame.getName(), packFeatures(chr, start, end));
+        } catch (Exception e) {
+            // Errors are reported if the interval is loaded for display
+            log.debug("Error prefetching features for interval: " + chr + ":" + start + "-" + end, e);
+        }
     }
 
     /**
@@ -705,40 +741,11 @@ public class FeatureTrack extends AbstractTrack implements IGVEventObserver {
 
         try {
 
-            int delta = (end - start) / 2;
-            int expandedStart = start - delta;
-            int expandedEnd = end + delta;
-
-            //Make sure we are only querying within the chromosome we allow for somewhat pathological cases of start
-            //being negative and end being outside, but only if directly queried. Our expansion should not
-            //set start < 0 or end > chromosomeLength
-            if (start >= 0) {
-                expandedStart = Math.max(0, expandedStart);
-            }
-
-            Genome genome = GenomeManager.getInstance().getCurrentGenome();
-            if (genome != null) {
-                Chromosome c = genome.getChromosome(chr);
-                if (c != null && end < c.getLength()) expandedEnd = Math.min(c.getLength(), expandedEnd);
-            }
-
-            if (source == null) {
-                System.out.println();
-            }
-            Iterator<Feature> iter = source.getFeatures(chr, expandedStart, expandedEnd);
-
-            if (iter == null) {
-                PackedFeatures pf = new PackedFeatures(chr, expandedStart, expandedEnd);
-                packedFeaturesMap.put(frame.getName(), pf);
-            } else {
-                PackedFeatures pf = new PackedFeatures(chr, expandedStart, expandedEnd, iter, getName());
-                packedFeaturesMap.put(frame.getName(), pf);
-                //log.info("Loaded " + chr + " " + expandedStart + "-" + expandedEnd);
-            }
+            packedFeaturesMap.put(frame.getName(), packFeatures(chr, start, end));
 
         } catch (Exception e) {
             // Mark the interval with an empty feature list to prevent an endless loop of load attempts.
-            PackedFeatures pf = new PackedFeatures(chr, start, end);
+            PackedFeatures<IGVFeature> pf = new PackedFeatures<>(chr, start, end);
             packedFeaturesMap.put(frame.getName(), pf);
             String msg = "Error loading features for interval: " + chr + ":" + start + "-" + end + " <br>" + e.toString();
             MessageUtils.showMessage(msg);
@@ -747,6 +754,44 @@ public class FeatureTrack extends AbstractTrack implements IGVEventObserver {
 
     }
 
+    // The source is untyped,  features are packed as IGVFeatures as they are rendered
+    @SuppressWarnings("unchecked")
+    private PackedFeatures<IGVFeature> packFeatures(final String chr, final int start, final int end) throws IOException {
+
+        int delta = (end - start) / 2;
+        int expandedStart = start - delta;
+        int expandedEnd = end + delta;
+
+        //Make sure we are only querying within the chromosome we allow for somewhat pathological cases of start
+        //being negative and end being outside, but only if directly queried. Our expansion should not
+        //set start < 0 or end > chromosomeLength
+        if (start >= 0) {
+            expandedStart = Math.max(0, expandedStart);
+        }
+
+        Genome genome = GenomeManager.getInstance().getCurrentGenome();
+        if (genome != null) {
+            Chromosome c = genome.getChromosome(chr);
+            if (c != null && end < c.getLength()) expandedEnd = Math.min(c.getLength(), expandedEnd);
+        }
+
+        if (source == null) {
+            System.out.println();
+        }
+
+        // Sources are not assumed to support concurrent queries,  serialize loads and prefetches
+        synchronized (loadLock) {
+            Iterator<IGVFeature> iter = source.getFeatures(chr, expandedStart, expandedEnd);
+
+            if (iter == null) {
+                return new PackedFeatures<>(chr, expandedStart, expandedEnd);
+            } else {
+                //log.info("Loaded " + chr + " " + expandedStart + "-" + expandedEnd);
+                return new PackedFeatures<>(chr, expandedStart, expandedEnd, iter, getName());
+            }
+        }
+    }
+
     @Override
     public void render(RenderContext context, Rectangle rect) {
         Rectangle renderRect = new Rectangle(rect);
@@ -781,6 +826,21 @@ public class FeatureTrack extends AbstractTrack implements IGVEventObserver {
 
     }
 
+    /**
+     * Renderings of features are reused while the packed features and the rendering attributes are unchanged.
+     * Coverage,  shown when zoomed out beyond the visibility window,  is always rendered.
+     */
+    @Override
+    public Object getRenderKey(ReferenceFrame frame) {
+        PackedFeatures<IGVFeature> packedFeatures = packedFeaturesMap.get(frame.getName());
+        if (packedFeatures == null || !isShowFeatures(frame) ||
+                !packedFeatures.overlapsInterval(frame.getChrName(), (int) frame.getOrigin(), (int) frame.getEnd() + 1)) {
+            return null;
+        }
+        return Arrays.asList(packedFeatures, getRenderer(), margin, expandedRowHeight, squishedRowHeight,
+                selectedFeatureRowIndex, selectedFeature, alternateExonColor, drawBorder, getRenderAttributes());
+    }
+
     protected boolean isShowFeatures(ReferenceFrame frame) {
 
         if (frame.getChrName().equals(Globals.CHR_ALL)) {
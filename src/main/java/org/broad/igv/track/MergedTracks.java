@@ -431,4 +431,11 @@ public class MergedTracks extends DataTrack implements ScalableTrack {
     }
 
 
+    /**
+     * Merged tracks are rendered from their members,  each of which may change independently.
+     */
+    @Override
+    public Object getRenderKey(ReferenceFrame frame) {
+        return null;
+    }
 }
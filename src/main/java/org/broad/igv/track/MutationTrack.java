@@ -212,4 +212,11 @@ public class MutationTrack extends FeatureTrack {
         }
     }
 
+    /**
+     * Mutation colors come from preferences,  so renderings are not reused.
+     */
+    @Override
+    public Object getRenderKey(ReferenceFrame frame) {
+        return null;
+    }
 }
@@ -29,6 +29,7 @@ import org.broad.igv.feature.Exon;
 import org.broad.igv.feature.IExon;
 import org.broad.igv.feature.IGVFeature;
 import org.broad.igv.renderer.SelectableFeatureRenderer;
+import org.broad.igv.ui.panel.ReferenceFrame;
 import htsjdk.tribble.Feature;
 
 import java.awt.event.MouseEvent;
@@ -91,5 +92,12 @@ public class SelectableFeatureTrack extends FeatureTrack {
     public Set<IExon> getSelectedExons() {
         return selectedExons;
     }
-}
 
+    /**
+     * Selected exons are highlighted,  and the selection is not part of the render key.
+     */
+    @Override
+    public Object getRenderKey(ReferenceFrame frame) {
+        return null;
+    }
+}
@@ -78,6 +78,26 @@ public interface Track extends Persistable{
      */
     void load(ReferenceFrame frame);
 
+    /**
+     * Load resources to paint the reference frame into a cache, without changing what is displayed.  Called from a
+     * background thread with a detached copy of a frame,  positioned where the user is expected to move next.
+     *
+     * @param frame
+     */
+    default void prefetch(ReferenceFrame frame) {}
+
+    /**
+     * Return a value that changes whenever the rendering of this track in the frame would change,  other than by the
+     * location and scale of the frame or the bounds of the track,  or null if renderings can't be reused.  Values
+     * are compared with equals.
+     *
+     * @param frame
+     * @see org.broad.igv.ui.panel.TrackTileCache
+     */
+    default Object getRenderKey(ReferenceFrame frame) {
+        return null;
+    }
+
     /**
      * Return true if a track can be filtered by sample annotation.
      *
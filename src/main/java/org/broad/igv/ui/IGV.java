@@ -2323,6 +2323,7 @@ public class IGV implements IGVEventObserver {
 
 
     public void repaint() {
+        TrackTileCache.invalidateAll();
         mainFrame.repaint();
     }
 
@@ -2340,6 +2341,7 @@ public class IGV implements IGVEventObserver {
     }
 
     final public void doRefresh() {
+        TrackTileCache.invalidateAll();
         contentPane.getMainPanel().revalidate();
         mainFrame.repaint();
         getContentPane().repaint();
@@ -2354,6 +2356,7 @@ public class IGV implements IGVEventObserver {
      */
     public void revalidateTrackPanels() {
 
+        TrackTileCache.invalidateAll();
         UIUtilities.invokeOnEventThread(() -> {
 
             if (Globals.isBatch()) {
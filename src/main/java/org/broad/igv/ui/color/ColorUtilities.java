@@ -51,7 +51,7 @@ public class ColorUtilities {
 
     private static float[] whiteComponents = Color.white.getRGBColorComponents(null);
 
-    private static Map<Integer, Color> grayscaleColors = new HashMap();
+    private static Map<Integer, Color> grayscaleColors = Collections.synchronizedMap(new HashMap<Integer, Color>());
 
     // HTML 4.1 color table,  + orange and magenta
     static Map<String, String> colorSymbols = new HashMap();
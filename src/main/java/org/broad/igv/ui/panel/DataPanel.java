@@ -34,6 +34,7 @@
 package org.broad.igv.ui.panel;
 
 import com.google.common.base.Objects;
+import org.apache.commons.math.stat.StatUtils;
 import org.apache.log4j.Logger;
 import org.broad.igv.Globals;
 import org.broad.igv.feature.RegionOfInterest;
@@ -92,6 +93,14 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
 
     private boolean loadInProgress = false;
 
+    private final PrefetchScheduler prefetchScheduler = new PrefetchScheduler();
+
+    private final TrackTileCache tileCache = new TrackTileCache();
+
+    // Paint times of recent frames,  logged at debug level with the use of the tile cache
+    private final double[] frameTimes = new double[100];
+    private int frameCount = 0;
+
     public DataPanel(ReferenceFrame frame, DataPanelContainer parent) {
         init();
         this.defaultTool = new PanTool(this);
@@ -148,7 +157,7 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
         RenderContext context = null;
         try {
 
-            long t0 = System.currentTimeMillis();
+            long t0 = System.nanoTime();
 
             if (!allTracksLoaded()) {
                 if (!loadInProgress) {
@@ -171,7 +180,12 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
 
             computeMousableRegions(groups, trackWidth);
 
-            painter.paint(groups, context, trackWidth, getBackground(), damageRect);
+            boolean useTiles = !Globals.isBatch() &&
+                    PreferencesManager.getPreferences().getAsBoolean(Constants.TRACK_TILE_CACHE_ENABLED);
+            if (!useTiles) {
+                tileCache.clear();
+            }
+            painter.paint(groups, context, trackWidth, getBackground(), damageRect, useTiles ? tileCache : null);
 
             // If there is a partial ROI in progress draw it first
             if (currentTool instanceof RegionOfInterestTool) {
@@ -186,8 +200,13 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
             drawAllRegions(g);
 
 
-            long dt = System.currentTimeMillis() - t0;
+            double dt = (System.nanoTime() - t0) / 1000000.0;
             PanTool.repaintTime(dt);
+            recordFrameTime(dt);
+
+            if (!Globals.isBatch()) {
+                prefetchScheduler.update(frame, visibleTracks());
+            }
 
         } finally {
 
@@ -198,6 +217,20 @@ public class DataPanel extends JComponent implements Paintable, IGVEventObserver
     }
 
 
+    private void recordFrameTime(double dt) {
+        frameTimes[frameCount++] = dt;
+        if (frameCount == frameTimes.length) {
+            frameCount = 0;
+            int[] counts = tileCache.getAndResetCounts();
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Paint time of %s (ms): median %.1f, 95th percentile %.1f.  Tracks drawn from tiles: %d, rendered: %d",
+                        frame.getName(), StatUtils.percentile(frameTimes, 50), StatUtils.percentile(frameTimes, 95),
+                        counts[0], counts[1]));
+            }
+        }
+    }
+
+
     public boolean allTracksLoaded() {
         return parent.getTrackGroups().stream().
                 filter(TrackGroup::isVisible).
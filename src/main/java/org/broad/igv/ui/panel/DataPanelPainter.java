@@ -55,6 +55,19 @@ public class DataPanelPainter {
                                    int width,
                                    Color background,
                                    Rectangle visibleRect) {
+        paint(groups, context, width, background, visibleRect, null);
+    }
+
+    /**
+     * Paint the tracks of {@code groups},  drawing renderings of unchanged tracks from {@code tileCache} if it is
+     * not null.  Tiles are not used while an insertion is expanded.
+     */
+    public synchronized void paint(Collection<TrackGroup> groups,
+                                   RenderContext context,
+                                   int width,
+                                   Color background,
+                                   Rectangle visibleRect,
+                                   TrackTileCache tileCache) {
 
 
         //
@@ -99,7 +112,10 @@ public class DataPanelPainter {
                 referenceFrame.origin = start;
             }
         } else {
-            paintFrame(groups, context, width, visibleRect);
+            if (tileCache != null) {
+                tileCache.update(getTrackRects(groups, width, visibleRect), getAllTracks(groups), context);
+            }
+            paintFrame(groups, context, width, visibleRect, tileCache);
         }
 
     }
@@ -114,12 +130,13 @@ public class DataPanelPainter {
         dG.setClip(dRect);
         context.translateX = px;
 
-        paintFrame(groups, context, w, dRect);
+        paintFrame(groups, context, w, dRect, null);
 
     }
 
 
-    private void paintFrame(Collection<TrackGroup> groups, RenderContext dContext, int width, Rectangle dRect) {
+    private void paintFrame(Collection<TrackGroup> groups, RenderContext dContext, int width, Rectangle dRect,
+                            TrackTileCache tileCache) {
         int trackX = 0;
         int trackY = 0;
 
@@ -162,7 +179,9 @@ public class DataPanelPainter {
 
                         if (track.isVisible()) {
                             Rectangle rect = new Rectangle(trackX, trackY, width, trackHeight);
-                            draw(track, rect, dContext);
+                            if (tileCache == null || !tileCache.draw(track, rect, dContext)) {
+                                draw(track, rect, dContext);
+                            }
                             trackY += trackHeight;
                         }
                     }
@@ -178,6 +197,50 @@ public class DataPanelPainter {
     }
 
 
+    /**
+     * Return the bounds of the visible tracks intersecting {@code dRect},  as {@link #paintFrame} lays them out.
+     */
+    private Map<Track, Rectangle> getTrackRects(Collection<TrackGroup> groups, int width, Rectangle dRect) {
+
+        Map<Track, Rectangle> trackRects = new LinkedHashMap<>();
+        int trackY = 0;
+        for (TrackGroup group : groups) {
+            if (trackY > dRect.y + dRect.height) {
+                break;
+            }
+            if (group.isVisible()) {
+                if (groups.size() > 1) {
+                    trackY += UIConstants.groupGap;
+                }
+                List<Track> trackList = group.getVisibleTracks();
+                synchronized (trackList) {
+                    for (Track track : trackList) {
+                        if (track == null || !track.isVisible()) continue;
+                        int trackHeight = track.getHeight();
+                        if (trackY > dRect.y + dRect.height) {
+                            break;
+                        } else if (trackY + trackHeight >= dRect.y) {
+                            trackRects.put(track, new Rectangle(0, trackY, width, trackHeight));
+                        }
+                        trackY += trackHeight;
+                    }
+                }
+            }
+        }
+        return trackRects;
+    }
+
+    private static List<Track> getAllTracks(Collection<TrackGroup> groups) {
+        List<Track> tracks = new ArrayList<>();
+        for (TrackGroup group : groups) {
+            List<Track> trackList = group.getVisibleTracks();
+            synchronized (trackList) {
+                tracks.addAll(trackList);
+            }
+        }
+        return tracks;
+    }
+
     private void paintExpandedInsertion(InsertionMarker insertionMarker, Collection<TrackGroup> groups, RenderContext context, int px, int py, int w, int h) {
 
         context.clearGraphicsCache();
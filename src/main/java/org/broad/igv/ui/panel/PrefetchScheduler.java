@@ -0,0 +1,222 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.Globals;
+import org.broad.igv.event.IGVEventBus;
+import org.broad.igv.feature.Locus;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.session.History;
+import org.broad.igv.track.Track;
+import org.broad.igv.ui.IGV;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.broad.igv.prefs.Constants.PREFETCH_ENABLED;
+
+/**
+ * Loads data in the background for the region a frame is likely to show next,  so that panning and navigating
+ * history do not stall on loading.  The motion of the frame is sampled each time its panel is painted.  While the
+ * frame is panned at a constant zoom the region ahead in the direction of motion is prefetched,  at a distance
+ * proportional to the pan velocity.  After a jump the adjacent entry of the session history is prefetched
+ * instead.  Pending prefetches are cancelled when the frame changes direction, zoom, or chromosome.
+ *
+ * @see Track#prefetch(ReferenceFrame)
+ */
+public class PrefetchScheduler {
+
+    private static Logger log = Logger.getLogger(PrefetchScheduler.class);
+
+    /**
+     * Time over which pan motion is extrapolated,  in milliseconds
+     */
+    static final long LOOKAHEAD_TIME = 1000;
+
+    /**
+     * Maximum distance to prefetch ahead of the view,  in window widths.  Larger moves are treated as jumps.
+     */
+    static final int MAX_LOOKAHEAD_WIDTHS = 4;
+
+    private static ExecutorService executor;
+
+    private String chr;
+    private double scale;
+    private double origin;
+    private long time;
+    private int direction;
+    private double velocity;    // bp per millisecond
+    private double targetOrigin = Double.NaN;
+    private final List<Future<?>> pending = new ArrayList<>();
+
+    /**
+     * Update the motion of {@code frame} and schedule prefetches for {@code tracks}.  Called after the frame is
+     * painted.
+     *
+     * @param frame
+     * @param tracks
+     */
+    public synchronized void update(ReferenceFrame frame, Collection<Track> tracks) {
+
+        if (!PreferencesManager.getPreferences().getAsBoolean(PREFETCH_ENABLED)) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        final String frameChr = frame.getChrName();
+        final double frameOrigin = frame.getOrigin();
+        final double frameScale = frame.getScale();
+        final double width = frame.getEnd() - frameOrigin;
+
+        boolean jumped = !frameChr.equals(chr) || frameScale != scale ||
+                Math.abs(frameOrigin - origin) > MAX_LOOKAHEAD_WIDTHS * width;
+
+        if (jumped) {
+            cancel();
+            chr = frameChr;
+            scale = frameScale;
+            origin = frameOrigin;
+            time = now;
+            direction = 0;
+            velocity = 0;
+            if (!frameChr.equals(Globals.CHR_ALL)) {
+                scheduleHistory(frame, tracks);
+            }
+            return;
+        }
+
+        if (frameOrigin == origin) {
+            return;    // Repainted without moving
+        }
+
+        int newDirection = frameOrigin > origin ? 1 : -1;
+        double newVelocity = Math.abs(frameOrigin - origin) / Math.max(1, now - time);
+        if (newDirection != direction) {
+            cancel();
+            velocity = newVelocity;
+        } else {
+            velocity = (velocity + newVelocity) / 2;
+        }
+        direction = newDirection;
+        origin = frameOrigin;
+        time = now;
+
+        double distance = Math.min(MAX_LOOKAHEAD_WIDTHS * width, Math.max(width, velocity * LOOKAHEAD_TIME));
+        double target = frameOrigin + direction * distance;
+        if (!Double.isNaN(targetOrigin) && Math.abs(target - targetOrigin) < width / 2) {
+            return;    // Close enough to a region already scheduled
+        }
+        targetOrigin = target;
+
+        ReferenceFrame targetFrame = new ReferenceFrame(frame, new IGVEventBus());
+        targetFrame.setOrigin(target);
+        schedule(targetFrame, tracks);
+    }
+
+    /**
+     * Cancel prefetches that have not started.  Prefetches in progress are allowed to complete,  interrupting them
+     * could close streams shared with foreground loads.
+     */
+    public synchronized void cancel() {
+        for (Future<?> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+        targetOrigin = Double.NaN;
+    }
+
+    /**
+     * Prefetch the locus the user is most likely to visit next from the session history,  the previous entry, or the
+     * next if there is none.  Tracks hold a single prefetched interval per frame,  so prefetching both entries would
+     * discard one of them.
+     */
+    private void scheduleHistory(ReferenceFrame frame, Collection<Track> tracks) {
+
+        if (!IGV.hasInstance() || FrameManager.isGeneListMode() || IGV.getInstance().getSession() == null) {
+            return;
+        }
+
+        History history = IGV.getInstance().getSession().getHistory();
+        History.Entry entry = history.peekBack();
+        if (entry == null) {
+            entry = history.peekForward();
+        }
+        if (entry == null || entry.getLocus().equals(Globals.CHR_ALL) || entry.getLocus().startsWith("List")) {
+            return;
+        }
+        final String searchString = entry.getLocus();
+        final ReferenceFrame targetFrame = new ReferenceFrame(frame, new IGVEventBus());
+        pending.add(getExecutor().submit(() -> {
+            Locus locus = FrameManager.getLocus(searchString);
+            if (locus != null && !locus.getChr().equals(Globals.CHR_ALL)) {
+                targetFrame.jumpTo(locus);
+                for (Track track : tracks) {
+                    prefetch(track, targetFrame);
+                }
+            }
+        }));
+    }
+
+    private void schedule(ReferenceFrame targetFrame, Collection<Track> tracks) {
+
+        Iterator<Future<?>> iter = pending.iterator();
+        while (iter.hasNext()) {
+            if (iter.next().isDone()) {
+                iter.remove();
+            }
+        }
+
+        for (Track track : tracks) {
+            pending.add(getExecutor().submit(() -> prefetch(track, targetFrame)));
+        }
+    }
+
+    private static void prefetch(Track track, ReferenceFrame targetFrame) {
+        try {
+            track.prefetch(targetFrame);
+        } catch (Exception e) {
+            log.error("Error prefetching " + track.getName() + " at " + targetFrame.getFormattedLocusString(), e);
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(2, r -> {
+                Thread thread = new Thread(r, "PrefetchScheduler");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return executor;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.track.Track;
+import org.broad.igv.ui.IGV;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renderings of the tracks of a data panel,  kept between repaints.  Repaints that do not change the view,  such as
+ * those for tooltips, popup menus, and dragging dividers,  copy the rendering of each unchanged track rather than
+ * render it again.  Tracks without a current rendering are rendered concurrently before the panel is painted.
+ * <p/>
+ * A rendering is reused while the track's render key,  the frame location and scale,  and the track bounds are
+ * unchanged.  All renderings are invalidated by {@link #invalidateAll()},  which is called when IGV is refreshed
+ * after track or preference changes.  Tracks without a render key,  or with overlays,  are rendered directly.
+ *
+ * @see Track#getRenderKey(ReferenceFrame)
+ */
+public class TrackTileCache {
+
+    private static Logger log = Logger.getLogger(TrackTileCache.class);
+
+    /**
+     * Taller tracks,  typically alignments,  are not cached
+     */
+    static final int MAX_TILE_HEIGHT = 2000;
+
+    /**
+     * Maximum number of pixels held by the tiles of one panel
+     */
+    static final long MAX_PIXELS = 16 * 1024 * 1024;
+
+    private static final AtomicInteger generation = new AtomicInteger();
+
+    private static ExecutorService executor;
+
+    // Tiles in access order,  so the least recently drawn are evicted first
+    private final LinkedHashMap<Track, Tile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private long pixelCount = 0;
+
+    private int hitCount = 0;
+    private int missCount = 0;
+
+    /**
+     * Invalidate the renderings of all tracks in all panels.
+     */
+    public static void invalidateAll() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Render tracks without a current tile into new tiles,  concurrently if there are several.  Tiles of tracks no
+     * longer in the panel are discarded.
+     *
+     * @param trackRects bounds of the tracks to be painted
+     * @param allTracks  all tracks of the panel
+     * @param context
+     */
+    synchronized void update(Map<Track, Rectangle> trackRects, Collection<Track> allTracks, RenderContext context) {
+
+        tiles.keySet().retainAll(new HashSet<>(allTracks));
+
+        final double scaleX = getScaleX(context);
+        final double scaleY = getScaleY(context);
+        Map<Track, Object> missing = new LinkedHashMap<>();
+        for (Map.Entry<Track, Rectangle> entry : trackRects.entrySet()) {
+            Track track = entry.getKey();
+            Object key = getKey(track, entry.getValue(), context);
+            if (key != null) {
+                Tile tile = tiles.get(track);
+                if (tile == null || !tile.key.equals(key)) {
+                    missing.put(track, key);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        List<Track> tracks = new ArrayList<>(missing.keySet());
+        if (tracks.size() == 1) {
+            Track track = tracks.get(0);
+            try {
+                putTile(track, render(track, trackRects.get(track), missing.get(track), context, scaleX, scaleY));
+            } catch (Exception e) {
+                log.error("Error rendering " + track.getName(), e);
+            }
+            return;
+        }
+
+        List<Future<Tile>> futures = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            Rectangle rect = trackRects.get(track);
+            Object key = missing.get(track);
+            futures.add(getExecutor().submit(() -> render(track, rect, key, context, scaleX, scaleY)));
+        }
+        for (int i = 0; i < tracks.size(); i++) {
+            try {
+                putTile(tracks.get(i), futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Error rendering " + tracks.get(i).getName(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Draw the current tile of a track.
+     *
+     * @return true if the tile was drawn,  false if the track must be rendered
+     */
+    synchronized boolean draw(Track track, Rectangle rect, RenderContext context) {
+        Object key = getKey(track, rect, context);
+        Tile tile = key == null ? null : tiles.get(track);
+        if (tile == null || !tile.key.equals(key)) {
+            missCount++;
+            return false;
+        }
+        context.getGraphics().drawImage(tile.image, rect.x, rect.y, rect.width, rect.height, null);
+        hitCount++;
+        return true;
+    }
+
+    synchronized void clear() {
+        tiles.clear();
+        pixelCount = 0;
+    }
+
+    /**
+     * Return and reset the number of tracks drawn from a tile,  and the number rendered,  since the last call.
+     */
+    synchronized int[] getAndResetCounts() {
+        int[] counts = {hitCount, missCount};
+        hitCount = 0;
+        missCount = 0;
+        return counts;
+    }
+
+    synchronized int size() {
+        return tiles.size();
+    }
+
+    private Object getKey(Track track, Rectangle rect, RenderContext context) {
+
+        if (rect.width <= 0 || rect.height <= 0 || rect.height > MAX_TILE_HEIGHT) {
+            return null;
+        }
+        if (IGV.hasInstance()) {
+            List<Track> overlays = IGV.getInstance().getOverlayTracks(track);
+            if (overlays != null && !overlays.isEmpty()) {
+                return null;
+            }
+        }
+        ReferenceFrame frame = context.getReferenceFrame();
+        Object renderKey = track.getRenderKey(frame);
+        if (renderKey == null) {
+            return null;
+        }
+        return Arrays.asList(generation.get(), renderKey, frame.getChrName(), frame.getOrigin(), frame.getScale(),
+                new Rectangle(rect), getScaleX(context), getScaleY(context));
+    }
+
+    /**
+     * Render a track into a new tile,  at the resolution of the device the panel is painted on.
+     */
+    private static Tile render(Track track, Rectangle rect, Object key, RenderContext context,
+                               double scaleX, double scaleY) {
+
+        BufferedImage image = new BufferedImage((int) Math.ceil(rect.width * scaleX),
+                (int) Math.ceil(rect.height * scaleY), BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g = image.createGraphics();
+        RenderContext tileContext = null;
+        try {
+            g.scale(scaleX, scaleY);
+            g.translate(-rect.x, -rect.y);
+            g.setClip(rect);
+            tileContext = new RenderContext(context.getPanel(), g, context.getReferenceFrame(), new Rectangle(rect));
+            tileContext.setInsertionMarkers(context.getInsertionMarkers());
+            track.render(tileContext, rect);
+        } finally {
+            if (tileContext != null) {
+                tileContext.dispose();
+            }
+            g.dispose();
+        }
+        return new Tile(key, image);
+    }
+
+    private void putTile(Track track, Tile tile) {
+        Tile previous = tiles.put(track, tile);
+        if (previous != null) {
+            pixelCount -= previous.getPixelCount();
+        }
+        pixelCount += tile.getPixelCount();
+
+        Iterator<Tile> iter = tiles.values().iterator();
+        while (pixelCount > MAX_PIXELS && iter.hasNext()) {
+            Tile eldest = iter.next();
+            if (eldest == tile) {
+                break;
+            }
+            pixelCount -= eldest.getPixelCount();
+            iter.remove();
+        }
+    }
+
+    private static double getScaleX(RenderContext context) {
+        AffineTransform transform = context.getGraphics().getTransform();
+        return Math.max(1, Math.abs(transform.getScaleX()));
+    }
+
+    private static double getScaleY(RenderContext context) {
+        AffineTransform transform = context.getGraphics().getTransform();
+        return Math.max(1, Math.abs(transform.getScaleY()));
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int threadCount = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            executor = Executors.newFixedThreadPool(threadCount, r -> {
+                Thread thread = new Thread(r, "TrackTileCache");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private static class Tile {
+
+        final Object key;
+        final BufferedImage image;
+
+        Tile(Object key, BufferedImage image) {
+            this.key = key;
+            this.image = image;
+        }
+
+        long getPixelCount() {
+            return (long) image.getWidth() * image.getHeight();
+        }
+    }
+}
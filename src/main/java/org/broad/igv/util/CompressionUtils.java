@@ -43,13 +43,30 @@ public class CompressionUtils {
 
     private static Logger log = Logger.getLogger(CompressionUtils.class);
 
+    private static final ThreadLocal<CompressionUtils> threadInstance = ThreadLocal.withInitial(CompressionUtils::new);
+
     private Deflater deflater;
     private Inflater decompressor;
 
     public CompressionUtils() {
         decompressor = new Inflater();
-        deflater = new Deflater();
-        deflater.setLevel(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Return an instance owned by the calling thread.  Inflater and Deflater hold native zlib state which is
+     * expensive to create and only released on finalization,  callers decompressing many small blocks should
+     * reuse this instance rather than creating a new one per block.
+     */
+    public static CompressionUtils getThreadInstance() {
+        return threadInstance.get();
+    }
+
+    private Deflater getDeflater() {
+        if (deflater == null) {
+            deflater = new Deflater();
+            deflater.setLevel(Deflater.DEFAULT_COMPRESSION);
+        }
+        return deflater;
     }
 
     public byte[] decompress(byte[] data) {
@@ -78,7 +95,7 @@ public class CompressionUtils {
 
             // If we are finished with the current chunk start a new one
             if (decompressor.finished()) {
-                decompressor = new Inflater();
+                decompressor.reset();
                 int offset = data.length - rem;
                 decompressor.setInput(data, offset, rem);
             }
@@ -107,6 +124,7 @@ public class CompressionUtils {
     public synchronized byte[] compress(byte[] data) {
 
         // Give the compressor the data to compress
+        Deflater deflater = getDeflater();
         deflater.reset();
         deflater.setInput(data);
         deflater.finish();
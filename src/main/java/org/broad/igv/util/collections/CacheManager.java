@@ -0,0 +1,155 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.collections;
+
+import org.apache.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Global memory budget shared by all {@link WeightedCache} instances.  When the total weight of all caches exceeds
+ * the budget the least recently used entries, across all caches, are evicted.
+ * <p/>
+ * Caches are held by weak reference, a cache that is no longer reachable does not need to be cleared.
+ */
+public class CacheManager {
+
+    private static Logger log = Logger.getLogger(CacheManager.class);
+
+    /**
+     * Default budget, as a fraction of the maximum heap size
+     */
+    static final double DEFAULT_HEAP_FRACTION = 0.25;
+
+    private static volatile long budget = (long) (Runtime.getRuntime().maxMemory() * DEFAULT_HEAP_FRACTION);
+
+    private static final AtomicLong totalWeight = new AtomicLong();
+
+    private static final Set<WeightedCache<?, ?>> caches =
+            Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private static final ReentrantLock trimLock = new ReentrantLock();
+
+    static void register(WeightedCache<?, ?> cache) {
+        caches.add(cache);
+    }
+
+    static void addWeight(long delta) {
+        totalWeight.addAndGet(delta);
+    }
+
+    /**
+     * Evict entries if the total weight exceeds the budget.  Only one thread trims at a time, other threads
+     * continue without waiting.
+     */
+    static void checkBudget() {
+        if (totalWeight.get() > budget && trimLock.tryLock()) {
+            try {
+                trim();
+            } finally {
+                trimLock.unlock();
+            }
+        }
+    }
+
+    private static void trim() {
+
+        List<WeightedCache<?, ?>> liveCaches = getCaches();
+
+        // Caches which have been garbage collected still hold weight in the running total, resynchronize
+        long liveWeight = 0;
+        for (WeightedCache<?, ?> cache : liveCaches) {
+            liveWeight += cache.getWeight();
+        }
+        long stale = totalWeight.get() - liveWeight;
+        if (stale != 0) {
+            totalWeight.addAndGet(-stale);
+        }
+
+        long evicted = 0;
+        while (totalWeight.get() > budget) {
+            WeightedCache<?, ?> oldest = null;
+            long oldestAccess = Long.MAX_VALUE;
+            for (WeightedCache<?, ?> cache : liveCaches) {
+                long access = cache.getOldestAccess();
+                if (access < oldestAccess) {
+                    oldestAccess = access;
+                    oldest = cache;
+                }
+            }
+            if (oldest == null) {
+                break;
+            }
+            long w = oldest.evictOldest();
+            if (w > 0) {
+                evicted += w;
+            }
+        }
+        if (evicted > 0) {
+            log.debug("Cache budget exceeded, evicted " + evicted + " bytes");
+        }
+    }
+
+    private static List<WeightedCache<?, ?>> getCaches() {
+        synchronized (caches) {
+            return new ArrayList<>(caches);
+        }
+    }
+
+    /**
+     * Return the global budget, in bytes
+     */
+    public static long getBudget() {
+        return budget;
+    }
+
+    public static void setBudget(long budget) {
+        CacheManager.budget = budget;
+        checkBudget();
+    }
+
+    /**
+     * Return the total estimated size of all cached values, in bytes
+     */
+    public static long getTotalWeight() {
+        return totalWeight.get();
+    }
+
+    /**
+     * Return a summary of all live caches, including hit, miss, and eviction counts.
+     */
+    public static String getStatistics() {
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("Cache budget=" + budget + "  weight=" + totalWeight.get());
+        for (WeightedCache<?, ?> cache : getCaches()) {
+            buffer.append("\n" + cache.toString());
+        }
+        return buffer.toString();
+    }
+
+}
@@ -67,6 +67,19 @@ public class DownsampledDoubleArrayList {
         }
     }
 
+    /**
+     * Add all values from another list, downsampling as needed.  The other list's own downsampled count is carried
+     * over so that sampling probabilities for subsequent additions reflect the combined number of values seen.
+     *
+     * @param other
+     */
+    public void addAll(DownsampledDoubleArrayList other) {
+        for (int i = 0; i < other.size(); i++) {
+            add(other.get(i));
+        }
+        downsampledCount += other.downsampledCount;
+    }
+
     public double get(int idx) {
         return data.get(idx);
     }
@@ -0,0 +1,269 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.broad.igv.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable sketch for estimating quantiles of a stream of doubles in bounded memory,  after Dunning's
+ * "merging t-digest".  Values are buffered and periodically merged into a sorted list of weighted centroids.
+ * Centroids near the tails are kept small,  so extreme percentiles (e.g. 2% and 98%) remain accurate.  The number of
+ * centroids is bounded by roughly the compression factor regardless of the number of values added.
+ * <p/>
+ * Digests can be combined with merge(),  for example to summarize several bins or tiles.
+ */
+public class TDigest {
+
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private final int bufferSize;
+
+    // Merged centroids,  sorted by mean
+    private double[] means;
+    private double[] weights;
+    private int nCentroids = 0;
+
+    // Values (or centroids from a merged digest) not yet merged.  Allocated on first use.
+    private double[] bufferMeans;
+    private double[] bufferWeights;
+    private int nBuffered = 0;
+
+    private double totalWeight = 0;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    public TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param compression controls the size / accuracy trade off.  The digest holds no more than about this many
+     *                    centroids.
+     */
+    public TDigest(double compression) {
+        this.compression = compression;
+        this.bufferSize = (int) (5 * compression);
+        this.means = new double[0];
+        this.weights = new double[0];
+    }
+
+    public void add(double v) {
+        add(v, 1);
+    }
+
+    public void add(double v, double w) {
+        if (Double.isNaN(v) || w <= 0) {
+            return;
+        }
+        if (bufferMeans == null) {
+            bufferMeans = new double[bufferSize];
+            bufferWeights = new double[bufferSize];
+        } else if (nBuffered == bufferSize) {
+            compress();
+        }
+        bufferMeans[nBuffered] = v;
+        bufferWeights[nBuffered] = w;
+        nBuffered++;
+        totalWeight += w;
+        min = Double.isNaN(min) ? v : Math.min(min, v);
+        max = Double.isNaN(max) ? v : Math.max(max, v);
+    }
+
+    /**
+     * Add all values summarized by another digest.  The other digest is not modified.
+     */
+    public void merge(TDigest other) {
+        for (int i = 0; i < other.nCentroids; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        for (int i = 0; i < other.nBuffered; i++) {
+            add(other.bufferMeans[i], other.bufferWeights[i]);
+        }
+    }
+
+    /**
+     * Return the total weight (number of values,  if added with unit weight) summarized by this digest
+     */
+    public double size() {
+        return totalWeight;
+    }
+
+    public int centroidCount() {
+        compress();
+        return nCentroids;
+    }
+
+    /**
+     * Estimate the value at quantile q,  0 <= q <= 1.  Returns NaN for an empty digest.
+     */
+    public double quantile(double q) {
+
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile out of range: " + q);
+        }
+
+        compress();
+
+        if (nCentroids == 0) {
+            return Double.NaN;
+        } else if (nCentroids == 1) {
+            return means[0];
+        }
+
+        // Each centroid is centered on its cumulative weight.  Interpolate between adjacent centers,  or between
+        // the extreme centroids and the min/max values at the tails.
+        final double index = q * totalWeight;
+
+        if (index < weights[0] / 2) {
+            return min + (means[0] - min) * index / (weights[0] / 2);
+        }
+
+        double weightSoFar = weights[0] / 2;
+        for (int i = 0; i < nCentroids - 1; i++) {
+            double dw = (weights[i] + weights[i + 1]) / 2;
+            if (weightSoFar + dw > index) {
+                double f = (index - weightSoFar) / dw;
+                return means[i] + f * (means[i + 1] - means[i]);
+            }
+            weightSoFar += dw;
+        }
+
+        int last = nCentroids - 1;
+        double tail = weights[last] / 2;
+        double f = tail == 0 ? 1 : Math.min(1, (index - weightSoFar) / tail);
+        return means[last] + f * (max - means[last]);
+    }
+
+    /**
+     * Merge buffered values into the centroid list
+     */
+    private void compress() {
+
+        if (nBuffered == 0) {
+            return;
+        }
+
+        // Centroids are already sorted,  sort the buffer and walk the two lists in order
+        sort(bufferMeans, bufferWeights, 0, nBuffered - 1);
+
+        int n = nCentroids + nBuffered;
+        double[] newMeans = new double[n];
+        double[] newWeights = new double[n];
+        int count = 0;
+
+        int ci = 0;
+        int bi = 0;
+        double weightSoFar = 0;
+        double kLeft = k(0);
+        double curMean = Double.NaN;
+        double curWeight = 0;
+
+        while (ci < nCentroids || bi < nBuffered) {
+            double m, w;
+            if (bi == nBuffered || (ci < nCentroids && means[ci] <= bufferMeans[bi])) {
+                m = means[ci];
+                w = weights[ci];
+                ci++;
+            } else {
+                m = bufferMeans[bi];
+                w = bufferWeights[bi];
+                bi++;
+            }
+
+            if (curWeight == 0) {
+                curMean = m;
+                curWeight = w;
+            } else if (k((weightSoFar + curWeight + w) / totalWeight) - kLeft <= 1) {
+                curWeight += w;
+                curMean += (m - curMean) * w / curWeight;
+            } else {
+                newMeans[count] = curMean;
+                newWeights[count] = curWeight;
+                count++;
+                weightSoFar += curWeight;
+                kLeft = k(weightSoFar / totalWeight);
+                curMean = m;
+                curWeight = w;
+            }
+        }
+        newMeans[count] = curMean;
+        newWeights[count] = curWeight;
+        count++;
+        nBuffered = 0;
+
+        means = Arrays.copyOf(newMeans, count);
+        weights = Arrays.copyOf(newWeights, count);
+        nCentroids = count;
+    }
+
+    /**
+     * Sort values and their weights,  in place,  by value
+     */
+    private static void sort(double[] values, double[] w, int lo, int hi) {
+        while (hi - lo > 16) {
+            double pivot = values[(lo + hi) >>> 1];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (values[i] < pivot) i++;
+                while (values[j] > pivot) j--;
+                if (i <= j) {
+                    swap(values, w, i++, j--);
+                }
+            }
+            // Recurse on the smaller partition to bound stack depth
+            if (j - lo < hi - i) {
+                sort(values, w, lo, j);
+                lo = i;
+            } else {
+                sort(values, w, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && values[j - 1] > values[j]; j--) {
+                swap(values, w, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(double[] values, double[] w, int i, int j) {
+        double tmp = values[i];
+        values[i] = values[j];
+        values[j] = tmp;
+        tmp = w[i];
+        w[i] = w[j];
+        w[j] = tmp;
+    }
+
+    /**
+     * The scale function,  mapping quantile to centroid index.  Centroids may span at most 1 unit of k.
+     */
+    private double k(double q) {
+        return compression * (Math.asin(2 * Math.min(1, q) - 1) / Math.PI + 0.5) / 2;
+    }
+
+}
@@ -0,0 +1,357 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.collections;
+
+import org.apache.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * A least-recently-used cache bounded by the estimated memory size ("weight") of its values, as opposed to the
+ * number of entries.  Weights are computed by a caller supplied function when a value is added.
+ * <p/>
+ * Each cache has its own quota, and all caches together are bounded by the global budget of {@link CacheManager}.
+ * Entries are partitioned into segments, each with its own lock, so concurrent access does not contend on a single
+ * lock.  Eviction removes the least recently used entry across segments.
+ * <p/>
+ * Null values are permitted, a key mapped to null is distinguished from an absent key by {@link #containsKey}.
+ * <p/>
+ * The entry most recently added is never evicted to make room for itself.  A value heavier than the quota is kept
+ * alone in the cache,  as it would be in a cache bounded by number of entries.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class WeightedCache<K, V> {
+
+    private static Logger log = Logger.getLogger(WeightedCache.class);
+
+    private static final int DEFAULT_SEGMENT_COUNT = 4;
+
+    /**
+     * Weight assigned to null values
+     */
+    private static final long NULL_WEIGHT = 16;
+
+    private final String name;
+    private final ToLongFunction<? super V> weigher;
+    private volatile long maxWeight;
+
+    private final Segment<K, V>[] segments;
+    private final AtomicLong weight = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param name      - name used to identify the cache in statistics
+     * @param maxWeight - quota for this cache, in bytes
+     * @param weigher   - function returning the estimated size of a value in bytes
+     */
+    public WeightedCache(String name, long maxWeight, ToLongFunction<? super V> weigher) {
+        this(name, maxWeight, weigher, DEFAULT_SEGMENT_COUNT);
+    }
+
+    public WeightedCache(String name, long maxWeight, ToLongFunction<? super V> weigher, int segmentCount) {
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        @SuppressWarnings("unchecked")
+        Segment<K, V>[] segments = (Segment<K, V>[]) new Segment<?, ?>[Math.max(1, segmentCount)];
+        this.segments = segments;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment<>();
+        }
+        CacheManager.register(this);
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        h ^= (h >>> 16);
+        return segments[(h & 0x7fffffff) % segments.length];
+    }
+
+    /**
+     * Return the value for the key, or null if there is none.  Counts a hit if the key is present (even if mapped
+     * to null), a miss otherwise.
+     */
+    public V get(Object key) {
+        Entry<V> entry = segmentFor(key).get(key);
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        } else {
+            hitCount.increment();
+            return entry.value;
+        }
+    }
+
+    public boolean containsKey(Object key) {
+        return segmentFor(key).containsKey(key);
+    }
+
+    public V put(K key, V value) {
+
+        long w = value == null ? NULL_WEIGHT : Math.max(1, weigher.applyAsLong(value));
+        Entry<V> previous = segmentFor(key).put(key, new Entry<>(value, w));
+
+        long delta = previous == null ? w : w - previous.weight;
+        addWeight(delta);
+
+        if (weight.get() > maxWeight) {
+            // Older entries are evicted first,  stop before the new entry if it alone exceeds the quota
+            if (w > maxWeight) {
+                log.debug("Entry of weight " + w + " exceeds the quota of cache " + name);
+            }
+            evict(Math.max(maxWeight, w));
+        }
+        CacheManager.checkBudget();
+
+        return previous == null ? null : previous.value;
+    }
+
+    public V remove(Object key) {
+        Entry<V> previous = segmentFor(key).remove(key);
+        if (previous == null) {
+            return null;
+        } else {
+            addWeight(-previous.weight);
+            return previous.value;
+        }
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            addWeight(-segment.clear());
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Return a snapshot of the keys currently in the cache
+     */
+    public Set<K> keySet() {
+        Set<K> keys = new LinkedHashSet<>();
+        for (Segment<K, V> segment : segments) {
+            segment.addKeys(keys);
+        }
+        return keys;
+    }
+
+    private void addWeight(long delta) {
+        weight.addAndGet(delta);
+        CacheManager.addWeight(delta);
+    }
+
+    /**
+     * Evict least recently used entries until the weight is <= targetWeight
+     */
+    void evict(long targetWeight) {
+        while (weight.get() > targetWeight) {
+            if (evictOldest() < 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used entry across all segments.
+     *
+     * @return the weight evicted, or -1 if the cache is empty
+     */
+    long evictOldest() {
+        while (true) {
+            Segment<K, V> oldest = null;
+            long oldestAccess = Long.MAX_VALUE;
+            for (Segment<K, V> segment : segments) {
+                long access = segment.getOldestAccess();
+                if (access < oldestAccess) {
+                    oldestAccess = access;
+                    oldest = segment;
+                }
+            }
+            if (oldest == null) {
+                return -1;
+            }
+            // The segment might have been modified since it was inspected, in which case try again
+            long w = oldest.evictOldest(oldestAccess);
+            if (w >= 0) {
+                addWeight(-w);
+                evictionCount.increment();
+                return w;
+            }
+        }
+    }
+
+    /**
+     * Return the last access time of the least recently used entry, or Long.MAX_VALUE if the cache is empty
+     */
+    long getOldestAccess() {
+        long oldestAccess = Long.MAX_VALUE;
+        for (Segment<K, V> segment : segments) {
+            oldestAccess = Math.min(oldestAccess, segment.getOldestAccess());
+        }
+        return oldestAccess;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the total estimated size of values in the cache, in bytes
+     */
+    public long getWeight() {
+        return weight.get();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+        evict(maxWeight);
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    @Override
+    public String toString() {
+        return name + "  entries=" + size() + "  weight=" + getWeight() + "/" + maxWeight +
+                "  hits=" + getHitCount() + "  misses=" + getMissCount() + "  evictions=" + getEvictionCount();
+    }
+
+    private static class Entry<V> {
+        final V value;
+        final long weight;
+        long lastAccess;
+
+        Entry(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+            this.lastAccess = System.nanoTime();
+        }
+    }
+
+    /**
+     * A partition of the cache, an access ordered map guarded by its own lock.
+     */
+    private static class Segment<K, V> {
+
+        private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+
+        synchronized Entry<V> get(Object key) {
+            Entry<V> entry = map.get(key);
+            if (entry != null) {
+                entry.lastAccess = System.nanoTime();
+            }
+            return entry;
+        }
+
+        synchronized boolean containsKey(Object key) {
+            return map.containsKey(key);
+        }
+
+        synchronized Entry<V> put(K key, Entry<V> entry) {
+            return map.put(key, entry);
+        }
+
+        synchronized Entry<V> remove(Object key) {
+            return map.remove(key);
+        }
+
+        /**
+         * @return the weight removed
+         */
+        synchronized long clear() {
+            long w = 0;
+            for (Entry<V> entry : map.values()) {
+                w += entry.weight;
+            }
+            map.clear();
+            return w;
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized void addKeys(Set<K> keys) {
+            keys.addAll(map.keySet());
+        }
+
+        synchronized long getOldestAccess() {
+            if (map.isEmpty()) {
+                return Long.MAX_VALUE;
+            }
+            return map.values().iterator().next().lastAccess;
+        }
+
+        /**
+         * Remove the least recently used entry if its last access time is still "access"
+         *
+         * @return the weight removed, or -1 if the entry was not removed
+         */
+        synchronized long evictOldest(long access) {
+            if (map.isEmpty()) {
+                return -1;
+            }
+            Iterator<Entry<V>> iter = map.values().iterator();
+            Entry<V> eldest = iter.next();
+            if (eldest.lastAccess != access) {
+                return -1;
+            }
+            iter.remove();
+            return eldest.weight;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+/**
+ * A range of bytes within a stream,  used to request several ranges in one call.
+ *
+ * @see IGVSeekableStreamFactory#readRanges(htsjdk.samtools.seekablestream.SeekableStream, java.util.List)
+ */
+public class ByteRange {
+
+    private final long start;
+    private final int size;
+
+    public ByteRange(long start, int size) {
+        this.start = start;
+        this.size = size;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the end of the range,  exclusive
+     */
+    public long getEnd() {
+        return start + size;
+    }
+
+    @Override
+    public String toString() {
+        return start + "-" + getEnd();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import org.apache.log4j.Logger;
+import org.broad.igv.DirectoryManager;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.util.HttpUtils;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Static methods for managing the on-disk cache of remote file blocks.  Blocks are stored one per file,  named by a
+ * digest of the url and its ETag (or Last-Modified date) plus the block number,  so a remote file that changes is
+ * cached under a new key.  Least recently used blocks are deleted when the cache exceeds its size limit.
+ *
+ * @see DiskCachedSeekableStream
+ */
+public class DiskBlockCache {
+
+    private static Logger log = Logger.getLogger(DiskBlockCache.class);
+
+    static final String EXTENSION = ".blk";
+
+    /**
+     * Cache keys by url,  the remote file is checked for changes once per session.  An empty key indicates the file
+     * has no validator and cannot be cached.
+     */
+    private static final Map<String, String> keyCache = new ConcurrentHashMap<>();
+
+    private static long cacheSize = -1;
+
+    public static boolean isEnabled() {
+        return PreferencesManager.getPreferences().getAsBoolean(Constants.REMOTE_CACHE_ENABLED);
+    }
+
+    /**
+     * Return the cache key for the url,  or null if it cannot be cached because the server reports neither an ETag nor
+     * a Last-Modified date.
+     */
+    public static String getKey(URL url) {
+
+        String urlString = url.toExternalForm();
+        String key = keyCache.get(urlString);
+        if (key == null) {
+            key = "";
+            try {
+                String validator = HttpUtils.getInstance().getHeaderField(url, "ETag");
+                if (validator == null) {
+                    validator = HttpUtils.getInstance().getHeaderField(url, "Last-Modified");
+                }
+                if (validator != null) {
+                    key = digest(urlString + "\n" + validator);
+                }
+            } catch (IOException e) {
+                log.error("Error checking remote file " + urlString, e);
+            }
+            keyCache.put(urlString, key);
+        }
+        return key.isEmpty() ? null : key;
+    }
+
+    public static boolean containsBlock(String key, long blockNumber) {
+        return new File(getCacheDirectory(), getFileName(key, blockNumber)).exists();
+    }
+
+    /**
+     * Return the cached block,  or null if it is not in the cache
+     */
+    public static byte[] readBlock(String key, long blockNumber) {
+
+        File file = new File(getCacheDirectory(), getFileName(key, blockNumber));
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            file.setLastModified(System.currentTimeMillis());   // Least recently used order
+            return bytes;
+        } catch (IOException e) {
+            log.error("Error reading cached block " + file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    public static void saveBlock(String key, long blockNumber, byte[] bytes, int offset, int length) {
+
+        File cacheDir = getCacheDirectory();
+        File file = new File(cacheDir, getFileName(key, blockNumber));
+        File tmpFile = null;
+        try {
+            // A unique temporary file,  other threads or IGV sessions may be writing the same block
+            tmpFile = File.createTempFile(getFileName(key, blockNumber), ".tmp", cacheDir);
+            try (OutputStream out = new FileOutputStream(tmpFile)) {
+                out.write(bytes, offset, length);
+            }
+            // Readers never see a partially written block
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            addToCacheSize(length);
+        } catch (IOException e) {
+            log.error("Error saving cached block " + file.getAbsolutePath(), e);
+            if (tmpFile != null) {
+                tmpFile.delete();
+            }
+        }
+    }
+
+    public static File getCacheDirectory() {
+
+        String rootDirectoryString = PreferencesManager.getPreferences().get(Constants.REMOTE_CACHE_DIRECTORY);
+
+        File rootDirectory;
+        if (rootDirectoryString != null) {
+            rootDirectory = new File(rootDirectoryString);
+        } else {
+            rootDirectory = new File(DirectoryManager.getIgvDirectory(), "remote_cache");
+        }
+
+        if (!rootDirectory.exists()) {
+            rootDirectory.mkdirs();
+        }
+
+        return rootDirectory;
+    }
+
+    private static synchronized void addToCacheSize(long length) {
+
+        if (cacheSize < 0) {
+            cacheSize = 0;
+            for (File f : listBlockFiles()) {
+                cacheSize += f.length();
+            }
+        } else {
+            cacheSize += length;
+        }
+
+        long maxSize = PreferencesManager.getPreferences().getAsInt(Constants.REMOTE_CACHE_SIZE) * 1000000L;
+        if (cacheSize > maxSize) {
+            trim(maxSize);
+        }
+    }
+
+    /**
+     * Delete least recently used blocks until the cache is 90% of maxSize,  to avoid trimming on every write
+     */
+    private static void trim(long maxSize) {
+
+        File[] files = listBlockFiles();
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+        long target = (long) (0.9 * maxSize);
+        long size = 0;
+        for (File f : files) {
+            size += f.length();
+        }
+        for (File f : files) {
+            if (size <= target) {
+                break;
+            }
+            long length = f.length();
+            if (f.delete()) {
+                size -= length;
+            }
+        }
+        cacheSize = size;
+    }
+
+    /**
+     * Delete all cached blocks
+     */
+    public static synchronized void clear() {
+        for (File f : listBlockFiles()) {
+            f.delete();
+        }
+        cacheSize = 0;
+        keyCache.clear();
+    }
+
+    private static File[] listBlockFiles() {
+        File[] files = getCacheDirectory().listFiles((dir, name) -> name.endsWith(EXTENSION));
+        return files == null ? new File[0] : files;
+    }
+
+    private static String getFileName(String key, long blockNumber) {
+        return key + "-" + blockNumber + EXTENSION;
+    }
+
+    private static String digest(String string) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(string.getBytes(StandardCharsets.UTF_8));
+            StringBuilder buffer = new StringBuilder();
+            for (byte b : hash) {
+                buffer.append(String.format("%02x", b & 0xff));
+            }
+            return buffer.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
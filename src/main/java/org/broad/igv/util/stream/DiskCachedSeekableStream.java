@@ -0,0 +1,220 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.apache.log4j.Logger;
+import org.broad.igv.util.HttpUtils;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A seekable stream which reads a remote stream in fixed size blocks through the on-disk {@link DiskBlockCache}.
+ * Runs of consecutive uncached blocks are fetched from the remote stream with a single read.
+ */
+public class DiskCachedSeekableStream extends SeekableStream {
+
+    private static Logger log = Logger.getLogger(DiskCachedSeekableStream.class);
+
+    static final int BLOCK_SIZE = 64000;
+
+    private final SeekableStream wrappedStream;
+    private final String key;
+    private long position = 0;
+    private long length = -1;
+    private long contentLength = 0;    // Length reported by the server,  0 if not yet checked
+
+    // Most recently fetched run of blocks
+    private long runStartBlock = -1;
+    private byte[] runData;
+    private int runLength;
+
+    public DiskCachedSeekableStream(SeekableStream wrappedStream, String key) {
+        this.wrappedStream = wrappedStream;
+        this.key = key;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int len) throws IOException {
+
+        if (offset < 0 || len < 0 || (offset + len) > buffer.length) {
+            throw new IndexOutOfBoundsException("Offset=" + offset + ",len=" + len + ",buflen=" + buffer.length);
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        int n = 0;
+        while (n < len) {
+            long blockNumber = position / BLOCK_SIZE;
+            long lastBlock = (position + len - n - 1) / BLOCK_SIZE;
+            byte[] block = getBlock(blockNumber, lastBlock);
+
+            int blockOffset = (int) (position - blockNumber * BLOCK_SIZE);
+            if (block == null || blockOffset >= block.length) {
+                break;   // EOF
+            }
+            int count = Math.min(len - n, block.length - blockOffset);
+            System.arraycopy(block, blockOffset, buffer, offset + n, count);
+            n += count;
+            position += count;
+
+            if (block.length < BLOCK_SIZE && blockOffset + count == block.length) {
+                length = position;
+                break;   // Only the last block is short
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    /**
+     * Return the block,  from the most recent run,  the disk cache,  or the remote stream in that order.  On a cache
+     * miss all uncached blocks up to lastBlock are fetched.
+     */
+    private byte[] getBlock(long blockNumber, long lastBlock) throws IOException {
+
+        if (runData != null && blockNumber >= runStartBlock) {
+            int start = (int) ((blockNumber - runStartBlock) * BLOCK_SIZE);
+            if (start < runLength) {
+                return Arrays.copyOfRange(runData, start, Math.min(runLength, start + BLOCK_SIZE));
+            }
+        }
+
+        byte[] block = DiskBlockCache.readBlock(key, blockNumber);
+        if (block != null) {
+            return block;
+        }
+
+        // Extend the run through consecutive uncached blocks
+        long runEnd = blockNumber + 1;
+        while (runEnd <= lastBlock && !DiskBlockCache.containsBlock(key, runEnd)) {
+            runEnd++;
+        }
+
+        fetchRun(blockNumber, runEnd);
+        if (runLength == 0) {
+            return null;
+        }
+        return Arrays.copyOfRange(runData, 0, Math.min(runLength, BLOCK_SIZE));
+    }
+
+    private void fetchRun(long startBlock, long endBlock) throws IOException {
+
+        byte[] data = new byte[(int) ((endBlock - startBlock) * BLOCK_SIZE)];
+        wrappedStream.seek(startBlock * BLOCK_SIZE);
+        int n = 0;
+        while (n < data.length) {
+            int count = wrappedStream.read(data, n, data.length - n);
+            if (count < 0) {
+                break;
+            }
+            n += count;
+        }
+
+        // A run is short at the end of the file,  or if the connection was cut short.  In the latter case the partial
+        // block is discarded,  it must not be cached as the end of the file.  If the length is unknown the partial
+        // block is used for this read but not cached.
+        int cachedLength = n;
+        if (n < data.length) {
+            long contentLength = getContentLength();
+            if (contentLength <= 0) {
+                cachedLength = n - n % BLOCK_SIZE;
+            } else if (startBlock * BLOCK_SIZE + n < contentLength) {
+                n = cachedLength = n - n % BLOCK_SIZE;
+                if (n == 0) {
+                    throw new IOException("Connection closed before the end of " + wrappedStream.getSource());
+                }
+            }
+        }
+
+        for (int offset = 0; offset < cachedLength; offset += BLOCK_SIZE) {
+            DiskBlockCache.saveBlock(key, startBlock + offset / BLOCK_SIZE, data, offset, Math.min(BLOCK_SIZE, cachedLength - offset));
+        }
+
+        runStartBlock = startBlock;
+        runData = data;
+        runLength = n;
+    }
+
+    /**
+     * Return the length of the remote file,  or -1 if it is not known.  This is only needed when a run is short,  so
+     * the server is asked at most once.
+     */
+    private long getContentLength() {
+        if (contentLength == 0) {
+            contentLength = wrappedStream.length();
+            if (contentLength <= 0) {
+                try {
+                    contentLength = HttpUtils.getInstance().getContentLength(HttpUtils.createURL(getSource()));
+                } catch (IOException e) {
+                    log.error("Error fetching content length of " + getSource(), e);
+                    contentLength = -1;
+                }
+            }
+        }
+        return contentLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] tmp = new byte[1];
+        int n = read(tmp, 0, 1);
+        return n < 0 ? -1 : tmp[0] & 0xFF;
+    }
+
+    @Override
+    public long length() {
+        return length >= 0 ? length : wrappedStream.length();
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public void seek(long position) {
+        this.position = position;
+    }
+
+    @Override
+    public boolean eof() throws IOException {
+        long len = length();
+        return len > 0 && position >= len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        runData = null;
+        wrappedStream.close();
+    }
+
+    @Override
+    public String getSource() {
+        return wrappedStream.getSource();
+    }
+}
@@ -35,8 +35,12 @@ import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  */
@@ -44,6 +48,21 @@ public class IGVSeekableHTTPStream extends SeekableStream {
 
     static Logger log = Logger.getLogger(IGVSeekableHTTPStream.class);
 
+    /**
+     * Ranges separated by this many bytes or fewer are fetched in a single request
+     */
+    static int MAX_GAP = 16000;
+
+    /**
+     * Ranges separated by a gap are not merged into requests larger than this.  Overlapping ranges are always merged,
+     * so every range is contained in a single request.
+     */
+    static int MAX_MERGED_SIZE = 4000000;
+
+    static int MAX_CONCURRENT_REQUESTS = 4;
+
+    private static ExecutorService rangeExecutor;
+
     private long position = 0;
     private URL url;
     long contentLength = -1;                      // Not set
@@ -116,7 +135,7 @@ public class IGVSeekableHTTPStream extends SeekableStream {
             long endRange = position + len - 1;
             // IF we know the total content length, limit the end range to that.
             if (contentLength > 0) {
-                endRange = Math.min(endRange, contentLength);
+                endRange = Math.min(endRange, contentLength - 1);
             }
             if (log.isTraceEnabled()) {
                 log.trace("Trying to read range " + position + " to " + endRange);
@@ -157,6 +176,169 @@ public class IGVSeekableHTTPStream extends SeekableStream {
         }
     }
 
+    /**
+     * Read several byte ranges.  Ranges which are adjacent or separated by small gaps are merged into a single
+     * request,  and independent requests are issued concurrently.  The stream position is not changed.
+     * <p/>
+     * Results are returned in the order requested,  each buffer is a view of the merged response with no additional
+     * copy.  A buffer is shorter than its range if the range extends past the end of the stream.
+     */
+    public List<ByteBuffer> readRanges(List<ByteRange> ranges) throws IOException {
+
+        List<ByteRange> sorted = new ArrayList<>(ranges);
+        sorted.sort(Comparator.comparingLong(ByteRange::getStart));
+
+        List<ByteRange> requests = new ArrayList<>();
+        long requestStart = -1;
+        long requestEnd = -1;
+        for (ByteRange range : sorted) {
+            if (range.getSize() == 0) {
+                continue;
+            }
+            boolean overlaps = range.getStart() < requestEnd;
+            boolean nearby = range.getStart() <= requestEnd + MAX_GAP &&
+                    Math.max(requestEnd, range.getEnd()) - requestStart <= MAX_MERGED_SIZE;
+            if (requestStart >= 0 && (overlaps || nearby)) {
+                requestEnd = Math.max(requestEnd, range.getEnd());
+            } else {
+                if (requestStart >= 0) {
+                    requests.add(new ByteRange(requestStart, (int) (requestEnd - requestStart)));
+                }
+                requestStart = range.getStart();
+                requestEnd = range.getEnd();
+            }
+        }
+        if (requestStart >= 0) {
+            requests.add(new ByteRange(requestStart, (int) (requestEnd - requestStart)));
+        }
+
+        // Fetch merged ranges,  the first on the calling thread
+        byte[][] data = new byte[requests.size()][];
+        List<Future<byte[]>> futures = new ArrayList<>();
+        for (int i = 1; i < requests.size(); i++) {
+            final ByteRange request = requests.get(i);
+            futures.add(getRangeExecutor().submit(() -> readRange(request)));
+        }
+        try {
+            if (requests.size() > 0) {
+                data[0] = readRange(requests.get(0));
+            }
+            for (int i = 1; i < requests.size(); i++) {
+                data[i] = futures.get(i - 1).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted reading " + url, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            for (Future<byte[]> f : futures) {
+                f.cancel(true);
+            }
+        }
+
+        List<ByteBuffer> buffers = new ArrayList<>(ranges.size());
+        for (ByteRange range : ranges) {
+            int idx = findRequest(requests, range);
+            if (idx < 0) {
+                buffers.add(ByteBuffer.allocate(0));
+                continue;
+            }
+            byte[] bytes = data[idx];
+            int offset = (int) Math.min(bytes.length, range.getStart() - requests.get(idx).getStart());
+            int size = Math.min(range.getSize(), bytes.length - offset);
+            buffers.add(ByteBuffer.wrap(bytes, offset, size).slice());
+        }
+        return buffers;
+    }
+
+    /**
+     * Return the index of the request containing the range,  requests are sorted and do not overlap
+     */
+    private static int findRequest(List<ByteRange> requests, ByteRange range) {
+        if (range.getSize() == 0) {
+            return -1;
+        }
+        int lo = 0;
+        int hi = requests.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            ByteRange r = requests.get(mid);
+            if (range.getStart() < r.getStart()) {
+                hi = mid - 1;
+            } else if (range.getStart() >= r.getEnd()) {
+                lo = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private byte[] readRange(ByteRange range) throws IOException {
+
+        int attempts = 0;
+        while (true) {
+            try {
+                return _readRange(range);
+            } catch (java.net.SocketException e) {
+                if (++attempts >= 3) {
+                    throw e;
+                }
+                log.error("Socket exception. Trying again.", e);
+            }
+        }
+    }
+
+    private byte[] _readRange(ByteRange range) throws IOException {
+
+        byte[] buffer = new byte[range.getSize()];
+        InputStream is = null;
+        int n = 0;
+        try {
+            long endRange = range.getEnd() - 1;
+            if (contentLength > 0) {
+                endRange = Math.min(endRange, contentLength - 1);
+            }
+            is = openInputStreamForRange(range.getStart(), endRange);
+
+            while (n < buffer.length) {
+                int count = is.read(buffer, n, buffer.length - n);
+                if (count < 0) {
+                    break;
+                }
+                n += count;
+            }
+
+        } catch (HttpUtils.UnsatisfiableRangeException e) {
+            // Range starts past the end of the stream
+        } catch (IOException e) {
+            if (!(e.getMessage() != null && e.getMessage().contains("416")) && !(e instanceof EOFException)) {
+                throw e;
+            }
+        } finally {
+            if (is != null) {
+                is.close();
+            }
+        }
+
+        return n == buffer.length ? buffer : Arrays.copyOf(buffer, n);
+    }
+
+    private static synchronized ExecutorService getRangeExecutor() {
+        if (rangeExecutor == null) {
+            rangeExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS, r -> {
+                Thread thread = new Thread(r, "IGVSeekableHTTPStream-range");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return rangeExecutor;
+    }
+
     private int handleUnsatisfiableRange(int n) {
         if (n == 0) {
             contentLength = position;
@@ -34,6 +34,10 @@ import org.broad.igv.util.HttpUtils;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author Jim Robinson
@@ -74,6 +78,12 @@ public class IGVSeekableStreamFactory implements ISeekableStreamFactory {
                 boolean useByteRange = HttpUtils.getInstance().useByteRange(url);
                 if (useByteRange) {
                     is = new IGVSeekableHTTPStream(url);
+                    if (DiskBlockCache.isEnabled()) {
+                        String key = DiskBlockCache.getKey(url);
+                        if (key != null) {
+                            is = new DiskCachedSeekableStream(is, key);
+                        }
+                    }
                 } else {
                     is = new SeekableServiceStream(url);
                 }
@@ -95,4 +105,40 @@ public class IGVSeekableStreamFactory implements ISeekableStreamFactory {
         return new IGVSeekableBufferedStream(stream, bufferSize);
     }
 
+    /**
+     * Read several byte ranges from the stream,  returning a buffer for each in the order requested.  Remote http
+     * streams merge nearby ranges and issue requests concurrently,  other streams read each range in turn.  The stream
+     * position is not changed.
+     */
+    public static List<ByteBuffer> readRanges(SeekableStream stream, List<ByteRange> ranges) throws IOException {
+
+        SeekableStream source = stream instanceof IGVSeekableBufferedStream ?
+                ((IGVSeekableBufferedStream) stream).wrappedStream : stream;
+
+        if (source instanceof IGVSeekableHTTPStream) {
+            return ((IGVSeekableHTTPStream) source).readRanges(ranges);
+        }
+
+        List<ByteBuffer> buffers = new ArrayList<>(ranges.size());
+        long position = stream.position();
+        try {
+            for (ByteRange range : ranges) {
+                byte[] bytes = new byte[range.getSize()];
+                stream.seek(range.getStart());
+                int n = 0;
+                while (n < bytes.length) {
+                    int count = stream.read(bytes, n, bytes.length - n);
+                    if (count < 0) {
+                        break;
+                    }
+                    n += count;
+                }
+                buffers.add(ByteBuffer.wrap(n == bytes.length ? bytes : Arrays.copyOf(bytes, n)));
+            }
+        } finally {
+            stream.seek(position);
+        }
+        return buffers;
+    }
+
 }
@@ -1514,4 +1514,11 @@ public class VariantTrack extends FeatureTrack implements IGVEventObserver {
         }
     }
 
+    /**
+     * Variant renderings depend on sample selection and band layout,  which are not captured by a render key.
+     */
+    @Override
+    public Object getRenderKey(ReferenceFrame frame) {
+        return null;
+    }
 }
@@ -29,6 +29,8 @@ import org.broad.igv.util.TestUtils;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -72,5 +74,37 @@ public class BBFileReaderTest {
 
     }
 
+    @Test
+    public void testDataBlockCache() throws IOException {
+
+        String path = TestUtils.DATA_DIR + "wig/test_fixedStep.bigwig";
+
+        BBDataBlockCache.clear();
+        long misses0 = BBDataBlockCache.getCache().getMissCount();
+        List<String> first = readWigItems(new BBFileReader(path));
+        long misses = BBDataBlockCache.getCache().getMissCount();
+        long hits = BBDataBlockCache.getCache().getHitCount();
+        assertTrue(first.size() > 0);
+        assertTrue(misses > misses0);
+
+        // A second reader for the same file is served from the cache
+        List<String> second = readWigItems(new BBFileReader(path));
+        assertEquals(first, second);
+        assertEquals(misses, BBDataBlockCache.getCache().getMissCount());
+        assertEquals(hits + misses - misses0, BBDataBlockCache.getCache().getHitCount());
+    }
+
+    private List<String> readWigItems(BBFileReader reader) {
+        List<String> items = new ArrayList<>();
+        for (String chr : reader.getChromosomeNames()) {
+            BigWigIterator iter = reader.getBigWigIterator(chr, 0, chr, Integer.MAX_VALUE, false);
+            while (iter.hasNext()) {
+                WigItem item = iter.next();
+                items.add(item.getChromosome() + ":" + item.getStartBase() + "-" + item.getEndBase() + "=" + item.getWigValue());
+            }
+        }
+        return items;
+    }
+
 
 }
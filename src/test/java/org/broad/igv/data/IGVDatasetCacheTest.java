@@ -0,0 +1,167 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class IGVDatasetCacheTest extends AbstractHeadlessTest {
+
+    @After
+    public void tearDown() throws Exception {
+        PreferencesManager.getPreferences().put(Constants.DATA_CACHE_ENABLED, true);
+        super.tearDown();
+    }
+
+    @Test
+    public void testCopyNumberFile() throws Exception {
+        checkCachedDataset(TestUtils.DATA_DIR + "igv/MIP_44.cn");
+    }
+
+    @Test
+    public void testIGVFile() throws Exception {
+        checkCachedDataset(TestUtils.DATA_DIR + "igv/recombRate.igv.txt");
+    }
+
+    /**
+     * A cache is not used after the source file changes
+     */
+    @Test
+    public void testStaleCache() throws Exception {
+
+        File source = new File(TestUtils.TMP_OUTPUT_DIR, "MIP_44.cn");
+        Files.copy(new File(TestUtils.DATA_DIR + "igv/MIP_44.cn").toPath(), source.toPath());
+        File cacheFile = IGVDatasetCache.getCacheFile(source.getPath());
+        try {
+            IGVDataset ds = new IGVDataset(new ResourceLocator(source.getPath()), genome);
+            String[] headings = ds.getTrackNames();
+            assertNotNull(IGVDatasetCache.open(source.getPath(), genome.getId(), headings, false));
+
+            source.setLastModified(source.lastModified() - 10000);
+            assertNull(IGVDatasetCache.open(source.getPath(), genome.getId(), headings, false));
+
+            // Loading again rewrites the cache
+            new IGVDataset(new ResourceLocator(source.getPath()), genome);
+            assertNotNull(IGVDatasetCache.open(source.getPath(), genome.getId(), headings, false));
+        } finally {
+            cacheFile.delete();
+        }
+    }
+
+    /**
+     * Least recently used caches are deleted when the cache directory exceeds its size limit
+     */
+    @Test
+    public void testTrim() throws Exception {
+
+        File cacheDir = new File(TestUtils.TMP_OUTPUT_DIR, "dataset_cache");
+        cacheDir.mkdirs();
+        File[] caches = new File[4];
+        for (int i = 0; i < caches.length; i++) {
+            caches[i] = new File(cacheDir, "data" + i + IGVDatasetCache.EXTENSION);
+            Files.write(caches[i].toPath(), new byte[1000]);
+            caches[i].setLastModified(System.currentTimeMillis() - (caches.length - i) * 60000L);
+        }
+        File other = new File(cacheDir, "other.txt");
+        Files.write(other.toPath(), new byte[1000]);
+
+        // Under the limit nothing is deleted
+        IGVDatasetCache.trim(cacheDir, caches[3], 4000);
+        for (File f : caches) {
+            assertTrue(f.exists());
+        }
+
+        // Over the limit the oldest caches are deleted,  except the one kept, down to 90% of the limit
+        IGVDatasetCache.trim(cacheDir, caches[0], 3000);
+        assertTrue(caches[0].exists());
+        assertFalse(caches[1].exists());
+        assertFalse(caches[2].exists());
+        assertTrue(caches[3].exists());
+        assertTrue(other.exists());
+    }
+
+    private void checkCachedDataset(String path) throws Exception {
+
+        File cacheFile = IGVDatasetCache.getCacheFile(path);
+        cacheFile.delete();
+        try {
+            PreferencesManager.getPreferences().put(Constants.DATA_CACHE_ENABLED, false);
+            IGVDataset expected = new IGVDataset(new ResourceLocator(path), genome);
+            assertFalse(cacheFile.exists());
+
+            PreferencesManager.getPreferences().put(Constants.DATA_CACHE_ENABLED, true);
+
+            // The first load writes the cache, the second reads it
+            IGVDataset written = new IGVDataset(new ResourceLocator(path), genome);
+            assertTrue(cacheFile.exists());
+            long cacheModified = cacheFile.lastModified();
+            IGVDataset cached = new IGVDataset(new ResourceLocator(path), genome);
+            assertEquals(cacheModified, cacheFile.lastModified());
+
+            checkDataset(expected, written);
+            checkDataset(expected, cached);
+        } finally {
+            cacheFile.delete();
+        }
+    }
+
+    private void checkDataset(IGVDataset expected, IGVDataset actual) {
+
+        assertArrayEquals(expected.getChromosomes(), actual.getChromosomes());
+        assertArrayEquals(expected.getTrackNames(), actual.getTrackNames());
+        assertEquals(expected.getDataMin(), actual.getDataMin(), 0);
+        assertEquals(expected.getDataMax(), actual.getDataMax(), 0);
+        assertEquals(expected.isLogNormalized(), actual.isLogNormalized());
+
+        for (String chr : expected.getChromosomes()) {
+            assertEquals(expected.getLongestFeature(chr), actual.getLongestFeature(chr));
+            assertArrayEquals(expected.getStartLocations(chr), actual.getStartLocations(chr));
+            assertArrayEquals(expected.getEndLocations(chr), actual.getEndLocations(chr));
+            assertArrayEquals(expected.getFeatureNames(chr), actual.getFeatureNames(chr));
+            for (String heading : expected.getTrackNames()) {
+                assertArrayEquals(expected.getData(heading, chr), actual.getData(heading, chr), 0);
+            }
+        }
+
+        GenomeSummaryData expectedSummary = expected.getGenomeSummary();
+        GenomeSummaryData actualSummary = actual.getGenomeSummary();
+        assertNotNull(expectedSummary);
+        assertArrayEquals(expectedSummary.getLocations(), actualSummary.getLocations());
+        for (String heading : expected.getTrackNames()) {
+            assertArrayEquals(expectedSummary.getData(heading), actualSummary.getData(heading), 0);
+        }
+    }
+}
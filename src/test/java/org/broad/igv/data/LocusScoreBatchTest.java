@@ -0,0 +1,179 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.data;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.LocusScore;
+import org.broad.igv.feature.Locus;
+import org.broad.igv.renderer.*;
+import org.broad.igv.tdf.TDFDataSource;
+import org.broad.igv.tdf.TDFReader;
+import org.broad.igv.track.DataSourceTrack;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LocusScoreBatchTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testBatch() throws Exception {
+
+        LocusScoreBatch batch = new LocusScoreBatch(2);
+        for (int i = 0; i < 10; i++) {
+            batch.add(i * 10, i * 10 + 5, i / 2.0f);
+        }
+        assertEquals(10, batch.size());
+        assertEquals(30, batch.getStart(3));
+        assertEquals(35, batch.getEnd(3));
+        assertEquals(1.5f, batch.getScore(3), 0);
+
+        LocusScore score = batch.get(3);
+        assertEquals(30, score.getStart());
+        assertEquals(35, score.getEnd());
+        assertEquals(1.5f, score.getScore(), 0);
+
+        LocusScoreBatch subList = batch.subList(2, 6);
+        assertEquals(4, subList.size());
+        assertEquals(20, subList.getStart(0));
+        assertEquals(50, subList.get(3).getStart());
+        assertEquals(30, subList.subList(1, 2).getStart(0));
+        try {
+            subList.add(100, 105, 1);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        try {
+            subList.get(4);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+
+        LocusScoreBatch copy = LocusScoreBatch.copyOf(subList);
+        assertEquals(subList.size(), copy.size());
+        for (int i = 0; i < copy.size(); i++) {
+            assertEquals(subList.getStart(i), copy.getStart(i));
+            assertEquals(subList.getEnd(i), copy.getEnd(i));
+            assertEquals(subList.getScore(i), copy.getScore(i), 0);
+        }
+    }
+
+    @Test
+    public void testTDFScores() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "tdf/NA12878.SLX.egfr.sam.tdf";
+        TDFDataSource dataSource = new TDFDataSource(TDFReader.getReader(path), 0, "", genome);
+
+        List<LocusScore> scores = dataSource.getSummaryScoresForRange("chr7", 55000000, 55300000, 3);
+        assertTrue(scores instanceof LocusScoreBatch);
+        assertTrue(scores.size() > 0);
+        for (int i = 1; i < scores.size(); i++) {
+            assertTrue(scores.get(i - 1).getStart() <= scores.get(i).getStart());
+        }
+    }
+
+    /**
+     * Renderers must draw the same pixels from columnar scores as from score objects
+     */
+    @Test
+    public void testRenderers() throws Exception {
+
+        LocusScoreBatch batch = new LocusScoreBatch();
+        int position = 1000000;
+        for (int i = 0; i < 2000; i++) {
+            int width = 1 + (i * 7) % 23;
+            batch.add(position, position + width, (float) (Math.sin(i / 10.0) * 50));
+            position += width + (i % 5 == 0 ? 3 : 0);
+        }
+        List<LocusScore> objects = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            objects.add(new BasicScore(batch.getStart(i), batch.getEnd(i), batch.getScore(i)));
+        }
+
+        DataSourceTrack track = new DataSourceTrack(new ResourceLocator("test.wig"), "test", "test", null);
+        track.setDataRange(new DataRange(-50, 0, 50));
+        // The default color gradient requires a screen device
+        track.setColorScale(new ContinuousColorScale(-50, 0, 50, Color.blue, Color.white, Color.red) {
+            @Override
+            public Color getColor(float val) {
+                return new Color(Math.max(0, Math.min(255, (int) (val + 128))), 0, 0);
+            }
+        });
+
+        DataRenderer[] renderers = {new BarChartRenderer(), new PointsRenderer(), new HeatmapRenderer()};
+        for (DataRenderer renderer : renderers) {
+            for (int end : new int[]{position, 1010000}) {
+                BufferedImage expected = render(renderer, track, objects, end);
+                BufferedImage image = render(renderer, track, batch, end);
+                assertPixelsEqual(expected, image);
+
+                // Sub lists,  as passed by DataTrack for the scores in view
+                image = render(renderer, track, batch.subList(100, 1500), end);
+                expected = render(renderer, track, objects.subList(100, 1500), end);
+                assertPixelsEqual(expected, image);
+            }
+        }
+    }
+
+    private static BufferedImage render(DataRenderer renderer, DataSourceTrack track, List<LocusScore> scores, int end) {
+        ReferenceFrame frame = new ReferenceFrame("test");
+        frame.setBounds(0, 600);
+        frame.jumpTo(new Locus("chr1", 1000000, end));
+
+        BufferedImage image = new BufferedImage(600, 50, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        Rectangle rect = new Rectangle(0, 0, 600, 50);
+        RenderContext context = new RenderContext(null, g, frame, rect);
+        try {
+            renderer.renderScores(track, scores, context, rect);
+        } finally {
+            context.dispose();
+            g.dispose();
+        }
+        return image;
+    }
+
+    private static void assertPixelsEqual(BufferedImage expected, BufferedImage image) {
+        int nonBlank = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), image.getRGB(x, y));
+                if (expected.getRGB(x, y) != 0) nonBlank++;
+            }
+        }
+        assertTrue(nonBlank > 0);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature.genome;
+
+import org.broad.igv.feature.genome.fasta.FastaIndexedSequence;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The test .2bit files were created from twobit_test.fa,  which includes N and soft-masked (lower case) runs at
+ * sequence boundaries and sequences whose length is not a multiple of 4.
+ */
+public class TwoBitSequenceTest {
+
+    static String FASTA_PATH = TestUtils.DATA_DIR + "twobit/twobit_test.fa";
+
+    @Test
+    public void testLittleEndian() throws Exception {
+        compareToFasta(new TwoBitSequence(TestUtils.DATA_DIR + "twobit/twobit_test.2bit"));
+    }
+
+    @Test
+    public void testBigEndian() throws Exception {
+        compareToFasta(new TwoBitSequence(TestUtils.DATA_DIR + "twobit/twobit_test.be.2bit"));
+    }
+
+    @Test
+    public void testQueryBounds() throws Exception {
+
+        TwoBitSequence sequence = new TwoBitSequence(TestUtils.DATA_DIR + "twobit/twobit_test.2bit");
+
+        assertEquals(17, sequence.getChromosomeLength("chr2"));
+        assertEquals(-1, sequence.getChromosomeLength("chrX"));
+        assertNull(sequence.getSequence("chrX", 0, 10, false));
+
+        // Query extending past the sequence end is truncated
+        assertEquals(5, sequence.getSequence("chr2", 12, 30, false).length);
+        assertNull(sequence.getSequence("chr2", 17, 30, false));
+
+        assertEquals('N', sequence.getBase("chr1", 0));
+        assertEquals('n', sequence.getBase("chrUn_gl000220", 11));
+    }
+
+    private void compareToFasta(Sequence sequence) throws Exception {
+
+        FastaIndexedSequence fasta = new FastaIndexedSequence(FASTA_PATH);
+
+        List<String> chrNames = sequence.getChromosomeNames();
+        assertEquals(fasta.getChromosomeNames(), chrNames);
+
+        for (String chr : chrNames) {
+            int length = fasta.getChromosomeLength(chr);
+            assertEquals(length, sequence.getChromosomeLength(chr));
+
+            // Whole sequence
+            assertEquals(new String(fasta.getSequence(chr, 0, length, false)),
+                    new String(sequence.getSequence(chr, 0, length, false)));
+
+            // All intervals up to 9 bases,  covering each offset within a packed byte and block boundaries
+            for (int start = 0; start < length; start++) {
+                for (int end = start + 1; end <= Math.min(length, start + 9); end++) {
+                    assertEquals(chr + ":" + start + "-" + end,
+                            new String(fasta.getSequence(chr, start, end, false)),
+                            new String(sequence.getSequence(chr, start, end, false)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.feature.genome.fasta;
+
+import org.broad.igv.util.TestUtils;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of FastaIndexedSequence reading local files,  which are memory mapped.  These are kept apart from
+ * FastaIndexedSequenceTest,  whose setup requires a remote fasta.
+ */
+public class FastaIndexedSequenceLocalTest {
+
+    /**
+     * Compare reads of a local fasta,  from the memory mapped file and into a caller supplied buffer, with
+     * sequence parsed directly from the file.
+     */
+    @Test
+    public void testReadLocal() throws Exception {
+
+        String fasta = TestUtils.DATA_DIR + "twobit/twobit_test.fa";
+        Map<String, String> expected = readFasta(fasta);
+
+        FastaIndexedSequence mapped = new FastaIndexedSequence(fasta);
+        FastaIndexedSequence unmapped = new FastaIndexedSequence(fasta) {
+            @Override
+            protected boolean isMappable() {
+                return false;
+            }
+        };
+
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            String chr = entry.getKey();
+            String expectedSequence = entry.getValue();
+            int length = expectedSequence.length();
+            for (int start = 0; start < length; start += 7) {
+                for (int end = start + 1; end <= length; end += 23) {
+                    String expectedSubsequence = expectedSequence.substring(start, end);
+                    assertEquals(expectedSubsequence, new String(mapped.getSequence(chr, start, end, false)));
+                    assertEquals(expectedSubsequence, new String(unmapped.getSequence(chr, start, end, false)));
+
+                    byte[] buffer = new byte[end - start + 6];
+                    assertEquals(end - start, mapped.getSequence(chr, start, end, buffer, 3));
+                    assertEquals(expectedSubsequence, new String(buffer, 3, end - start));
+                }
+            }
+
+            // Query extending past the end is truncated
+            assertEquals(expectedSequence.substring(length - 5), new String(mapped.getSequence(chr, length - 5, length + 10, false)));
+        }
+    }
+
+    private static Map<String, String> readFasta(String path) throws IOException {
+        Map<String, String> sequences = new LinkedHashMap<>();
+        String chr = null;
+        StringBuilder seq = new StringBuilder();
+        for (String line : Files.readAllLines(new File(path).toPath())) {
+            if (line.startsWith(">")) {
+                if (chr != null) sequences.put(chr, seq.toString());
+                chr = line.substring(1).trim();
+                seq.setLength(0);
+            } else {
+                seq.append(line.trim());
+            }
+        }
+        if (chr != null) sequences.put(chr, seq.toString());
+        return sequences;
+    }
+
+    /**
+     * Report bytes allocated per megabase read,  for a memory mapped and a stream read of a local file,  and a read
+     * into a reused buffer.
+     */
+    @Ignore("Benchmark")
+    @Test
+    public void benchmarkAllocation() throws Exception {
+
+        int seqLength = 20000000;
+        int basesPerLine = 60;
+        File fasta = new File(TestUtils.TMP_OUTPUT_DIR, "benchmarkAllocation.fa");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fasta))) {
+            writer.write(">chr1\n");
+            Random random = new Random(0);
+            byte[] bases = "ACGT".getBytes();
+            for (int i = 0; i < seqLength; i++) {
+                writer.write(bases[random.nextInt(4)]);
+                if ((i + 1) % basesPerLine == 0) writer.write('\n');
+            }
+            writer.write('\n');
+        }
+        String fastaPath = fasta.getAbsolutePath();
+        FastaUtils.createIndexFile(fastaPath, fastaPath + ".fai");
+
+        FastaIndexedSequence mapped = new FastaIndexedSequence(fastaPath);
+        FastaIndexedSequence unmapped = new FastaIndexedSequence(fastaPath) {
+            @Override
+            protected boolean isMappable() {
+                return false;
+            }
+        };
+
+        int tileSize = 1000000;
+        byte[] buffer = new byte[tileSize];
+        int nMegabases = seqLength / tileSize;
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int trial = 0; trial < 3; trial++) {
+
+            long a0 = bean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < nMegabases; i++) {
+                unmapped.getSequence("chr1", i * tileSize, (i + 1) * tileSize, false);
+            }
+            long a1 = bean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < nMegabases; i++) {
+                mapped.getSequence("chr1", i * tileSize, (i + 1) * tileSize, false);
+            }
+            long a2 = bean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < nMegabases; i++) {
+                mapped.getSequence("chr1", i * tileSize, (i + 1) * tileSize, buffer, 0);
+            }
+            long a3 = bean.getThreadAllocatedBytes(threadId);
+
+            System.out.println(String.format("Bytes allocated per Mb.  stream: %d   mapped: %d   mapped into buffer: %d",
+                    (a1 - a0) / nMegabases, (a2 - a1) / nMegabases, (a3 - a2) / nMegabases));
+        }
+    }
+}
@@ -28,6 +28,7 @@ package org.broad.igv.sam;
 import htsjdk.samtools.util.CloseableIterator;
 import org.broad.igv.AbstractHeadlessTest;
 import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.IGVPreferences;
 import org.broad.igv.prefs.PreferencesManager;
 import org.broad.igv.sam.reader.AlignmentReader;
 import org.broad.igv.sam.reader.AlignmentReaderFactory;
@@ -368,6 +369,79 @@ public class AlignmentDataManagerTest extends AbstractHeadlessTest {
         }
     }
 
+    /**
+     * Test that extending a loaded interval by its flanks gives the same result as loading the extended interval
+     * from scratch
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExtendInterval() throws Exception {
+
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        prefs.put(Constants.SAM_DOWNSAMPLE_READS, "false");
+        try {
+            String path = TestUtils.DATA_DIR + "bam/NA12878.SLX.sample.bam";
+            AlignmentDataManager manager = new AlignmentDataManager(new ResourceLocator(path), genome);
+            AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+
+            String chr = "1";
+            int start = 63620000;
+            int end = 63640000;
+            AlignmentInterval interval = loadInterval(manager, chr, start, end);
+            assertTrue(interval.getAlignments().size() > 0);
+
+            // Pan right, pan left, zoom out, zoom in.  The last flank is wide enough to be loaded in parallel.
+            int[][] ranges = {{start + 5000, end + 5000}, {start - 7000, end - 7000},
+                    {start - 10000, end + 10000}, {start + 2000, end - 2000}, {start - 1000, end + 30000}};
+            for (int[] range : ranges) {
+                AlignmentInterval extended = manager.extendInterval(interval, range[0], range[1], renderOptions,
+                        manager.getPEStats());
+                AlignmentInterval expected = loadInterval(manager, chr, range[0], range[1]);
+                assertIntervalsEqual(expected, extended);
+            }
+        } finally {
+            prefs.remove(Constants.SAM_DOWNSAMPLE_READS);
+        }
+    }
+
+    private void assertIntervalsEqual(AlignmentInterval expected, AlignmentInterval actual) {
+
+        Assert.assertEquals(expected.getStart(), actual.getStart());
+        Assert.assertEquals(expected.getEnd(), actual.getEnd());
+
+        List<Alignment> expectedAlignments = new ArrayList<>(expected.getAlignments());
+        List<Alignment> actualAlignments = new ArrayList<>(actual.getAlignments());
+        Assert.assertEquals(expectedAlignments.size(), actualAlignments.size());
+        for (int i = 1; i < actualAlignments.size(); i++) {
+            assertTrue(actualAlignments.get(i - 1).getStart() <= actualAlignments.get(i).getStart());
+        }
+        Collections.sort(expectedAlignments, new StartEndSorter());
+        Collections.sort(actualAlignments, new StartEndSorter());
+        for (int i = 0; i < actualAlignments.size(); i++) {
+            Alignment exp = expectedAlignments.get(i);
+            Alignment act = actualAlignments.get(i);
+            Assert.assertEquals(exp.getReadName(), act.getReadName());
+            Assert.assertEquals(exp.getStart(), act.getStart());
+            Assert.assertEquals(exp.getEnd(), act.getEnd());
+        }
+
+        AlignmentCounts expectedCounts = expected.getCounts();
+        AlignmentCounts actualCounts = actual.getCounts();
+        for (int pos = expected.getStart(); pos < expected.getEnd(); pos++) {
+            Assert.assertEquals("Total count at " + pos, expectedCounts.getTotalCount(pos), actualCounts.getTotalCount(pos));
+            Assert.assertEquals(expectedCounts.getTotalQuality(pos), actualCounts.getTotalQuality(pos));
+            Assert.assertEquals(expectedCounts.getDelCount(pos), actualCounts.getDelCount(pos));
+            Assert.assertEquals(expectedCounts.getInsCount(pos), actualCounts.getInsCount(pos));
+            for (char b : BaseAlignmentCounts.nucleotides) {
+                Assert.assertEquals(expectedCounts.getCount(pos, (byte) b), actualCounts.getCount(pos, (byte) b));
+                Assert.assertEquals(expectedCounts.getNegCount(pos, (byte) b), actualCounts.getNegCount(pos, (byte) b));
+            }
+        }
+        Assert.assertEquals(expectedCounts.getMaxCount(expected.getStart(), expected.getEnd()),
+                actualCounts.getMaxCount(expected.getStart(), expected.getEnd()));
+    }
+
     /**
      * Load alignment interval. Here for other tests, so we don't need to expose
      * {@link AlignmentDataManager#loadInterval(String, int, int, AlignmentTrack.RenderOptions)}
@@ -30,6 +30,7 @@
 
 package org.broad.igv.sam;
 
+import htsjdk.samtools.*;
 import htsjdk.samtools.util.CloseableIterator;
 import org.broad.igv.AbstractHeadlessTest;
 import org.broad.igv.sam.reader.AlignmentReader;
@@ -39,10 +40,10 @@ import org.broad.igv.util.TestUtils;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.*;
 
-import static junit.framework.Assert.assertEquals;
-import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.*;
 
 /**
  * @author jrobinso
@@ -119,4 +120,230 @@ public class AlignmentPackerTest extends AbstractHeadlessTest {
     }
 
 
+
+    @Test
+    public void testPackLocal() throws Exception {
+
+        AlignmentInterval interval = getLocalInterval();
+        List<Alignment> mapped = new ArrayList<>();
+        for (Alignment a : interval.getAlignments()) {
+            if (a.isMapped()) mapped.add(a);
+        }
+
+        // Ungrouped,  compare with a simple greedy packing
+        AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+        renderOptions.setViewPairs(false);
+        renderOptions.setGroupByOption(AlignmentTrack.GroupOption.NONE);
+        PackedAlignments packed = new AlignmentPacker().packAlignments(interval, renderOptions);
+        assertEquals(1, packed.size());
+        List<Row> rows = packed.get("");
+        checkRows(rows, mapped.size());
+        assertEquals(extents(greedyPack(mapped)), extents(rows));
+
+        // Grouped by strand,  each group packed independently
+        renderOptions.setGroupByOption(AlignmentTrack.GroupOption.STRAND);
+        packed = new AlignmentPacker().packAlignments(interval, renderOptions);
+        assertEquals(Arrays.asList("+", "-"), new ArrayList<>(packed.keySet()));
+        int total = 0;
+        for (String strand : packed.keySet()) {
+            List<Alignment> group = new ArrayList<>();
+            for (Alignment a : mapped) {
+                if ((a.isNegativeStrand() ? "-" : "+").equals(strand)) group.add(a);
+            }
+            checkRows(packed.get(strand), group.size());
+            assertEquals(extents(greedyPack(group)), extents(packed.get(strand)));
+            total += group.size();
+        }
+        assertEquals(mapped.size(), total);
+
+        // Pairs are packed as a unit
+        renderOptions.setViewPairs(true);
+        renderOptions.setGroupByOption(AlignmentTrack.GroupOption.NONE);
+        rows = new AlignmentPacker().packAlignments(interval, renderOptions).get("");
+        int count = 0;
+        for (Row row : rows) {
+            for (Alignment a : row.alignments) {
+                count += a instanceof PairedAlignment && ((PairedAlignment) a).secondAlignment != null ? 2 : 1;
+            }
+        }
+        assertEquals(mapped.size(), count);
+    }
+
+    @Test
+    public void testPackingCache() throws Exception {
+
+        AlignmentInterval interval = getLocalInterval();
+        AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+        renderOptions.setGroupByOption(AlignmentTrack.GroupOption.NONE);
+
+        interval.packAlignments(renderOptions);
+        PackedAlignments ungrouped = interval.getPackedAlignments();
+
+        renderOptions.setGroupByOption(AlignmentTrack.GroupOption.STRAND);
+        interval.packAlignments(renderOptions);
+        PackedAlignments byStrand = interval.getPackedAlignments();
+        assertNotSame(ungrouped, byStrand);
+
+        // Switching back reuses the earlier packing
+        renderOptions.setGroupByOption(AlignmentTrack.GroupOption.NONE);
+        interval.packAlignments(renderOptions);
+        assertSame(ungrouped, interval.getPackedAlignments());
+
+        // ... unless a different option affecting packing has changed
+        renderOptions.setViewPairs(!renderOptions.isViewPairs());
+        interval.packAlignments(renderOptions);
+        assertNotSame(ungrouped, interval.getPackedAlignments());
+        renderOptions.setViewPairs(!renderOptions.isViewPairs());
+
+        // An explicit repack starts from scratch
+        interval.repackAlignments(renderOptions);
+        assertNotSame(ungrouped, interval.getPackedAlignments());
+        assertEquals(extents(ungrouped.get("")), extents(interval.getPackedAlignments().get("")));
+
+        // Pair orientation groups depend on insert size statistics and are not reused
+        renderOptions.setGroupByOption(AlignmentTrack.GroupOption.PAIR_ORIENTATION);
+        interval.packAlignments(renderOptions);
+        PackedAlignments byOrientation = interval.getPackedAlignments();
+        interval.packAlignments(renderOptions);
+        assertNotSame(byOrientation, interval.getPackedAlignments());
+    }
+
+    /**
+     * Clustering rewrites haplotype names,  a second clustering must not reuse the packing from the first.
+     */
+    @Test
+    public void testPackingCacheHaplotype() throws Exception {
+
+        AlignmentInterval interval = getLocalInterval();
+        AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+        renderOptions.setGroupByOption(AlignmentTrack.GroupOption.HAPLOTYPE);
+
+        clusterAlignments(interval, 2);
+        interval.packAlignments(renderOptions);
+        assertEquals(new HashSet<>(Arrays.asList("H0", "H1")), interval.getPackedAlignments().keySet());
+
+        clusterAlignments(interval, 3);
+        interval.packAlignments(renderOptions);
+        assertEquals(new HashSet<>(Arrays.asList("H0", "H1", "H2")), interval.getPackedAlignments().keySet());
+    }
+
+    private static void clusterAlignments(AlignmentInterval interval, int nClusters) {
+        int n = 0;
+        for (Alignment a : interval.getAlignments()) {
+            ((SAMAlignment) a).setHaplotypeName("H" + (n++ % nClusters));
+        }
+    }
+
+    private AlignmentInterval getLocalInterval() throws Exception {
+        String chr = "1";
+        int start = 63600000;
+        int end = 63700000;
+        AlignmentReader reader = AlignmentReaderFactory.getReader(new ResourceLocator(TestUtils.DATA_DIR + "bam/NA12878.SLX.sample.bam"));
+        List<Alignment> list = new ArrayList<Alignment>();
+        try (CloseableIterator<Alignment> iter = reader.query(chr, start, end, false)) {
+            while (iter.hasNext()) {
+                list.add(iter.next());
+            }
+        } finally {
+            reader.close();
+        }
+        assertTrue(list.size() > 1000);
+        return new AlignmentInterval(chr, start, end, list, null, null, null);
+    }
+
+    private static void checkRows(List<Row> rows, int expectedCount) {
+        int count = 0;
+        for (Row row : rows) {
+            List<Alignment> alignments = row.alignments;
+            assertTrue(alignments.size() > 0);
+            for (int i = 1; i < alignments.size(); i++) {
+                assertTrue(alignments.get(i).getStart() - alignments.get(i - 1).getEnd() >= AlignmentPacker.MIN_ALIGNMENT_SPACING);
+            }
+            count += alignments.size();
+        }
+        assertEquals(expectedCount, count);
+    }
+
+    /**
+     * Reference packing,  fill each row with the first remaining alignment (by start,  longest first) that fits.
+     */
+    private static List<Row> greedyPack(List<Alignment> alignments) {
+        List<Alignment> remaining = new LinkedList<>(alignments);
+        remaining.sort((a1, a2) -> a1.getStart() != a2.getStart() ?
+                Integer.compare(a1.getStart(), a2.getStart()) : Integer.compare(a2.getEnd(), a1.getEnd()));
+        List<Row> rows = new ArrayList<>();
+        while (!remaining.isEmpty()) {
+            Row row = new Row();
+            int nextStart = Integer.MIN_VALUE;
+            for (Iterator<Alignment> iter = remaining.iterator(); iter.hasNext(); ) {
+                Alignment a = iter.next();
+                if (a.getStart() >= nextStart) {
+                    row.addAlignment(a);
+                    nextStart = a.getEnd() + AlignmentPacker.MIN_ALIGNMENT_SPACING;
+                    iter.remove();
+                }
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<String> extents(List<Row> rows) {
+        List<String> extents = new ArrayList<>();
+        for (Row row : rows) {
+            StringBuilder buffer = new StringBuilder();
+            for (Alignment a : row.alignments) {
+                buffer.append(a.getStart()).append('-').append(a.getEnd()).append(' ');
+            }
+            extents.add(buffer.toString());
+        }
+        return extents;
+    }
+
+    /**
+     * Time packing 24 groups of alignments,  and switching back to a previous grouping.
+     */
+    @Ignore("Benchmark")
+    @Test
+    public void benchmarkGroupedPacking() throws Exception {
+
+        List<Alignment> alignments = new ArrayList<>();
+        for (int copy = 0; copy < 10; copy++) {
+            int n = 0;
+            try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT)
+                    .open(new File(TestUtils.DATA_DIR + "bam/NA12878.SLX.sample.bam"));
+                 SAMRecordIterator iter = reader.query("1", 1, 0, false)) {
+                while (iter.hasNext()) {
+                    SAMRecord record = iter.next();
+                    if (!record.getReadUnmappedFlag()) {
+                        record.setAttribute("XG", (n++) % 24);
+                        alignments.add(new PicardAlignment(record));
+                    }
+                }
+            }
+        }
+        alignments.sort(Comparator.comparingInt(Alignment::getStart));
+        AlignmentInterval interval = new AlignmentInterval("1", alignments.get(0).getStart(),
+                alignments.get(alignments.size() - 1).getEnd(), alignments, null, null, null);
+
+        AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+        renderOptions.setViewPairs(true);
+        renderOptions.setGroupByTag("XG");
+
+        for (int rep = 0; rep < 5; rep++) {
+            renderOptions.setGroupByOption(AlignmentTrack.GroupOption.NONE);
+            long t0 = System.nanoTime();
+            interval.repackAlignments(renderOptions);
+            long t1 = System.nanoTime();
+            renderOptions.setGroupByOption(AlignmentTrack.GroupOption.TAG);
+            interval.packAlignments(renderOptions);
+            long t2 = System.nanoTime();
+            assertEquals(24, interval.getPackedAlignments().size());
+            renderOptions.setGroupByOption(AlignmentTrack.GroupOption.NONE);
+            interval.packAlignments(renderOptions);
+            long t3 = System.nanoTime();
+            System.out.println(alignments.size() + " alignments.  Ungrouped: " + (t1 - t0) / 1000000 + " ms,  " +
+                    "24 groups: " + (t2 - t1) / 1000000 + " ms,  ungrouped again: " + (t3 - t2) / 1000000 + " ms");
+        }
+    }
 }
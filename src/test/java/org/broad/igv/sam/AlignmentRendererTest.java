@@ -0,0 +1,281 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.Locus;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.genome.GenomeManager;
+import org.broad.igv.feature.genome.Sequence;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.IGVPreferences;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.ui.panel.ReferenceFrame;
+import org.broad.igv.util.TestUtils;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AlignmentRendererTest extends AbstractHeadlessTest {
+
+    static String PATH = TestUtils.DATA_DIR + "bam/NA12878.SLX.sample.bam";
+    static String CHR = "1";
+    static int START = 63600000;
+    static int END = 63700000;
+
+    static int WIDTH = 1000;
+    static int ROW_HEIGHT = 10;
+
+    /**
+     * Compare rows drawn from per-pixel summaries with rows drawn alignment by alignment.  Reads are narrower than
+     * 2 pixels at 30 bp/pixel,  and wider at 12 bp/pixel.
+     */
+    @Test
+    public void testLevelOfDetail() throws Exception {
+
+        AlignmentInterval interval = loadInterval();
+        List<Row> rows = pack(interval);
+
+        for (int bpPerPixel : new int[]{30, 12}) {
+            ReferenceFrame frame = createFrame(START + 20000, START + 20000 + bpPerPixel * WIDTH);
+            assertEquivalent(render(interval, rows, frame, "0", false), render(interval, rows, frame, "10", false));
+        }
+    }
+
+    /**
+     * Compare mismatches drawn from per-pixel summaries with mismatches drawn base by base.
+     */
+    @Test
+    public void testLevelOfDetailMismatches() throws Exception {
+
+        AlignmentInterval interval = loadInterval();
+        List<Row> rows = pack(interval);
+        try {
+            GenomeManager.getInstance().setCurrentGenome(createConsensusGenome(interval));
+
+            for (boolean quickConsensus : new boolean[]{false, true}) {
+                ReferenceFrame frame = createFrame(START + 20000, START + 20000 + 12 * WIDTH);
+                BufferedImage detailed = render(interval, rows, frame, "0", quickConsensus);
+                assertEquivalent(detailed, render(interval, rows, frame, "10", quickConsensus));
+            }
+        } finally {
+            GenomeManager.getInstance().setCurrentGenome(genome);
+        }
+    }
+
+    @Ignore("Benchmark")
+    @Test
+    public void benchmarkLevelOfDetail() throws Exception {
+
+        AlignmentInterval interval = loadInterval();
+        List<Row> rows = pack(interval);
+        int nFrames = 20;
+
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        BufferedImage image = new BufferedImage(WIDTH, rows.size() * ROW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        try {
+            GenomeManager.getInstance().setCurrentGenome(createConsensusGenome(interval));
+            for (int bpPerPixel : new int[]{12, 30}) {
+                ReferenceFrame frame = createFrame(START + 20000, START + 20000 + bpPerPixel * WIDTH);
+                for (String threshold : new String[]{"0", "10", "0", "10"}) {
+                    prefs.put(Constants.SAM_LOD_THRESHOLD, threshold);
+                    long t0 = System.nanoTime();
+                    for (int i = 0; i < nFrames; i++) {
+                        draw(interval, rows, frame, image, false);
+                    }
+                    long dt = System.nanoTime() - t0;
+                    System.out.println(bpPerPixel + " bp/pixel " + (threshold.equals("0") ? "detailed: " : "summarized: ") +
+                            (dt / 1000000.0 / nFrames) + " ms/frame");
+                }
+            }
+        } finally {
+            prefs.remove(Constants.SAM_LOD_THRESHOLD);
+            GenomeManager.getInstance().setCurrentGenome(genome);
+        }
+    }
+
+    private static AlignmentInterval loadInterval() throws Exception {
+
+        List<Alignment> alignments = ColumnarAlignmentStoreTest.loadAlignments(PATH, CHR, START, END);
+        AlignmentDataManager.DownsampleOptions downsampleOptions = new AlignmentDataManager.DownsampleOptions(false, 50, 100);
+        AlignmentTileLoader.AlignmentTile tile = new AlignmentTileLoader.AlignmentTile(START, END, null,
+                downsampleOptions, null, false);
+        for (Alignment a : alignments) {
+            tile.addRecord(a, false);
+        }
+        tile.finish();
+
+        return new AlignmentInterval(CHR, START, END, tile.getAlignments(), tile.getCounts(), null, null);
+    }
+
+    private static ReferenceFrame createFrame(int start, int end) {
+        ReferenceFrame frame = new ReferenceFrame("testFrame");
+        frame.setBounds(0, WIDTH);
+        frame.jumpTo(new Locus(CHR, start, end));
+        return frame;
+    }
+
+    /**
+     * Return a genome whose reference is the consensus of the reads,  with every 50th base changed,  so there are
+     * sparse sequencing errors and dense mismatch columns.
+     */
+    private static Genome createConsensusGenome(AlignmentInterval interval) {
+
+        AlignmentCounts counts = interval.getCounts();
+        byte[] reference = new byte[END - START];
+        for (int i = 0; i < reference.length; i++) {
+            byte consensus = 'A';
+            int maxCount = 0;
+            for (char c : BaseAlignmentCounts.nucleotides) {
+                int count = counts.getCount(START + i, (byte) c);
+                if (c != 'n' && count > maxCount) {
+                    consensus = (byte) c;
+                    maxCount = count;
+                }
+            }
+            reference[i] = i % 50 == 0 ? (byte) (consensus == 'a' ? 'c' : 'a') : consensus;
+        }
+        return new Genome("consensus", "consensus", new IntervalSequence(CHR, START, reference), true);
+    }
+
+    private static List<Row> pack(AlignmentInterval interval) {
+        return new AlignmentPacker().packAlignments(interval, new AlignmentTrack.RenderOptions()).get("");
+    }
+
+    private static BufferedImage render(AlignmentInterval interval, List<Row> rows, ReferenceFrame frame,
+                                        String lodThreshold, boolean quickConsensus) {
+
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        BufferedImage image = new BufferedImage(WIDTH, rows.size() * ROW_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        try {
+            prefs.put(Constants.SAM_LOD_THRESHOLD, lodThreshold);
+            draw(interval, rows, frame, image, quickConsensus);
+        } finally {
+            prefs.remove(Constants.SAM_LOD_THRESHOLD);
+        }
+        return image;
+    }
+
+    private static void draw(AlignmentInterval interval, List<Row> rows, ReferenceFrame frame,
+                             BufferedImage image, boolean quickConsensus) {
+
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+        renderOptions.setQuickConsensusMode(quickConsensus);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.white);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+
+        Rectangle trackRect = new Rectangle(0, 0, WIDTH, image.getHeight());
+        RenderContext context = new RenderContext(null, g, frame, trackRect);
+        AlignmentRenderer renderer = new AlignmentRenderer(null);
+        AlignmentCounts counts = interval.getCounts();
+        int y = 0;
+        for (Row row : rows) {
+            Rectangle rowRect = new Rectangle(0, y, WIDTH, ROW_HEIGHT);
+            renderer.renderAlignments(row.getAlignments(), context, rowRect, trackRect, renderOptions, true,
+                    Collections.emptyMap(), counts, prefs);
+            y += ROW_HEIGHT;
+        }
+        context.dispose();
+        g.dispose();
+    }
+
+    /**
+     * Allow for the 1 pixel differences of overlapping alignments,  which blend in the detailed drawing.
+     */
+    private static void assertEquivalent(BufferedImage detailed, BufferedImage summarized) {
+
+        int differing = 0;
+        int drawn = 0;
+        for (int y = 0; y < detailed.getHeight(); y++) {
+            for (int x = 0; x < detailed.getWidth(); x++) {
+                int expected = detailed.getRGB(x, y);
+                if (expected != Color.white.getRGB()) {
+                    drawn++;
+                }
+                if (expected != summarized.getRGB(x, y)) {
+                    differing++;
+                }
+            }
+        }
+        assertTrue(drawn > 0);
+        assertTrue("Differing pixels: " + differing + " of " + drawn, differing < drawn / 100);
+    }
+
+    /**
+     * Reference sequence for one interval
+     */
+    private static class IntervalSequence implements Sequence {
+
+        final String chr;
+        final int start;
+        final byte[] bases;
+
+        IntervalSequence(String chr, int start, byte[] bases) {
+            this.chr = chr;
+            this.start = start;
+            this.bases = bases;
+        }
+
+        @Override
+        public byte[] getSequence(String chr, int start, int end, boolean useCache) {
+            byte[] seq = new byte[end - start];
+            for (int pos = start; pos < end; pos++) {
+                seq[pos - start] = getBase(chr, pos);
+            }
+            return seq;
+        }
+
+        @Override
+        public byte getBase(String chr, int position) {
+            int offset = position - start;
+            return offset >= 0 && offset < bases.length ? bases[offset] : (byte) 'N';
+        }
+
+        @Override
+        public List<String> getChromosomeNames() {
+            return Collections.singletonList(chr);
+        }
+
+        @Override
+        public int getChromosomeLength(String chrname) {
+            return 247249719;
+        }
+
+        @Override
+        public boolean isRemote() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AlignmentSpillFileTest extends AbstractHeadlessTest {
+
+    static String PATH = TestUtils.DATA_DIR + "bam/NA12878.SLX.sample.bam";
+    static String CHR = "1";
+    static int START = 63600000;
+    static int END = 63700000;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        List<Alignment> alignments = ColumnarAlignmentStoreTest.loadAlignments(PATH, CHR, START, END);
+        assertTrue(alignments.size() > 0);
+
+        AlignmentSpillFile spillFile = new AlignmentSpillFile();
+        try {
+            for (Alignment a : alignments) {
+                spillFile.add((PicardAlignment) a);
+            }
+            spillFile.finish();
+
+            List<Alignment> spilled = spillFile.getAlignments();
+            assertSame(spillFile, AlignmentSpillFile.getSpillFile(spilled));
+            assertEquals(alignments.size(), spilled.size());
+            for (int i = 0; i < alignments.size(); i++) {
+                Alignment expected = alignments.get(i);
+                assertEquals(expected.getStart(), spillFile.getStart(i));
+                assertEquals(expected.getEnd(), spillFile.getEnd(i));
+                assertTrue(spillFile.isMapped(i));
+                ColumnarAlignmentStoreTest.assertAlignmentEquals(expected, spilled.get(i));
+            }
+        } finally {
+            spillFile.delete();
+        }
+    }
+
+    /**
+     * The spill file is deleted when its interval leaves the cache of the data manager.
+     */
+    @Test
+    public void testClearDeletesSpillFile() throws Exception {
+
+        List<Alignment> alignments = ColumnarAlignmentStoreTest.loadAlignments(PATH, CHR, START, END);
+        AlignmentSpillFile spillFile = new AlignmentSpillFile();
+        for (Alignment a : alignments) {
+            spillFile.add((PicardAlignment) a);
+        }
+        spillFile.finish();
+        assertTrue(spillFile.getFile().exists());
+
+        AlignmentDataManager manager = new AlignmentDataManager(new ResourceLocator(PATH), genome);
+        manager.getLoadedIntervals().add(new AlignmentInterval(CHR, START, END, spillFile.getAlignments(),
+                null, null, null));
+        manager.clear();
+        assertTrue(manager.getLoadedIntervals().isEmpty());
+        assertFalse(spillFile.getFile().exists());
+    }
+
+    /**
+     * Spill a tile part way through loading,  and compare the packing and paging of its rows with the same
+     * alignments held on the heap.
+     */
+    @Test
+    public void testSpilledTile() throws Exception {
+
+        List<Alignment> alignments = ColumnarAlignmentStoreTest.loadAlignments(PATH, CHR, START, END);
+        AlignmentDataManager.DownsampleOptions downsampleOptions = new AlignmentDataManager.DownsampleOptions(false, 50, 100);
+
+        AlignmentTileLoader.AlignmentTile tile = new AlignmentTileLoader.AlignmentTile(START, END, null,
+                downsampleOptions, null, false);
+        int half = alignments.size() / 2;
+        for (int i = 0; i < alignments.size(); i++) {
+            if (i == half) {
+                assertTrue(tile.spill());
+                assertFalse(tile.spill());
+            }
+            tile.addRecord(alignments.get(i), false);
+        }
+        tile.finish();
+        assertTrue(tile.isSpilled());
+
+        AlignmentInterval spilledInterval = new AlignmentInterval(CHR, START, END, tile.getAlignments(),
+                tile.getCounts(), null, null);
+        AlignmentInterval heapInterval = new AlignmentInterval(CHR, START, END, alignments,
+                tile.getCounts(), null, null);
+        assertTrue(spilledInterval.isSpilled());
+        assertFalse(heapInterval.isSpilled());
+        assertEquals(alignments.size(), spilledInterval.getAlignments().size());
+
+        try {
+            AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+            for (AlignmentTrack.GroupOption groupOption :
+                    new AlignmentTrack.GroupOption[]{AlignmentTrack.GroupOption.NONE, AlignmentTrack.GroupOption.STRAND}) {
+
+                renderOptions.setGroupByOption(groupOption);
+                PackedAlignments expected = new AlignmentPacker().packAlignments(heapInterval, renderOptions);
+                PackedAlignments actual = new AlignmentPacker().packAlignments(spilledInterval, renderOptions);
+
+                assertEquals(expected.keySet(), actual.keySet());
+                for (String key : expected.keySet()) {
+                    List<Row> expectedRows = expected.get(key);
+                    List<Row> actualRows = actual.get(key);
+                    assertEquals(expectedRows.size(), actualRows.size());
+                    for (int r = 0; r < expectedRows.size(); r++) {
+                        List<Alignment> expectedRow = expectedRows.get(r).getAlignments();
+                        Row row = actualRows.get(r);
+                        assertNull(row.alignments);
+                        List<Alignment> actualRow = row.getAlignments();
+                        assertEquals(expectedRow.size(), actualRow.size());
+                        for (int i = 0; i < expectedRow.size(); i++) {
+                            assertEquals(expectedRow.get(i).getStart(), actualRow.get(i).getStart());
+                            assertEquals(expectedRow.get(i).getEnd(), actualRow.get(i).getEnd());
+                        }
+                    }
+                }
+            }
+        } finally {
+            spilledInterval.dumpAlignments();
+        }
+        assertEquals(0, spilledInterval.getAlignments().size());
+    }
+
+    /**
+     * Merging a spilled sub-range tile spills the merged tile,  alignments remain in order.
+     */
+    @Test
+    public void testMergeSpilled() throws Exception {
+
+        List<Alignment> alignments = ColumnarAlignmentStoreTest.loadAlignments(PATH, CHR, START, END);
+        AlignmentDataManager.DownsampleOptions downsampleOptions = new AlignmentDataManager.DownsampleOptions(false, 50, 100);
+        int half = alignments.size() / 2;
+
+        AlignmentTileLoader.AlignmentTile first = new AlignmentTileLoader.AlignmentTile(START, END, null,
+                downsampleOptions, null, false);
+        AlignmentTileLoader.AlignmentTile second = new AlignmentTileLoader.AlignmentTile(START, END, null,
+                downsampleOptions, null, false);
+        assertTrue(second.spill());
+        for (int i = 0; i < alignments.size(); i++) {
+            (i < half ? first : second).addRecord(alignments.get(i), false);
+        }
+        first.finish();
+        second.finish();
+
+        AlignmentTileLoader.AlignmentTile merged = new AlignmentTileLoader.AlignmentTile(START, END, null,
+                downsampleOptions, null, false);
+        merged.merge(first);
+        assertFalse(merged.isSpilled());
+        merged.merge(second);
+        assertTrue(merged.isSpilled());
+        merged.finish();
+
+        List<Alignment> spilled = merged.getAlignments();
+        assertEquals(alignments.size(), spilled.size());
+        for (int i = 0; i < alignments.size(); i += 97) {
+            assertEquals(alignments.get(i).getReadName(), spilled.get(i).getReadName());
+            assertEquals(alignments.get(i).getStart(), spilled.get(i).getStart());
+        }
+        AlignmentSpillFile.getSpillFile(spilled).delete();
+    }
+
+    /**
+     * Rows used least recently are released once the paged-in alignment limit is reached.
+     */
+    @Test
+    public void testPaging() throws Exception {
+
+        List<Alignment> alignments = ColumnarAlignmentStoreTest.loadAlignments(PATH, CHR, START, END);
+        int maxPagedAlignments = 1000;
+        AlignmentSpillFile spillFile = new AlignmentSpillFile(maxPagedAlignments);
+        try {
+            for (Alignment a : alignments) {
+                spillFile.add((PicardAlignment) a);
+            }
+            spillFile.finish();
+
+            // Rows of a quarter of the limit,  so paging in all of them exceeds it
+            int rowSize = 1 + maxPagedAlignments / 4;
+            List<Row> rows = new ArrayList<>();
+            for (int r = 0; r < 6; r++) {
+                int[] indices = new int[rowSize];
+                for (int i = 0; i < rowSize; i++) {
+                    indices[i] = (r + i) % alignments.size();
+                }
+                rows.add(new Row(spillFile, indices));
+            }
+
+            for (Row row : rows) {
+                List<Alignment> paged = row.getAlignments();
+                assertEquals(rowSize, paged.size());
+                assertSame(paged, row.getAlignments());
+                assertTrue(spillFile.getPagedCount() <= maxPagedAlignments);
+            }
+            // The first rows were released,  the most recent kept
+            assertNull(rows.get(0).alignments);
+            assertNotNull(rows.get(rows.size() - 1).alignments);
+
+            spillFile.pageOutAll();
+            assertEquals(0, spillFile.getPagedCount());
+            assertNull(rows.get(rows.size() - 1).alignments);
+        } finally {
+            spillFile.delete();
+        }
+    }
+}
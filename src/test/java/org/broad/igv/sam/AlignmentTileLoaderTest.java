@@ -29,6 +29,8 @@
  */
 package org.broad.igv.sam;
 
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
 import org.broad.igv.AbstractHeadlessTest;
 import org.broad.igv.prefs.Constants;
 import org.broad.igv.prefs.PreferencesManager;
@@ -36,6 +38,7 @@ import org.broad.igv.sam.reader.AlignmentReader;
 import org.broad.igv.sam.reader.AlignmentReaderFactory;
 import org.broad.igv.util.ResourceLocator;
 import org.broad.igv.util.TestUtils;
+import org.broad.igv.util.collections.CacheManager;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -90,6 +93,169 @@ public class AlignmentTileLoaderTest extends AbstractHeadlessTest {
 
     }
 
+    /**
+     * Test that loading an interval in parallel sub-ranges gives the same alignments and counts as a serial load.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testShardedLoad() throws Exception {
+        checkShardedLoad();
+    }
+
+    /**
+     * Test a sharded load where every alignment crossing the end of a sub-range extends past its counts,  and is
+     * counted when the sub-ranges are merged.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testShardedLoadOverflow() throws Exception {
+        int flank = AlignmentTileLoader.SHARD_COUNTS_FLANK;
+        AlignmentTileLoader.SHARD_COUNTS_FLANK = 0;
+        try {
+            checkShardedLoad();
+        } finally {
+            AlignmentTileLoader.SHARD_COUNTS_FLANK = flank;
+        }
+    }
+
+    private void checkShardedLoad() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "bam/NA12878.SLX.sample.bam";
+        String sequence = "1";
+        int start = 63600000;
+        int end = 63700000;
+
+        ResourceLocator loc = new ResourceLocator(path);
+        AlignmentDataManager.DownsampleOptions downsampleOptions = new AlignmentDataManager.DownsampleOptions(false, 50, 100);
+
+        String oldLoadThreads = PreferencesManager.getPreferences().get(Constants.SAM_LOAD_THREADS);
+        try {
+            PreferencesManager.getPreferences().put(Constants.SAM_LOAD_THREADS, "1");
+            AlignmentTileLoader serialLoader = new AlignmentTileLoader(AlignmentReaderFactory.getReader(loc), loc);
+            ReadStats serialStats = new ReadStats();
+            AlignmentTileLoader.AlignmentTile expected = serialLoader.loadTile(sequence, start, end, null, downsampleOptions,
+                    serialStats, new HashMap<>(), null);
+
+            PreferencesManager.getPreferences().put(Constants.SAM_LOAD_THREADS, "4");
+            AlignmentTileLoader shardedLoader = new AlignmentTileLoader(AlignmentReaderFactory.getReader(loc), loc);
+            ReadStats shardedStats = new ReadStats();
+            AlignmentTileLoader.AlignmentTile actual = shardedLoader.loadTile(sequence, start, end, null, downsampleOptions,
+                    shardedStats, new HashMap<>(), null);
+
+            List<Alignment> expectedAlignments = expected.getAlignments();
+            List<Alignment> actualAlignments = actual.getAlignments();
+            assertTrue(expectedAlignments.size() > 0);
+            assertEquals(expectedAlignments.size(), actualAlignments.size());
+            for (int i = 0; i < expectedAlignments.size(); i++) {
+                assertEquals(expectedAlignments.get(i).getReadName(), actualAlignments.get(i).getReadName());
+                assertEquals(expectedAlignments.get(i).getStart(), actualAlignments.get(i).getStart());
+            }
+
+            AlignmentCounts expectedCounts = expected.getCounts();
+            AlignmentCounts actualCounts = actual.getCounts();
+            for (int pos = start; pos < end; pos++) {
+                assertEquals(expectedCounts.getTotalCount(pos), actualCounts.getTotalCount(pos));
+                assertEquals(expectedCounts.getTotalQuality(pos), actualCounts.getTotalQuality(pos));
+                assertEquals(expectedCounts.getNegCount(pos, (byte) 'A'), actualCounts.getNegCount(pos, (byte) 'A'));
+                assertEquals(expectedCounts.getDelCount(pos), actualCounts.getDelCount(pos));
+                assertEquals(expectedCounts.getInsCount(pos), actualCounts.getInsCount(pos));
+            }
+            assertEquals(expectedCounts.getMaxCount(start, end), actualCounts.getMaxCount(start, end));
+
+            assertEquals(serialStats.medianReadLength, shardedStats.medianReadLength, 0);
+            assertEquals(serialStats.fracReadsWithIndels, shardedStats.fracReadsWithIndels, 1.0e-9);
+
+            serialLoader.close();
+            shardedLoader.close();
+        } finally {
+            PreferencesManager.getPreferences().put(Constants.SAM_LOAD_THREADS, oldLoadThreads);
+        }
+    }
+
+    /**
+     * Test that the mate map is bounded by its own weight quota and is unaffected by the global cache budget.
+     */
+    @Test
+    public void testMateMap() throws Exception {
+
+        long oldBudget = CacheManager.getBudget();
+        try {
+            CacheManager.setBudget(1);
+
+            // Each 100 bp mate weighs 400,  so 5 fit in a quota of 2000
+            AlignmentTileLoader.MateMap mates = new AlignmentTileLoader.MateMap(2000);
+            for (int i = 0; i < 5; i++) {
+                mates.put("read" + i, new DotAlignedAlignment("1", i * 100, i * 100 + 100, false, "read" + i));
+            }
+            assertEquals(5, mates.size());
+            assertEquals(2000, mates.getWeight());
+
+            // Touch read0 so read1 is the least recently used,  then overflow the quota
+            assertNotNull(mates.get("read0"));
+            mates.put("read5", new DotAlignedAlignment("1", 500, 600, false, "read5"));
+            assertEquals(5, mates.size());
+            assertNull(mates.get("read1"));
+            assertNotNull(mates.get("read0"));
+            assertNotNull(mates.get("read5"));
+
+            mates.remove("read0");
+            assertEquals(4, mates.size());
+            assertEquals(1600, mates.getWeight());
+            assertEquals(4, mates.readNames().size());
+        } finally {
+            CacheManager.setBudget(oldBudget);
+        }
+    }
+
+    /**
+     * Benchmark the load time of a deep interval as the number of parallel sub-ranges increases from 1 to the
+     * number of available cores.
+     *
+     * @throws Exception
+     */
+    @Test @Ignore("Benchmark, requires largedata bundle")
+    public void timeShardedLoad() throws Exception {
+
+        String path = TestUtils.LARGE_DATA_DIR + "HG00171.hg18.bam";
+        final String sequence = "chr1";
+        final int start = 151666494;
+        final int end = start + 100000;
+        final ResourceLocator loc = new ResourceLocator(path);
+
+        String oldLoadThreads = PreferencesManager.getPreferences().get(Constants.SAM_LOAD_THREADS);
+        try {
+            int nCores = Runtime.getRuntime().availableProcessors();
+            for (int nThreads = 1; nThreads <= nCores; nThreads *= 2) {
+
+                PreferencesManager.getPreferences().put(Constants.SAM_LOAD_THREADS, "" + nThreads);
+                final AlignmentTileLoader loader = new AlignmentTileLoader(AlignmentReaderFactory.getReader(loc), loc);
+
+                Supplier<AlignmentTileLoader> supplier = new Supplier<AlignmentTileLoader>() {
+                    @Override
+                    public AlignmentTileLoader get() {
+                        return loader;
+                    }
+                };
+                Function<AlignmentTileLoader, Void> loadFunc = new Function<AlignmentTileLoader, Void>() {
+                    @Override
+                    public Void apply(AlignmentTileLoader input) {
+                        input.loadTile(sequence, start, end, new SpliceJunctionHelper(new SpliceJunctionHelper.LoadOptions()),
+                                new AlignmentDataManager.DownsampleOptions(), new ReadStats(), new HashMap<>(), null);
+                        return null;
+                    }
+                };
+
+                System.out.println("\nThreads: " + nThreads);
+                TestUtils.timeMethod(supplier, loadFunc, 10);
+                loader.close();
+            }
+        } finally {
+            PreferencesManager.getPreferences().put(Constants.SAM_LOAD_THREADS, oldLoadThreads);
+        }
+    }
+
     private AlignmentTileLoader.AlignmentTile tstKeepPairsDownsample(String path, String sequence, int start, int end, int maxDepth) throws Exception{
 
 
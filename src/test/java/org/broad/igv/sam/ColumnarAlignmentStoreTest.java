@@ -0,0 +1,278 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.broad.igv.sam;
+
+import htsjdk.samtools.SAMFileHeader;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.CloseableIterator;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.IGVPreferences;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.sam.reader.AlignmentReader;
+import org.broad.igv.sam.reader.AlignmentReaderFactory;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ColumnarAlignmentStoreTest extends AbstractHeadlessTest {
+
+    static String PATH = TestUtils.DATA_DIR + "bam/NA12878.SLX.sample.bam";
+    static String CHR = "1";
+    static int START = 63600000;
+    static int END = 63700000;
+
+    @Test
+    public void testViews() throws Exception {
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        boolean showSoftClipped = prefs.getAsBoolean(Constants.SAM_SHOW_SOFT_CLIPPED);
+        try {
+            for (boolean sc : new boolean[]{false, true}) {
+                prefs.put(Constants.SAM_SHOW_SOFT_CLIPPED, String.valueOf(sc));
+                compareViews(loadAlignments(PATH, CHR, START, END));
+
+                // The SAM specification example includes insertions, deletions, padding, soft clips and skipped regions
+                compareViews(loadAlignments(TestUtils.DATA_DIR + "bam/sam_spec_example.bam", "ref", 0, 100));
+            }
+        } finally {
+            prefs.put(Constants.SAM_SHOW_SOFT_CLIPPED, String.valueOf(showSoftClipped));
+        }
+    }
+
+    private void compareViews(List<Alignment> alignments) {
+
+        List<Alignment> packed = ColumnarAlignmentStore.pack(alignments);
+        assertTrue(alignments.size() > 0);
+        assertEquals(alignments.size(), packed.size());
+
+        for (int i = 0; i < alignments.size(); i++) {
+            Alignment expected = alignments.get(i);
+            Alignment actual = packed.get(i);
+            assertTrue(actual instanceof ColumnarAlignmentStore.StoredAlignment);
+            assertAlignmentEquals(expected, actual);
+        }
+    }
+
+    /**
+     * A read stored without bases,  SEQ "*",  has blocks without bases.
+     */
+    @Test
+    public void testNoBases() throws Exception {
+
+        SAMFileHeader header = new SAMFileHeader();
+        header.addSequence(new SAMSequenceRecord("chr1", 1000));
+        SAMRecord record = new SAMRecord(header);
+        record.setReadName("noBases");
+        record.setReferenceName("chr1");
+        record.setAlignmentStart(101);
+        record.setCigarString("50M");
+        record.setReadBases(SAMRecord.NULL_SEQUENCE);
+        record.setBaseQualities(SAMRecord.NULL_QUALS);
+
+        List<Alignment> alignments = new ArrayList<>();
+        alignments.add(new PicardAlignment(record));
+        Alignment packed = ColumnarAlignmentStore.pack(alignments).get(0);
+
+        assertEquals("*", packed.getReadSequence());
+        for (AlignmentBlock block : packed.getAlignmentBlocks()) {
+            assertFalse(block.hasBases());
+        }
+    }
+
+    static void assertAlignmentEquals(Alignment expected, Alignment actual) {
+
+        String name = expected.getReadName();
+        assertEquals(name, actual.getReadName());
+        assertEquals(name, expected.getChr(), actual.getChr());
+        assertEquals(name, expected.getStart(), actual.getStart());
+        assertEquals(name, expected.getEnd(), actual.getEnd());
+        assertEquals(name, expected.getAlignmentStart(), actual.getAlignmentStart());
+        assertEquals(name, expected.getAlignmentEnd(), actual.getAlignmentEnd());
+        assertEquals(name, expected.getCigarString(), actual.getCigarString());
+        assertEquals(name, expected.getReadSequence(), actual.getReadSequence());
+        assertEquals(name, expected.getMappingQuality(), actual.getMappingQuality());
+        assertEquals(name, expected.getInferredInsertSize(), actual.getInferredInsertSize());
+        assertEquals(name, expected.isPaired(), actual.isPaired());
+        assertEquals(name, expected.isProperPair(), actual.isProperPair());
+        assertEquals(name, expected.isFirstOfPair(), actual.isFirstOfPair());
+        assertEquals(name, expected.isSecondOfPair(), actual.isSecondOfPair());
+        assertEquals(name, expected.isNegativeStrand(), actual.isNegativeStrand());
+        assertEquals(name, expected.isDuplicate(), actual.isDuplicate());
+        assertEquals(name, expected.isPrimary(), actual.isPrimary());
+        assertEquals(name, expected.isSupplementary(), actual.isSupplementary());
+        assertEquals(name, expected.isVendorFailedRead(), actual.isVendorFailedRead());
+        assertEquals(name, expected.getPairOrientation(), actual.getPairOrientation());
+        assertEquals(name, expected.getFirstOfPairStrand(), actual.getFirstOfPairStrand());
+        assertEquals(name, expected.getSecondOfPairStrand(), actual.getSecondOfPairStrand());
+        assertEquals(name, expected.getSample(), actual.getSample());
+        assertEquals(name, expected.getReadGroup(), actual.getReadGroup());
+        assertEquals(name, expected.getLibrary(), actual.getLibrary());
+        assertEquals(name, expected.getAttribute("RG"), actual.getAttribute("RG"));
+        assertEquals(name, expected.getAttribute("NM"), actual.getAttribute("NM"));
+
+        ReadMate expectedMate = expected.getMate();
+        ReadMate actualMate = actual.getMate();
+        if (expectedMate == null) {
+            assertNull(name, actualMate);
+        } else {
+            assertEquals(name, expectedMate.positionString(), actualMate.positionString());
+            assertEquals(name, expectedMate.isMapped(), actualMate.isMapped());
+            assertEquals(name, expectedMate.isNegativeStrand(), actualMate.isNegativeStrand());
+        }
+
+        assertBlocksEqual(name, expected.getAlignmentBlocks(), actual.getAlignmentBlocks());
+        assertBlocksEqual(name, expected.getInsertions(), actual.getInsertions());
+
+        List<Gap> expectedGaps = expected.getGaps();
+        List<Gap> actualGaps = actual.getGaps();
+        if (expectedGaps == null) {
+            assertNull(name, actualGaps);
+        } else {
+            assertEquals(name, expectedGaps.size(), actualGaps.size());
+            for (int i = 0; i < expectedGaps.size(); i++) {
+                Gap e = expectedGaps.get(i);
+                Gap a = actualGaps.get(i);
+                assertEquals(name, e.getStart(), a.getStart());
+                assertEquals(name, e.getnBases(), a.getnBases());
+                assertEquals(name, e.getType(), a.getType());
+                assertEquals(name, e instanceof SpliceGap, a instanceof SpliceGap);
+                if (e instanceof SpliceGap) {
+                    assertEquals(name, ((SpliceGap) e).getFlankingLeft(), ((SpliceGap) a).getFlankingLeft());
+                    assertEquals(name, ((SpliceGap) e).getFlankingRight(), ((SpliceGap) a).getFlankingRight());
+                }
+            }
+        }
+
+        for (int pos = expected.getStart() - 1; pos <= expected.getEnd(); pos++) {
+            assertEquals(name, expected.getBase(pos), actual.getBase(pos));
+            assertEquals(name, expected.getPhred(pos), actual.getPhred(pos));
+        }
+
+        int center = (expected.getStart() + expected.getEnd()) / 2;
+        assertEquals(name, expected.getValueString(center, -1, null), actual.getValueString(center, -1, null));
+    }
+
+    private static void assertBlocksEqual(String name, AlignmentBlock[] expected, AlignmentBlock[] actual) {
+        assertEquals(name, expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            AlignmentBlock e = expected[i];
+            AlignmentBlock a = actual[i];
+            assertEquals(name, e.getStart(), a.getStart());
+            assertEquals(name, e.getLength(), a.getLength());
+            assertEquals(name, e.getEnd(), a.getEnd());
+            assertEquals(name, e.getPadding(), a.getPadding());
+            assertEquals(name, e.isSoftClipped(), a.isSoftClipped());
+            assertEquals(name, new String(e.getBases()), new String(a.getBases()));
+            assertArrayEquals(name, e.getQualities(), a.getQualities());
+        }
+    }
+
+    /**
+     * Load an interval with the columnar store enabled.
+     */
+    @Test
+    public void testLoadTile() throws Exception {
+
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        ResourceLocator loc = new ResourceLocator(PATH);
+        AlignmentDataManager.DownsampleOptions downsampleOptions = new AlignmentDataManager.DownsampleOptions(false, 50, 100);
+
+        try {
+            prefs.put(Constants.SAM_COLUMNAR_STORE, "true");
+            AlignmentTileLoader loader = new AlignmentTileLoader(AlignmentReaderFactory.getReader(loc), loc);
+            List<Alignment> alignments = loader.loadTile(CHR, START, END, null, downsampleOptions,
+                    null, null, null).getAlignments();
+
+            List<Alignment> expected = loadAlignments(PATH, CHR, START, END);
+            assertEquals(expected.size(), alignments.size());
+            for (Alignment a : alignments) {
+                assertTrue(a instanceof ColumnarAlignmentStore.StoredAlignment);
+            }
+        } finally {
+            prefs.remove(Constants.SAM_COLUMNAR_STORE);
+        }
+    }
+
+    /**
+     * Compare the heap used by 1 million reads as PicardAlignments and in a ColumnarAlignmentStore.
+     */
+    @Ignore("Benchmark")
+    @Test
+    public void benchmarkHeapFootprint() throws Exception {
+
+        final int nReads = 1000000;
+        List<Alignment> sample = loadAlignments(PATH, CHR, START, END);
+
+        long base = usedMemory();
+        List<Alignment> alignments = new ArrayList<>(nReads);
+        while (alignments.size() < nReads) {
+            for (Alignment a : loadAlignments(PATH, CHR, START, END)) {
+                if (alignments.size() == nReads) break;
+                alignments.add(a);
+            }
+        }
+        long objectBytes = usedMemory() - base;
+
+        List<Alignment> packed = ColumnarAlignmentStore.pack(alignments);
+        alignments = null;
+        long packedBytes = usedMemory() - base;
+
+        System.out.println("Reads: " + packed.size() + "  (sample of " + sample.size() + ")");
+        System.out.println("PicardAlignment:        " + (objectBytes / nReads) + " bytes / read");
+        System.out.println("ColumnarAlignmentStore: " + (packedBytes / nReads) + " bytes / read");
+        assertTrue(packedBytes < objectBytes);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static List<Alignment> loadAlignments(String path, String chr, int start, int end) throws Exception {
+        AlignmentReader reader = AlignmentReaderFactory.getReader(new ResourceLocator(path));
+        List<Alignment> alignments = new ArrayList<>();
+        try (CloseableIterator<Alignment> iter = reader.query(chr, start, end, false)) {
+            while (iter.hasNext()) {
+                Alignment a = iter.next();
+                if (a.isMapped()) {
+                    alignments.add(a);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return alignments;
+    }
+}
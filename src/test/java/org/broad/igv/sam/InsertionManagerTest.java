@@ -0,0 +1,190 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.genome.Genome;
+import org.broad.igv.feature.genome.GenomeManager;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.broad.igv.sam.ColumnarAlignmentStoreTest.*;
+import static org.junit.Assert.*;
+
+public class InsertionManagerTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testProcessAlignments() throws Exception {
+
+        List<Alignment> alignments = loadAlignments(PATH, CHR, START, END);
+        String chr = canonicalName(CHR);
+        InsertionManager manager = InsertionManager.getInstance();
+        try {
+            manager.clear();
+
+            // Process overlapping tiles out of order,  as the loaders would
+            List<List<Alignment>> tiles = split(alignments, 5);
+            Collections.reverse(tiles);
+            for (List<Alignment> tile : tiles) {
+                manager.processAlignments(CHR, tile);
+            }
+            manager.processAlignments(CHR, tiles.get(0));
+
+            TreeMap<Integer, Integer> expected = expectedInsertions(alignments);
+            assertTrue(expected.size() > 0);
+            assertEquivalent(expected, manager.getInsertions(chr, START, END));
+            assertEquivalent(expected.subMap(63650000, true, 63660000, true),
+                    manager.getInsertions(chr, 63650000, 63660000));
+
+            int position = expected.firstKey();
+            manager.setSelected(chr, position);
+            assertEquals(position, manager.getSelectedInsertion(chr).position);
+            manager.setSelected(chr, position + 1);
+            if (!expected.containsKey(position + 1)) {
+                assertNull(manager.getSelectedInsertion(chr));
+            }
+        } finally {
+            manager.clear();
+        }
+        assertNull(manager.getInsertions(chr, START, END));
+    }
+
+    /**
+     * Insertions of spilled alignments are collected as they are written to disk
+     */
+    @Test
+    public void testSpilledInsertions() throws Exception {
+
+        List<Alignment> alignments = loadAlignments(PATH, CHR, START, END);
+        String chr = canonicalName(CHR);
+        InsertionManager manager = InsertionManager.getInstance();
+        int half = alignments.size() / 2;
+        AlignmentSpillFile first = new AlignmentSpillFile();
+        AlignmentSpillFile second = new AlignmentSpillFile();
+        try {
+            manager.clear();
+            for (int i = 0; i < alignments.size(); i++) {
+                (i < half ? first : second).add((PicardAlignment) alignments.get(i));
+            }
+            second.finish();
+            first.addAll(second);
+            first.finish();
+            manager.processInsertions(CHR, first.getInsertions());
+            assertEquivalent(expectedInsertions(alignments), manager.getInsertions(chr, START, END));
+        } finally {
+            first.delete();
+            manager.clear();
+        }
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+
+        List<Alignment> alignments = loadAlignments(PATH, CHR, START, END);
+        String chr = canonicalName(CHR);
+        InsertionManager manager = InsertionManager.getInstance();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            manager.clear();
+            List<List<Alignment>> tiles = split(alignments, 20);
+            CountDownLatch loaded = new CountDownLatch(tiles.size());
+            AtomicReference<Throwable> error = new AtomicReference<>();
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<Alignment> tile : tiles) {
+                futures.add(executor.submit(() -> {
+                    manager.processAlignments(CHR, tile);
+                    loaded.countDown();
+                }));
+            }
+            for (int r = 0; r < 4; r++) {
+                futures.add(executor.submit(() -> {
+                    try {
+                        while (loaded.getCount() > 0) {
+                            List<InsertionMarker> markers = manager.getInsertions(chr, START, END);
+                            if (markers != null) {
+                                for (int i = 1; i < markers.size(); i++) {
+                                    assertTrue(markers.get(i - 1).position < markers.get(i).position);
+                                }
+                            }
+                        }
+                    } catch (Throwable t) {
+                        error.set(t);
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+            assertNull(error.get());
+
+            assertEquivalent(expectedInsertions(alignments), manager.getInsertions(chr, START, END));
+        } finally {
+            executor.shutdownNow();
+            manager.clear();
+        }
+    }
+
+    private static String canonicalName(String chr) {
+        Genome genome = GenomeManager.getInstance().getCurrentGenome();
+        return genome == null ? chr : genome.getCanonicalChrName(chr);
+    }
+
+    private static List<List<Alignment>> split(List<Alignment> alignments, int n) {
+        List<List<Alignment>> tiles = new ArrayList<>();
+        int step = (alignments.size() + n - 1) / n;
+        for (int i = 0; i < alignments.size(); i += step) {
+            tiles.add(alignments.subList(i, Math.min(alignments.size(), i + step)));
+        }
+        return tiles;
+    }
+
+    private static TreeMap<Integer, Integer> expectedInsertions(List<Alignment> alignments) {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (Alignment a : alignments) {
+            AlignmentBlock[] blocks = a.getInsertions();
+            if (blocks != null) {
+                for (AlignmentBlock block : blocks) {
+                    expected.merge(block.getStart(), block.getLength(), Math::max);
+                }
+            }
+        }
+        return expected;
+    }
+
+    private static void assertEquivalent(SortedMap<Integer, Integer> expected, List<InsertionMarker> markers) {
+        assertEquals(expected.size(), markers.size());
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            InsertionMarker marker = markers.get(i++);
+            assertEquals((int) entry.getKey(), marker.position);
+            assertEquals((int) entry.getValue(), marker.size);
+        }
+    }
+}
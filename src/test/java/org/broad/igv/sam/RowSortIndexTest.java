@@ -0,0 +1,89 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.IGVPreferences;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RowSortIndexTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testScores() throws Exception {
+
+        IGVPreferences prefs = PreferencesManager.getPreferences();
+        prefs.put(Constants.SAM_DOWNSAMPLE_READS, "false");
+        try {
+            String path = TestUtils.DATA_DIR + "bam/NA12878.SLX.sample.bam";
+            AlignmentDataManager manager = new AlignmentDataManager(new ResourceLocator(path), genome);
+            int start = 63620000;
+            int end = 63640000;
+            AlignmentInterval interval = AlignmentDataManagerTest.loadInterval(manager, "1", start, end);
+            assertTrue(interval.getAlignments().size() > 0);
+
+            AlignmentTrack.RenderOptions renderOptions = new AlignmentTrack.RenderOptions();
+            for (AlignmentTrack.GroupOption groupOption :
+                    new AlignmentTrack.GroupOption[]{AlignmentTrack.GroupOption.NONE, AlignmentTrack.GroupOption.STRAND}) {
+
+                renderOptions.setGroupByOption(groupOption);
+                interval.packAlignments(renderOptions);
+                PackedAlignments packed = interval.getPackedAlignments();
+                RowSortIndex index = packed.getSortIndex();
+
+                List<Row> rows = new ArrayList<>();
+                for (List<Row> group : packed.values()) {
+                    rows.addAll(group);
+                }
+
+                // Neighbouring positions,  and positions revisited from the column cache
+                int[] positions = {63630000, 63630001, 63630002, 63625000, 63630001, 63638123, 63630000};
+                for (int position : positions) {
+                    for (AlignmentTrack.SortOption option : AlignmentTrack.SortOption.values()) {
+                        for (String tag : new String[]{"NM", "RG"}) {
+                            double center = position + 0.5;
+                            index.updateScores(option, center, interval, tag);
+                            for (Row row : rows) {
+                                assertEquals(option + " " + position, row.calculateScore(option, center, interval, tag),
+                                        row.getScore(), 0);
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            prefs.remove(Constants.SAM_DOWNSAMPLE_READS);
+        }
+    }
+}
@@ -38,6 +38,7 @@ import org.junit.Test;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -71,6 +72,26 @@ public class SAMWriterTest extends AbstractHeadlessTest {
      * @param origPath       Used for error message only. Can be null
      * @throws java.io.IOException
      */
+    /**
+     * Alignments are iterated in order of alignment start without copying the list,  ties keep their order
+     */
+    @Test
+    public void testSortedIterator() throws Exception {
+        List<Alignment> alignments = ColumnarAlignmentStoreTest.loadAlignments(ColumnarAlignmentStoreTest.PATH,
+                ColumnarAlignmentStoreTest.CHR, ColumnarAlignmentStoreTest.START, ColumnarAlignmentStoreTest.END);
+        Collections.reverse(alignments);
+
+        List<Alignment> expected = new ArrayList<>(alignments);
+        expected.sort((o1, o2) -> o1.getAlignmentStart() - o2.getAlignmentStart());
+
+        Iterator<Alignment> iter = SAMWriter.sortedIterator(alignments);
+        for (Alignment a : expected) {
+            assertTrue(iter.hasNext());
+            assertTrue(a == iter.next());
+        }
+        assertTrue(!iter.hasNext());
+    }
+
     public void checkRecordsMatch(List<PicardAlignment> origAlignments, File outFile, String origPath) throws IOException {
         //Read back in, check equality
         AlignmentReader outputReader = AlignmentReaderFactory.getReader(outFile.getAbsolutePath(), false);
@@ -0,0 +1,353 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.sam;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.SpliceJunctionFeature;
+import org.broad.igv.feature.Strand;
+import org.broad.igv.util.TestUtils;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SpliceJunctionHelperTest extends AbstractHeadlessTest {
+
+    static String[] PATHS = {
+            TestUtils.DATA_DIR + "sam/cufflinks_test_data.sam",
+            TestUtils.DATA_DIR + "sam/test_2.sam"
+    };
+
+    @Test
+    public void testJunctions() throws Exception {
+        for (String path : PATHS) {
+            List<Alignment> alignments = loadAlignments(path);
+            for (SpliceJunctionHelper.LoadOptions loadOptions : new SpliceJunctionHelper.LoadOptions[]{
+                    new SpliceJunctionHelper.LoadOptions(1, 0),
+                    new SpliceJunctionHelper.LoadOptions(2, 0),
+                    new SpliceJunctionHelper.LoadOptions(1, 10)}) {
+
+                SpliceJunctionHelper helper = new SpliceJunctionHelper(loadOptions);
+                TableJunctionHelper expected = new TableJunctionHelper(loadOptions);
+                for (Alignment a : alignments) {
+                    helper.addAlignment(a);
+                    expected.addAlignment(a);
+                }
+                assertJunctionsEqual(expected, helper);
+            }
+        }
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        for (String path : PATHS) {
+            List<Alignment> alignments = loadAlignments(path);
+            SpliceJunctionHelper.LoadOptions loadOptions = new SpliceJunctionHelper.LoadOptions(1, 0);
+
+            TableJunctionHelper expected = new TableJunctionHelper(loadOptions);
+            SpliceJunctionHelper left = new SpliceJunctionHelper(loadOptions);
+            SpliceJunctionHelper right = new SpliceJunctionHelper(loadOptions);
+            for (int i = 0; i < alignments.size(); i++) {
+                Alignment a = alignments.get(i);
+                expected.addAlignment(a);
+                (i < alignments.size() / 2 ? left : right).addAlignment(a);
+            }
+
+            SpliceJunctionHelper merged = new SpliceJunctionHelper(loadOptions);
+            merged.merge(right);
+            merged.getFilteredJunctions(SpliceJunctionTrack.StrandOption.BOTH);   // Merging must invalidate cached junctions
+            merged.merge(left);
+            assertJunctionsEqual(expected, merged);
+
+            // Restricting the merge to a range keeps junctions whose reads overlap it
+            SpliceJunctionHelper all = new SpliceJunctionHelper(loadOptions);
+            for (Alignment a : alignments) {
+                all.addAlignment(a);
+            }
+            List<SpliceJunctionFeature> allFeatures = all.getFilteredJunctions(SpliceJunctionTrack.StrandOption.BOTH);
+            int start = allFeatures.get(allFeatures.size() / 2).getJunctionStart();
+            int end = start + 1;
+            SpliceJunctionHelper copy = new SpliceJunctionHelper(loadOptions);
+            copy.merge(all, start, end);
+
+            List<SpliceJunctionFeature> expectedFeatures = new ArrayList<>();
+            for (SpliceJunctionFeature f : allFeatures) {
+                if (f.getEnd() > start && f.getStart() < end) {
+                    expectedFeatures.add(f);
+                }
+            }
+            assertTrue(expectedFeatures.size() > 0);
+            assertFeaturesEqual(expectedFeatures, copy.getFilteredJunctions(SpliceJunctionTrack.StrandOption.BOTH));
+        }
+    }
+
+    private static void assertJunctionsEqual(TableJunctionHelper expected, SpliceJunctionHelper helper) {
+        assertTrue(expected.getFilteredJunctions(SpliceJunctionTrack.StrandOption.BOTH).size() > 0);
+        for (SpliceJunctionTrack.StrandOption strandOption : SpliceJunctionTrack.StrandOption.values()) {
+            List<SpliceJunctionFeature> expectedFeatures = expected.getFilteredJunctions(strandOption);
+            assertFeaturesEqual(expectedFeatures, helper.getFilteredJunctions(strandOption));
+            // Again,  from the cache
+            assertFeaturesEqual(expectedFeatures, helper.getFilteredJunctions(strandOption));
+        }
+    }
+
+    private static void assertFeaturesEqual(List<SpliceJunctionFeature> expected, List<SpliceJunctionFeature> actual) {
+        assertEquals(expected.size(), actual.size());
+        Comparator<SpliceJunctionFeature> order = Comparator.comparingInt(SpliceJunctionFeature::getStart)
+                .thenComparingInt(SpliceJunctionFeature::getJunctionStart)
+                .thenComparingInt(SpliceJunctionFeature::getJunctionEnd)
+                .thenComparing(SpliceJunctionFeature::getStrand);
+        expected = new ArrayList<>(expected);
+        actual = new ArrayList<>(actual);
+        expected.sort(order);
+        actual.sort(order);
+        for (int i = 0; i < expected.size(); i++) {
+            SpliceJunctionFeature e = expected.get(i);
+            SpliceJunctionFeature a = actual.get(i);
+            String locus = e.getJunctionStart() + "-" + e.getJunctionEnd();
+            assertEquals(locus, e.getChr(), a.getChr());
+            assertEquals(locus, e.getStrand(), a.getStrand());
+            assertEquals(locus, e.getStart(), a.getStart());
+            assertEquals(locus, e.getEnd(), a.getEnd());
+            assertEquals(locus, e.getJunctionStart(), a.getJunctionStart());
+            assertEquals(locus, e.getJunctionEnd(), a.getJunctionEnd());
+            assertEquals(locus, e.getJunctionDepth(), a.getJunctionDepth());
+            assertArrayEquals(locus, e.getStartFlankingRegionDepthArray(), a.getStartFlankingRegionDepthArray());
+            assertArrayEquals(locus, e.getEndFlankingRegionDepthArray(), a.getEndFlankingRegionDepthArray());
+        }
+    }
+
+    /**
+     * Compare the time to accumulate junctions from 1 million synthetic spliced reads,  and to fetch each strand
+     * view,  with the Guava table implementation.
+     */
+    @Ignore("Benchmark")
+    @Test
+    public void benchmarkJunctions() throws Exception {
+
+        File samFile = File.createTempFile("spliced", ".sam");
+        samFile.deleteOnExit();
+        writeSplicedSam(samFile, 1000000, 20000);
+        List<Alignment> alignments = loadAlignments(samFile.getAbsolutePath());
+        SpliceJunctionHelper.LoadOptions loadOptions = new SpliceJunctionHelper.LoadOptions(1, 0);
+
+        for (int rep = 0; rep < 5; rep++) {
+            long t0 = System.nanoTime();
+            TableJunctionHelper tables = new TableJunctionHelper(loadOptions);
+            for (Alignment a : alignments) {
+                tables.addAlignment(a);
+            }
+            long t1 = System.nanoTime();
+            int tableCount = 0;
+            for (int i = 0; i < 10; i++) {
+                for (SpliceJunctionTrack.StrandOption strandOption : SpliceJunctionTrack.StrandOption.values()) {
+                    tableCount += tables.getFilteredJunctions(strandOption).size();
+                }
+            }
+            long t2 = System.nanoTime();
+
+            SpliceJunctionHelper helper = new SpliceJunctionHelper(loadOptions);
+            for (Alignment a : alignments) {
+                helper.addAlignment(a);
+            }
+            long t3 = System.nanoTime();
+            int helperCount = 0;
+            for (int i = 0; i < 10; i++) {
+                for (SpliceJunctionTrack.StrandOption strandOption : SpliceJunctionTrack.StrandOption.values()) {
+                    helperCount += helper.getFilteredJunctions(strandOption).size();
+                }
+            }
+            long t4 = System.nanoTime();
+
+            assertEquals(tableCount, helperCount);
+            System.out.println("Tables: add " + (t1 - t0) / 1000000 + " ms, fetch " + (t2 - t1) / 1000000 + " ms" +
+                    "    Helper: add " + (t3 - t2) / 1000000 + " ms, fetch " + (t4 - t3) / 1000000 + " ms");
+        }
+    }
+
+    /**
+     * Write reads with a single splice junction each,  drawn from nJunctions junctions of varying intron length.
+     */
+    private static void writeSplicedSam(File file, int nReads, int nJunctions) throws Exception {
+        final int readLength = 100;
+        Random random = new Random(1);
+        int[] junctionStarts = new int[nJunctions];
+        int[] intronLengths = new int[nJunctions];
+        int pos = 1000;
+        for (int j = 0; j < nJunctions; j++) {
+            pos += 200 + random.nextInt(2000);
+            junctionStarts[j] = pos;
+            intronLengths[j] = 50 + random.nextInt(5000);
+        }
+        char[] bases = new char[readLength];
+        Arrays.fill(bases, 'A');
+        String seq = new String(bases);
+
+        int[] readStarts = new int[nReads];
+        int[] leftLengths = new int[nReads];
+        int[] junctionIndices = new int[nReads];
+        for (int i = 0; i < nReads; i++) {
+            int j = random.nextInt(nJunctions);
+            junctionIndices[i] = j;
+            leftLengths[i] = 5 + random.nextInt(readLength - 10);
+            readStarts[i] = junctionStarts[j] - leftLengths[i];
+        }
+        Integer[] order = new Integer[nReads];
+        for (int i = 0; i < nReads; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingInt(i -> readStarts[i]));
+
+        try (PrintWriter pw = new PrintWriter(file)) {
+            pw.println("@HD\tVN:1.4\tSO:coordinate");
+            pw.println("@SQ\tSN:chr1\tLN:" + (pos + 10000));
+            for (int i : order) {
+                int left = leftLengths[i];
+                String cigar = left + "M" + intronLengths[junctionIndices[i]] + "N" + (readLength - left) + "M";
+                int flag = random.nextBoolean() ? 16 : 0;
+                String xs = random.nextBoolean() ? "+" : "-";
+                pw.println("read" + i + "\t" + flag + "\tchr1\t" + (readStarts[i] + 1) + "\t60\t" + cigar +
+                        "\t*\t0\t0\t" + seq + "\t*\tXS:A:" + xs);
+            }
+        }
+    }
+
+    private static List<Alignment> loadAlignments(String path) throws Exception {
+        List<Alignment> alignments = new ArrayList<>();
+        try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(new File(path))) {
+            for (SAMRecord record : reader) {
+                if (!record.getReadUnmappedFlag()) {
+                    alignments.add(new PicardAlignment(record));
+                }
+            }
+        }
+        return alignments;
+    }
+
+    /**
+     * Reference implementation,  junctions in Guava tables with depth arrays built read by read.
+     */
+    static class TableJunctionHelper {
+
+        Table<Integer, Integer, SpliceJunctionFeature> posStartEndJunctionsMap = HashBasedTable.create();
+        Table<Integer, Integer, SpliceJunctionFeature> negStartEndJunctionsMap = HashBasedTable.create();
+        SpliceJunctionHelper.LoadOptions loadOptions;
+
+        TableJunctionHelper(SpliceJunctionHelper.LoadOptions loadOptions) {
+            this.loadOptions = loadOptions;
+        }
+
+        void addAlignment(Alignment alignment) {
+            AlignmentBlock[] blocks = alignment.getAlignmentBlocks();
+            if (blocks == null || blocks.length < 2) {
+                return;
+            }
+            boolean isNegativeStrand;
+            Object strandAttr = alignment.getAttribute("XS");
+            if (strandAttr != null) {
+                isNegativeStrand = strandAttr.toString().charAt(0) == '-';
+            } else if (alignment.isPaired()) {
+                isNegativeStrand = alignment.getFirstOfPairStrand() == Strand.NEGATIVE;
+            } else {
+                isNegativeStrand = alignment.isNegativeStrand();
+            }
+            Table<Integer, Integer, SpliceJunctionFeature> table =
+                    isNegativeStrand ? negStartEndJunctionsMap : posStartEndJunctionsMap;
+
+            List<Gap> gaps = alignment.getGaps();
+            if (gaps == null) {
+                return;
+            }
+            for (Gap gap : gaps) {
+                if (gap instanceof SpliceGap) {
+                    SpliceGap spliceGap = (SpliceGap) gap;
+                    if (loadOptions.minReadFlankingWidth == 0 ||
+                            (spliceGap.getFlankingLeft() >= loadOptions.minReadFlankingWidth &&
+                                    spliceGap.getFlankingRight() >= loadOptions.minReadFlankingWidth)) {
+                        int junctionStart = spliceGap.getStart();
+                        int junctionEnd = junctionStart + spliceGap.getnBases();
+                        SpliceJunctionFeature junction = table.get(junctionStart, junctionEnd);
+                        if (junction == null) {
+                            junction = new SpliceJunctionFeature(alignment.getChr(), junctionStart, junctionEnd,
+                                    isNegativeStrand ? Strand.NEGATIVE : Strand.POSITIVE);
+                            table.put(junctionStart, junctionEnd, junction);
+                        }
+                        junction.addRead(junctionStart - spliceGap.getFlankingLeft(),
+                                junctionEnd + spliceGap.getFlankingRight());
+                    }
+                }
+            }
+        }
+
+        List<SpliceJunctionFeature> getFilteredJunctions(SpliceJunctionTrack.StrandOption strandOption) {
+            List<SpliceJunctionFeature> junctions;
+            switch (strandOption) {
+                case FORWARD:
+                    junctions = new ArrayList<>(posStartEndJunctionsMap.values());
+                    break;
+                case REVERSE:
+                    junctions = new ArrayList<>(negStartEndJunctionsMap.values());
+                    break;
+                case BOTH:
+                    junctions = new ArrayList<>(posStartEndJunctionsMap.values());
+                    junctions.addAll(negStartEndJunctionsMap.values());
+                    break;
+                default:
+                    Table<Integer, Integer, SpliceJunctionFeature> combinedMap = HashBasedTable.create();
+                    for (SpliceJunctionFeature posFeature : posStartEndJunctionsMap.values()) {
+                        SpliceJunctionFeature combinedFeature = new SpliceJunctionFeature(posFeature.getChr(),
+                                posFeature.getJunctionStart(), posFeature.getJunctionEnd());
+                        combinedFeature.setJunctionDepth(posFeature.getJunctionDepth());
+                        combinedMap.put(posFeature.getJunctionStart(), posFeature.getJunctionEnd(), combinedFeature);
+                    }
+                    for (SpliceJunctionFeature negFeature : negStartEndJunctionsMap.values()) {
+                        SpliceJunctionFeature junction = combinedMap.get(negFeature.getJunctionStart(), negFeature.getJunctionEnd());
+                        if (junction == null) {
+                            combinedMap.put(negFeature.getJunctionStart(), negFeature.getJunctionEnd(), negFeature);
+                        } else {
+                            junction.setJunctionDepth(junction.getJunctionDepth() + negFeature.getJunctionDepth());
+                        }
+                    }
+                    junctions = new ArrayList<>(combinedMap.values());
+            }
+            List<SpliceJunctionFeature> filtered = new ArrayList<>();
+            for (SpliceJunctionFeature f : junctions) {
+                if (f.getJunctionDepth() >= loadOptions.minJunctionCoverage) {
+                    filtered.add(f);
+                }
+            }
+            return filtered;
+        }
+    }
+}
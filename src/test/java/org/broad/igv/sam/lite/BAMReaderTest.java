@@ -1,10 +1,17 @@
 package org.broad.igv.sam.lite;
 
+import htsjdk.samtools.SAMRecord;
+import htsjdk.samtools.SAMRecordIterator;
+import htsjdk.samtools.SamReader;
+import htsjdk.samtools.SamReaderFactory;
+import htsjdk.samtools.ValidationStringency;
 import htsjdk.samtools.util.CloseableIterator;
 import org.broad.igv.sam.Alignment;
+import org.broad.igv.sam.AlignmentBlock;
 import org.broad.igv.util.TestUtils;
 import org.junit.Test;
 
+import java.io.File;
 import java.util.*;
 
 import static junit.framework.Assert.assertEquals;
@@ -56,6 +63,89 @@ public class BAMReaderTest {
 
     }
 
+    @Test
+    public void compareToPicard() throws Exception {
+
+        String bamPath = TestUtils.DATA_DIR + "bam/gstt1_sample.bam";
+        String chr = "chr22";
+        int beg = 24376000;
+        int end = 24386000;
+
+        List<Alignment> alignments = new BAMReader(bamPath).readAlignments(chr, beg, end);
+
+        List<SAMRecord> records = new ArrayList<>();
+        try (SamReader reader = SamReaderFactory.makeDefault().validationStringency(ValidationStringency.SILENT).open(new File(bamPath));
+             SAMRecordIterator iter = reader.queryOverlapping(chr, beg + 1, end)) {
+            while (iter.hasNext()) {
+                SAMRecord record = iter.next();
+                if (!record.getReadUnmappedFlag()) {
+                    records.add(record);
+                }
+            }
+        }
+
+        assertTrue(alignments.size() > 0);
+        assertEquals(records.size(), alignments.size());
+
+        for (int i = 0; i < records.size(); i++) {
+            SAMRecord record = records.get(i);
+            Alignment alignment = alignments.get(i);
+            assertEquals(record.getReadName(), alignment.getReadName());
+            assertEquals(chr, alignment.getChr());
+            assertEquals(record.getAlignmentStart() - 1, alignment.getStart());
+            assertEquals(record.getAlignmentEnd(), alignment.getEnd());
+            assertEquals(record.getCigarString(), alignment.getCigarString());
+            assertEquals(record.getReadString(), alignment.getReadSequence());
+            assertEquals(record.getMappingQuality(), alignment.getMappingQuality());
+            assertEquals(record.getReadNegativeStrandFlag(), alignment.isNegativeStrand());
+            assertEquals(record.getDuplicateReadFlag(), alignment.isDuplicate());
+
+            if (record.getReadPairedFlag()) {
+                assertEquals(record.getMateAlignmentStart() - 1, alignment.getMate().getStart());
+            }
+
+            Object nm = record.getAttribute("NM");
+            if (nm != null) {
+                assertEquals(nm, alignment.getAttribute("NM"));
+            }
+
+            // Block bases and qualities are decoded on demand
+            byte[] quals = record.getBaseQualities();
+            for (AlignmentBlock block : alignment.getAlignmentBlocks()) {
+                int readPos = record.getReadPositionAtReferencePosition(block.getStart() + 1) - 1;
+                assertEquals((char) record.getReadBases()[readPos], (char) block.getBase(0));
+                assertEquals(quals[readPos], block.getQuality(0));
+            }
+        }
+    }
+
+    @Test
+    public void filterAlignments() throws Exception {
+
+        String bamPath = TestUtils.DATA_DIR + "bam/gstt1_sample.bam";
+        String chr = "chr22";
+        int beg = 24376000;
+        int end = 24386000;
+
+        BAMReader bamReader = new BAMReader(bamPath);
+        List<Alignment> all = bamReader.readAlignments(chr, beg, end);
+
+        // Exclude reverse strand reads
+        bamReader.setFilter(0x10, 0);
+        List<Alignment> filtered = bamReader.readAlignments(chr, beg, end);
+
+        int expected = 0;
+        for (Alignment a : all) {
+            if (!a.isNegativeStrand()) expected++;
+        }
+        assertEquals(expected, filtered.size());
+        assertTrue(filtered.size() < all.size());
+
+        // All reads in this file have mapping quality 255
+        bamReader.setFilter(0, 256);
+        assertEquals(0, bamReader.readAlignments(chr, beg, end).size());
+    }
+
     @Test
     public void readHeader() throws Exception {
 
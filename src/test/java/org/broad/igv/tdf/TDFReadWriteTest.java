@@ -37,9 +37,11 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -184,6 +186,55 @@ public class TDFReadWriteTest {
     }
 
 
+    /**
+     * Tiles encoded on the worker pool must produce the same file as tiles encoded on the calling thread
+     */
+    @Test
+    public void testParallelWrite() throws IOException {
+        for (boolean gzipped : new boolean[]{false, true}) {
+            File sequential = writeTiles("test5.tdf", gzipped, false);
+            File parallel = writeTiles("test6.tdf", gzipped, true);
+            assertArrayEquals(Files.readAllBytes(sequential.toPath()), Files.readAllBytes(parallel.toPath()));
+
+            TDFReader reader = TDFReader.getReader(parallel.getAbsolutePath());
+            TDFDataset ds = reader.getDataset("/chr1/z1/mean");
+            TDFTile tile = reader.readTile(ds, 7);
+            assertEquals(7 * 1000, tile.getTileStart());
+            assertEquals((3 * 7 + 7) % 100, tile.getValue(2, 0), 1.0e-6);
+            reader.close();
+        }
+    }
+
+    private File writeTiles(String file, boolean gzipped, boolean parallel) throws IOException {
+
+        File testFile = new File(file);
+        testFile.deleteOnExit();
+
+        int nTiles = 200;
+        TDFWriter writer = new TDFWriter(testFile, "hg18", type, trackLine, trackNames, wfs, gzipped);
+        writer.parallel = parallel;
+        String[] dsNames = {"/chr1/z1/mean", "/chr1/z1/max"};
+        for (String dsName : dsNames) {
+            writer.createDataset(dsName, TDFDataset.DataType.FLOAT, 1000, nTiles);
+        }
+
+        for (int t = 0; t < nTiles; t++) {
+            for (String dsName : dsNames) {
+                // Tiles of varying size and content
+                float[][] data = new float[trackNames.length][100 + (t * 37) % 700];
+                for (int i = 0; i < trackNames.length; i++) {
+                    for (int j = 0; j < data[i].length; j++) {
+                        data[i][j] = ((i + 1) * (t + j) + (j % 3 == 0 ? t : 0)) % 100;
+                    }
+                }
+                writer.writeTile(dsName, t, new TDFFixedTile(t * 1000, t * 1000, 1, data));
+            }
+        }
+        writer.closeFile();
+        return testFile;
+    }
+
+
     public static void main(String[] args) {
         org.junit.runner.JUnitCore.runClasses(TDFReadWriteTest.class);
 
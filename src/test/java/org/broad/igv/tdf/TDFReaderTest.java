@@ -26,13 +26,17 @@
 package org.broad.igv.tdf;
 
 import org.broad.igv.util.ResourceLocator;
+import org.broad.igv.util.TestUtils;
+import org.junit.Ignore;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.*;
 
-import static junit.framework.Assert.assertEquals;
-import static junit.framework.Assert.assertNotNull;
-import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.*;
 
 /**
  * @author jrobinso
@@ -70,4 +74,154 @@ public class TDFReaderTest {
         assertNotNull(tile);
 
     }
+
+    @Test
+    public void testReadTiles() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "tdf/dm3_var_sample.wig.v2.1.30.tdf";
+        TDFReader reader = new TDFReader(new ResourceLocator(path));
+        TDFDataset dataset = reader.getDataset("/chr3R/raw");
+
+        // Include empty tiles, tiles past the end, and an out of order tile
+        int[] tileNumbers = new int[dataset.nTiles + 3];
+        for (int i = 0; i < dataset.nTiles; i++) {
+            tileNumbers[i] = i;
+        }
+        tileNumbers[dataset.nTiles] = dataset.nTiles;
+        tileNumbers[dataset.nTiles + 1] = dataset.nTiles + 10;
+        tileNumbers[dataset.nTiles + 2] = 1;
+
+        TDFTile[] tiles = reader.readTiles(dataset, tileNumbers);
+        assertEquals(tileNumbers.length, tiles.length);
+        int nonEmpty = 0;
+        for (int i = 0; i < tileNumbers.length; i++) {
+            TDFTile expected = reader.readTile(dataset, tileNumbers[i]);
+            assertEquivalent(expected, tiles[i]);
+            if (expected != null) nonEmpty++;
+        }
+        assertTrue(nonEmpty > 100);
+    }
+
+    @Test
+    public void testConcurrentGetTiles() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "tdf/dm3_var_sample.wig.v2.1.30.tdf";
+        TDFReader reader = new TDFReader(new ResourceLocator(path));
+        TDFDataset dataset = reader.getDataset("/chr3R/raw");
+        int end = dataset.nTiles * dataset.getTileWidth();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int iter = 0; iter < 5; iter++) {
+                dataset.clearCache();
+                CyclicBarrier barrier = new CyclicBarrier(8);
+                List<Future<List<TDFTile>>> futures = new ArrayList<>();
+                for (int n = 0; n < 8; n++) {
+                    // Overlapping ranges,  so threads contend for the same tiles
+                    int start = (n % 2) * end / 4;
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        return dataset.getTiles(start, start + end / 2);
+                    }));
+                }
+                List<TDFTile> first = futures.get(0).get(60, TimeUnit.SECONDS);
+                assertTrue(first.size() > 10);
+                for (int n = 2; n < 8; n += 2) {
+                    List<TDFTile> tiles = futures.get(n).get(60, TimeUnit.SECONDS);
+                    assertEquals(first.size(), tiles.size());
+                    for (int i = 0; i < tiles.size(); i++) {
+                        // One decode is shared by all requests for a tile
+                        assertSame(first.get(i), tiles.get(i));
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * An error while reading tiles is passed to threads waiting on the same tiles,  rather than leaving them blocked
+     */
+    @Test
+    public void testGetTilesError() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "tdf/dm3_var_sample.wig.v2.1.30.tdf";
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TDFReader reader = new TDFReader(new ResourceLocator(path)) {
+            @Override
+            public TDFTile[] readTiles(TDFDataset ds, int[] tileNumbers) {
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                throw new OutOfMemoryError("Test");
+            }
+        };
+        TDFDataset dataset = reader.getDataset("/chr3R/raw");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() -> dataset.getTiles(0, 10, true));
+            assertTrue(reading.await(60, TimeUnit.SECONDS));
+            Future<?> second = executor.submit(() -> dataset.getTiles(0, 10, true));
+            Thread.sleep(500);
+            assertFalse(second.isDone());
+            release.countDown();
+
+            for (Future<?> f : Arrays.asList(first, second)) {
+                try {
+                    f.get(60, TimeUnit.SECONDS);
+                    fail("Expected an error");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof OutOfMemoryError);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Ignore("Benchmark")
+    @Test
+    public void benchmarkGetTiles() throws Exception {
+
+        String path = TestUtils.DATA_DIR + "tdf/dm3_var_sample.wig.v2.1.30.tdf";
+        TDFReader reader = new TDFReader(new ResourceLocator(path));
+        TDFDataset dataset = reader.getDataset("/chr3R/raw");
+
+        int nWarmup = 100;
+        int nIter = 200;
+        long batched = 0, serial = 0;
+        for (int iter = -nWarmup; iter < nIter; iter++) {
+            long t0 = System.nanoTime();
+            for (int t = 0; t < dataset.nTiles; t++) {
+                reader.readTile(dataset, t);
+            }
+            long t1 = System.nanoTime();
+            dataset.getTiles(0, dataset.nTiles - 1, false);
+            long t2 = System.nanoTime();
+            if (iter >= 0) {
+                serial += t1 - t0;
+                batched += t2 - t1;
+            }
+        }
+        System.out.println("Serial: " + (serial / nIter / 1000) + " us   Batched: " + (batched / nIter / 1000) + " us");
+    }
+
+    private static void assertEquivalent(TDFTile expected, TDFTile tile) {
+        if (expected == null) {
+            assertNull(tile);
+            return;
+        }
+        assertNotNull(tile);
+        assertEquals(expected.getTileStart(), tile.getTileStart());
+        assertEquals(expected.getSize(), tile.getSize());
+        assertTrue(Arrays.equals(expected.getStart(), tile.getStart()));
+        assertTrue(Arrays.equals(expected.getEnd(), tile.getEnd()));
+        assertTrue(Arrays.equals(expected.getData(0), tile.getData(0)));
+    }
 }
@@ -33,10 +33,13 @@ import org.broad.igv.track.WindowFunction;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
@@ -181,15 +184,14 @@ public class AccumulatorTest {
 
 
     /**
-     * Pathological case,  # of data points exactly equals percentile chunk size
+     * Pathological case,  # of data points exactly equals the number of values kept before switching to the
+     * percentile sketch.  Values are evenly spaced so the expected percentiles are exact at this size.
      */
     @Test
     public void testChunkSize() {
 
         ListAccumulator accum = new ListAccumulator(wfs);
-        for (int i = 0; i < ListAccumulator.MAX_VALUE_COUNT; i++) {
-            accum.add(1, (float) Math.random());
-        }
+        addUniform(accum, ListAccumulator.MAX_VALUE_COUNT);
         accum.finish();
         for (WindowFunction wf : wfs) {
             double v = accum.getValue(wf);
@@ -202,9 +204,7 @@ public class AccumulatorTest {
         }
 
         accum = new ListAccumulator(wfs);
-        for (int i = 0; i < ListAccumulator.MAX_VALUE_COUNT - 1; i++) {
-            accum.add(1, (float) Math.random());
-        }
+        addUniform(accum, ListAccumulator.MAX_VALUE_COUNT - 1);
         accum.finish();
         for (WindowFunction wf : wfs) {
             double v = accum.getValue(wf);
@@ -217,9 +217,7 @@ public class AccumulatorTest {
         }
 
         accum = new ListAccumulator(wfs);
-        for (int i = 0; i < ListAccumulator.MAX_VALUE_COUNT + 1; i++) {
-            accum.add(1, (float) Math.random());
-        }
+        addUniform(accum, ListAccumulator.MAX_VALUE_COUNT + 1);
         accum.finish();
         for (WindowFunction wf : wfs) {
             double v = accum.getValue(wf);
@@ -233,4 +231,15 @@ public class AccumulatorTest {
 
     }
 
-}
\ No newline at end of file
+    private static void addUniform(ListAccumulator accum, int n) {
+        List<Float> points = new ArrayList<Float>(n);
+        for (int i = 0; i < n; i++) {
+            points.add((float) ((i + 0.5) / n));
+        }
+        Collections.shuffle(points, new Random(42));
+        for (Float v : points) {
+            accum.add(1, v);
+        }
+    }
+
+}
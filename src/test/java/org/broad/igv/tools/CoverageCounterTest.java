@@ -39,10 +39,12 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 
 
 public class CoverageCounterTest extends AbstractHeadlessTest {
@@ -187,6 +189,108 @@ public class CoverageCounterTest extends AbstractHeadlessTest {
 
     }
 
+    /**
+     * Test counting with an extension factor spanning many windows, which forces the window buffer to grow.  Total
+     * counts should not depend on window size, and windows should be output in order.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCountLargeExtension() throws Exception {
+        String ifile = TestUtils.DATA_DIR + "sam/NA12878.muc1.test.sam";
+        int extFactor = 5000;
+
+        double[] totals = new double[2];
+        int[] windowSizes = new int[]{1, 100};
+        for (int ii = 0; ii < windowSizes.length; ii++) {
+            TestDataConsumer dc = new TestDataConsumer();
+            CoverageCounter cc = new CoverageCounter(ifile, dc, windowSizes[ii], extFactor, null, null, null, 0, 0);
+            cc.parse();
+
+            int lastStart = -1;
+            for (TestData tdata : dc.testDatas) {
+                assertTrue(tdata.start > lastStart);
+                lastStart = tdata.start;
+                totals[ii] += tdata.data[0] * (tdata.end - tdata.start);
+            }
+        }
+        assertTrue(totals[0] > 0);
+        assertEquals(totals[0], totals[1], 1e-3 * totals[0]);
+    }
+
+    /**
+     * Counting chromosomes concurrently should produce the same output, in the same order, as a single threaded count
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCountThreads() throws Exception {
+        int flags = CoverageCounter.STRANDS_BY_READ + CoverageCounter.BASES;
+        checkCountThreads(25, flags);
+    }
+
+    /**
+     * At a window size of 1 each chromosome spans many chunks,  which must be replayed in order
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCountThreadsChunked() throws Exception {
+        TestDataConsumer dc = checkCountThreads(1, 0);
+        assertTrue(dc.testDatas.size() > 4 * CoverageCounter.ChromosomeData.CHUNK_SIZE);
+    }
+
+    private TestDataConsumer checkCountThreads(int windowSize, int flags) throws Exception {
+        String ifile = TestUtils.DATA_DIR + "bam/NA12878.SLX.sample.bam";
+
+        TestDataConsumer expected = new TestDataConsumer();
+        CoverageCounter cc = new CoverageCounter(ifile, expected, windowSize, 100, null, genome, null, 0, flags);
+        cc.parse();
+
+        TestDataConsumer actual = new TestDataConsumer();
+        cc = new CoverageCounter(ifile, actual, windowSize, 100, null, genome, null, 0, flags);
+        cc.setThreads(4);
+        cc.parse();
+
+        assertTrue(expected.testDatas.size() > 0);
+        assertEquals(expected.attributes.get("totalCount"), actual.attributes.get("totalCount"));
+        assertEquals(expected.testDatas.size(), actual.testDatas.size());
+        for (int i = 0; i < expected.testDatas.size(); i++) {
+            TestData e = expected.testDatas.get(i);
+            TestData a = actual.testDatas.get(i);
+            assertEquals(e.chr, a.chr);
+            assertEquals(e.start, a.start);
+            assertEquals(e.end, a.end);
+            assertTrue(Arrays.equals(e.data, a.data));
+        }
+        return actual;
+    }
+
+    /**
+     * Benchmark counting throughput, in reads per second
+     *
+     * @throws Exception
+     */
+    @Test @Ignore("Benchmark, requires largedata bundle")
+    public void timeCount() throws Exception {
+        String bamURL = TestUtils.LARGE_DATA_DIR + "HG00171.hg18.bam";
+        int[] windowSizes = new int[]{1, 25};
+        int[] countFlags = new int[]{0, CoverageCounter.STRANDS_BY_READ + CoverageCounter.BASES};
+
+        for (int windowSize : windowSizes) {
+            for (int flags : countFlags) {
+                TestDataConsumer dc = new TestDataConsumer();
+                CoverageCounter cc = new CoverageCounter(bamURL, dc, windowSize, 0, null, genome, null, 0, flags);
+                long t0 = System.nanoTime();
+                cc.parse();
+                double dt = (System.nanoTime() - t0) / 1.0e9;
+                int totalCount = Integer.parseInt(dc.attributes.get("totalCount"));
+                System.out.println(String.format("Window size: %d  flags: %d  reads: %d  reads/sec: %.0f",
+                        windowSize, flags, totalCount, totalCount / dt));
+            }
+        }
+    }
+
     /**
      * Test different strand options, just count output columns
      * and make sure we get the right number
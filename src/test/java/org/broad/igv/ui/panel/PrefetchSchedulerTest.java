@@ -0,0 +1,125 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.Locus;
+import org.broad.igv.track.AbstractTrack;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.track.Track;
+import org.junit.Test;
+
+import java.awt.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PrefetchSchedulerTest extends AbstractHeadlessTest {
+
+    @Test
+    public void testPanDirection() throws Exception {
+
+        RecordingTrack track = new RecordingTrack();
+        List<Track> tracks = Collections.singletonList(track);
+        PrefetchScheduler scheduler = new PrefetchScheduler();
+
+        ReferenceFrame frame = new ReferenceFrame("testFrame");
+        frame.setBounds(0, 500);
+        frame.jumpTo(new Locus("chr1", 1000000, 1010000));
+        double width = frame.getEnd() - frame.getOrigin();
+        double scale = frame.getScale();
+
+        scheduler.update(frame, tracks);
+
+        // Pan right
+        for (int i = 0; i < 3; i++) {
+            frame.shiftOriginPixels(50);
+            scheduler.update(frame, tracks);
+        }
+        ReferenceFrame prefetched = track.take();
+        assertEquals("chr1", prefetched.getChrName());
+        assertEquals(scale, prefetched.getScale(), 1.0e-6);
+        assertTrue(prefetched.getOrigin() >= frame.getOrigin() + width);
+        assertTrue(prefetched.getOrigin() <= frame.getOrigin() + PrefetchScheduler.MAX_LOOKAHEAD_WIDTHS * width);
+        assertEquals("testFrame", prefetched.getName());
+        assertNotSame(frame, prefetched);
+
+        // Change direction
+        track.clear();
+        frame.shiftOriginPixels(-50);
+        scheduler.update(frame, tracks);
+        prefetched = track.take();
+        assertTrue(prefetched.getOrigin() <= frame.getOrigin() - width);
+
+        // Repaint without moving
+        track.clear();
+        scheduler.update(frame, tracks);
+        assertNull(track.prefetched.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private static class RecordingTrack extends AbstractTrack {
+
+        BlockingQueue<ReferenceFrame> prefetched = new LinkedBlockingQueue<>();
+
+        RecordingTrack() {
+            super("recording");
+        }
+
+        @Override
+        public void prefetch(ReferenceFrame frame) {
+            prefetched.add(frame);
+        }
+
+        ReferenceFrame take() throws InterruptedException {
+            ReferenceFrame frame = prefetched.poll(10, TimeUnit.SECONDS);
+            assertNotNull("No prefetch scheduled", frame);
+            return frame;
+        }
+
+        void clear() throws InterruptedException {
+            // Allow scheduled prefetches to run before discarding them
+            Thread.sleep(200);
+            prefetched.clear();
+        }
+
+        @Override
+        public boolean isReadyToPaint(ReferenceFrame frame) {
+            return true;
+        }
+
+        @Override
+        public void load(ReferenceFrame frame) {
+        }
+
+        @Override
+        public void render(RenderContext context, Rectangle rect) {
+        }
+    }
+}
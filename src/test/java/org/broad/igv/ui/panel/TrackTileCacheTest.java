@@ -0,0 +1,273 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.ui.panel;
+
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.feature.Locus;
+import org.broad.igv.track.AbstractTrack;
+import org.broad.igv.track.RenderContext;
+import org.broad.igv.track.Track;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TrackTileCacheTest extends AbstractHeadlessTest {
+
+    private ReferenceFrame frame;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        frame = new ReferenceFrame("testFrame");
+        frame.setBounds(0, 500);
+        frame.jumpTo(new Locus("chr1", 1000000, 1010000));
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+
+        List<Track> tracks = createTracks(5);
+        Map<Track, Rectangle> trackRects = layout(tracks, 500, 40);
+        TrackTileCache cache = new TrackTileCache();
+
+        BufferedImage image = paint(cache, trackRects);
+        assertEquals(5, cache.size());
+        for (Track track : tracks) {
+            assertEquals(1, ((CountingTrack) track).renderCount.get());
+        }
+
+        // Repaint without changes
+        BufferedImage image2 = paint(cache, trackRects);
+        for (Track track : tracks) {
+            assertEquals(1, ((CountingTrack) track).renderCount.get());
+        }
+        assertImageEquals(image, image2);
+        int[] counts = cache.getAndResetCounts();
+        assertEquals(10, counts[0]);
+        assertEquals(0, counts[1]);
+
+        // Change one track
+        CountingTrack changed = (CountingTrack) tracks.get(2);
+        changed.color = Color.red;
+        paint(cache, trackRects);
+        assertEquals(2, changed.renderCount.get());
+        assertEquals(1, ((CountingTrack) tracks.get(1)).renderCount.get());
+
+        // Move the view
+        frame.shiftOriginPixels(10);
+        paint(cache, trackRects);
+        for (Track track : tracks) {
+            assertTrue(((CountingTrack) track).renderCount.get() > 1);
+        }
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+
+        List<Track> tracks = createTracks(3);
+        TrackTileCache cache = new TrackTileCache();
+        paint(cache, layout(tracks, 500, 40));
+
+        TrackTileCache.invalidateAll();
+        paint(cache, layout(tracks, 500, 40));
+        for (Track track : tracks) {
+            assertEquals(2, ((CountingTrack) track).renderCount.get());
+        }
+
+        // Resized tracks
+        paint(cache, layout(tracks, 500, 60));
+        for (Track track : tracks) {
+            assertEquals(3, ((CountingTrack) track).renderCount.get());
+        }
+
+        // Removed tracks are discarded
+        List<Track> remaining = tracks.subList(0, 1);
+        cache.update(layout(remaining, 500, 60), remaining, createContext(new BufferedImage(500, 60, BufferedImage.TYPE_INT_ARGB).createGraphics()));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testNoRenderKey() throws Exception {
+
+        CountingTrack track = new CountingTrack("uncached", Color.blue);
+        track.cacheable = false;
+        List<Track> tracks = Collections.singletonList(track);
+        TrackTileCache cache = new TrackTileCache();
+
+        paint(cache, layout(tracks, 500, 40));
+        paint(cache, layout(tracks, 500, 40));
+        assertEquals(2, track.renderCount.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPixelsMatchDirectRendering() throws Exception {
+
+        List<Track> tracks = createTracks(4);
+        Map<Track, Rectangle> trackRects = layout(tracks, 500, 40);
+
+        BufferedImage direct = paint(null, trackRects);
+        BufferedImage cached = paint(new TrackTileCache(), trackRects);
+        assertImageEquals(direct, cached);
+    }
+
+    @Ignore("Benchmark")
+    @Test
+    public void benchmarkRepaint() throws Exception {
+
+        List<Track> tracks = createTracks(200);
+        for (Track track : tracks) {
+            ((CountingTrack) track).featureCount = 2000;
+        }
+        Map<Track, Rectangle> trackRects = layout(tracks, 1500, 25);
+        TrackTileCache cache = new TrackTileCache();
+        int nFrames = 50;
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < nFrames; i++) {
+            paint(null, trackRects);
+        }
+        long directTime = System.nanoTime() - t0;
+
+        paint(cache, trackRects);
+        t0 = System.nanoTime();
+        for (int i = 0; i < nFrames; i++) {
+            paint(cache, trackRects);
+        }
+        long cachedTime = System.nanoTime() - t0;
+
+        System.out.println("Direct: " + (directTime / 1000000.0 / nFrames) + " ms/frame");
+        System.out.println("Cached: " + (cachedTime / 1000000.0 / nFrames) + " ms/frame");
+    }
+
+    private BufferedImage paint(TrackTileCache cache, Map<Track, Rectangle> trackRects) {
+
+        int width = 0, height = 0;
+        for (Rectangle rect : trackRects.values()) {
+            width = Math.max(width, rect.x + rect.width);
+            height = Math.max(height, rect.y + rect.height);
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        RenderContext context = createContext(g);
+        if (cache != null) {
+            cache.update(trackRects, trackRects.keySet(), context);
+        }
+        for (Map.Entry<Track, Rectangle> entry : trackRects.entrySet()) {
+            if (cache == null || !cache.draw(entry.getKey(), entry.getValue(), context)) {
+                entry.getKey().render(context, entry.getValue());
+            }
+        }
+        g.dispose();
+        return image;
+    }
+
+    private RenderContext createContext(Graphics2D g) {
+        return new RenderContext(null, g, frame, new Rectangle(0, 0, 500, 1000));
+    }
+
+    private static List<Track> createTracks(int count) {
+        List<Track> tracks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tracks.add(new CountingTrack("track" + i, new Color(i * 37 % 256, 80, 160)));
+        }
+        return tracks;
+    }
+
+    private static Map<Track, Rectangle> layout(List<Track> tracks, int width, int height) {
+        Map<Track, Rectangle> trackRects = new LinkedHashMap<>();
+        int y = 0;
+        for (Track track : tracks) {
+            trackRects.put(track, new Rectangle(0, y, width, height));
+            y += height;
+        }
+        return trackRects;
+    }
+
+    private static void assertImageEquals(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals("Pixel " + x + "," + y, expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+
+    /**
+     * Draws a bar per "feature" across the view,  and counts its renderings
+     */
+    private static class CountingTrack extends AbstractTrack {
+
+        AtomicInteger renderCount = new AtomicInteger();
+        Color color;
+        boolean cacheable = true;
+        int featureCount = 20;
+
+        CountingTrack(String id, Color color) {
+            super(id);
+            this.color = color;
+        }
+
+        @Override
+        public Object getRenderKey(ReferenceFrame frame) {
+            return cacheable ? Arrays.asList(color, featureCount) : null;
+        }
+
+        @Override
+        public boolean isReadyToPaint(ReferenceFrame frame) {
+            return true;
+        }
+
+        @Override
+        public void load(ReferenceFrame frame) {
+        }
+
+        @Override
+        public void render(RenderContext context, Rectangle rect) {
+            renderCount.incrementAndGet();
+            Graphics2D g = context.getGraphics();
+            g.setColor(color);
+            double origin = context.getOrigin();
+            double scale = context.getScale();
+            for (int i = 0; i < featureCount; i++) {
+                int start = 1000000 + i * 500;
+                int x = (int) ((start - origin) / scale);
+                int w = Math.max(1, (int) (250 / scale));
+                g.fillRect(x, rect.y + (i % 3) * rect.height / 4, w, rect.height / 4);
+            }
+            g.drawLine(rect.x, rect.y + rect.height - 1, rect.x + rect.width, rect.y + rect.height - 1);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package org.broad.igv.util.collections;
+
+import org.apache.commons.math.stat.StatUtils;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TDigestTest {
+
+    static double[] QUANTILES = {0.02, 0.1, 0.5, 0.9, 0.98};
+
+    @Test
+    public void testAccuracy() {
+
+        Random random = new Random(1);
+        int n = 500000;
+        double[] values = new double[n];
+        TDigest digest = new TDigest();
+        for (int i = 0; i < n; i++) {
+            // Skewed distribution,  similar to coverage data
+            values[i] = Math.exp(random.nextGaussian());
+            digest.add(values[i]);
+        }
+
+        assertEquals(n, digest.size(), 0);
+        assertTrue(digest.centroidCount() <= 100);
+
+        for (double q : QUANTILES) {
+            double expected = StatUtils.percentile(values, q * 100);
+            assertEquals("q = " + q, expected, digest.quantile(q), 0.01 * expected);
+        }
+        assertEquals(StatUtils.min(values), digest.quantile(0), 0);
+        assertEquals(StatUtils.max(values), digest.quantile(1), 0);
+    }
+
+    @Test
+    public void testMerge() {
+
+        Random random = new Random(2);
+        int n = 100000;
+        double[] values = new double[4 * n];
+        TDigest[] parts = new TDigest[4];
+        for (int p = 0; p < parts.length; p++) {
+            parts[p] = new TDigest();
+            for (int i = 0; i < n; i++) {
+                // Parts have different ranges, as for adjacent genomic bins
+                double v = p + random.nextDouble();
+                values[p * n + i] = v;
+                parts[p].add(v);
+            }
+        }
+
+        TDigest merged = new TDigest();
+        for (TDigest part : parts) {
+            merged.merge(part);
+        }
+
+        assertEquals(4 * n, merged.size(), 0);
+        for (double q : QUANTILES) {
+            assertEquals("q = " + q, StatUtils.percentile(values, q * 100), merged.quantile(q), 0.01);
+        }
+    }
+
+    @Test
+    public void testSmall() {
+
+        TDigest digest = new TDigest();
+        assertTrue(Double.isNaN(digest.quantile(0.5)));
+
+        digest.add(3);
+        assertEquals(3, digest.quantile(0.02), 0);
+        assertEquals(3, digest.quantile(0.98), 0);
+
+        digest.add(Double.NaN);
+        for (int i = 0; i < 1000; i++) {
+            digest.add(3);
+        }
+        assertEquals(1001, digest.size(), 0);
+        assertEquals(3, digest.quantile(0.5), 0);
+    }
+}
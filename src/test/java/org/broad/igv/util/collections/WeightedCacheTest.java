@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.collections;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WeightedCacheTest {
+
+    @Test
+    public void testQuota() {
+
+        WeightedCache<String, byte[]> cache = new WeightedCache<>("test", 1000, bytes -> bytes.length, 1);
+
+        cache.put("a", new byte[400]);
+        cache.put("b", new byte[400]);
+        assertEquals(800, cache.getWeight());
+
+        // Touch "a",  "b" is now the least recently used
+        assertNotNull(cache.get("a"));
+
+        cache.put("c", new byte[400]);
+        assertTrue(cache.containsKey("a"));
+        assertFalse(cache.containsKey("b"));
+        assertTrue(cache.containsKey("c"));
+        assertEquals(800, cache.getWeight());
+        assertEquals(1, cache.getEvictionCount());
+
+        // Replacing a value adjusts the weight
+        cache.put("c", new byte[100]);
+        assertEquals(500, cache.getWeight());
+
+        cache.remove("a");
+        assertEquals(100, cache.getWeight());
+
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+        assertTrue(cache.isEmpty());
+    }
+
+    /**
+     * A value heavier than the quota evicts the other entries but is kept itself
+     */
+    @Test
+    public void testOversizedEntry() {
+
+        WeightedCache<Integer, byte[]> cache = new WeightedCache<>("test", 1000, bytes -> bytes.length, 4);
+        for (int i = 0; i < 4; i++) {
+            cache.put(i, new byte[200]);
+        }
+
+        cache.put(4, new byte[5000]);
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(4));
+        assertEquals(5000, cache.getWeight());
+
+        // The next entry replaces it
+        cache.put(5, new byte[200]);
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(5));
+        assertEquals(200, cache.getWeight());
+    }
+
+    @Test
+    public void testLRUAcrossSegments() {
+
+        WeightedCache<Integer, byte[]> cache = new WeightedCache<>("test", 10000, bytes -> bytes.length, 4);
+
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, new byte[1000]);
+        }
+        cache.get(0);
+
+        // Shrinking the quota evicts the oldest entries regardless of segment
+        cache.setMaxWeight(3000);
+        assertEquals(3, cache.size());
+        assertTrue(cache.containsKey(0));
+        assertTrue(cache.containsKey(8));
+        assertTrue(cache.containsKey(9));
+    }
+
+    @Test
+    public void testNullValuesAndCounters() {
+
+        WeightedCache<String, byte[]> cache = new WeightedCache<>("test", 1000, bytes -> bytes.length);
+
+        cache.put("empty", null);
+        assertNull(cache.get("empty"));
+        assertTrue(cache.containsKey("empty"));
+        assertNull(cache.get("missing"));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testGlobalBudget() {
+
+        long budget = CacheManager.getBudget();
+        try {
+            WeightedCache<String, byte[]> cache1 = new WeightedCache<>("test1", 100000, bytes -> bytes.length);
+            WeightedCache<String, byte[]> cache2 = new WeightedCache<>("test2", 100000, bytes -> bytes.length);
+
+            cache1.put("a", new byte[1000]);
+            cache2.put("b", new byte[1000]);
+
+            // Other live caches are older and will be trimmed first
+            CacheManager.setBudget(2500);
+
+            // Exceeds the global budget,  the oldest entry in either cache is evicted
+            cache1.put("c", new byte[1000]);
+            assertFalse(cache1.containsKey("a"));
+            assertTrue(cache2.containsKey("b"));
+            assertTrue(cache1.containsKey("c"));
+            assertTrue(CacheManager.getTotalWeight() <= CacheManager.getBudget());
+
+        } finally {
+            CacheManager.setBudget(budget);
+        }
+    }
+}
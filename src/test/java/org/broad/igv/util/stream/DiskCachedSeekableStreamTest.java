@@ -0,0 +1,231 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import com.sun.net.httpserver.HttpServer;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.broad.igv.AbstractHeadlessTest;
+import org.broad.igv.prefs.Constants;
+import org.broad.igv.prefs.PreferencesManager;
+import org.broad.igv.util.TestUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DiskCachedSeekableStreamTest extends AbstractHeadlessTest {
+
+    static final int FILE_SIZE = 1500000;
+
+    static HttpServer server;
+    static byte[] content;
+    static String url;
+
+    static AtomicInteger rangeRequestCount = new AtomicInteger();
+
+    // Bytes sent by the next range responses before they are cut short
+    static Queue<Integer> truncations = new ConcurrentLinkedQueue<>();
+
+    @BeforeClass
+    public static void setUpServer() throws Exception {
+
+        content = new byte[FILE_SIZE];
+        new Random(1).nextBytes(content);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/test.bin", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            if (exchange.getRequestMethod().equals("HEAD")) {
+                exchange.getResponseHeaders().add("Content-Length", String.valueOf(FILE_SIZE));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            rangeRequestCount.incrementAndGet();
+            String[] tokens = exchange.getRequestHeaders().getFirst("Range").substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(tokens[0]);
+            int end = Math.min(FILE_SIZE - 1, Integer.parseInt(tokens[1]));
+            if (start >= FILE_SIZE) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + FILE_SIZE);
+            Integer truncate = truncations.poll();
+            if (truncate != null) {
+                // Simulate a dropped connection,  the response ends early without an error
+                exchange.sendResponseHeaders(206, 0);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(content, start, Math.min(truncate, end - start + 1));
+                }
+                return;
+            }
+            exchange.sendResponseHeaders(206, end - start + 1);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(content, start, end - start + 1);
+            }
+        });
+        server.start();
+
+        url = "http://localhost:" + server.getAddress().getPort() + "/test.bin";
+    }
+
+    @AfterClass
+    public static void tearDownServer() {
+        server.stop(0);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        File cacheDir = new File(TestUtils.TMP_OUTPUT_DIR, "remote_cache");
+        PreferencesManager.getPreferences().put(Constants.REMOTE_CACHE_ENABLED, true);
+        PreferencesManager.getPreferences().put(Constants.REMOTE_CACHE_DIRECTORY, cacheDir.getAbsolutePath());
+        PreferencesManager.getPreferences().put(Constants.REMOTE_CACHE_SIZE, "1");
+        DiskBlockCache.clear();
+        rangeRequestCount.set(0);
+    }
+
+    @After
+    public void clearCache() {
+        DiskBlockCache.clear();
+    }
+
+    @Test
+    public void testReopen() throws Exception {
+
+        long[] positions = {0, 100, 63990, 200000, 640000, FILE_SIZE - 50};
+
+        SeekableStream stream = IGVSeekableStreamFactory.getInstance().getStreamFor(url);
+        assertTrue(stream instanceof DiskCachedSeekableStream);
+        rangeRequestCount.set(0);
+        checkReads(stream, positions);
+        int coldRequests = rangeRequestCount.get();
+        assertTrue(coldRequests > 0);
+
+        // A new stream for the same url is served entirely from disk
+        rangeRequestCount.set(0);
+        stream = IGVSeekableStreamFactory.getInstance().getStreamFor(url);
+        checkReads(stream, positions);
+        assertEquals(0, rangeRequestCount.get());
+    }
+
+    @Test
+    public void testBufferedReads() throws Exception {
+
+        // Reads spanning several uncached blocks are fetched with one request
+        SeekableStream stream = IGVSeekableStreamFactory.getInstance().getBufferedStream(
+                IGVSeekableStreamFactory.getInstance().getStreamFor(url), 512000);
+        rangeRequestCount.set(0);
+        byte[] bytes = new byte[1000];
+        stream.seek(10000);
+        stream.readFully(bytes);
+        assertArrayEquals(Arrays.copyOfRange(content, 10000, 11000), bytes);
+        assertEquals(1, rangeRequestCount.get());
+    }
+
+    /**
+     * A response cut short is not cached as the end of the file
+     */
+    @Test
+    public void testTruncatedResponse() throws Exception {
+
+        // The connection drops part way through the second block,  and the retry for the rest returns nothing
+        int size = 4 * DiskCachedSeekableStream.BLOCK_SIZE;
+        truncations.add(DiskCachedSeekableStream.BLOCK_SIZE + 1000);
+        truncations.add(0);
+        SeekableStream stream = IGVSeekableStreamFactory.getInstance().getStreamFor(url);
+        byte[] bytes = new byte[size];
+        stream.readFully(bytes);
+        assertArrayEquals(Arrays.copyOf(content, size), bytes);
+
+        // Only full blocks were cached
+        File[] files = DiskBlockCache.getCacheDirectory().listFiles((dir, name) -> name.endsWith(DiskBlockCache.EXTENSION));
+        assertEquals(4, files.length);
+        for (File f : files) {
+            assertEquals(DiskCachedSeekableStream.BLOCK_SIZE, f.length());
+        }
+
+        // A partial first block is not returned as the end of the file
+        DiskBlockCache.clear();
+        truncations.add(1000);
+        truncations.add(0);
+        stream = IGVSeekableStreamFactory.getInstance().getStreamFor(url);
+        try {
+            stream.readFully(bytes);
+            fail("Expected an IOException");
+        } catch (IOException e) {
+            // Expected
+        }
+        stream.seek(0);
+        stream.readFully(bytes);
+        assertArrayEquals(Arrays.copyOf(content, size), bytes);
+    }
+
+    @Test
+    public void testEOFAndSizeLimit() throws Exception {
+
+        SeekableStream stream = IGVSeekableStreamFactory.getInstance().getStreamFor(url);
+        byte[] all = new byte[FILE_SIZE + 1000];
+        int n = 0;
+        int count;
+        while ((count = stream.read(all, n, all.length - n)) > 0) {
+            n += count;
+        }
+        assertEquals(FILE_SIZE, n);
+        assertArrayEquals(content, Arrays.copyOf(all, n));
+        assertTrue(stream.eof());
+
+        // Cache size is limited to 1 MB
+        long cacheSize = 0;
+        for (File f : DiskBlockCache.getCacheDirectory().listFiles()) {
+            cacheSize += f.length();
+        }
+        assertTrue(cacheSize > 0 && cacheSize <= 1000000);
+    }
+
+    private void checkReads(SeekableStream stream, long[] positions) throws Exception {
+        for (long pos : positions) {
+            int size = (int) Math.min(1000, FILE_SIZE - pos);
+            byte[] bytes = new byte[size];
+            stream.seek(pos);
+            stream.readFully(bytes);
+            assertArrayEquals(Arrays.copyOfRange(content, (int) pos, (int) pos + size), bytes);
+        }
+    }
+}
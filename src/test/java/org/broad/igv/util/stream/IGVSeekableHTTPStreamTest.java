@@ -0,0 +1,239 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2007-2015 Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.broad.igv.util.stream;
+
+import com.sun.net.httpserver.HttpServer;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.seekablestream.SeekableStream;
+import org.broad.igv.util.TestUtils;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of range reads against a local http server which counts requests and bytes served
+ */
+public class IGVSeekableHTTPStreamTest {
+
+    static final int FILE_SIZE = 200000;
+
+    static HttpServer server;
+    static byte[] content;
+    static URL url;
+
+    static AtomicInteger requestCount = new AtomicInteger();
+    static AtomicLong bytesServed = new AtomicLong();
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+
+        content = new byte[FILE_SIZE];
+        new Random(1).nextBytes(content);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/test.bin", exchange -> {
+            requestCount.incrementAndGet();
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int start = 0;
+            int end = FILE_SIZE - 1;
+            if (range != null) {
+                String[] tokens = range.substring("bytes=".length()).split("-");
+                start = Integer.parseInt(tokens[0]);
+                end = Math.min(FILE_SIZE - 1, Integer.parseInt(tokens[1]));
+            }
+            if (start >= FILE_SIZE) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+            int length = end - start + 1;
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + FILE_SIZE);
+            exchange.sendResponseHeaders(range == null ? 200 : 206, length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(content, start, length);
+            }
+            bytesServed.addAndGet(length);
+        });
+        server.start();
+
+        url = new URL("http://localhost:" + server.getAddress().getPort() + "/test.bin");
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        server.stop(0);
+    }
+
+    @Before
+    public void setUp() {
+        requestCount.set(0);
+        bytesServed.set(0);
+    }
+
+    @Test
+    public void testReadRanges() throws Exception {
+
+        // Two clusters of nearby ranges,  listed out of order
+        List<ByteRange> ranges = Arrays.asList(
+                new ByteRange(150000, 500),
+                new ByteRange(1000, 200),
+                new ByteRange(1200, 300),
+                new ByteRange(150600, 100),
+                new ByteRange(5000, 1000),
+                new ByteRange(151000, 2000));
+
+        IGVSeekableHTTPStream stream = new IGVSeekableHTTPStream(url);
+        List<ByteBuffer> buffers = stream.readRanges(ranges);
+
+        assertEquals(2, requestCount.get());
+        assertEquals(0, stream.position());
+        checkBuffers(ranges, buffers);
+
+        // Read individually,  one request per range
+        requestCount.set(0);
+        for (ByteRange range : ranges) {
+            byte[] bytes = new byte[range.getSize()];
+            stream.seek(range.getStart());
+            stream.readFully(bytes);
+            assertArrayEquals(expected(range), bytes);
+        }
+        assertEquals(ranges.size(), requestCount.get());
+    }
+
+    @Test
+    public void testDistantRanges() throws Exception {
+
+        List<ByteRange> ranges = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            ranges.add(new ByteRange(i * 25000, 100));
+        }
+
+        List<ByteBuffer> buffers = new IGVSeekableHTTPStream(url).readRanges(ranges);
+
+        // Gaps exceed the merge threshold,  each range is fetched separately and only requested bytes are served
+        assertEquals(8, requestCount.get());
+        assertEquals(800, bytesServed.get());
+        checkBuffers(ranges, buffers);
+    }
+
+    /**
+     * Overlapping ranges are merged even if the request exceeds the size limit,  so no range is split between requests
+     */
+    @Test
+    public void testOverlappingRangesPastSizeLimit() throws Exception {
+
+        int maxMergedSize = IGVSeekableHTTPStream.MAX_MERGED_SIZE;
+        IGVSeekableHTTPStream.MAX_MERGED_SIZE = 10000;
+        try {
+            List<ByteRange> ranges = Arrays.asList(
+                    new ByteRange(1000, 8000),
+                    new ByteRange(8000, 6000),
+                    new ByteRange(12000, 500),
+                    new ByteRange(20000, 100));
+
+            List<ByteBuffer> buffers = new IGVSeekableHTTPStream(url).readRanges(ranges);
+
+            assertEquals(2, requestCount.get());
+            checkBuffers(ranges, buffers);
+        } finally {
+            IGVSeekableHTTPStream.MAX_MERGED_SIZE = maxMergedSize;
+        }
+    }
+
+    @Test
+    public void testRangesPastEnd() throws Exception {
+
+        List<ByteRange> ranges = Arrays.asList(
+                new ByteRange(FILE_SIZE - 100, 500),
+                new ByteRange(FILE_SIZE + 100000, 100));
+
+        List<ByteBuffer> buffers = new IGVSeekableHTTPStream(url).readRanges(ranges);
+
+        assertEquals(100, buffers.get(0).remaining());
+        assertEquals(0, buffers.get(1).remaining());
+        checkBuffers(ranges, buffers);
+    }
+
+    @Test
+    public void testBufferedAndFileStreams() throws Exception {
+
+        List<ByteRange> ranges = Arrays.asList(
+                new ByteRange(10, 100),
+                new ByteRange(120, 100),
+                new ByteRange(90000, 5000));
+
+        // Buffered http stream delegates to the wrapped stream
+        SeekableStream buffered = IGVSeekableStreamFactory.getInstance().getBufferedStream(new IGVSeekableHTTPStream(url));
+        checkBuffers(ranges, IGVSeekableStreamFactory.readRanges(buffered, ranges));
+        assertEquals(2, requestCount.get());
+
+        File file = new File(TestUtils.TMP_OUTPUT_DIR, "IGVSeekableHTTPStreamTest.bin");
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(content);
+        }
+        try (SeekableStream fileStream = new SeekableFileStream(file)) {
+            fileStream.seek(55);
+            checkBuffers(ranges, IGVSeekableStreamFactory.readRanges(fileStream, ranges));
+            assertEquals(55, fileStream.position());
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void checkBuffers(List<ByteRange> ranges, List<ByteBuffer> buffers) throws IOException {
+        assertEquals(ranges.size(), buffers.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteBuffer buffer = buffers.get(i);
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            assertArrayEquals(ranges.get(i).toString(), expected(ranges.get(i)), bytes);
+        }
+    }
+
+    private static byte[] expected(ByteRange range) {
+        int start = (int) Math.min(FILE_SIZE, range.getStart());
+        int end = (int) Math.min(FILE_SIZE, range.getEnd());
+        return Arrays.copyOfRange(content, start, end);
+    }
+}